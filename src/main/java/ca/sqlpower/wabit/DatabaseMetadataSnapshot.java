@@ -0,0 +1,424 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sqlobject.SQLCatalog;
+import ca.sqlpower.sqlobject.SQLColumn;
+import ca.sqlpower.sqlobject.SQLDatabase;
+import ca.sqlpower.sqlobject.SQLObject;
+import ca.sqlpower.sqlobject.SQLObjectException;
+import ca.sqlpower.sqlobject.SQLSchema;
+import ca.sqlpower.sqlobject.SQLTable;
+
+/**
+ * The catalogs, schemas, tables and columns of a database, captured with two
+ * bulk {@link DatabaseMetaData} calls and saved to disk. Populating an
+ * {@link SQLDatabase} over JDBC makes a round trip for each catalog, schema
+ * and table, which against a large warehouse dominates the time it takes to
+ * open a workspace. Applying a snapshot to a new {@link SQLDatabase} builds
+ * the same tree without contacting the database.
+ * <p>
+ * Snapshot files start with {@link #FORMAT_VERSION}; files written in any
+ * other format, or for a different database URL or user, are ignored when
+ * read.
+ */
+public class DatabaseMetadataSnapshot {
+
+    private static final Logger logger = Logger.getLogger(DatabaseMetadataSnapshot.class);
+
+    /**
+     * The version of the snapshot file format. Change this whenever the
+     * format changes so old snapshots are captured again.
+     */
+    static final int FORMAT_VERSION = 2;
+
+    private static final String FILE_SUFFIX = ".metadata";
+
+    private static final String UTF_8 = "UTF-8";
+
+    private static class ColumnEntry {
+        String name;
+        int type;
+        String nativeType;
+        int precision;
+        int scale;
+        int nullable;
+        String remarks;
+        String defaultValue;
+        boolean autoIncrement;
+    }
+
+    private static class TableEntry {
+        String catalog;
+        String schema;
+        String name;
+        String type;
+        String remarks;
+        final List<ColumnEntry> columns = new ArrayList<ColumnEntry>();
+    }
+
+    private final String url;
+
+    private final String user;
+
+    /**
+     * The time the snapshot was captured, in milliseconds since the epoch.
+     */
+    private final long captureTime;
+
+    private final List<TableEntry> tables;
+
+    private DatabaseMetadataSnapshot(String url, String user, long captureTime, List<TableEntry> tables) {
+        this.url = url;
+        this.user = user;
+        this.captureTime = captureTime;
+        this.tables = tables;
+    }
+
+    /**
+     * Captures the tables and views of the database the given connection is
+     * connected to, along with their columns.
+     */
+    public static DatabaseMetadataSnapshot capture(JDBCDataSource dataSource, Connection con) 
+            throws SQLException {
+        DatabaseMetaData dbmd = con.getMetaData();
+        Map<List<String>, TableEntry> tablesByName = new HashMap<List<String>, TableEntry>();
+        List<TableEntry> tables = new ArrayList<TableEntry>();
+        
+        ResultSet rs = dbmd.getTables(null, null, "%", new String[] { "TABLE", "VIEW" });
+        try {
+            while (rs.next()) {
+                TableEntry table = new TableEntry();
+                table.catalog = rs.getString("TABLE_CAT");
+                table.schema = rs.getString("TABLE_SCHEM");
+                table.name = rs.getString("TABLE_NAME");
+                table.type = rs.getString("TABLE_TYPE");
+                table.remarks = rs.getString("REMARKS");
+                tables.add(table);
+                tablesByName.put(Arrays.asList(table.catalog, table.schema, table.name), table);
+            }
+        } finally {
+            rs.close();
+        }
+        
+        rs = dbmd.getColumns(null, null, "%", "%");
+        try {
+            while (rs.next()) {
+                TableEntry table = tablesByName.get(Arrays.asList(
+                        rs.getString("TABLE_CAT"), rs.getString("TABLE_SCHEM"), rs.getString("TABLE_NAME")));
+                if (table == null) continue;
+                ColumnEntry column = new ColumnEntry();
+                column.name = rs.getString("COLUMN_NAME");
+                column.type = rs.getInt("DATA_TYPE");
+                column.nativeType = rs.getString("TYPE_NAME");
+                column.precision = rs.getInt("COLUMN_SIZE");
+                column.scale = rs.getInt("DECIMAL_DIGITS");
+                column.nullable = rs.getInt("NULLABLE");
+                column.remarks = rs.getString("REMARKS");
+                column.defaultValue = rs.getString("COLUMN_DEF");
+                String autoIncrement = null;
+                try {
+                    autoIncrement = rs.getString("IS_AUTOINCREMENT");
+                } catch (SQLException e) {
+                    // older drivers do not report this column
+                }
+                column.autoIncrement = "YES".equalsIgnoreCase(autoIncrement);
+                table.columns.add(column);
+            }
+        } finally {
+            rs.close();
+        }
+        
+        return new DatabaseMetadataSnapshot(dataSource.getUrl(), dataSource.getUser(), 
+                System.currentTimeMillis(), tables);
+    }
+
+    /**
+     * Returns the file the snapshot of the given data source is stored in
+     * within the given directory.
+     */
+    public static File getSnapshotFile(File directory, JDBCDataSource dataSource) {
+        String name = String.valueOf(dataSource.getName()).replaceAll("[^A-Za-z0-9_-]", "_");
+        String key = dataSource.getUrl() + "\n" + dataSource.getUser();
+        return new File(directory, name + "-" + Integer.toHexString(key.hashCode()) + FILE_SUFFIX);
+    }
+
+    /**
+     * Reads the snapshot of the given data source from the given file.
+     * Returns null if the file does not exist, cannot be read, was written in
+     * a different format or describes a different database.
+     */
+    public static DatabaseMetadataSnapshot read(File file, JDBCDataSource dataSource) {
+        if (!file.exists()) return null;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != FORMAT_VERSION) {
+                    logger.debug("Ignoring metadata snapshot " + file + " in an old format");
+                    return null;
+                }
+                String url = readString(in);
+                String user = readString(in);
+                if (!equal(url, dataSource.getUrl()) || !equal(user, dataSource.getUser())) {
+                    return null;
+                }
+                long captureTime = in.readLong();
+                int tableCount = in.readInt();
+                List<TableEntry> tables = new ArrayList<TableEntry>(tableCount);
+                for (int i = 0; i < tableCount; i++) {
+                    TableEntry table = new TableEntry();
+                    table.catalog = readString(in);
+                    table.schema = readString(in);
+                    table.name = readString(in);
+                    table.type = readString(in);
+                    table.remarks = readString(in);
+                    int columnCount = in.readInt();
+                    for (int j = 0; j < columnCount; j++) {
+                        ColumnEntry column = new ColumnEntry();
+                        column.name = readString(in);
+                        column.type = in.readInt();
+                        column.nativeType = readString(in);
+                        column.precision = in.readInt();
+                        column.scale = in.readInt();
+                        column.nullable = in.readInt();
+                        column.remarks = readString(in);
+                        column.defaultValue = readString(in);
+                        column.autoIncrement = in.readBoolean();
+                        table.columns.add(column);
+                    }
+                    tables.add(table);
+                }
+                return new DatabaseMetadataSnapshot(url, user, captureTime, tables);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read the metadata snapshot " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes this snapshot to the given file. The snapshot is written to a
+     * temporary file first so a reader never sees a partly written snapshot.
+     */
+    public void write(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create the directory " + directory);
+        }
+        File tempFile = new File(directory, file.getName() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, url);
+            writeString(out, user);
+            out.writeLong(captureTime);
+            writeContent(out);
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not replace the metadata snapshot " + file);
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Could not move " + tempFile + " to " + file);
+        }
+    }
+
+    private void writeContent(DataOutputStream out) throws IOException {
+        out.writeInt(tables.size());
+        for (TableEntry table : tables) {
+            writeString(out, table.catalog);
+            writeString(out, table.schema);
+            writeString(out, table.name);
+            writeString(out, table.type);
+            writeString(out, table.remarks);
+            out.writeInt(table.columns.size());
+            for (ColumnEntry column : table.columns) {
+                writeString(out, column.name);
+                out.writeInt(column.type);
+                writeString(out, column.nativeType);
+                out.writeInt(column.precision);
+                out.writeInt(column.scale);
+                out.writeInt(column.nullable);
+                writeString(out, column.remarks);
+                writeString(out, column.defaultValue);
+                out.writeBoolean(column.autoIncrement);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given snapshot describes the same tables and
+     * columns as this one, regardless of when either was captured.
+     */
+    public boolean hasSameContent(DatabaseMetadataSnapshot other) {
+        try {
+            return Arrays.equals(getContentBytes(), other.getContentBytes());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private byte[] getContentBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeContent(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Builds the catalogs, schemas, tables and columns of this snapshot in
+     * the given database, which must not have been populated yet. Every
+     * object built is marked as populated so browsing them does not contact
+     * the database; indexes and relationships are still read from the
+     * database when they are first needed.
+     */
+    public void apply(SQLDatabase db) throws SQLObjectException {
+        if (db.isPopulated() || !db.getChildrenWithoutPopulating().isEmpty()) {
+            throw new IllegalStateException("The database " + db.getName() + " is already populated");
+        }
+        Map<String, SQLCatalog> catalogs = new HashMap<String, SQLCatalog>();
+        Map<List<String>, SQLSchema> schemas = new HashMap<List<String>, SQLSchema>();
+        for (TableEntry entry : tables) {
+            SQLObject parent = db;
+            if (entry.catalog != null) {
+                SQLCatalog catalog = catalogs.get(entry.catalog);
+                if (catalog == null) {
+                    catalog = new SQLCatalog(db, entry.catalog, true);
+                    addChild(db, catalog);
+                    catalogs.put(entry.catalog, catalog);
+                }
+                parent = catalog;
+            }
+            if (entry.schema != null) {
+                List<String> schemaKey = Arrays.asList(entry.catalog, entry.schema);
+                SQLSchema schema = schemas.get(schemaKey);
+                if (schema == null) {
+                    schema = new SQLSchema(parent, entry.schema, true);
+                    addChild(parent, schema);
+                    schemas.put(schemaKey, schema);
+                }
+                parent = schema;
+            }
+            
+            SQLTable table = new SQLTable(parent, entry.name, entry.remarks, entry.type, true);
+            for (ColumnEntry columnEntry : entry.columns) {
+                SQLColumn column = new SQLColumn(table, columnEntry.name, columnEntry.type, 
+                        columnEntry.precision, columnEntry.scale);
+                column.setSourceDataTypeName(columnEntry.nativeType);
+                column.setNullable(columnEntry.nullable);
+                column.setRemarks(columnEntry.remarks);
+                column.setDefaultValue(columnEntry.defaultValue);
+                column.setAutoIncrement(columnEntry.autoIncrement);
+                table.addColumn(column);
+            }
+            addChild(parent, table);
+        }
+        db.setPopulated(true);
+    }
+
+    private static void addChild(SQLObject parent, SQLObject child) {
+        parent.addChild(child, parent.getChildrenWithoutPopulating().size());
+    }
+
+    public long getCaptureTime() {
+        return captureTime;
+    }
+
+    /**
+     * Returns the number of tables and views in this snapshot.
+     */
+    public int getTableCount() {
+        return tables.size();
+    }
+
+    /**
+     * Returns the names of the columns of the given table in the order the
+     * database reported them, or an empty list if the table is not in this
+     * snapshot.
+     */
+    public List<String> getColumnNames(String catalog, String schema, String table) {
+        for (TableEntry entry : tables) {
+            if (equal(entry.catalog, catalog) && equal(entry.schema, schema) && equal(entry.name, table)) {
+                List<String> names = new ArrayList<String>();
+                for (ColumnEntry column : entry.columns) {
+                    names.add(column.name);
+                }
+                return names;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Writes the given string as its length in bytes followed by its UTF-8
+     * bytes, or a length of -1 for null. Unlike
+     * {@link DataOutputStream#writeUTF(String)} this has no limit on the
+     * length of the string, which matters for long remarks and defaults.
+     * This is package private for testing.
+     */
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
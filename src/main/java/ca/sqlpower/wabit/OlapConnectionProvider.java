@@ -28,6 +28,7 @@ import org.olap4j.PreparedOlapStatement;
 
 import ca.sqlpower.object.SPVariableHelper;
 import ca.sqlpower.sql.Olap4jDataSource;
+import ca.sqlpower.wabit.rs.olap.OlapMetadataCache;
 
 /**
  * This interface maps an {@link Olap4jDataSource} to an open
@@ -43,6 +44,14 @@ public interface OlapConnectionProvider {
     public OlapConnection createConnection(Olap4jDataSource dataSource) 
     		throws SQLException, ClassNotFoundException, NamingException;
     
+    /**
+     * Returns the cache of the metadata found through the connection of the
+     * given data source. The same cache is returned for a data source for as
+     * long as the provider keeps the data source's connection, and the cache
+     * is cleared when the provider closes its connections.
+     */
+    public OlapMetadataCache getMetadataCache(Olap4jDataSource dataSource);
+    
     public PreparedOlapStatement createPreparedStatement(
     		Olap4jDataSource dataSource,
     		String mdx,
@@ -27,6 +27,7 @@ import ca.sqlpower.sql.SPDataSource;
 import ca.sqlpower.swingui.event.SessionLifecycleListener;
 import ca.sqlpower.util.RunnableDispatcher;
 import ca.sqlpower.util.WorkspaceContainer;
+import ca.sqlpower.wabit.rs.ResultSetEventDispatcher;
 
 /**
  * The basic interface for a Wabit session. This interface provides all the
@@ -94,4 +95,13 @@ public interface WabitSession extends WorkspaceContainer, RunnableDispatcher {
      * @return
      */
     public SPFontLoader getFontLoader();
+
+    /**
+     * Returns the dispatcher that delivers the events of the queries run in
+     * this session to their listeners. Events are delivered on the session's
+     * foreground thread: sessions with a user interface deliver them on the
+     * event dispatch thread, while other sessions deliver them immediately on
+     * the thread that fired them, which may be a thread executing a query.
+     */
+    public ResultSetEventDispatcher getResultSetEventDispatcher();
 }
@@ -196,7 +196,17 @@ public interface WabitSessionContext extends UserPrompterFactory, SqlConnectionP
      *             JDBC driver, or many other things.
      */
     public Connection borrowConnection(JDBCDataSource dataSource) throws SQLObjectException;
-    
+
+    /**
+     * Discards the catalogs, schemas, tables and columns known for the given
+     * data source, including any metadata snapshot saved for it, and reads
+     * them from the database again. Call this when the structure of a database
+     * has changed and the change must be visible before the snapshot is
+     * revalidated in the background. This reads the database over JDBC, so it
+     * should not be called on the event dispatch thread.
+     */
+    public void refreshDatabaseMetadata(JDBCDataSource dataSource);
+
     /**
      * Tells whether or not this session is currently being configured by a DAO.
      * It's not normally necessary to know this from outside the session, but
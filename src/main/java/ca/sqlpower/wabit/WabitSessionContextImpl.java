@@ -33,6 +33,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
@@ -62,6 +65,7 @@ import ca.sqlpower.util.UserPrompter.UserPromptResponse;
 import ca.sqlpower.wabit.enterprise.client.WabitClientSession;
 import ca.sqlpower.wabit.enterprise.client.WorkspaceLocation;
 import ca.sqlpower.wabit.rs.olap.OlapConnectionPool;
+import ca.sqlpower.wabit.rs.olap.OlapMetadataCache;
 
 /**
  * This is the canonical headless implementation of WabitSessionContext
@@ -105,6 +109,14 @@ public class WabitSessionContextImpl implements WabitSessionContext {
     private final Map<Olap4jDataSource, OlapConnectionPool> olapConnectionPools = 
     		new HashMap<Olap4jDataSource, OlapConnectionPool>();
     
+    /**
+     * The OLAP metadata caches we've created due to calling
+     * {@link #getMetadataCache(Olap4jDataSource)}. They are cleared when this
+     * context is closed.
+     */
+    private final Map<Olap4jDataSource, OlapMetadataCache> olapMetadataCaches = 
+    		new HashMap<Olap4jDataSource, OlapMetadataCache>();
+    
     private final Map<JDBCDataSource, Connection> sqlConnections = 
         	new HashMap<JDBCDataSource, Connection>();
     
@@ -112,6 +124,33 @@ public class WabitSessionContextImpl implements WabitSessionContext {
      * The database instances we've created due to calls to {@link #getDatabase(SPDataSource)}.
      */
     private final Map<SPDataSource, SQLDatabase> databases = new HashMap<SPDataSource, SQLDatabase>();
+
+    /**
+     * The system property that overrides the default
+     * {@link #metadataSnapshotDirectory}. An empty value turns snapshots off,
+     * which the test suite uses to stay out of the user's home directory.
+     */
+    public static final String METADATA_SNAPSHOT_DIRECTORY_PROPERTY = 
+        "ca.sqlpower.wabit.WabitSessionContextImpl.metadataSnapshotDirectory";
+
+    /**
+     * The directory the metadata snapshots of the databases in
+     * {@link #databases} are kept in. If this is null snapshots are neither
+     * read nor written.
+     */
+    private File metadataSnapshotDirectory = getDefaultMetadataSnapshotDirectory();
+
+    /**
+     * Captures metadata snapshots in the background so a database can be used
+     * as soon as its last snapshot has been read.
+     */
+    private final ExecutorService metadataExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Database metadata snapshot");
+            t.setDaemon(true);
+            return t;
+        }
+    });
     
     /**
      * This prefs node stores context specific prefs. At current this is the pl.ini location.
@@ -281,6 +320,13 @@ public class WabitSessionContextImpl implements WabitSessionContext {
 	            logger.error("Couldn't save PL.INI file!", e); //$NON-NLS-1$
 	        }
 	    }
+	    metadataExecutor.shutdown();
+	    synchronized (olapMetadataCaches) {
+	        for (OlapMetadataCache cache : olapMetadataCaches.values()) {
+	            cache.clear();
+	        }
+	        olapMetadataCaches.clear();
+	    }
 	    for (Entry<JDBCDataSource, Connection> entry : this.sqlConnections.entrySet()) {
 	    	try {
 				entry.getValue().close();
@@ -436,11 +482,27 @@ public class WabitSessionContextImpl implements WabitSessionContext {
         pcs.firePropertyChange("loading", oldLoading, loading);
     }
 
+    /**
+     * Returns the directory named by the
+     * {@link #METADATA_SNAPSHOT_DIRECTORY_PROPERTY} system property, or the
+     * metadata directory in the user's home directory if it is not set.
+     * Returns null if the property is empty.
+     */
+    private static File getDefaultMetadataSnapshotDirectory() {
+        String directory = System.getProperty(METADATA_SNAPSHOT_DIRECTORY_PROPERTY);
+        if (directory == null) {
+            return new File(System.getProperty("user.home"), ".wabit" + File.separator + "metadata");
+        } else if (directory.length() == 0) {
+            return null;
+        }
+        return new File(directory);
+    }
+
     public SQLDatabase getDatabase(JDBCDataSource dataSource) {
         SQLDatabase db = databases.get(dataSource);
         if (db == null && dataSource != null) {
             dataSource = new JDBCDataSource(dataSource);  // defensive copy for cache key
-            db = new SQLDatabase(dataSource);
+            db = createDatabase(dataSource);
             databases.put(dataSource, db);
             if (logger.isDebugEnabled()) {
                 logger.debug("Added new SQLDatabase to map. New map contents:");
@@ -452,6 +514,111 @@ public class WabitSessionContextImpl implements WabitSessionContext {
         return db;
     }
 
+    /**
+     * Creates a database for the given data source. If a metadata snapshot of
+     * the data source was saved the database is populated from it, which
+     * avoids populating each catalog, schema and table over JDBC. The
+     * snapshot is then captured again in the background and the database is
+     * refreshed if the structure of the database changed since the snapshot
+     * was saved.
+     */
+    private SQLDatabase createDatabase(final JDBCDataSource dataSource) {
+        SQLDatabase db = new SQLDatabase(dataSource);
+        if (metadataSnapshotDirectory == null) return db;
+        
+        final File file = DatabaseMetadataSnapshot.getSnapshotFile(metadataSnapshotDirectory, dataSource);
+        final DatabaseMetadataSnapshot snapshot = DatabaseMetadataSnapshot.read(file, dataSource);
+        if (snapshot != null) {
+            try {
+                snapshot.apply(db);
+                logger.debug("Populated " + dataSource.getName() + " from a snapshot of " + 
+                        snapshot.getTableCount() + " tables");
+            } catch (SQLObjectException e) {
+                logger.warn("Could not apply the metadata snapshot " + file + 
+                        ", the database will be populated over JDBC", e);
+                db = new SQLDatabase(dataSource);
+            }
+        }
+        captureMetadataSnapshot(dataSource, db, snapshot, file);
+        return db;
+    }
+
+    /**
+     * Captures the metadata of the given database on the
+     * {@link #metadataExecutor} and saves it to the given file if it differs
+     * from the previous snapshot. If the database was populated from a
+     * snapshot that differs it is refreshed so the tables and columns added
+     * or changed since are visible.
+     * 
+     * @param previous
+     *            The snapshot the database was populated from, or null if
+     *            there was none.
+     */
+    private void captureMetadataSnapshot(final JDBCDataSource dataSource, final SQLDatabase db, 
+            final DatabaseMetadataSnapshot previous, final File file) {
+        if (metadataExecutor.isShutdown()) return;
+        metadataExecutor.execute(new Runnable() {
+            public void run() {
+                Connection con = null;
+                try {
+                    con = db.getConnection();
+                    DatabaseMetadataSnapshot current = DatabaseMetadataSnapshot.capture(dataSource, con);
+                    if (previous == null || !previous.hasSameContent(current)) {
+                        current.write(file);
+                        if (previous != null) {
+                            logger.info("The structure of " + dataSource.getName() + " changed since " +
+                                    "its metadata snapshot was saved, refreshing it.");
+                            db.refresh();
+                        }
+                    }
+                } catch (Exception e) {
+                    logger.warn("Could not capture a metadata snapshot of " + dataSource.getName(), e);
+                } finally {
+                    if (con != null) {
+                        try {
+                            con.close();
+                        } catch (SQLException e) {
+                            logger.error(e);
+                        }
+                    }
+                }
+            }
+        });
+    }
+    
+    public void refreshDatabaseMetadata(JDBCDataSource dataSource) {
+        SQLDatabase db = databases.get(dataSource);
+        if (metadataSnapshotDirectory != null) {
+            File file = DatabaseMetadataSnapshot.getSnapshotFile(metadataSnapshotDirectory, dataSource);
+            if (file.exists() && !file.delete()) {
+                logger.warn("Could not delete the metadata snapshot " + file);
+            }
+            if (db != null) {
+                captureMetadataSnapshot(dataSource, db, null, file);
+            }
+        }
+        if (db != null) {
+            try {
+                db.refresh();
+            } catch (SQLObjectException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Sets the directory metadata snapshots are kept in. Snapshots are
+     * neither read nor written if the directory is null. This only affects
+     * databases created after it is called.
+     */
+    public void setMetadataSnapshotDirectory(File metadataSnapshotDirectory) {
+        this.metadataSnapshotDirectory = metadataSnapshotDirectory;
+    }
+
+    public File getMetadataSnapshotDirectory() {
+        return metadataSnapshotDirectory;
+    }
+
     public OlapConnection createConnection(Olap4jDataSource dataSource) 
     		throws SQLException, ClassNotFoundException, NamingException 
 	{
@@ -464,6 +631,17 @@ public class WabitSessionContextImpl implements WabitSessionContext {
         return olapConnectionPool.getConnection();
     }
     
+    public OlapMetadataCache getMetadataCache(Olap4jDataSource dataSource) {
+        synchronized (olapMetadataCaches) {
+            OlapMetadataCache cache = olapMetadataCaches.get(dataSource);
+            if (cache == null) {
+                cache = new OlapMetadataCache();
+                olapMetadataCaches.put(dataSource, cache);
+            }
+            return cache;
+        }
+    }
+    
     public PreparedOlapStatement createPreparedStatement(
     		Olap4jDataSource dataSource, String mdx, SPVariableHelper helper) 
     {
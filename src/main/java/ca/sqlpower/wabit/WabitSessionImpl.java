@@ -36,6 +36,7 @@ import ca.sqlpower.util.UserPrompter;
 import ca.sqlpower.util.UserPrompter.UserPromptOptions;
 import ca.sqlpower.util.UserPrompter.UserPromptResponse;
 import ca.sqlpower.util.UserPrompterFactory.UserPromptType;
+import ca.sqlpower.wabit.rs.ResultSetEventDispatcher;
 
 
 public class WabitSessionImpl implements WabitSession {
@@ -50,6 +51,13 @@ public class WabitSessionImpl implements WabitSession {
 		new ArrayList<SessionLifecycleListener<WabitSession>>();
 
 	protected SPFontLoader fontLoader = null;
+
+	/**
+	 * Delivers the events of the queries run in this session with
+	 * {@link #runInForeground(Runnable)}.
+	 */
+	private final ResultSetEventDispatcher resultSetEventDispatcher = 
+		ResultSetEventDispatcher.createSessionDispatcher(this);
 	
     public WabitSessionImpl(WabitSessionContext context) {
     	this.sessionContext = context;
@@ -133,4 +141,8 @@ public class WabitSessionImpl implements WabitSession {
 	public SPFontLoader getFontLoader() {
 		return this.fontLoader;
 	}
+	
+	public ResultSetEventDispatcher getResultSetEventDispatcher() {
+		return resultSetEventDispatcher;
+	}
 }
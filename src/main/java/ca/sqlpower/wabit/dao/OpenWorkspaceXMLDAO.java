@@ -39,6 +39,7 @@ import ca.sqlpower.wabit.WabitObject;
 import ca.sqlpower.wabit.WabitSession;
 import ca.sqlpower.wabit.WabitSessionContext;
 import ca.sqlpower.wabit.WabitWorkspace;
+import ca.sqlpower.wabit.rs.olap.OlapQueryInitializer;
 
 /**
  * This DAO will load workspaces to a context from a given input stream. Each
@@ -198,7 +199,10 @@ public class OpenWorkspaceXMLDAO implements Monitorable {
      * If loading is done on multiple threads this operation must be done on the
      * event dispatch thread. This should only be called once for each DAO or
      * the same workspace will be added to the context multiple times.
-     * 
+     * <p>
+     * The OLAP queries of the loaded workspace start initializing on
+     * background threads so the workspace can be used immediately.
+     *
      * @return The session that contain the workspaces that have been added to
      *         Wabit. This may be null if the load was cancelled.
      */
@@ -206,6 +210,7 @@ public class OpenWorkspaceXMLDAO implements Monitorable {
     	if (cancelled.get()) return null;
 
     	context.registerChildSession(saxHandler.getSession());
+    	OlapQueryInitializer.initInBackground(saxHandler.getSession().getWorkspace());
 
     	return saxHandler.getSession();
 	}
@@ -49,7 +49,6 @@ import ca.sqlpower.dao.PersistedObjectEntry;
 import ca.sqlpower.dao.PersistedPropertiesEntry;
 import ca.sqlpower.dao.PersistedSPOProperty;
 import ca.sqlpower.dao.PersistedSPObject;
-import ca.sqlpower.dao.PersisterUtils;
 import ca.sqlpower.dao.RemovedObjectEntry;
 import ca.sqlpower.dao.SPPersistenceException;
 import ca.sqlpower.dao.SPPersister;
@@ -84,6 +83,7 @@ import ca.sqlpower.wabit.WabitWorkspace;
 import ca.sqlpower.wabit.dao.session.WabitSessionPersisterSuperConverter;
 import ca.sqlpower.wabit.dao.session.WorkspacePersisterListener;
 import ca.sqlpower.wabit.enterprise.client.ReportTask;
+import ca.sqlpower.wabit.image.ImageEncoding;
 import ca.sqlpower.wabit.image.WabitImage;
 import ca.sqlpower.wabit.report.CellSetRenderer;
 import ca.sqlpower.wabit.report.ChartRenderer;
@@ -102,7 +102,9 @@ import ca.sqlpower.wabit.report.Guide.Axis;
 import ca.sqlpower.wabit.report.Page.PageOrientation;
 import ca.sqlpower.wabit.report.ResultSetRenderer.BorderStyles;
 import ca.sqlpower.wabit.report.chart.Chart;
+import ca.sqlpower.wabit.report.chart.ChartAggregate;
 import ca.sqlpower.wabit.report.chart.ChartColumn;
+import ca.sqlpower.wabit.report.chart.ChartDownsampling;
 import ca.sqlpower.wabit.report.chart.ChartType;
 import ca.sqlpower.wabit.report.chart.ColumnRole;
 import ca.sqlpower.wabit.report.chart.LegendPosition;
@@ -407,6 +409,7 @@ public class WabitSessionPersister implements SPPersister {
 								persistedProperties.size() + " changes to different property names, " +
 										"and " + objectsToRemove.size() + " objects are being removed.");
 						workspace.begin("Begin batch transaction...");
+						converter.setItemIndexing(true);
 						commitRemovals();
 						commitObjects();
 						commitProperties();
@@ -428,6 +431,7 @@ public class WabitSessionPersister implements SPPersister {
 					this.rollback();
 					throw new SPPersistenceException(null, t);
 				} finally {
+					converter.setItemIndexing(false);
 					workspace.setMagicEnabled(true);
 				}
 			}
@@ -1564,9 +1568,9 @@ public class WabitSessionPersister implements SPPersister {
 						try {
 							InputStream old = (InputStream) oldValue;
 							old.mark(old.available());
-							oldValue = PersisterUtils.convertImageToStreamAsPNG(
+							oldValue = ImageEncoding.forImage(
 									(Image) converter.convertToComplexType(oldValue,
-											Image.class)).toByteArray();
+											Image.class)).getPNGBytes();
 							old.reset();
 						} catch (IOException e) {
 							throw new SPPersistenceException(uuid, e);
@@ -1894,6 +1898,21 @@ public class WabitSessionPersister implements SPPersister {
 			return converter.convertToBasicType(query
 					.isAutomaticallyExecuting());
 
+		} else if (propertyName.equals("partitionColumn")) {
+			return converter.convertToBasicType(query.getPartitionColumn());
+
+		} else if (propertyName.equals("partitionCount")) {
+			return converter.convertToBasicType(query.getPartitionCount());
+
+		} else if (propertyName.equals("partitionOrdered")) {
+			return converter.convertToBasicType(query.isPartitionOrdered());
+
+		} else if (propertyName.equals("previewRowLimit")) {
+			return converter.convertToBasicType(query.getPreviewRowLimit());
+
+		} else if (propertyName.equals("fullResultsAfterPreview")) {
+			return converter.convertToBasicType(query.isFullResultsAfterPreview());
+
 		} else if (propertyName.equals(QueryImpl.GLOBAL_WHERE_CLAUSE)) {
 			return converter.convertToBasicType(query.getGlobalWhereClause());
 
@@ -1956,6 +1975,26 @@ public class WabitSessionPersister implements SPPersister {
 			query.setAutomaticallyExecuting((Boolean) converter
 					.convertToComplexType(newValue, Boolean.class));
 
+		} else if (propertyName.equals("partitionColumn")) {
+			query.setPartitionColumn((String) converter.convertToComplexType(
+					newValue, String.class));
+
+		} else if (propertyName.equals("partitionCount")) {
+			query.setPartitionCount((Integer) converter
+					.convertToComplexType(newValue, Integer.class));
+
+		} else if (propertyName.equals("partitionOrdered")) {
+			query.setPartitionOrdered((Boolean) converter
+					.convertToComplexType(newValue, Boolean.class));
+
+		} else if (propertyName.equals("previewRowLimit")) {
+			query.setPreviewRowLimit((Integer) converter
+					.convertToComplexType(newValue, Integer.class));
+
+		} else if (propertyName.equals("fullResultsAfterPreview")) {
+			query.setFullResultsAfterPreview((Boolean) converter
+					.convertToComplexType(newValue, Boolean.class));
+
 		} else if (propertyName.equals(QueryImpl.GLOBAL_WHERE_CLAUSE)) {
 			query.setGlobalWhereClause((String) converter.convertToComplexType(
 					newValue, String.class));
@@ -2769,6 +2808,12 @@ public class WabitSessionPersister implements SPPersister {
 		} else if (propertyName.equals("legendPosition")) {
 			return converter.convertToBasicType(chart.getLegendPosition());
 
+		} else if (propertyName.equals("aggregate")) {
+			return converter.convertToBasicType(chart.getAggregate());
+
+		} else if (propertyName.equals("downsampling")) {
+			return converter.convertToBasicType(chart.getDownsampling());
+
 		} else if (propertyName.equals("query")) {
 			return converter.convertToBasicType(chart.getQuery());
 
@@ -2839,6 +2884,14 @@ public class WabitSessionPersister implements SPPersister {
 			chart.setLegendPosition((LegendPosition) converter
 					.convertToComplexType(newValue, LegendPosition.class));
 
+		} else if (propertyName.equals("aggregate")) {
+			chart.setAggregate((ChartAggregate) converter
+					.convertToComplexType(newValue, ChartAggregate.class));
+
+		} else if (propertyName.equals("downsampling")) {
+			chart.setDownsampling((ChartDownsampling) converter
+					.convertToComplexType(newValue, ChartDownsampling.class));
+
 		} else if (propertyName.equals("query")) {
 			WabitResultSetProducer rsProducer = (WabitResultSetProducer) converter
 					.convertToComplexType(newValue, WabitResultSetProducer.class);
@@ -2978,8 +3031,7 @@ public class WabitSessionPersister implements SPPersister {
 			if (wabitImage.getImage() == null) {
 				return null;
 			}
-			return PersisterUtils.convertImageToStreamAsPNG(
-					wabitImage.getImage()).toByteArray();
+			return wabitImage.getEncoding().getPNGBytes();
 
 		} else {
 			throw new SPPersistenceException(uuid,
@@ -79,6 +79,7 @@ import ca.sqlpower.wabit.WabitDataSource;
 import ca.sqlpower.wabit.WabitObject;
 import ca.sqlpower.wabit.WabitSession;
 import ca.sqlpower.wabit.WabitSessionContext;
+import ca.sqlpower.wabit.image.ImageEncoding;
 import ca.sqlpower.wabit.image.WabitImage;
 import ca.sqlpower.wabit.report.CellSetRenderer;
 import ca.sqlpower.wabit.report.ChartRenderer;
@@ -98,7 +99,9 @@ import ca.sqlpower.wabit.report.Guide.Axis;
 import ca.sqlpower.wabit.report.Page.PageOrientation;
 import ca.sqlpower.wabit.report.ResultSetRenderer.BorderStyles;
 import ca.sqlpower.wabit.report.chart.Chart;
+import ca.sqlpower.wabit.report.chart.ChartAggregate;
 import ca.sqlpower.wabit.report.chart.ChartColumn;
+import ca.sqlpower.wabit.report.chart.ChartDownsampling;
 import ca.sqlpower.wabit.report.chart.ChartType;
 import ca.sqlpower.wabit.report.chart.ColumnRole;
 import ca.sqlpower.wabit.report.chart.LegendPosition;
@@ -222,6 +225,14 @@ public class WorkspaceSAXHandler extends DefaultHandler {
      */
     private WabitImage currentWabitImage;
 
+    /**
+     * The UUID of the image the {@link #currentWabitImage} has the same
+     * content as, if the image was saved as a reference to an image saved
+     * before it instead of a copy. This is null if the image was saved with
+     * its own content.
+     */
+    private String sameImageUUID;
+
     /**
      * The chart currently being read from the XML stream. This will be null
      * unless we are within a &lt;chart&gt; element.
@@ -505,6 +516,16 @@ public class WorkspaceSAXHandler extends DefaultHandler {
         		    cache.setAutomaticallyExecuting(Boolean.parseBoolean(aval));
         		} else if (aname.equals("streaming")) {
         		    cache.setStreaming(Boolean.parseBoolean(aval));
+        		} else if (aname.equals("partition-column")) {
+        		    cache.setPartitionColumn(aval);
+        		} else if (aname.equals("partition-count")) {
+        		    cache.setPartitionCount(Integer.parseInt(aval));
+        		} else if (aname.equals("partition-ordered")) {
+        		    cache.setPartitionOrdered(Boolean.parseBoolean(aval));
+        		} else if (aname.equals("preview-row-limit")) {
+        		    cache.setPreviewRowLimit(Integer.parseInt(aval));
+        		} else if (aname.equals("full-results-after-preview")) {
+        		    cache.setFullResultsAfterPreview(Boolean.parseBoolean(aval));
         		} else {
         			logger.warn("Unexpected attribute of <query>: " + aname + "=" + aval);
         		}
@@ -766,6 +787,7 @@ public class WorkspaceSAXHandler extends DefaultHandler {
             createdObject = olapExclusion;
         } else if (name.equals("wabit-image")) {
             currentWabitImage = new WabitImage();
+            sameImageUUID = null;
             createdObject = currentWabitImage;
             session.getWorkspace().addImage(currentWabitImage);
             
@@ -774,6 +796,8 @@ public class WorkspaceSAXHandler extends DefaultHandler {
                 String aval = attributes.getValue(i);
                 if (aname.equals("name")) {
                     //already loaded
+                } else if (aname.equals("same-image-as")) {
+                    sameImageUUID = aval;
                 } else {
                     logger.warn("Unexpected attribute of <wabit-image>: " + aname + "=" + aval);
                 }
@@ -798,6 +822,10 @@ public class WorkspaceSAXHandler extends DefaultHandler {
                     chart.setType(ChartType.valueOf(aval));
                 } else if (aname.equals("legend-position")) {
                     chart.setLegendPosition(LegendPosition.valueOf(aval));
+                } else if (aname.equals("aggregate")) {
+                    chart.setAggregate(ChartAggregate.valueOf(aval));
+                } else if (aname.equals("downsampling")) {
+                    chart.setDownsampling(ChartDownsampling.valueOf(aval));
                 } else if (aname.equals("gratuitous-animation")) {
                     chart.setGratuitouslyAnimated(Boolean.parseBoolean(aval));
                 
@@ -1501,13 +1529,27 @@ public class WorkspaceSAXHandler extends DefaultHandler {
 			imageRenderer = null;
 			
     	} else if (name.equals("wabit-image")) {
-            byte[] byteArray = new Base64().decode(stream.toByteArray());
-            try {
-                BufferedImage img = ImageIO.read(new ByteArrayInputStream(byteArray));
-                currentWabitImage.setImage(img);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+    	    if (sameImageUUID != null) {
+    	        WabitImage sameImage = null;
+    	        for (WabitImage image : session.getWorkspace().getImages()) {
+    	            if (image.getUUID().equals(sameImageUUID)) {
+    	                sameImage = image;
+    	                break;
+    	            }
+    	        }
+    	        if (sameImage == null) {
+    	            throw new IllegalStateException("The image " + currentWabitImage.getName() + 
+    	                    " refers to the image " + sameImageUUID + " which was not loaded.");
+    	        }
+    	        currentWabitImage.setImage(sameImage.getImage());
+    	    } else {
+    	        byte[] byteArray = new Base64().decode(stream.toByteArray());
+    	        try {
+    	            currentWabitImage.setImage(ImageEncoding.decode(byteArray));
+    	        } catch (IOException e) {
+    	            throw new RuntimeException(e);
+    	        }
+    	    }
             currentWabitImage = null;
             
         } else if (name.equals("missing-columns")) {
@@ -20,9 +20,7 @@
 package ca.sqlpower.wabit.dao;
 
 import java.awt.Font;
-import java.awt.Image;
 import java.io.BufferedWriter;
-import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
@@ -31,7 +29,6 @@ import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -43,7 +40,6 @@ import org.apache.commons.codec.binary.Base64;
 import org.apache.log4j.Logger;
 import org.olap4j.Axis;
 
-import ca.sqlpower.dao.PersisterUtils;
 import ca.sqlpower.dao.session.DateConverter;
 import ca.sqlpower.graph.DepthFirstSearch;
 import ca.sqlpower.object.SPObject;
@@ -61,6 +57,7 @@ import ca.sqlpower.wabit.WabitObject;
 import ca.sqlpower.wabit.WabitSessionContext;
 import ca.sqlpower.wabit.WabitVersion;
 import ca.sqlpower.wabit.WabitWorkspace;
+import ca.sqlpower.wabit.image.ImageEncoding;
 import ca.sqlpower.wabit.image.WabitImage;
 import ca.sqlpower.wabit.report.CellSetRenderer;
 import ca.sqlpower.wabit.report.ChartRenderer;
@@ -140,12 +137,14 @@ public class WorkspaceXMLDAO {
      *  <dt>1.2.7 <dd>Saves the chart's auto axis values and report selectors.
      *  <dt>1.2.8 <dd>Saves the date report selectors.
      *  <dt>1.2.9 <dd>Adds page-breaking sections and colors for rs headers and data.
+     *  <dt>1.2.10 <dd>Images with the same content are saved once. Later wabit-image
+     *                 elements with the same content refer to the first with same-image-as.
      *  
      * </dl> 
      * <!--Please update version number (below) if you updated the version documentation.-->
 	 */
 	//                                         UPDATE HISTORY!!!!!
-    static final Version FILE_VERSION = new Version("1.2.9"); // please update version history (above) when you change this
+    static final Version FILE_VERSION = new Version("1.2.10"); // please update version history (above) when you change this
     //                                         UPDATE HISTORY!!??!
 
     /**
@@ -165,6 +164,13 @@ public class WorkspaceXMLDAO {
 	private final WabitSessionContext context;
 
     private final Comparator<WabitObject> wabitObjectComparator = new WabitObjectComparator();
+
+    /**
+     * The UUIDs of the images already saved in the current save, by the
+     * content hash of the image. Images with the same content as one of these
+     * are saved as a reference to it instead of a copy.
+     */
+    private final Map<String, String> savedImageUUIDs = new HashMap<String, String>();
 	
 	/**
 	 * This will construct a XML DAO to save the entire workspace or parts of 
@@ -209,6 +215,7 @@ public class WorkspaceXMLDAO {
      *            WabitObjects will be saved with it.
      */
 	public void save(List<? extends WabitObject> objectToSave) {
+	    savedImageUUIDs.clear();
 		xml.println(out, "<?xml version='1.0' encoding='UTF-8'?>");
 		xml.println(out, "");
 		xml.println(out, "<wabit export-format=\"" + FILE_VERSION + "\" wabit-app-version=\"" + WabitVersion.VERSION + "\">");
@@ -460,7 +467,7 @@ public class WorkspaceXMLDAO {
 					    saveFont(renderer.getHeaderFont(), "olap-header-font");
 					    saveFont(renderer.getBodyFont(), "olap-body-font");
 				        
-					    this.saveOlapQuery(renderer.getModifiedOlapQuery());
+					    this.saveOlapQuery(renderer.getDisplayedOlapQuery());
 					    
 					    xml.indent--;
 					    xml.println(out, "</cell-set-renderer>");
@@ -548,6 +555,8 @@ public class WorkspaceXMLDAO {
         if (chart.getLegendPosition() != null) {
             printAttribute("legend-position", chart.getLegendPosition().name());
         }
+        printAttribute("aggregate", chart.getAggregate().name());
+        printAttribute("downsampling", chart.getDownsampling().name());
         if (chart.getQuery() != null) {
             printAttribute("query-id", chart.getQuery().getUUID());
         }
@@ -580,16 +589,25 @@ public class WorkspaceXMLDAO {
 	private void saveWabitImage(WabitImage wabitImage) {
 	    xml.print(out, "<wabit-image");
         printCommonAttributes(wabitImage);
+        
+        final ImageEncoding encoding = wabitImage.getEncoding();
+        if (encoding != null) {
+            String sameImageUUID = savedImageUUIDs.get(encoding.getContentHash());
+            if (sameImageUUID != null) {
+                printAttribute("same-image-as", sameImageUUID);
+                xml.niprintln(out, "/>");
+                return;
+            }
+            savedImageUUIDs.put(encoding.getContentHash(), wabitImage.getUUID());
+        }
+        
         xml.niprint(out, ">");
         xml.indent++;
 	    
-	    final Image wabitInnerImage = wabitImage.getImage();
-	    if (wabitInnerImage != null) {
-	    	ByteArrayOutputStream byteStream = PersisterUtils.convertImageToStreamAsPNG(wabitInnerImage);
+	    if (encoding != null) {
 	    	out.flush();
-	    	byte[] byteArray = new Base64().encode(byteStream.toByteArray());
+	    	byte[] byteArray = new Base64().encode(encoding.getPNGBytes());
 	    	logger.debug("Encoded length is " + byteArray.length);
-	    	logger.debug("Stream has byte array " + Arrays.toString(byteStream.toByteArray()));
 	    	for (int i = 0; i < byteArray.length; i++) {
 	    		out.write((char)byteArray[i]);
 	    		if (i % 60 == 59) {
@@ -762,6 +780,11 @@ public class WorkspaceXMLDAO {
 		printAttribute("prompt-for-cross-joins", cache.getPromptForCrossJoins());
 		printAttribute("automatically-executing", cache.isAutomaticallyExecuting());
 		printAttribute("streaming", cache.isStreaming());
+		printAttribute("partition-column", cache.getPartitionColumn());
+		printAttribute("partition-count", cache.getPartitionCount());
+		printAttribute("partition-ordered", cache.isPartitionOrdered());
+		printAttribute("preview-row-limit", cache.getPreviewRowLimit());
+		printAttribute("full-results-after-preview", cache.isFullResultsAfterPreview());
 		if (!cache.getPromptForCrossJoins()) {
 		    printAttribute("execute-queries-with-cross-joins", cache.getExecuteQueriesWithCrossJoins());
 		}
@@ -54,9 +54,19 @@ public class ContainerConverter implements BidirectionalConverter<String, Contai
     private final boolean doPopulate;
 
 	public ContainerConverter(WabitSession session, boolean doPopulate) {
+		this(session, new ItemConverter(session.getWorkspace()), doPopulate);
+	}
+
+    /**
+     * @param itemConverter
+     *            Converts the items of the table containers. Passing the
+     *            converter used for other items lets the items be looked up
+     *            by the same index.
+     */
+	public ContainerConverter(WabitSession session, ItemConverter itemConverter, boolean doPopulate) {
 		this.session = session;
-        this.doPopulate = doPopulate;
-		itemConverter = new ItemConverter(session.getWorkspace());
+		this.doPopulate = doPopulate;
+		this.itemConverter = itemConverter;
 	}
 
 	public Container convertToComplexType(String convertFrom)
@@ -20,10 +20,8 @@
 package ca.sqlpower.wabit.dao.session;
 
 import org.apache.commons.beanutils.ConversionException;
-import org.olap4j.OlapException;
 import org.olap4j.metadata.Catalog;
 import org.olap4j.metadata.Cube;
-import org.olap4j.metadata.Schema;
 
 import ca.sqlpower.dao.PersisterUtils;
 import ca.sqlpower.dao.session.BidirectionalConverter;
@@ -31,6 +29,7 @@ import ca.sqlpower.sql.DataSourceCollection;
 import ca.sqlpower.sql.Olap4jDataSource;
 import ca.sqlpower.sql.SPDataSource;
 import ca.sqlpower.wabit.OlapConnectionProvider;
+import ca.sqlpower.wabit.rs.olap.LazyCube;
 
 public class CubeConverter implements BidirectionalConverter<String, Cube> {
 
@@ -48,28 +47,23 @@ public class CubeConverter implements BidirectionalConverter<String, Cube> {
 		this.dsCollection = dsCollection;
 	}
 
+	/**
+	 * Returns a cube that is only looked up in its data source when it is
+	 * first used, so converting a cube does not connect to the data source.
+	 * 
+	 * @see LazyCube
+	 */
 	public Cube convertToComplexType(String convertFrom) throws ConversionException {
 
 		String[] pieces = PersisterUtils.splitByDelimiter(convertFrom, 4);
 		
 		Olap4jDataSource ds = dsCollection.getDataSource(pieces[0], Olap4jDataSource.class);
-		
-		Catalog catalog;
-		try {
-			catalog = mapping.createConnection(ds).getCatalogs().get(pieces[1]);
-		} catch (Exception ex) {
-			throw new ConversionException("Error connecting to data source " + pieces[0] + 
-					" to get cube defined by " + convertFrom, ex);
-		}
-		Schema schema;
-		try {
-			schema = catalog.getSchemas().get(pieces[2]);
-			Cube cube = schema.getCubes().get(pieces[3]);
-			return cube;
-		} catch (OlapException e) {
-			throw new ConversionException("The cube could not be retrieved from the string " + 
-					convertFrom, e);
+		if (ds == null) {
+			throw new ConversionException("The data source " + pieces[0] + 
+					" of the cube defined by " + convertFrom + " does not exist.");
 		}
+		
+		return LazyCube.create(mapping, ds, pieces[1], pieces[2], pieces[3]);
 	}
 
 	/**
@@ -79,9 +73,17 @@ public class CubeConverter implements BidirectionalConverter<String, Cube> {
 	public String convertToSimpleType(Cube convertFrom, Object ... additionalInfo) {
 		SPDataSource ds = (SPDataSource) additionalInfo[0];
 		String name = convertFrom.getName();
-		String schemaName = convertFrom.getSchema().getName();
-		Catalog catalog = convertFrom.getSchema().getCatalog();
-		String catalogName = catalog.getName();
+		String schemaName;
+		String catalogName;
+		LazyCube lazyCube = LazyCube.getHandle(convertFrom);
+		if (lazyCube != null) {
+			schemaName = lazyCube.getSchemaName();
+			catalogName = lazyCube.getCatalogName();
+		} else {
+			schemaName = convertFrom.getSchema().getName();
+			Catalog catalog = convertFrom.getSchema().getCatalog();
+			catalogName = catalog.getName();
+		}
 
 		StringBuilder result = new StringBuilder();
 		result.append(ds.getName());
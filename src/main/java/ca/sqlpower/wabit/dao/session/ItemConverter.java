@@ -19,7 +19,11 @@
 
 package ca.sqlpower.wabit.dao.session;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import net.jcip.annotations.GuardedBy;
 
 import org.apache.commons.beanutils.ConversionException;
 
@@ -36,6 +40,24 @@ public class ItemConverter implements BidirectionalConverter<String, Item> {
 	
 	private final WabitWorkspace workspace;
 
+    /**
+     * True if items are looked up in {@link #itemIndex} instead of by walking
+     * every query in the workspace. This should only be enabled while the
+     * workspace is only being modified through this converter, such as
+     * during a persister commit.
+     */
+	@GuardedBy("this")
+	private boolean indexing = false;
+
+    /**
+     * Maps the UUID of each item in the queries of the workspace, as well as
+     * each {@link SQLObjectItem} this converter created since indexing was
+     * enabled, to the item. This is built on the first lookup after indexing
+     * was enabled and is null if it has not been built.
+     */
+	@GuardedBy("this")
+	private Map<String, Item> itemIndex;
+
 	public ItemConverter(WabitWorkspace workspace) {
 		this.workspace = workspace;
 	}
@@ -46,6 +68,19 @@ public class ItemConverter implements BidirectionalConverter<String, Item> {
 		
 		
 		if (pieces[0].equals(SQLObjectItem.class.getSimpleName())) {
+			synchronized (this) {
+				if (indexing) {
+					if (itemIndex == null) {
+						itemIndex = buildItemIndex();
+					}
+					Item item = itemIndex.get(pieces[2]);
+					if (item == null) {
+						item = new SQLObjectItem(pieces[1], pieces[2]);
+						itemIndex.put(pieces[2], item);
+					}
+					return item;
+				}
+			}
 			List<QueryCache> queries = workspace.getQueries();
 			for (QueryCache query : queries) {
 				for (Container table : query.getFromTableList()) {
@@ -64,6 +99,32 @@ public class ItemConverter implements BidirectionalConverter<String, Item> {
 		}
 	}
 
+    /**
+     * Enables or disables looking items up by an index of their UUIDs. Items
+     * added to the workspace by other means while indexing is enabled will
+     * not be found, so indexing should only be enabled while the workspace is
+     * being built from persisted objects. Changing the setting discards the
+     * index.
+     */
+	public synchronized void setIndexing(boolean indexing) {
+		this.indexing = indexing;
+		itemIndex = null;
+	}
+
+	private Map<String, Item> buildItemIndex() {
+		Map<String, Item> index = new HashMap<String, Item>();
+		for (QueryCache query : workspace.getQueries()) {
+			for (Container table : query.getFromTableList()) {
+				for (Item item : table.getItems()) {
+					if (!index.containsKey(item.getUUID())) {
+						index.put(item.getUUID(), item);
+					}
+				}
+			}
+		}
+		return index;
+	}
+
 	public String convertToSimpleType(Item convertFrom,
 			Object... additionalInfo) {
 		StringBuffer buffer = new StringBuffer();
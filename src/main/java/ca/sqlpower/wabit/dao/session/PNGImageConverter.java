@@ -20,28 +20,24 @@
 package ca.sqlpower.wabit.dao.session;
 
 import java.awt.Image;
-import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 
-import javax.imageio.ImageIO;
-
 import org.apache.commons.beanutils.ConversionException;
 
-import ca.sqlpower.dao.PersisterUtils;
 import ca.sqlpower.dao.session.BidirectionalConverter;
+import ca.sqlpower.wabit.image.ImageEncoding;
 
 /**
- * Converts between an Image and an InputStream.
+ * Converts between an Image and an InputStream. Images are encoded through
+ * {@link ImageEncoding} so each image is only encoded as PNG once.
  */
 public class PNGImageConverter implements BidirectionalConverter<InputStream, Image> {
 
 	public Image convertToComplexType(InputStream convertFrom)
 			throws ConversionException {
 		try {
-			BufferedImage img = ImageIO.read(convertFrom);
-			return img;
+			return ImageEncoding.decode(convertFrom);
 		} catch (Exception e) {
 			throw new ConversionException("Cannot convert the given image", e);
 		}
@@ -49,8 +45,7 @@ public class PNGImageConverter implements BidirectionalConverter<InputStream, Im
 
 	public InputStream convertToSimpleType(Image convertFrom,
 			Object... additionalInfo) {
-		ByteArrayOutputStream byteStream = PersisterUtils.convertImageToStreamAsPNG(convertFrom);
-        return new ByteArrayInputStream(byteStream.toByteArray());
+        return new ByteArrayInputStream(ImageEncoding.forImage(convertFrom).getPNGBytes());
 	}
 
 }
@@ -75,11 +75,23 @@ public class WabitSessionPersisterSuperConverter extends SessionPersisterSuperCo
 		super(session.getDataSources(), root);
 		cubeConverter = new CubeConverter(session.getContext(), session.getDataSources());
 		fontConverter = new FontConverter(session.getFontLoader());
-		containerConverter = new ContainerConverter(session, containerDoPopulate);
 		sqlJoinConverter = new SQLJoinConverter(root);
 		jdbcDataSourceConverter = new JDBCDataSourceConverter(session.getDataSources());
 		olap4jDataSourceConverter = new Olap4jDataSourceConverter(session.getWorkspace());
 		itemConverter = new ItemConverter(session.getWorkspace());
+		containerConverter = new ContainerConverter(session, itemConverter, containerDoPopulate);
+	}
+
+    /**
+     * Enables or disables looking up the query items by their UUIDs in an
+     * index instead of walking every query of the workspace. Indexing should
+     * only be enabled while the workspace is only modified through this
+     * converter.
+     * 
+     * @see ItemConverter#setIndexing(boolean)
+     */
+	public void setItemIndexing(boolean indexing) {
+		itemConverter.setIndexing(indexing);
 	}
 	
 	@Override
@@ -429,6 +429,10 @@ public class WorkspacePersisterListener implements SPListener {
 			Chart chart = (Chart) child;
 
 			// Remaining properties
+			this.persistProperty(uuid, "aggregate", DataType.STRING,
+					converter.convertToBasicType(chart.getAggregate()));
+			this.persistProperty(uuid, "downsampling", DataType.STRING,
+					converter.convertToBasicType(chart.getDownsampling()));
 			this.persistProperty(uuid, "gratuitouslyAnimated",
 					DataType.BOOLEAN, converter.convertToBasicType(
 							chart.isGratuitouslyAnimated()));
@@ -668,6 +672,21 @@ public class WorkspacePersisterListener implements SPListener {
 			this.persistProperty(uuid, "automaticallyExecuting",
 					DataType.BOOLEAN, 
 					converter.convertToBasicType(query.isAutomaticallyExecuting()));
+			this.persistProperty(uuid, "partitionColumn",
+					DataType.STRING, 
+					converter.convertToBasicType(query.getPartitionColumn()));
+			this.persistProperty(uuid, "partitionCount",
+					DataType.INTEGER, 
+					converter.convertToBasicType(query.getPartitionCount()));
+			this.persistProperty(uuid, "partitionOrdered",
+					DataType.BOOLEAN, 
+					converter.convertToBasicType(query.isPartitionOrdered()));
+			this.persistProperty(uuid, "previewRowLimit",
+					DataType.INTEGER, 
+					converter.convertToBasicType(query.getPreviewRowLimit()));
+			this.persistProperty(uuid, "fullResultsAfterPreview",
+					DataType.BOOLEAN, 
+					converter.convertToBasicType(query.isFullResultsAfterPreview()));
 			this.persistProperty(uuid, QueryImpl.GLOBAL_WHERE_CLAUSE,
 					DataType.STRING, 
 					converter.convertToBasicType(query.getGlobalWhereClause()));
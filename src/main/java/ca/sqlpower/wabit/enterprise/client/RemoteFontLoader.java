@@ -25,28 +25,58 @@ package ca.sqlpower.wabit.enterprise.client;
 import java.awt.Font;
 import java.awt.GraphicsEnvironment;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import net.jcip.annotations.GuardedBy;
+
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.impl.cookie.DateUtils;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.util.EntityUtils;
+import org.apache.log4j.Logger;
 
 import ca.sqlpower.dao.session.SPFontLoader;
 import ca.sqlpower.enterprise.client.SPServerInfo;
@@ -55,11 +85,94 @@ import ca.sqlpower.wabit.FontStyle;
 /**
  * This class is able to load fonts from a Wabit server. It has a shared
  * static cache among instances so it only fetches fonts only once.
+ * <p>
+ * Each font is downloaded at most once no matter how many threads ask for it
+ * at the same time, and threads asking for other fonts are not held up by the
+ * download. Downloaded fonts are also kept on disk so later sessions do not
+ * need to download them again. A font read from disk is used right away and
+ * revalidated against the server in the background; if the server has a
+ * newer version it replaces the saved one and is used from the next session
+ * on, as fonts already given out cannot be swapped.
+ * <p>
+ * Call {@link #close()} when the session using the loader closes to release
+ * its connections to the server.
  */
 public class RemoteFontLoader implements SPFontLoader {
 	
-	private final static Map<String, Font> fontCache = new ConcurrentHashMap<String, Font>();
+	private static final Logger logger = Logger.getLogger(RemoteFontLoader.class);
+
+	/**
+	 * Parses font specs like Arial-BOLD-10 into the font name, style and
+	 * size.
+	 */
+	private static final Pattern FONT_SPECS_PATTERN = 
+		Pattern.compile("^(.+?)(?:[\\-]{1}([A-Z]+))?(?:[\\-]{1}([0-9]+))?$");
+
+	/**
+	 * The maximum number of connections to a server used to download fonts
+	 * at the same time.
+	 */
+	private static final int MAX_CONNECTIONS = 4;
+
+	/**
+	 * The fonts that have been loaded or are being loaded, by font name.
+	 */
+	private final static ConcurrentMap<String, Future<Font>> fontCache = 
+		new ConcurrentHashMap<String, Future<Font>>();
+
+	/**
+	 * The fonts derived from a base font with a style or size, by the specs
+	 * they were loaded from.
+	 */
+	private final static ConcurrentMap<String, Font> derivedFontCache = 
+		new ConcurrentHashMap<String, Font>();
+
+	/**
+	 * The fonts installed on this machine, by font name. These are found the
+	 * first time any font is loaded instead of each time a loader is created.
+	 */
+	private static class SystemFonts {
+		private static final Map<String, Font> fonts;
+		static {
+			Map<String, Font> systemFonts = new HashMap<String, Font>();
+			GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
+			for (Font currentFont : ge.getAllFonts()) {
+				if (!systemFonts.containsKey(currentFont.getFontName())) {
+					systemFonts.put(currentFont.getFontName(), currentFont);
+				}
+			}
+			fonts = Collections.unmodifiableMap(systemFonts);
+		}
+	}
+	
 	private final SPServerInfo serverInfos;
+
+	/**
+	 * The directory downloaded fonts are saved in. If this is null fonts are
+	 * not saved.
+	 */
+	private final File diskCacheDirectory;
+
+	/**
+	 * The client used to download fonts from the server. It is created when
+	 * the first font is downloaded and shared by all downloads afterwards.
+	 */
+	@GuardedBy("this")
+	private DefaultHttpClient httpClient;
+
+	/**
+	 * Revalidates the fonts read from disk against the server. It is created
+	 * when the first font is read from disk.
+	 */
+	@GuardedBy("this")
+	private ExecutorService revalidationExecutor;
+
+	/**
+	 * True once {@link #close()} has been called. Fonts are not downloaded or
+	 * revalidated after that.
+	 */
+	@GuardedBy("this")
+	private boolean closed = false;
 	
 	private final ResponseHandler<byte[]> handler = new ResponseHandler<byte[]>() {
 	    public byte[] handleResponse(
@@ -72,18 +185,45 @@ public class RemoteFontLoader implements SPFontLoader {
 	        }
 	    }
 	};
-	
-	public RemoteFontLoader(SPServerInfo serverInfos) {
-		this.serverInfos = serverInfos;
-		
-		GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
-		synchronized (fontCache) {
-			for (Font currentFont : ge.getAllFonts()) {
-				if (!fontCache.containsKey(currentFont.getFontName())) {
-					fontCache.put(currentFont.getFontName(), currentFont);
+
+	/**
+	 * Returns the font bytes of a conditional request, or null if the server
+	 * answered that the font has not been modified.
+	 */
+	private final ResponseHandler<byte[]> revalidationHandler = new ResponseHandler<byte[]>() {
+		public byte[] handleResponse(
+				HttpResponse response) throws ClientProtocolException, IOException {
+			int status = response.getStatusLine().getStatusCode();
+			HttpEntity entity = response.getEntity();
+			if (status == HttpStatus.SC_NOT_MODIFIED || entity == null) {
+				if (entity != null) {
+					entity.consumeContent();
 				}
+				return null;
+			}
+			if (status != HttpStatus.SC_OK) {
+				entity.consumeContent();
+				throw new HttpResponseException(status, response.getStatusLine().getReasonPhrase());
 			}
+			return EntityUtils.toByteArray(entity);
 		}
+	};
+	
+	public RemoteFontLoader(SPServerInfo serverInfos) {
+		this(serverInfos, 
+				new File(System.getProperty("user.home"), ".wabit" + File.separator + "fonts"));
+	}
+
+	/**
+	 * @param serverInfos
+	 *            The server to download fonts from.
+	 * @param diskCacheDirectory
+	 *            The directory to save downloaded fonts in. If this is null
+	 *            fonts will be downloaded each time the application starts.
+	 */
+	public RemoteFontLoader(SPServerInfo serverInfos, File diskCacheDirectory) {
+		this.serverInfos = serverInfos;
+		this.diskCacheDirectory = diskCacheDirectory;
 	}
 	
 	/**
@@ -93,9 +233,12 @@ public class RemoteFontLoader implements SPFontLoader {
 	 * @return A Font object corresponding to the one asked for.
 	 */
 	public Font loadFontFromSpecs(String fontSpecs) {
+		Font cached = derivedFontCache.get(fontSpecs);
+		if (cached != null) {
+			return cached;
+		}
 		
-		Pattern pattern = Pattern.compile("^(.+?)(?:[\\-]{1}([A-Z]+))?(?:[\\-]{1}([0-9]+))?$");
-		Matcher matcher = pattern.matcher(fontSpecs);
+		Matcher matcher = FONT_SPECS_PATTERN.matcher(fontSpecs);
 		boolean matchFound = matcher.find(); 
 		if (!matchFound) { 
 			throw new IllegalArgumentException("The font specs passed cannot be parsed.");
@@ -113,6 +256,7 @@ public class RemoteFontLoader implements SPFontLoader {
 			font = font.deriveFont(Float.valueOf(fontSize));
 		}
 		
+		derivedFontCache.putIfAbsent(fontSpecs, font);
 		return font;
 	}
 	
@@ -127,68 +271,250 @@ public class RemoteFontLoader implements SPFontLoader {
 			return Font.decode("Arial");
 		}
 		
-		// Check the cache.
-		synchronized (fontCache) {
-			
-			if (fontCache.containsKey(fontName)) {
-				return fontCache.get(fontName);
+		Font systemFont = SystemFonts.fonts.get(fontName);
+		if (systemFont != null) {
+			return systemFont;
+		}
+		
+		// Only the first thread asking for a font loads it, other threads
+		// asking for the same font wait for it to finish.
+		Future<Font> future = fontCache.get(fontName);
+		if (future == null) {
+			FutureTask<Font> task = new FutureTask<Font>(new Callable<Font>() {
+				public Font call() throws Exception {
+					return loadFont(fontName);
+				}
+			});
+			future = fontCache.putIfAbsent(fontName, task);
+			if (future == null) {
+				future = task;
+				task.run();
+			}
+		}
+		
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while loading the font " + fontName, e);
+		} catch (ExecutionException e) {
+			// Let the next request try again.
+			fontCache.remove(fontName, future);
+			throw new RuntimeException("Failed to load a font from the server.", e.getCause());
+		}
+	}
+
+	/**
+	 * Loads the font of the given name from the disk cache, or from the
+	 * server if it has not been saved yet, and registers it with the local
+	 * graphics environment.
+	 */
+	private Font loadFont(String fontName) throws Exception {
+		File cacheFile = getCacheFile(fontName);
+		byte[] fontBytes = null;
+		if (cacheFile != null && cacheFile.exists()) {
+			try {
+				fontBytes = readFile(cacheFile);
+			} catch (IOException e) {
+				logger.warn("Could not read the cached font " + cacheFile, e);
 			}
-			
-			// We gotta load it from the server.
-			
+		}
+		
+		Font font = null;
+		if (fontBytes != null) {
 			try {
-				
-				// Find the server proper URL
-				URL serverUrl = 
-					toServerFontURL(
-						serverInfos.getServerAddress(), 
-						String.valueOf(serverInfos.getPort()), 
-						serverInfos.getPath(), 
-						URLEncoder.encode(fontName, "utf-8"));
-				
-				// Create a client
-				HttpParams params = new BasicHttpParams();
-		        HttpConnectionParams.setConnectionTimeout(params, 2000);
-		        DefaultHttpClient httpClient = new DefaultHttpClient(params);
-		        httpClient.setCookieStore(WabitClientSession.getCookieStore());
-		        httpClient.getCredentialsProvider().setCredentials(
-		            new AuthScope(serverUrl.getHost(), AuthScope.ANY_PORT), 
-		            new UsernamePasswordCredentials(serverInfos.getUsername(), serverInfos.getPassword()));
-		    
-		        // Execute the query and parse the response.
-		        HttpUriRequest request = new HttpGet(serverUrl.toURI());
-		        
-		        ByteArrayInputStream bais = 
-		        	new ByteArrayInputStream(
-	        			httpClient.execute(
-        					request,
-        					handler));
-
-		        Font font = null;
-		        try {	
-					font = Font.createFont(
-							Font.TRUETYPE_FONT, 
-							bais);
+				font = createFont(fontBytes);
+				revalidateInBackground(fontName, cacheFile);
+			} catch (IOException e) {
+				logger.warn("The cached font " + cacheFile + " is not valid, it will be downloaded again", e);
+			}
+		}
+		
+		if (font == null) {
+			fontBytes = downloadFont(fontName);
+			font = createFont(fontBytes);
+			if (cacheFile != null) {
+				try {
+					writeFile(cacheFile, fontBytes);
+				} catch (IOException e) {
+					logger.warn("Could not save the font " + fontName + " to " + cacheFile, e);
+				}
+			}
+		}
+		
+		// Make sure we register it so the PDFs work fine.
+		GraphicsEnvironment.getLocalGraphicsEnvironment().registerFont(font);
+		return font;
+	}
+
+	private byte[] downloadFont(String fontName) throws Exception {
+		URL serverUrl = getFontURL(fontName);
+		
+		// Execute the query and parse the response.
+		HttpUriRequest request = new HttpGet(serverUrl.toURI());
+		byte[] fontBytes = getHttpClient(serverUrl).execute(request, handler);
+		if (fontBytes == null) {
+			throw new IOException("The server did not return the font " + fontName);
+		}
+		return fontBytes;
+	}
+
+	/**
+	 * Asks the server for the given font on a background thread if it has
+	 * changed since it was saved in the given file, and saves the new version
+	 * if it has.
+	 */
+	private synchronized void revalidateInBackground(final String fontName, final File cacheFile) {
+		if (closed) return;
+		if (revalidationExecutor == null) {
+			revalidationExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Font revalidation");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		revalidationExecutor.execute(new Runnable() {
+			public void run() {
+				try {
+					revalidate(fontName, cacheFile);
 				} catch (Exception e) {
-					try {
-						font = Font.createFont(
-								Font.TYPE1_FONT, 
-								bais);
-					} catch (Exception e2) {
-						throw new IOException(e2);
-					}
+					logger.warn("Could not check the server for a newer version of the font " + fontName, e);
 				}
-		        
-				// Make sure we register it so the PDFs work fine.
-				GraphicsEnvironment.getLocalGraphicsEnvironment().registerFont(font);
-				
-				// done
-	    		fontCache.put(fontName, font);
-	    		return font;
-	    		
-			} catch (Exception e) {
-				throw new RuntimeException("Failed to load a font from the server.", e);
 			}
+		});
+	}
+
+	/**
+	 * Asks the server for the given font if it has changed since it was saved
+	 * in the given file, and saves the new version if it has. This is package
+	 * private for testing.
+	 * 
+	 * @return True if a new version of the font was saved.
+	 */
+	boolean revalidate(String fontName, File cacheFile) throws Exception {
+		URL serverUrl = getFontURL(fontName);
+		HttpGet request = new HttpGet(serverUrl.toURI());
+		request.setHeader("If-Modified-Since", DateUtils.formatDate(new Date(cacheFile.lastModified())));
+		byte[] fontBytes = getHttpClient(serverUrl).execute(request, revalidationHandler);
+		if (fontBytes == null || Arrays.equals(fontBytes, readFile(cacheFile))) {
+			return false;
+		}
+		writeFile(cacheFile, fontBytes);
+		logger.info("Saved a newer version of the font " + fontName + 
+				" from the server, it will be used from the next session on");
+		return true;
+	}
+
+	/**
+	 * Releases the connections to the server and stops revalidating fonts.
+	 * Fonts that were already loaded can still be used, but no more fonts
+	 * will be downloaded.
+	 */
+	public synchronized void close() {
+		closed = true;
+		if (revalidationExecutor != null) {
+			revalidationExecutor.shutdownNow();
+		}
+		if (httpClient != null) {
+			httpClient.getConnectionManager().shutdown();
+			httpClient = null;
+		}
+	}
+
+	private URL getFontURL(String fontName) throws MalformedURLException, UnsupportedEncodingException {
+		return toServerFontURL(
+				serverInfos.getServerAddress(), 
+				String.valueOf(serverInfos.getPort()), 
+				serverInfos.getPath(), 
+				URLEncoder.encode(fontName, "utf-8"));
+	}
+	
+	private synchronized DefaultHttpClient getHttpClient(URL serverUrl) throws IOException {
+		if (closed) {
+			throw new IOException("The font loader for " + serverInfos.getServerAddress() + " is closed");
+		}
+		if (httpClient == null) {
+			HttpParams params = new BasicHttpParams();
+			HttpConnectionParams.setConnectionTimeout(params, 2000);
+			ConnManagerParams.setMaxTotalConnections(params, MAX_CONNECTIONS);
+			ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(MAX_CONNECTIONS));
+			SchemeRegistry schemeRegistry = new SchemeRegistry();
+			schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+			httpClient = new DefaultHttpClient(new ThreadSafeClientConnManager(params, schemeRegistry), params);
+			httpClient.setCookieStore(WabitClientSession.getCookieStore());
+			httpClient.getCredentialsProvider().setCredentials(
+					new AuthScope(serverUrl.getHost(), AuthScope.ANY_PORT), 
+					new UsernamePasswordCredentials(serverInfos.getUsername(), serverInfos.getPassword()));
+		}
+		return httpClient;
+	}
+
+	/**
+	 * Creates a font from the bytes of a TrueType or Type 1 font file.
+	 */
+	private static Font createFont(byte[] fontBytes) throws IOException {
+		try {	
+			return Font.createFont(Font.TRUETYPE_FONT, new ByteArrayInputStream(fontBytes));
+		} catch (Exception e) {
+			try {
+				return Font.createFont(Font.TYPE1_FONT, new ByteArrayInputStream(fontBytes));
+			} catch (Exception e2) {
+				throw new IOException(e2);
+			}
+		}
+	}
+
+	/**
+	 * Returns the file the font of the given name from this loader's server
+	 * is saved in, or null if fonts are not saved. The server and font name
+	 * are hashed into the file name so fonts of the same name from different
+	 * servers do not replace each other.
+	 */
+	File getCacheFile(String fontName) {
+		if (diskCacheDirectory == null) return null;
+		String key = serverInfos.getServerAddress() + ":" + serverInfos.getPort() + 
+			serverInfos.getPath() + "/" + fontName;
+		return new File(diskCacheDirectory, 
+				fontName.replaceAll("[^A-Za-z0-9_-]", "_") + "-" + Integer.toHexString(key.hashCode()) + ".font");
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		byte[] bytes = new byte[(int) file.length()];
+		InputStream in = new FileInputStream(file);
+		try {
+			int offset = 0;
+			while (offset < bytes.length) {
+				int read = in.read(bytes, offset, bytes.length - offset);
+				if (read < 0) throw new IOException("Unexpected end of " + file);
+				offset += read;
+			}
+		} finally {
+			in.close();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Writes the given bytes to a temporary file first and then moves it to
+	 * the given file so other loaders never read a partly written font.
+	 */
+	private static void writeFile(File file, byte[] bytes) throws IOException {
+		File directory = file.getParentFile();
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Could not create the directory " + directory);
+		}
+		File tempFile = File.createTempFile("font", ".tmp", directory);
+		OutputStream out = new FileOutputStream(tempFile);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+		if (!tempFile.renameTo(file)) {
+			tempFile.delete();
+			throw new IOException("Could not move " + tempFile + " to " + file);
 		}
 	}
 	
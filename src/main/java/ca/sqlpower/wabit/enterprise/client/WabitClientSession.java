@@ -82,6 +82,7 @@ import ca.sqlpower.wabit.WabitWorkspace;
 import ca.sqlpower.wabit.dao.WabitSessionPersister;
 import ca.sqlpower.wabit.dao.json.WabitJSONPersister;
 import ca.sqlpower.wabit.dao.session.WorkspacePersisterListener;
+import ca.sqlpower.wabit.rs.ResultSetEventDispatcher;
 import ca.sqlpower.wabit.swingui.WabitSwingSessionContext;
 
 /**
@@ -133,6 +134,12 @@ public class WabitClientSession extends WabitSessionImpl {
      */
     private final DataSourceCollectionUpdater dataSourceCollectionUpdater = new DataSourceCollectionUpdater();
 
+    /**
+     * Loads the fonts of the workspace from the server. Its connections are
+     * released when this session is closed.
+     */
+    private final RemoteFontLoader remoteFontLoader;
+
     public WabitClientSession(
     		@Nonnull WorkspaceLocation workspaceLocation,
     		@Nonnull WabitSessionContext context) 
@@ -143,7 +150,8 @@ public class WabitClientSession extends WabitSessionImpl {
         	throw new NullPointerException("workspaceLocation must not be null");
         }
 
-        super.fontLoader = new RemoteFontLoader(workspaceLocation.getServiceInfo());
+        remoteFontLoader = new RemoteFontLoader(workspaceLocation.getServiceInfo());
+        super.fontLoader = remoteFontLoader;
         outboundHttpClient = createHttpClient(workspaceLocation.getServiceInfo());
         
         getWorkspace().setUUID(workspaceLocation.getUuid());
@@ -201,6 +209,7 @@ public class WabitClientSession extends WabitSessionImpl {
 			}
 		}
         outboundHttpClient.getConnectionManager().shutdown();
+        remoteFontLoader.close();
         updater.interrupt();
         
         if (dataSourceCollection != null) {
@@ -744,6 +753,17 @@ public class WabitClientSession extends WabitSessionImpl {
 		}
 	}
 	
+	@Override
+	public ResultSetEventDispatcher getResultSetEventDispatcher() {
+		// Same quickfix as runInForeground: listeners in a Swing context expect
+		// to be notified on the Event Dispatch thread.
+		if (getContext() instanceof WabitSwingSessionContext) {
+			return ResultSetEventDispatcher.getSwingDispatcher();
+		} else {
+			return super.getResultSetEventDispatcher();
+		}
+	}
+	
 	@Override
 	public boolean isEnterpriseServerSession() {
 		return true;
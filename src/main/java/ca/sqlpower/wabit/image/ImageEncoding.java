@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.image;
+
+import java.awt.Image;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.imageio.ImageIO;
+
+import net.jcip.annotations.GuardedBy;
+import ca.sqlpower.dao.PersisterUtils;
+
+/**
+ * The PNG encoding of an image and a hash of its content. Encoding an image
+ * as PNG is slow, so the encoding of each image is made once and kept for as
+ * long as the image is in use. Images decoded from PNG bytes keep the bytes
+ * they were decoded from so they never need to be encoded at all.
+ * <p>
+ * Images are compared by their content hash when saving or persisting so an
+ * image used in many places only needs to be stored once.
+ */
+public class ImageEncoding {
+
+    /**
+     * The first bytes of every PNG file.
+     */
+    private static final byte[] PNG_SIGNATURE = 
+        new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+    /**
+     * The encodings of the images that have been encoded or decoded. The
+     * encoding is discarded when the image is no longer used.
+     */
+    @GuardedBy("encodings")
+    private static final Map<Image, ImageEncoding> encodings = new WeakHashMap<Image, ImageEncoding>();
+
+    /**
+     * The images decoded from PNG bytes by the hash of the bytes. Decoding
+     * the same bytes again, which happens when the same image is loaded or
+     * persisted more than once, returns the image already decoded.
+     */
+    @GuardedBy("encodings")
+    private static final Map<String, WeakReference<Image>> imagesByHash = 
+        new HashMap<String, WeakReference<Image>>();
+
+    private final byte[] pngBytes;
+    
+    private final String contentHash;
+    
+    private ImageEncoding(byte[] pngBytes) {
+        this.pngBytes = pngBytes;
+        this.contentHash = hash(pngBytes);
+    }
+
+    /**
+     * Returns the PNG encoding of the given image, encoding it only if it has
+     * not been encoded or decoded before.
+     */
+    public static ImageEncoding forImage(Image image) {
+        synchronized (encodings) {
+            ImageEncoding encoding = encodings.get(image);
+            if (encoding != null) return encoding;
+        }
+        ImageEncoding encoding = 
+            new ImageEncoding(PersisterUtils.convertImageToStreamAsPNG(image).toByteArray());
+        synchronized (encodings) {
+            ImageEncoding existing = encodings.get(image);
+            if (existing != null) return existing;
+            encodings.put(image, encoding);
+        }
+        return encoding;
+    }
+
+    /**
+     * Decodes an image from the given bytes. If the bytes are a PNG file they
+     * are kept as the image's encoding, and if an image decoded from the same
+     * bytes is still in use that image is returned instead of decoding it
+     * again. Images must not be modified after they are decoded.
+     * 
+     * @return The decoded image or null if the bytes are not an image format
+     *         that can be read.
+     */
+    public static Image decode(byte[] bytes) throws IOException {
+        if (!isPNG(bytes)) {
+            return ImageIO.read(new ByteArrayInputStream(bytes));
+        }
+        ImageEncoding encoding = new ImageEncoding(bytes);
+        synchronized (encodings) {
+            WeakReference<Image> ref = imagesByHash.get(encoding.getContentHash());
+            Image existing = (ref == null ? null : ref.get());
+            if (existing != null) return existing;
+        }
+        Image image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image != null) {
+            synchronized (encodings) {
+                encodings.put(image, encoding);
+                imagesByHash.put(encoding.getContentHash(), new WeakReference<Image>(image));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Reads the given stream to its end and decodes an image from it.
+     * 
+     * @see #decode(byte[])
+     */
+    public static Image decode(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return decode(out.toByteArray());
+    }
+    
+    private static boolean isPNG(byte[] bytes) {
+        if (bytes.length < PNG_SIGNATURE.length) return false;
+        for (int i = 0; i < PNG_SIGNATURE.length; i++) {
+            if (bytes[i] != PNG_SIGNATURE[i]) return false;
+        }
+        return true;
+    }
+    
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the PNG encoding of the image. The array is shared by everyone
+     * using this encoding and must not be modified.
+     */
+    public byte[] getPNGBytes() {
+        return pngBytes;
+    }
+
+    /**
+     * Returns a hash of the PNG encoding. Two encodings with the same hash
+     * have the same bytes.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+}
@@ -24,9 +24,12 @@ import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
@@ -47,6 +50,51 @@ public class WabitImage extends AbstractWabitObject {
      * places.
      */
     private Icon imageAsIcon;
+
+    /**
+     * Copies of the image that have already been scaled to a specific size with
+     * a specific interpolation hint. Scaling a large image every time a report
+     * is painted or printed is slow so the scaled copies are kept here. The
+     * images are held by soft references so the garbage collector can discard
+     * them if memory gets low; they will simply be scaled again on the next
+     * request. This cache must be cleared any time the image changes.
+     */
+    private final Map<ScaledImageKey, SoftReference<BufferedImage>> scaledImageCache =
+        new HashMap<ScaledImageKey, SoftReference<BufferedImage>>();
+
+    /**
+     * The key used to look up scaled copies of the image in the
+     * {@link #scaledImageCache}.
+     */
+    private static class ScaledImageKey {
+        
+        private final int width;
+        private final int height;
+        private final Object interpolation;
+        
+        ScaledImageKey(int width, int height, Object interpolation) {
+            this.width = width;
+            this.height = height;
+            this.interpolation = interpolation;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ScaledImageKey)) return false;
+            ScaledImageKey other = (ScaledImageKey) obj;
+            return width == other.width && height == other.height 
+                && interpolation.equals(other.interpolation);
+        }
+        
+        @Override
+        public int hashCode() {
+            int result = 17;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + interpolation.hashCode();
+            return result;
+        }
+    }
     
     public WabitImage(WabitImage wabitImage) {
     	super();
@@ -65,6 +113,9 @@ public class WabitImage extends AbstractWabitObject {
     public void setImage(Image image) {
         Image oldImage = this.image;
         this.image = image;
+        synchronized (scaledImageCache) {
+            scaledImageCache.clear();
+        }
         setImageAsIcon();
         firePropertyChange("image", oldImage, image);
     }
@@ -98,6 +149,76 @@ public class WabitImage extends AbstractWabitObject {
     public Icon getImageAsIcon() {
         return imageAsIcon;
     }
+
+    /**
+     * Returns the PNG encoding of the image, which is only made once for each
+     * image. Use this instead of encoding the image when it is saved or
+     * persisted.
+     * 
+     * @return The encoding of the image or null if this object does not
+     *         currently have an image.
+     */
+    public ImageEncoding getEncoding() {
+        final Image currentImage = image;
+        if (currentImage == null) return null;
+        return ImageEncoding.forImage(currentImage);
+    }
+
+    /**
+     * Returns a copy of the image scaled to exactly the given size. The scaled
+     * copy is cached so repeated calls with the same size and interpolation
+     * hint, which is the normal case when a report is repainted or printed
+     * page after page, do not scale the full sized image again.
+     * 
+     * @param width
+     *            The width in pixels of the scaled image. Must be positive.
+     * @param height
+     *            The height in pixels of the scaled image. Must be positive.
+     * @param interpolation
+     *            One of the {@link RenderingHints#KEY_INTERPOLATION} values to
+     *            use when scaling the image. If null bilinear interpolation
+     *            will be used.
+     * @return The scaled image or null if this object does not currently have
+     *         an image.
+     */
+    public BufferedImage getScaledImage(int width, int height, Object interpolation) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("The scaled image size must be positive " +
+                    "but was " + width + "x" + height);
+        }
+        if (interpolation == null) {
+            interpolation = RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+        }
+        final Image currentImage = image;
+        if (currentImage == null) return null;
+        
+        ScaledImageKey key = new ScaledImageKey(width, height, interpolation);
+        synchronized (scaledImageCache) {
+            SoftReference<BufferedImage> ref = scaledImageCache.get(key);
+            if (ref != null) {
+                BufferedImage scaledImage = ref.get();
+                if (scaledImage != null) return scaledImage;
+                scaledImageCache.remove(key);
+            }
+        }
+        
+        final BufferedImage scaledImage = 
+            new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaledImage.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, 
+                RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(currentImage, 0, 0, width, height, null);
+        g.dispose();
+        
+        synchronized (scaledImageCache) {
+            //The image may have been replaced while this copy was being scaled.
+            if (currentImage == image) {
+                scaledImageCache.put(key, new SoftReference<BufferedImage>(scaledImage));
+            }
+        }
+        return scaledImage;
+    }
     
     public boolean allowsChildren() {
         return false;
@@ -59,13 +59,18 @@ import ca.sqlpower.swingui.ColourScheme;
 import ca.sqlpower.swingui.SPSUtils;
 import ca.sqlpower.wabit.AbstractWabitObject;
 import ca.sqlpower.wabit.WabitObject;
+import ca.sqlpower.wabit.WabitUtils;
+import ca.sqlpower.wabit.WabitWorkspace;
 import ca.sqlpower.wabit.report.selectors.ContextAware;
 import ca.sqlpower.wabit.rs.ResultSetEvent;
 import ca.sqlpower.wabit.rs.ResultSetHandle;
+import ca.sqlpower.wabit.rs.ResultSetHandle.ResultSetStatus;
 import ca.sqlpower.wabit.rs.ResultSetListener;
 import ca.sqlpower.wabit.rs.ResultSetProducerEvent;
 import ca.sqlpower.wabit.rs.ResultSetProducerListener;
 import ca.sqlpower.wabit.rs.olap.OlapQuery;
+import ca.sqlpower.wabit.rs.olap.OlapQuerySnapshot;
+import ca.sqlpower.wabit.rs.olap.QueryInitializationException;
 import ca.sqlpower.wabit.swingui.olap.CellSetTableHeaderComponent;
 import ca.sqlpower.wabit.swingui.olap.CellSetTableModel;
 import ca.sqlpower.wabit.swingui.olap.CellSetTableHeaderComponent.HierarchyComponent;
@@ -75,7 +80,7 @@ import ca.sqlpower.wabit.swingui.olap.CellSetTableHeaderComponent.LayoutItem;
  * Renders a CellSet from a MDX query on a report layout.
  */
 public class CellSetRenderer extends AbstractWabitObject implements
-        WabitObjectReportRenderer, ContextAware {
+        WabitObjectReportRenderer, ContextAware, PrefetchableRenderer {
     
     private final static Logger logger = Logger.getLogger(CellSetRenderer.class);
     
@@ -93,9 +98,27 @@ public class CellSetRenderer extends AbstractWabitObject implements
 
     
     /**
-     * This is the OLAP query being displayed by this cell set renderer.
+     * This is the OLAP query being displayed by this cell set renderer. This
+     * is null until the query is edited through this renderer or loaded with
+     * it; until then the renderer displays {@link #querySnapshot}.
      */
     private OlapQuery modifiedOlapQuery;
+
+    /**
+     * The state of the query this renderer displays while there is no
+     * {@link #modifiedOlapQuery}. The snapshot is shared with the renderers
+     * this renderer is copied to and can be executed without resolving the
+     * cube of the query again.
+     */
+    private OlapQuerySnapshot querySnapshot;
+
+    /**
+     * The query created from {@link #querySnapshot} to save this renderer
+     * before the query is its child. It is only created once so it keeps the
+     * same UUID each time the renderer is saved, and it becomes the
+     * {@link #modifiedOlapQuery} when it is added as the child.
+     */
+    private OlapQuery snapshotQuery;
     
     /**
      * Keeps a link to the handle of the currently executing query.
@@ -202,11 +225,15 @@ public class CellSetRenderer extends AbstractWabitObject implements
 
     public CellSetRenderer(CellSetRenderer cellSetRenderer) {
     	this.olapQuery = cellSetRenderer.getContent();
-    	try {
-			this.setModifiedOlapQuery(OlapQuery.copyOlapQuery(cellSetRenderer.getModifiedOlapQuery()));
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
+    	if (cellSetRenderer.querySnapshot != null) {
+    		this.querySnapshot = cellSetRenderer.querySnapshot;
+    	} else if (cellSetRenderer.modifiedOlapQuery != null) {
+    		try {
+    			this.querySnapshot = cellSetRenderer.modifiedOlapQuery.createSnapshot();
+    		} catch (Exception e) {
+    			throw new RuntimeException(e);
+    		}
+    	}
     	setName(cellSetRenderer.getName());
     	this.olapQuery.addSPListener(nameListener);
     	this.headerFont = cellSetRenderer.headerFont;
@@ -229,20 +256,19 @@ public class CellSetRenderer extends AbstractWabitObject implements
         if (this.initDone) return;
         try {
         	
-        	if (modifiedOlapQuery == null) {
-        		setModifiedOlapQuery(OlapQuery.copyOlapQuery(olapQuery));
+        	if (modifiedOlapQuery == null && querySnapshot == null) {
+        		querySnapshot = olapQuery.createSnapshot();
             }
+        	addSnapshotQuery();
         	
         	// This code will eventually fire the change and set the cellset
-    		// (must be done synchronously--don't use asyncExecute!)
-    		this.resultSetHandle = 
-    				modifiedOlapQuery.execute(
-    						new SPVariableHelper(this), 
-    						this.resultSetListener);
+    		this.resultSetHandle = executeQuery();
     		
     		if (this.resultSetHandle == null) {
     			// The olp query could not execute.
-    			this.errorMessage = "The query '" + modifiedOlapQuery.getName() + "' did not return any results.";
+    			String queryName = modifiedOlapQuery != null ? 
+    					modifiedOlapQuery.getName() : querySnapshot.getName();
+    			this.errorMessage = "The query '" + queryName + "' did not return any results.";
     		} else {
     			this.errorMessage = "Loading...";
     		}
@@ -259,6 +285,49 @@ public class CellSetRenderer extends AbstractWabitObject implements
     	return olapQuery;
     }
 
+    /**
+     * Executes the query this renderer displays, which is the snapshot of the
+     * query until the query is edited or loaded.
+     */
+    private ResultSetHandle executeQuery() throws Exception {
+    	if (querySnapshot != null) {
+    		return querySnapshot.execute(getSession().getContext(), 
+    				new SPVariableHelper(this), resultSetListener, 
+    				getSession().getResultSetEventDispatcher(), true);
+    	} else {
+    		return modifiedOlapQuery.execute(new SPVariableHelper(this), resultSetListener);
+    	}
+    }
+
+    /**
+     * Returns the query created from {@link #querySnapshot}, creating it the
+     * first time this is called. The query is not added as a child of this
+     * renderer.
+     */
+    private OlapQuery getSnapshotQuery() {
+    	if (snapshotQuery == null) {
+    		snapshotQuery = querySnapshot.createQuery();
+    		snapshotQuery.setActsAsVariableProvider(false);
+    		snapshotQuery.setParent(this);
+    	}
+    	return snapshotQuery;
+    }
+
+    /**
+     * Adds the query created from the snapshot as the child of this renderer,
+     * so the query the renderer displays is persisted with it instead of being
+     * taken from the live query again when the workspace is loaded. The
+     * renderer still executes the snapshot until the query is edited.
+     */
+    private void addSnapshotQuery() {
+    	if (modifiedOlapQuery != null || querySnapshot == null) return;
+    	OlapQuery query = getSnapshotQuery();
+    	modifiedOlapQuery = query;
+    	query.addResultSetProducerListener(resultSetProducerListener);
+    	firePropertyChange("modifiedOlapQuery", null, query);
+    	fireChildAdded(OlapQuery.class, query, 0);
+    }
+
     @Override
     public CleanupExceptions cleanup() {
     	if (modifiedOlapQuery != null && !this.initDone) {
@@ -602,6 +671,28 @@ public class CellSetRenderer extends AbstractWabitObject implements
 
     }
 
+    public List<ResultSetHandle> startPrefetch() {
+    	if (!initDone) {
+    		init();
+    	}
+    	// If the query was already executed when this renderer was displayed
+    	// or refreshed its execution may still be running.
+    	if (resultSetHandle == null) {
+    		return Collections.emptyList();
+    	}
+    	return Collections.singletonList(resultSetHandle);
+    }
+    
+    public void prefetchComplete() {
+    	// The cell set is normally set on the event thread when the execution
+    	// completes, which may not have happened yet.
+    	if (resultSetHandle != null && 
+    			resultSetHandle.getStatus().equals(ResultSetStatus.SUCCESS)) {
+    		this.errorMessage = null;
+    		setCellSet(resultSetHandle.getCellSet());
+    	}
+    }
+
     public boolean allowsChildren() {
         return true;
     }
@@ -675,6 +766,27 @@ public class CellSetRenderer extends AbstractWabitObject implements
     public ContentBox getParent() {
     	return (ContentBox) super.getParent();
     }
+
+    /**
+     * Adds the query this renderer displays as its child once the renderer is
+     * placed in a workspace, so the frozen query is persisted along with the
+     * renderer. Nothing is added while the workspace is being loaded, as the
+     * saved query is added as the child then.
+     */
+    @Override
+    public void setParent(SPObject parent) {
+    	super.setParent(parent);
+    	WabitWorkspace workspace = WabitUtils.getWorkspace(this);
+    	if (parent == null || workspace == null || !workspace.isMagicEnabled()) return;
+    	try {
+    		if (modifiedOlapQuery == null && querySnapshot == null) {
+    			querySnapshot = olapQuery.createSnapshot();
+    		}
+    		addSnapshotQuery();
+    	} catch (QueryInitializationException e) {
+    		logger.warn("Could not take a snapshot of " + olapQuery.getName(), e);
+    	}
+    }
     
     public CellSet getCellSet() {
     	init();
@@ -689,11 +801,35 @@ public class CellSetRenderer extends AbstractWabitObject implements
         return bodyFormat;
     }
     
+    /**
+     * Returns the query that is the child of this renderer. This is null
+     * until the renderer is placed in a workspace, initialized, or loaded
+     * with its query.
+     * 
+     * @see #getDisplayedOlapQuery()
+     */
     public OlapQuery getModifiedOlapQuery() {
         return modifiedOlapQuery;
     }
+
+    /**
+     * Returns the query this renderer displays. If the query is not the
+     * child of this renderer yet it is created from the snapshot the first
+     * time this is called and the same query is returned after that, so
+     * saving the renderer again does not change the query's UUID. The query
+     * is not added as a child of this renderer, so calling this fires no
+     * events.
+     */
+    public OlapQuery getDisplayedOlapQuery() {
+    	if (modifiedOlapQuery != null || querySnapshot == null) {
+    		return modifiedOlapQuery;
+    	}
+    	return getSnapshotQuery();
+    }
     
     public void setModifiedOlapQuery(OlapQuery modifiedOlapQuery) {
+    	this.querySnapshot = null;
+    	this.snapshotQuery = null;
     	if (this.modifiedOlapQuery != null) {
     		this.modifiedOlapQuery.removeResultSetProducerListener(resultSetProducerListener);
     		fireChildRemoved(OlapQuery.class, this.modifiedOlapQuery, 0);
@@ -746,6 +882,10 @@ public class CellSetRenderer extends AbstractWabitObject implements
     public void toggleSelectedMember() {
         if (selectedMember != null) {
             try {
+                addSnapshotQuery();
+                // The query is edited from now on, so it is executed in place
+                // of the snapshot.
+                querySnapshot = null;
                 modifiedOlapQuery.toggleMember(selectedMember);
                 refresh();
             } catch (Exception e) {
@@ -762,10 +902,7 @@ public class CellSetRenderer extends AbstractWabitObject implements
 				this.resultSetHandle.cancel();
 			}
 			
-			this.resultSetHandle = 
-					this.modifiedOlapQuery.execute(
-							new SPVariableHelper(this), 
-							resultSetListener);
+			this.resultSetHandle = executeQuery();
 			
 		} catch (Exception e) {
             logger.warn("Error while executing Olap Query", e);
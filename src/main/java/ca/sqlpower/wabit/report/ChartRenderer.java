@@ -42,6 +42,7 @@ import ca.sqlpower.wabit.report.chart.ChartDataChangedEvent;
 import ca.sqlpower.wabit.report.chart.ChartDataListener;
 import ca.sqlpower.wabit.report.chart.ChartGradientPainter;
 import ca.sqlpower.wabit.report.selectors.ContextAware;
+import ca.sqlpower.wabit.rs.ResultSetHandle;
 import ca.sqlpower.wabit.swingui.chart.ChartSwingUtil;
 
 /**
@@ -49,7 +50,7 @@ import ca.sqlpower.wabit.swingui.chart.ChartSwingUtil;
  * defined by the user.
  */
 public class ChartRenderer extends AbstractWabitObject 
-		implements WabitObjectReportRenderer, ContextAware {
+		implements WabitObjectReportRenderer, ContextAware, PrefetchableRenderer {
 		
 	private static final Logger logger = Logger.getLogger(ChartRenderer.class);
 	private boolean needsRefresh = false;
@@ -115,8 +116,10 @@ public class ChartRenderer extends AbstractWabitObject
 		if (printing) {
 			// If we're printing a streaming query, we have to
 			// print whatever's displayed.
-			if (this.chartCache == null ||
-					(this.chartCache != null && !this.chartCache.getQuery().isStreaming())) {
+			// The chart is only executed again if it changed since it was
+			// last refreshed, normally by startPrefetch().
+			if (this.chartCache == null || 
+					(needsRefresh && !this.chartCache.getQuery().isStreaming())) {
 				refresh(false);
 			}
 		} else if (needsRefresh || this.chartCache == null) {
@@ -128,7 +131,7 @@ public class ChartRenderer extends AbstractWabitObject
 		
 		JFreeChart jFreeChart = null;
 		try {
-		    jFreeChart = ChartSwingUtil.createChartFromQuery(chartCache);
+		    jFreeChart = ChartSwingUtil.createChartFromQuery(chartCache, (int) Math.ceil(width));
 			if (jFreeChart == null) {
 			    g.drawString("Loading...", 0, g.getFontMetrics().getHeight());
 			    return false;
@@ -158,6 +161,28 @@ public class ChartRenderer extends AbstractWabitObject
 	public void resetToFirstPage() {
 		//do nothing.
 	}
+	
+	public List<ResultSetHandle> startPrefetch() {
+		// If we're printing a streaming query, we have to
+		// print whatever's displayed.
+		if (this.chartCache != null && this.chartCache.getQuery().isStreaming()) {
+			return Collections.emptyList();
+		}
+		if (needsRefresh || this.chartCache == null) {
+			refresh(true);
+		}
+		ResultSetHandle handle = chartCache.getResultSetHandle();
+		if (handle == null) {
+			return Collections.emptyList();
+		}
+		return Collections.singletonList(handle);
+	}
+	
+	public void prefetchComplete() {
+		// Column identifiers are normally synchronized on the event thread
+		// when the execution completes, which may not have happened yet.
+		chartCache.syncWithResultSet();
+	}
 
 	public boolean allowsChildren() {
 		return false;
@@ -198,7 +223,8 @@ public class ChartRenderer extends AbstractWabitObject
 			this.chartCache.removeChartDataListener(chartListener);
 			this.chartCache.cleanup();
 		}
-		this.chartCache = new Chart(ChartRenderer.this.chart, this);
+		// Reports only draw the chart so its rows can be aggregated by the database.
+		this.chartCache = new Chart(ChartRenderer.this.chart, this, true);
 		this.chartCache.addChartDataListener(chartListener);
 		this.chartCache.refresh(async);
 		needsRefresh = false;
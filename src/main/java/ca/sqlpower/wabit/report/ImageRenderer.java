@@ -21,6 +21,10 @@ package ca.sqlpower.wabit.report;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -47,6 +51,13 @@ public class ImageRenderer extends AbstractWabitObject implements
 		WabitObjectReportRenderer {
 	
 	private static final Logger logger = Logger.getLogger(ImageRenderer.class);
+
+	/**
+	 * The resolution in dots per inch images are scaled to when a report is
+	 * printed or exported to PDF. Images smaller than this resolution are
+	 * printed at their own size.
+	 */
+	private static final int PRINT_RESOLUTION = 300;
 	
 	/**
 	 * XXX This should be a final value given to the constructor rather than be settable.
@@ -149,18 +160,30 @@ public class ImageRenderer extends AbstractWabitObject implements
 			return false;
 		}
 		
-		ImageIcon imageIcon = new ImageIcon(image.getImage());
+		Image fullImage = image.getImage();
+		int fullWidth = fullImage.getWidth(null);
+		int fullHeight = fullImage.getHeight(null);
+		if (fullWidth < 0 || fullHeight < 0) {
+			//The image has not finished loading, ImageIcon will wait for it.
+			ImageIcon imageIcon = new ImageIcon(fullImage);
+			fullWidth = imageIcon.getIconWidth();
+			fullHeight = imageIcon.getIconHeight();
+		}
+		if (fullWidth <= 0 || fullHeight <= 0) {
+			logger.debug("Image " + image.getName() + " has no size and cannot be rendered");
+			return false;
+		}
 		double imageWidth;
 		double imageHeight;
 		if (isPreservingAspectRatio()) {
 		
 			double widthRatio = 
-				width / (double) imageIcon.getIconWidth();
+				width / (double) fullWidth;
 			double heightRatio = 
-				height / (double) imageIcon.getIconHeight();
+				height / (double) fullHeight;
 			double sizeRatio = Math.min(widthRatio, heightRatio);
-			imageWidth = (int) (imageIcon.getIconWidth() * sizeRatio);
-			imageHeight = (int) (imageIcon.getIconHeight() * sizeRatio);
+			imageWidth = (int) (fullWidth * sizeRatio);
+			imageHeight = (int) (fullHeight * sizeRatio);
 		} else {
 			imageWidth = width;
 			imageHeight = height;
@@ -196,7 +219,33 @@ public class ImageRenderer extends AbstractWabitObject implements
 		    }
 		}
 		
-		g.drawImage(image.getImage(), x, y, (int)imageWidth, (int)imageHeight, null);
+		if (imageWidth < 1 || imageHeight < 1) {
+			return false;
+		}
+		
+		//The image is scaled to the size it will occupy on the device so the
+		//graphics does not have to rescale the full image on every paint.
+		AffineTransform transform = g.getTransform();
+		double deviceScaleX = Math.hypot(transform.getScaleX(), transform.getShearY());
+		double deviceScaleY = Math.hypot(transform.getShearX(), transform.getScaleY());
+		PDFImageRegistry pdfImages = PDFImageRegistry.getRegistry(g);
+		if (printing || pdfImages != null) {
+			deviceScaleX = Math.max(deviceScaleX, PRINT_RESOLUTION / 72.0);
+			deviceScaleY = Math.max(deviceScaleY, PRINT_RESOLUTION / 72.0);
+		}
+		int pixelWidth = (int) Math.max(1, Math.round(imageWidth * deviceScaleX));
+		int pixelHeight = (int) Math.max(1, Math.round(imageHeight * deviceScaleY));
+		if (printing || pdfImages != null) {
+			//Scaling an image up does not add detail to the printed output.
+			pixelWidth = Math.min(pixelWidth, fullWidth);
+			pixelHeight = Math.min(pixelHeight, fullHeight);
+		}
+		Object interpolation = g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+		BufferedImage scaledImage = image.getScaledImage(pixelWidth, pixelHeight, interpolation);
+		
+		if (pdfImages == null || !pdfImages.drawImage(g, image, scaledImage, x, y, imageWidth, imageHeight)) {
+			g.drawImage(scaledImage, x, y, (int)imageWidth, (int)imageHeight, null);
+		}
 		logger.debug("Image rendered");
 		return false;
 	}
@@ -34,6 +34,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.swing.SwingUtilities;
+
 import org.apache.log4j.Logger;
 
 import ca.sqlpower.object.SPObject;
@@ -44,6 +46,7 @@ import ca.sqlpower.object.SPVariableResolverProvider;
 import ca.sqlpower.wabit.AbstractWabitObject;
 import ca.sqlpower.wabit.WabitObject;
 import ca.sqlpower.wabit.WabitVersion;
+import ca.sqlpower.wabit.rs.ResultSetHandle;
 
 public abstract class Layout extends AbstractWabitObject implements Pageable, Printable, SPVariableResolverProvider {
     private static final Logger logger = Logger.getLogger(Report.class);
@@ -232,11 +235,70 @@ public abstract class Layout extends AbstractWabitObject implements Pageable, Pr
         return Printable.PAGE_EXISTS;
     }
 
+    /**
+     * Executes the queries of every content box on the page that needs query
+     * results to print and waits for them to finish. The queries are all
+     * executed at the same time instead of one at a time as each content box
+     * is printed. A renderer whose query is already running or has finished
+     * since its content last changed does not execute it again, but its
+     * running execution is waited for, so calling this again for the same
+     * layout only executes the queries whose content boxes changed.
+     * <p>
+     * This waits for the queries and must not be called on the Swing event
+     * dispatch thread. Print jobs call it through {@link #getNumberOfPages()}
+     * from the thread that prints.
+     */
+    public void prefetchResults() {
+    	List<PrefetchableRenderer> renderers = new ArrayList<PrefetchableRenderer>();
+    	for (ResultSetHandle handle : startPrefetch(renderers)) {
+    		handle.waitForCompletion();
+    	}
+    	for (PrefetchableRenderer renderer : renderers) {
+    		renderer.prefetchComplete();
+    	}
+    }
+
+    /**
+     * Asks each renderer on the page to start or reuse the executions it
+     * prints from.
+     * 
+     * @param renderers
+     *            The renderers that were asked are added to this list.
+     * @return The handles the renderers print from.
+     */
+    private List<ResultSetHandle> startPrefetch(List<PrefetchableRenderer> renderers) {
+    	List<ResultSetHandle> handles = new ArrayList<ResultSetHandle>();
+    	for (ContentBox cb : page.getContentBoxes()) {
+    		ReportContentRenderer r = cb.getContentRenderer();
+    		if (r instanceof PrefetchableRenderer) {
+    			PrefetchableRenderer renderer = (PrefetchableRenderer) r;
+    			try {
+    				handles.addAll(renderer.startPrefetch());
+    				renderers.add(renderer);
+    			} catch (RuntimeException e) {
+    				// The renderer will execute its query again when printed and report the error.
+    				logger.error("Could not prefetch the results of " + cb, e);
+    			}
+    		}
+    	}
+    	logger.debug("Prefetching " + handles.size() + " results for " + renderers.size() + " content boxes");
+    	return handles;
+    }
+
     /**
      * Before getting the page count the currentlyPrinting flag should be set.
+     * The results of the queries on the page will be prefetched before the
+     * pages are counted. On the Swing event dispatch thread the queries that
+     * need it are started but not waited for, so callers there should call
+     * {@link #prefetchResults()} on another thread first.
      */
     public int getNumberOfPages() {
     	try {
+    		if (SwingUtilities.isEventDispatchThread()) {
+    			startPrefetch(new ArrayList<PrefetchableRenderer>());
+    		} else {
+    			prefetchResults();
+    		}
     		countPages();
     		if (this.variables != null) {
     			this.variables.update("page_count", pageCount);
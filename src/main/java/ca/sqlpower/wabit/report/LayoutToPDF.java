@@ -26,6 +26,8 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 
 import javax.annotation.Nullable;
@@ -34,6 +36,9 @@ import ca.sqlpower.util.Monitorable;
 import ca.sqlpower.util.MonitorableImpl;
 import ca.sqlpower.wabit.WabitVersion;
 import ca.sqlpower.wabit.enterprise.client.Watermarker;
+import ca.sqlpower.wabit.trace.PerformanceTracer;
+import ca.sqlpower.wabit.trace.Span;
+import ca.sqlpower.wabit.trace.TraceRecording;
 
 import com.itextpdf.text.Document;
 import com.itextpdf.text.DocumentException;
@@ -43,11 +48,52 @@ import com.itextpdf.text.pdf.PdfWriter;
 
 public class LayoutToPDF implements Monitorable {
 
+	/**
+	 * Counts the bytes written to the PDF for the performance trace.
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+		
+		private long byteCount;
+		
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			byteCount++;
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			byteCount += len;
+		}
+		
+		long getByteCount() {
+			return byteCount;
+		}
+	}
+
 	private final OutputStream fileOS;
 	private final Layout layout;
 	private final Watermarker watermarker;
 
 	private final MonitorableImpl monitorableHelper = new MonitorableImpl();
+
+	/**
+	 * If true each distinct image in the layout will be embedded in the PDF
+	 * once and shared by every page it appears on. If false the image will be
+	 * embedded each time it is drawn.
+	 */
+	private boolean embeddingImagesOnce = true;
+
+	/**
+	 * The spans recorded while the last PDF was written. This is null until
+	 * {@link #writePDF()} is called.
+	 */
+	private volatile TraceRecording traceRecording;
 	
 	
 	/**
@@ -91,12 +137,28 @@ public class LayoutToPDF implements Monitorable {
 	public void writePDF()
     throws DocumentException, FileNotFoundException, PrinterException {
     	monitorableHelper.setStarted(true);
+    	traceRecording = PerformanceTracer.startRecording("PDF of " + layout.getName());
+    	try {
+    		writePages();
+    	} finally {
+    		traceRecording.stop();
+    		monitorableHelper.setFinished(true);
+    	}
+	}
+
+	/**
+	 * Counts the pages of the layout, which fetches the results it prints,
+	 * and writes each page to the PDF. This is recorded in the
+	 * {@link #traceRecording}.
+	 */
+	private void writePages()
+	throws DocumentException, FileNotFoundException, PrinterException {
 		int pageNum = 0;
 
     	int numPages = layout.getNumberOfPages();
     	monitorableHelper.setJobSize(numPages);
     	Page page = layout.getPage();
-    	OutputStream out = fileOS;
+    	CountingOutputStream out = new CountingOutputStream(fileOS);
     	Rectangle pageSize;
     	pageSize = new Rectangle(page.getWidth(), page.getHeight());
 
@@ -106,24 +168,37 @@ public class LayoutToPDF implements Monitorable {
     	pdfDoc.open();
     	pdfDoc.addCreator("Wabit " + WabitVersion.VERSION);
     	PdfContentByte pdfContent = pdfOut.getDirectContent();
+    	PDFImageRegistry imageRegistry = null;
+    	if (embeddingImagesOnce) {
+    		imageRegistry = new PDFImageRegistry(pageSize.getHeight());
+    	}
     	Graphics2D pdfGraphics = null;
     	try {
     	    while(pageNum < numPages) {
     	    	monitorableHelper.checkCancelled();
     	    	monitorableHelper.setProgress(pageNum);
-    	        pdfGraphics = pdfContent.createGraphics(pageSize.getWidth(), pageSize.getHeight());
-    	        int flag = layout.print(pdfGraphics, layout.getPageFormat(pageNum), pageNum);
-
-    	        if (watermarker != null) {
-    	        	java.awt.Rectangle watermarkSize = new java.awt.Rectangle();
-    	        	watermarkSize.setSize(
-    	        			Math.round(pageSize.getWidth()),
-    	        			Math.round(pageSize.getHeight()));
-    	        	watermarker.watermark(pdfGraphics, watermarkSize);
+    	        Span pageSpan = PerformanceTracer.start(PerformanceTracer.PAGE_OUTPUT_STAGE, "page " + (pageNum + 1));
+    	        int flag;
+    	        try {
+    	        	pdfGraphics = pdfContent.createGraphics(pageSize.getWidth(), pageSize.getHeight());
+    	        	if (imageRegistry != null) {
+    	        		pdfGraphics.setRenderingHint(PDFImageRegistry.KEY, imageRegistry);
+    	        	}
+    	        	flag = layout.print(pdfGraphics, layout.getPageFormat(pageNum), pageNum);
+
+    	        	if (watermarker != null) {
+    	        		java.awt.Rectangle watermarkSize = new java.awt.Rectangle();
+    	        		watermarkSize.setSize(
+    	        				Math.round(pageSize.getWidth()),
+    	        				Math.round(pageSize.getHeight()));
+    	        		watermarker.watermark(pdfGraphics, watermarkSize);
+    	        	}
+
+    	        	pdfGraphics.dispose();
+    	        	pdfGraphics = null;
+    	        } finally {
+    	        	pageSpan.end();
     	        }
-    	        
-    	        pdfGraphics.dispose();
-    	        pdfGraphics = null;
 
     	        if (flag == Printable.NO_SUCH_PAGE) break;
 
@@ -133,12 +208,40 @@ public class LayoutToPDF implements Monitorable {
     	    }
     	} finally {
     	    if (pdfGraphics != null) pdfGraphics.dispose();
-    	    if (pdfDoc != null) pdfDoc.close();
-    	    monitorableHelper.setFinished(true);
+    	    Span closeSpan = PerformanceTracer.start(PerformanceTracer.PAGE_OUTPUT_STAGE, "document");
+    	    try {
+    	    	if (pdfDoc != null) pdfDoc.close();
+    	    } finally {
+    	    	closeSpan.setByteCount(out.getByteCount());
+    	    	closeSpan.end();
+    	    }
     	}
 	}
 
 
+	/**
+	 * Sets if each distinct image in the layout should be embedded in the PDF
+	 * only once and referenced from every place it is drawn. This is on by
+	 * default and keeps the file small when the same image, like a logo, is
+	 * printed on every page.
+	 */
+	public void setEmbeddingImagesOnce(boolean embeddingImagesOnce) {
+		this.embeddingImagesOnce = embeddingImagesOnce;
+	}
+
+	public boolean isEmbeddingImagesOnce() {
+		return embeddingImagesOnce;
+	}
+
+	/**
+	 * Returns the time spent in each stage while the PDF was written, or null
+	 * if it has not been written yet. Anything writing a report to a file can
+	 * save this next to it, see {@link TraceRecording#getTimingFile(File)}.
+	 */
+	public TraceRecording getTraceRecording() {
+		return traceRecording;
+	}
+
 	public Integer getJobSize() {
 		return monitorableHelper.getJobSize();
 	}
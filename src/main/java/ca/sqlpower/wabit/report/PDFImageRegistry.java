@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.wabit.report;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import ca.sqlpower.wabit.image.WabitImage;
+
+import com.itextpdf.text.BadElementException;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Image;
+import com.itextpdf.text.pdf.PdfGraphics2D;
+
+/**
+ * Tracks the images that have been embedded into a single PDF document. The
+ * {@link PdfGraphics2D} class normally embeds a new copy of an image every time
+ * it is drawn which makes a report with a logo in its header contain one copy
+ * of the logo per page. When an instance of this class is placed on the PDF's
+ * graphics as the {@link #KEY} rendering hint each distinct image is written
+ * to the PDF once as an image XObject and every other place the image is drawn
+ * refers back to the same XObject.
+ * <p>
+ * A registry is only valid for the document it was created for and should be
+ * discarded when the document is closed.
+ */
+public class PDFImageRegistry {
+
+    private static final Logger logger = Logger.getLogger(PDFImageRegistry.class);
+
+    /**
+     * The rendering hint key used to pass a registry to the renderers through
+     * the graphics object of the PDF. The hint is copied to graphics created
+     * from the PDF's graphics so each content box will see it.
+     */
+    public static final RenderingHints.Key KEY = new RenderingHints.Key(0) {
+        @Override
+        public boolean isCompatibleValue(Object val) {
+            return val instanceof PDFImageRegistry;
+        }
+
+        @Override
+        public String toString() {
+            return "Wabit PDF image registry";
+        }
+    };
+
+    /**
+     * The images already embedded in the PDF. Each {@link WabitImage} can be
+     * embedded at more than one pixel size if it is placed in content boxes of
+     * different sizes.
+     */
+    private final Map<WabitImage, Map<Dimension, Image>> embeddedImages =
+        new HashMap<WabitImage, Map<Dimension, Image>>();
+
+    /**
+     * The height of the PDF page in points. This is needed to convert from the
+     * Java2D coordinate system to the PDF coordinate system which has its
+     * origin at the bottom of the page.
+     */
+    private final float pageHeight;
+
+    /**
+     * @param pageHeight
+     *            The height of the pages in the PDF document in points.
+     */
+    public PDFImageRegistry(float pageHeight) {
+        this.pageHeight = pageHeight;
+    }
+
+    /**
+     * Returns the registry set on the given graphics as the {@link #KEY}
+     * rendering hint or null if the graphics is not drawing to a PDF that is
+     * sharing its images.
+     */
+    public static PDFImageRegistry getRegistry(Graphics2D g) {
+        if (!(g instanceof PdfGraphics2D)) return null;
+        Object registry = g.getRenderingHint(KEY);
+        if (registry instanceof PDFImageRegistry) {
+            return (PDFImageRegistry) registry;
+        }
+        return null;
+    }
+
+    /**
+     * Draws the scaled image in the given rectangle of the PDF graphics. The
+     * image will only be embedded in the PDF the first time an image of the
+     * given {@link WabitImage} and size is drawn.
+     *
+     * @param g
+     *            The graphics of the PDF this registry was created for.
+     * @param wabitImage
+     *            The Wabit image the scaled image was created from. Used to
+     *            identify the image.
+     * @param scaledImage
+     *            The image to draw.
+     * @param x
+     *            The x position of the image in user space.
+     * @param y
+     *            The y position of the image in user space.
+     * @param width
+     *            The width of the image in user space.
+     * @param height
+     *            The height of the image in user space.
+     * @return True if the image was drawn, false if the image could not be
+     *         added to the PDF and the caller should draw it normally.
+     */
+    public boolean drawImage(Graphics2D g, WabitImage wabitImage, BufferedImage scaledImage,
+            double x, double y, double width, double height) {
+        if (!(g instanceof PdfGraphics2D)) return false;
+        PdfGraphics2D pdfGraphics = (PdfGraphics2D) g;
+
+        Image pdfImage;
+        try {
+            pdfImage = getPDFImage(wabitImage, scaledImage);
+        } catch (BadElementException e) {
+            logger.error("Could not embed the image " + wabitImage.getName() + " in the PDF", e);
+            return false;
+        } catch (IOException e) {
+            logger.error("Could not embed the image " + wabitImage.getName() + " in the PDF", e);
+            return false;
+        }
+
+        //This is the same transform PdfGraphics2D uses to place images: flip the
+        //y axis to PDF space, apply the current graphics transform and map the
+        //unit square of the image onto the target rectangle.
+        AffineTransform at = new AffineTransform(1, 0, 0, -1, 0, pageHeight);
+        at.concatenate(pdfGraphics.getTransform());
+        at.translate(x, y + height);
+        at.scale(width, -height);
+        double[] matrix = new double[6];
+        at.getMatrix(matrix);
+        try {
+            pdfGraphics.getContent().addImage(pdfImage,
+                    (float) matrix[0], (float) matrix[1], (float) matrix[2],
+                    (float) matrix[3], (float) matrix[4], (float) matrix[5]);
+        } catch (DocumentException e) {
+            logger.error("Could not place the image " + wabitImage.getName() + " in the PDF", e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the iText image for the given scaled image. The same iText
+     * image is returned for every call with a {@link WabitImage} and size
+     * that has been seen before which lets iText write the image to the
+     * document only once.
+     */
+    private synchronized Image getPDFImage(WabitImage wabitImage, BufferedImage scaledImage)
+            throws BadElementException, IOException {
+        Map<Dimension, Image> imagesBySize = embeddedImages.get(wabitImage);
+        if (imagesBySize == null) {
+            imagesBySize = new HashMap<Dimension, Image>();
+            embeddedImages.put(wabitImage, imagesBySize);
+        }
+        Dimension size = new Dimension(scaledImage.getWidth(), scaledImage.getHeight());
+        Image pdfImage = imagesBySize.get(size);
+        if (pdfImage == null) {
+            pdfImage = Image.getInstance(scaledImage, null);
+            imagesBySize.put(size, pdfImage);
+        }
+        return pdfImage;
+    }
+}
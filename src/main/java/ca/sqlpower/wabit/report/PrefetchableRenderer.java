@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.wabit.report;
+
+import java.util.List;
+
+import ca.sqlpower.wabit.rs.ResultSetHandle;
+
+/**
+ * A {@link ReportContentRenderer} whose content comes from executing a query.
+ * Before a {@link Layout} is printed every renderer of this type is asked to
+ * start executing its query in the background so all of the queries on the
+ * page run at the same time instead of one after the other as each content
+ * box is printed.
+ */
+public interface PrefetchableRenderer extends ReportContentRenderer {
+
+	/**
+	 * Starts executing the queries this renderer needs to print its content
+	 * without waiting for them to finish. The queries must be executed with
+	 * the variables the renderer would use if it were printed, which are
+	 * normally the selector values of the report it is in. A query whose
+	 * current execution is still running or has finished is not executed
+	 * again unless the renderer's content has changed since.
+	 *
+	 * @return The handles of the executions the renderer will print from,
+	 *         whether they were started by this call or are already running
+	 *         or finished. An empty list if the renderer does not print from
+	 *         a handle.
+	 */
+	List<ResultSetHandle> startPrefetch();
+
+	/**
+	 * Called after every handle returned by {@link #startPrefetch()} has
+	 * finished executing and before the layout starts printing. The renderer
+	 * must use the prefetched results when it is printed instead of
+	 * executing its query again.
+	 */
+	void prefetchComplete();
+}
@@ -39,6 +39,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 import javax.annotation.Nonnull;
 
@@ -59,8 +60,11 @@ import ca.sqlpower.wabit.WabitObject;
 import ca.sqlpower.wabit.WabitUtils;
 import ca.sqlpower.wabit.report.ColumnInfo.GroupAndBreak;
 import ca.sqlpower.wabit.report.resultset.ReportPositionRenderer;
+import ca.sqlpower.wabit.report.resultset.ReportTotals;
 import ca.sqlpower.wabit.report.resultset.ResultSetCell;
 import ca.sqlpower.wabit.report.selectors.ContextAware;
+import ca.sqlpower.wabit.rs.CancellationToken;
+import ca.sqlpower.wabit.rs.ResultSetCursor;
 import ca.sqlpower.wabit.rs.ResultSetEvent;
 import ca.sqlpower.wabit.rs.ResultSetHandle;
 import ca.sqlpower.wabit.rs.ResultSetListener;
@@ -69,6 +73,7 @@ import ca.sqlpower.wabit.rs.ResultSetProducerException;
 import ca.sqlpower.wabit.rs.ResultSetProducerListener;
 import ca.sqlpower.wabit.rs.WabitResultSetProducer;
 import ca.sqlpower.wabit.rs.ResultSetHandle.ResultSetStatus;
+import ca.sqlpower.wabit.rs.ResultSetCursor.Column;
 import ca.sqlpower.wabit.rs.ResultSetHandle.ResultSetType;
 import ca.sqlpower.wabit.rs.query.QueryException;
 
@@ -76,7 +81,7 @@ import ca.sqlpower.wabit.rs.query.QueryException;
  * Renders a JDBC result set using configurable absolute column widths.
  */
 public class ResultSetRenderer extends AbstractWabitObject 
-		implements WabitObjectReportRenderer, ContextAware {
+		implements WabitObjectReportRenderer, ContextAware, PrefetchableRenderer {
     
     private static final Color DRAGGABLE_COL_LINE_COLOUR = new Color(0xcccccc);
     
@@ -175,6 +180,28 @@ public class ResultSetRenderer extends AbstractWabitObject
      * does have a limit to it.
      */
     private final ThreadLocal<List<List<ResultSetCell>>> pageCells = new ThreadLocal<List<List<ResultSetCell>>>();
+
+    /**
+     * The list of rows of the result set the {@link #layoutCursor} and
+     * {@link #layoutTotals} were created from. The layout of the result set is
+     * recreated often, for example when the content box is resized, and these
+     * are kept to avoid sorting the rows and calculating their totals each
+     * time when the rows and the column settings have not changed. The rows of
+     * a result set are only added to while it keeps the same list; rows that
+     * are replaced, such as the rows of a streaming query, come in a new list.
+     * These fields are guarded by {@link #pageCells}.
+     */
+    private List<Object[]> layoutRows;
+
+    /**
+     * The rows of the {@link #layoutRows} in the order they are laid out.
+     */
+    private ResultSetCursor layoutCursor;
+
+    /**
+     * The totals of the rows of the {@link #layoutCursor}.
+     */
+    private ReportTotals layoutTotals;
     
     /**
      * This decides if the grand totals will be printed at the end of a result
@@ -406,6 +433,11 @@ public class ResultSetRenderer extends AbstractWabitObject
     	
     	refresh();
     	
+    	synchronized (pageCells) {
+    		layoutRows = null;
+    		layoutCursor = null;
+    		layoutTotals = null;
+    	}
 		this.resultSetHandle = rsh;
     }
 	
@@ -622,6 +654,28 @@ public class ResultSetRenderer extends AbstractWabitObject
     	}
     }
     
+    public synchronized List<ResultSetHandle> startPrefetch() {
+    	if (resultSetHandle != null && !dirty) {
+    		return Collections.singletonList(resultSetHandle);
+    	}
+    	try {
+    		this.setResultSetHandle(
+    				query.execute(new SPVariableHelper(ResultSetRenderer.this), resultSetListener, true));
+    	} catch (ResultSetProducerException e) {
+    		this.internalError = e;
+    	} finally {
+    		dirty = false;
+    	}
+    	if (resultSetHandle == null) {
+    		return Collections.emptyList();
+    	}
+    	return Collections.singletonList(resultSetHandle);
+    }
+    
+    public void prefetchComplete() {
+    	// The handle is already in place for printing.
+    }
+    
     private boolean renderFailure(
     		Exception failure, 
     		Graphics2D g, 
@@ -704,7 +758,8 @@ public class ResultSetRenderer extends AbstractWabitObject
             	    return false;
             	}
             	
-                maybeCreateResultSetLayout(g, rs, width, height);
+                maybeCreateResultSetLayout(g, rs, width, height, 
+                		this.resultSetHandle.getCancellationToken());
                 
             } catch (SQLException e) {
             	List<String> message = new ArrayList<String>();
@@ -788,41 +843,73 @@ public class ResultSetRenderer extends AbstractWabitObject
      *            a way that will have text clipped by the bounding
      *            {@link ContentBox}.
      * @param rs
-     *            This result set will be iterated over to lay out the result
-     *            set. If the result set pointer should not be changed a copy of
-     *            the result set, using a CachedRowSet or calling createShared
-     *            on a {@link CachedRowSet} should be passed instead. The result
-     *            set should also be sorted by the columns defined as breaks to
-     *            avoid sections that are identified by the same section.
+     *            The result set to lay out. Its cursor will not be moved. The
+     *            rows are sorted by the columns defined as breaks and groups
+     *            before they are laid out. The sorted rows and their totals
+     *            are kept and reused until the rows or the column settings
+     *            change.
+     * @param cancellationToken
+     *            The token of the handle the result set came from. If the
+     *            handle is cancelled while its rows are being laid out the
+     *            layout is abandoned and no pages are defined.
      */
     private void maybeCreateResultSetLayout(
     		Graphics2D g, 
     		CachedRowSet rs, 
     		double width,
-    		double height) throws SQLException {
+    		double height,
+    		CancellationToken cancellationToken) throws SQLException {
     	
     	synchronized (pageCells) {
     		if (pageCells.get() != null) return; 
 		}
         
-    	RowComparator comparator = new RowComparator();
-    	for (int i = 0; i < getColumnInfoList().size(); i++) {
-    	    if (!getColumnInfoList().get(i).getWillGroupOrBreak().equals(GroupAndBreak.NONE)) {
-    	        comparator.addSortColumn(i + 1, true);
-    	    }
+    	final List<ColumnInfo> columnInfoList = getColumnInfoList();
+    	List<Object[]> rows;
+    	int rowCount;
+    	synchronized (rs) {
+    		rows = rs.getData();
+    		rowCount = rows == null ? 0 : rows.size();
     	}
-    	
-    	CachedRowSet rsCopy = rs.sort(comparator);
-    	
-    	// Little validation. In some rare cases, the rending is started
-    	// while the columns are still being put in. Should that happens,
-    	// return and wait. The next RS event will trigger a new rending anyways.
-    	if (rsCopy.getMetaData().getColumnCount() != getColumnInfoList().size()) {
-    		logger.debug("Stopping rending. Columns are out of sync.");
-    		return;
+    	boolean totalsStale = layoutTotals == null || layoutRows != rows 
+    			|| !layoutTotals.matches(columnInfoList);
+    	if (totalsStale || layoutCursor.getRowCount() != rowCount) {
+    		RowComparator comparator = new RowComparator();
+    		boolean sorted = false;
+    		for (int i = 0; i < columnInfoList.size(); i++) {
+    			if (!columnInfoList.get(i).getWillGroupOrBreak().equals(GroupAndBreak.NONE)) {
+    				comparator.addSortColumn(i + 1, true);
+    				sorted = true;
+    			}
+    		}
+    		
+    		// Without sorting the rows stay in the order they arrived in so the
+    		// totals of rows added to the same list only need the new rows
+    		// added to them.
+    		ResultSetCursor cursor;
+    		if (sorted) {
+    			cursor = ResultSetCursor.create(rs.sort(comparator));
+    		} else {
+    			cursor = ResultSetCursor.create(rs);
+    		}
+    		
+    		// Little validation. In some rare cases, the rending is started
+    		// while the columns are still being put in. Should that happens,
+    		// return and wait. The next RS event will trigger a new rending anyways.
+    		if (cursor.getColumnCount() != columnInfoList.size()) {
+    			logger.debug("Stopping rending. Columns are out of sync.");
+    			return;
+    		}
+    		
+    		if (totalsStale || sorted) {
+    			layoutTotals = new ReportTotals(columnInfoList, cursor);
+    		}
+    		layoutTotals.update(cursor);
+    		layoutCursor = cursor;
+    		layoutRows = rows;
     	}
     	
-	    autosizeColumnInformation(g, width, height, rsCopy);
+	    autosizeColumnInformation(g, width, height, layoutCursor);
 	    Graphics2D zeroClipGraphics = (Graphics2D) g.create(0, 0, 0, 0);
     	
         final ReportPositionRenderer reportPositionRenderer = 
@@ -835,15 +922,22 @@ public class ResultSetRenderer extends AbstractWabitObject
         				(int) getParent().getWidth(), 
         				nullString);
         
-        List<List<ResultSetCell>> layout = 
-        		reportPositionRenderer.createResultSetLayout(
-        				zeroClipGraphics, 
-        				rsCopy, 
-        				getColumnInfoList(), 
-        				height, 
-        				isPrintingGrandTotals());
-        
-        zeroClipGraphics.dispose();
+        List<List<ResultSetCell>> layout;
+        try {
+        	layout = reportPositionRenderer.createResultSetLayout(
+        			zeroClipGraphics, 
+        			layoutCursor, 
+        			layoutTotals,
+        			columnInfoList, 
+        			height, 
+        			isPrintingGrandTotals(),
+        			cancellationToken);
+        } catch (CancellationException e) {
+        	logger.debug("The layout was abandoned because its results were superseded");
+        	return;
+        } finally {
+        	zeroClipGraphics.dispose();
+        }
         
         synchronized (pageCells) {
         	pageCells.set(layout);
@@ -860,28 +954,29 @@ public class ResultSetRenderer extends AbstractWabitObject
     		Graphics2D g,
     		double width,
     		double height, 
-            ResultSet rs) throws SQLException 
+            ResultSetCursor cursor) throws SQLException 
     {
         FontMetrics fm = g.getFontMetrics(getBodyFont());
         for (ColumnInfo ci : columnInfo) {
         	if (ci.getWidth() < 0) {
-        		int currentRow = rs.getRow();
-        		rs.beforeFirst();
-        		int columnIndex = columnInfo.indexOf(ci) + 1;
-        		double maxWidth = fm.getStringBounds(rs.getMetaData().getColumnName(columnIndex), g).getWidth();
+        		int currentRow = cursor.getPosition();
+        		cursor.beforeFirst();
+        		Column column = cursor.getColumn(columnInfo.indexOf(ci) + 1);
+        		double maxWidth = fm.getStringBounds(column.getName(), g).getWidth();
         		double currentHeight = 0;
-        		while (rs.next() && currentHeight < height) {
-        			if (rs.getString(columnIndex) == null) {
+        		while (cursor.next() && currentHeight < height) {
+        			String value = column.getString();
+        			if (value == null) {
         				continue;
         			}
-        			Rectangle2D stringBounds = fm.getStringBounds(rs.getString(columnIndex), g);
+        			Rectangle2D stringBounds = fm.getStringBounds(value, g);
         			double stringLength = stringBounds.getWidth();
         			currentHeight += stringBounds.getHeight();
         			if (stringLength > maxWidth) {
         				maxWidth = stringLength;
         			}
         		}
-        		rs.absolute(currentRow);
+        		cursor.setPosition(currentRow);
         		ci.setWidth((int) maxWidth + COLUMN_WIDTH_BUFFER);
         	}
         }
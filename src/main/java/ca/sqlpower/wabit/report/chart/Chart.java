@@ -26,6 +26,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -42,15 +43,19 @@ import ca.sqlpower.swingui.ColourScheme;
 import ca.sqlpower.util.WebColour;
 import ca.sqlpower.wabit.AbstractWabitObject;
 import ca.sqlpower.wabit.WabitObject;
+import ca.sqlpower.wabit.rs.CancellationToken;
 import ca.sqlpower.wabit.rs.ResultSetEvent;
 import ca.sqlpower.wabit.rs.ResultSetHandle;
+import ca.sqlpower.wabit.rs.ResultSetHandle.ResultSetStatus;
 import ca.sqlpower.wabit.rs.ResultSetListener;
 import ca.sqlpower.wabit.rs.ResultSetProducerEvent;
 import ca.sqlpower.wabit.rs.ResultSetProducerException;
 import ca.sqlpower.wabit.rs.ResultSetProducerListener;
+import ca.sqlpower.wabit.rs.WabitCachedRowSet;
 import ca.sqlpower.wabit.rs.WabitResultSetProducer;
 import ca.sqlpower.wabit.rs.olap.OlapQuery;
 import ca.sqlpower.wabit.rs.olap.RepeatedMember;
+import ca.sqlpower.wabit.rs.query.QueryCache;
 
 
 /**
@@ -133,6 +138,7 @@ public class Chart extends AbstractWabitObject {
     private final ResultSetProducerListener resultSetProducerListener = new ResultSetProducerListener() {
 		public void structureChanged(ResultSetProducerEvent evt) {
 			needsRefresh = true;
+			aggregateQueryFailed = false;
 		}
 		public void executionStopped(ResultSetProducerEvent evt) {
 			// not interested
@@ -155,6 +161,45 @@ public class Chart extends AbstractWabitObject {
      */
     private ResultSetHandle resultSetHandle;
 
+    /**
+     * The way the series values of rows in the same category are combined in
+     * category charts.
+     */
+    private ChartAggregate aggregate = ChartAggregate.SUM;
+
+    /**
+     * The way the points of XY charts are reduced to the number of points
+     * that can be told apart at the width the chart is drawn at.
+     */
+    private ChartDownsampling downsampling = ChartDownsampling.LARGEST_TRIANGLE;
+
+    /**
+     * If true the rows of a relational query are grouped and aggregated by
+     * the database instead of after all of them are retrieved. This is only
+     * done for category charts and is set for the copies of a chart that
+     * reports render. Editors show the rows of the query and do not use it.
+     * 
+     * @see #createAggregateQuery()
+     */
+    private boolean aggregateInDatabase;
+
+    /**
+     * The handle of the current execution of the query that aggregates the
+     * rows of this chart's query in the database. This is null if the current
+     * {@link #resultSetHandle} is an execution of the query itself. The
+     * columns of an aggregated result set are not synchronized with this
+     * chart's columns as it only contains the columns the chart uses.
+     */
+    private ResultSetHandle aggregatedHandle;
+
+    /**
+     * Set when executing the query that aggregates the rows in the database
+     * fails, which happens if the database cannot run the query built around
+     * this chart's query. The rows are then aggregated by the chart until the
+     * structure of the query changes.
+     */
+    private boolean aggregateQueryFailed;
+
     /**
      * Rotation amount, in degrees, of the text along the X axis. 0 means
      * horizontal; negative values mean increasing counterclockwise rotation;
@@ -202,6 +247,35 @@ public class Chart extends AbstractWabitObject {
 		};
 	};
 
+    /**
+     * Listens to the current ResultSetHandle when it is an execution of the
+     * query that aggregates the rows in the database. The columns of these
+     * result sets are not synchronized with the chart's columns. If the
+     * execution fails the chart is refreshed with the query's own rows.
+     */
+    private final ResultSetListener aggregatedResultSetListener = new ResultSetListener() {
+    	public void newData(ResultSetEvent evt) {
+    		fireDataChangedEvent();
+    	}
+    	public void executionComplete(ResultSetEvent evt) {
+    		ResultSetHandle handle = evt.getSourceHandle();
+    		if (handle.getStatus() == ResultSetStatus.ERROR) {
+    			// A synchronous execution is checked by refresh itself.
+    			if (handle != resultSetHandle) return;
+    			logger.debug("Aggregating the rows of the chart's query in the database failed, " +
+    					"charting the rows of the query instead", handle.getException());
+    			aggregateQueryFailed = true;
+    			refresh();
+    			return;
+    		}
+    		logger.debug("Obtained new aggregated data for chart");
+    		fireDataChangedEvent();
+    	}
+    	public void executionStarted(ResultSetEvent evt) {
+    		// don't care.
+    	}
+    };
+
     /**
      * Creates a new chart with a new unique ID.
      */
@@ -228,8 +302,27 @@ public class Chart extends AbstractWabitObject {
      * @param variablesContextSource The source of variables to use.
      */
     public Chart(Chart chartToCopy, SPObject variablesContextSource) {
+    	this(chartToCopy, variablesContextSource, false);
+    }
+
+    /**
+     * Creates a new chart, based on another one, but sets it's context at the
+     * same time. Used to report renderers.
+     * 
+     * @param chartToCopy
+     *            The original chart to copy.
+     * @param variablesContextSource
+     *            The source of variables to use.
+     * @param aggregateInDatabase
+     *            If true the rows of a relational query of a category chart
+     *            are grouped and aggregated by the database. The result sets
+     *            of the copy will then only contain the columns the chart
+     *            uses.
+     */
+    public Chart(Chart chartToCopy, SPObject variablesContextSource, boolean aggregateInDatabase) {
     	this(chartToCopy);
 		this.variablesContextSource = variablesContextSource;
+		this.aggregateInDatabase = aggregateInDatabase;
     }
     
     /**
@@ -243,6 +336,8 @@ public class Chart extends AbstractWabitObject {
     	this.yaxisName = chartToCopy.yaxisName;
     	this.type = chartToCopy.type;
     	this.legendPosition = chartToCopy.legendPosition;
+    	this.aggregate = chartToCopy.aggregate;
+    	this.downsampling = chartToCopy.downsampling;
     	
     	for (ChartColumn column : chartToCopy.chartColumns) {
     		this.chartColumns.add(new ChartColumn(column));
@@ -293,7 +388,7 @@ public class Chart extends AbstractWabitObject {
         if (resultSetFilter == null) {
             return rs;
         } else {
-            CachedRowSet filteredRs = new CachedRowSet();
+            CachedRowSet filteredRs = new WabitCachedRowSet();
             filteredRs.populate(rs, resultSetFilter);
             return filteredRs;
         }
@@ -327,6 +422,38 @@ public class Chart extends AbstractWabitObject {
     	}
     }
     
+    /**
+     * Returns the handle of the most recent execution of this chart's query.
+     * This will be null if the chart has not been refreshed yet.
+     */
+    public ResultSetHandle getResultSetHandle() {
+    	return resultSetHandle;
+    }
+
+    /**
+     * Synchronizes the column identifiers of this chart with the current
+     * result set of its query. This is normally done when the query's
+     * execution completes but that notification is delivered on the Swing
+     * event thread; this lets code that waited for the execution on another
+     * thread update the chart right away.
+     */
+    public void syncWithResultSet() {
+    	if (resultSetHandle != null) {
+    		syncWithHandle(resultSetHandle);
+    	}
+    }
+
+    /**
+     * Synchronizes the column identifiers of this chart with the result set of
+     * the given handle unless it is the result of aggregating the rows in the
+     * database.
+     */
+    private void syncWithHandle(ResultSetHandle handle) {
+    	if (handle != aggregatedHandle) {
+    		syncWithRs(handle.getResultSet());
+    	}
+    }
+    
     private void syncWithRs(ResultSet rs) {
     	try {
         	synchronized (chartColumns) {
@@ -447,20 +574,36 @@ public class Chart extends AbstractWabitObject {
                 return null;
             }
             
+            ResultSetHandle handle = resultSetHandle;
+            boolean aggregated = handle != null && handle == aggregatedHandle;
+            
             // Need to update chart columns from the new ResultSet before using them.
-            syncWithRs(rs);
+            if (!aggregated) {
+            	syncWithRs(rs);
+            }
+            
+            CancellationToken cancellationToken = 
+                handle == null ? new CancellationToken() : handle.getCancellationToken();
 
             switch (type.getDatasetType()) {
             case CATEGORY:
+                // Each category is a single row once aggregated by the database.
                 return DatasetUtil.createCategoryDataset(
                         chartColumns, rs,
-                        findRoleColumns(ColumnRole.CATEGORY));
+                        findRoleColumns(ColumnRole.CATEGORY),
+                        aggregated ? ChartAggregate.SUM : aggregate,
+                        cancellationToken);
             case XY:
                 return DatasetUtil.createSeriesCollection(
-                        chartColumns, rs);
+                        chartColumns, rs, cancellationToken);
             default :
                 throw new IllegalStateException("Unknown chart type " + type);
             }
+        } catch (CancellationException e) {
+            // The chart was refreshed while the dataset was being built, the
+            // new results will be charted when they arrive.
+            logger.debug("Returning null data set because the result set was superseded");
+            return null;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -521,6 +664,45 @@ public class Chart extends AbstractWabitObject {
         firePropertyChange("type", oldType, newType);
     }
     
+    /**
+     * Returns the way the series values of rows in the same category are
+     * combined in category charts.
+     */
+    public ChartAggregate getAggregate() {
+        return aggregate;
+    }
+
+    /**
+     * Sets the way the series values of rows in the same category are
+     * combined in category charts.
+     */
+    public void setAggregate(@Nonnull ChartAggregate aggregate) {
+        ChartAggregate oldValue = this.aggregate;
+        this.aggregate = aggregate;
+        if (aggregateInDatabase) {
+            needsRefresh = true;
+        }
+        firePropertyChange("aggregate", oldValue, aggregate);
+    }
+    
+    /**
+     * Returns the way the points of XY charts are reduced to the number of
+     * points that can be told apart at the width the chart is drawn at.
+     */
+    public ChartDownsampling getDownsampling() {
+        return downsampling;
+    }
+
+    /**
+     * Sets the way the points of XY charts are reduced to the number of
+     * points that can be told apart at the width the chart is drawn at.
+     */
+    public void setDownsampling(@Nonnull ChartDownsampling downsampling) {
+        ChartDownsampling oldValue = this.downsampling;
+        this.downsampling = downsampling;
+        firePropertyChange("downsampling", oldValue, downsampling);
+    }
+    
     public LegendPosition getLegendPosition() {
         return legendPosition;
     }
@@ -821,6 +1003,7 @@ public class Chart extends AbstractWabitObject {
         
         if (resultSetHandle != null) {
     		resultSetHandle.removeResultSetListener(resultSetListener);
+    		resultSetHandle.removeResultSetListener(aggregatedResultSetListener);
     		resultSetHandle.cancel();
     	}
         
@@ -840,6 +1023,7 @@ public class Chart extends AbstractWabitObject {
     	
     	if (resultSetHandle != null) {
             resultSetHandle.removeResultSetListener(resultSetListener);
+            resultSetHandle.removeResultSetListener(aggregatedResultSetListener);
             resultSetHandle.cancel();
         }
     	
@@ -848,17 +1032,32 @@ public class Chart extends AbstractWabitObject {
         		if (Chart.this.variablesContextSource == null) {
         			throw new AssertionError("Program error. Chart objects need a variables context defined.");
         		}
-        		this.resultSetHandle = 
-        				query.execute(
-            					new SPVariableHelper(Chart.this.variablesContextSource), 
-            					Chart.this.resultSetListener,
-            					async);
+        		SPVariableHelper variablesHelper = 
+        			new SPVariableHelper(Chart.this.variablesContextSource);
+        		ResultSetHandle handle = null;
+        		String aggregateQuery = createAggregateQuery();
+        		if (aggregateQuery != null) {
+        			handle = ((QueryCache) query).executeDerivedQuery(
+        					aggregateQuery, variablesHelper, aggregatedResultSetListener, async, null);
+        			if (handle.getStatus() == ResultSetStatus.ERROR) {
+        				logger.debug("Aggregating the rows of the chart's query in the database failed, " +
+        						"charting the rows of the query instead", handle.getException());
+        				handle.removeResultSetListener(aggregatedResultSetListener);
+        				aggregateQueryFailed = true;
+        				handle = null;
+        			}
+        		}
+        		aggregatedHandle = handle;
+        		if (handle == null) {
+        			handle = query.execute(variablesHelper, Chart.this.resultSetListener, async);
+        		}
+        		this.resultSetHandle = handle;
         		
         		// Need to disable the refresh flag before getting result set
         		// or else infinite recursion could occur.
         		needsRefresh = false;
         		ResultSet rs = getResultSet(async);
-        		if (rs != null) {
+        		if (rs != null && handle != aggregatedHandle) {
         			syncWithRs(rs);
         		}
         	}
@@ -869,6 +1068,26 @@ public class Chart extends AbstractWabitObject {
 		}
     }
     
+    /**
+     * Returns the query that groups the rows of this chart's query by its
+     * category columns and aggregates its series columns in the database, or
+     * null if the rows have to be aggregated by this chart. The rows are
+     * aggregated by the chart for OLAP and streaming queries, charts that
+     * are not category charts or do not have category and series columns
+     * yet, queries that cannot be wrapped in another query, such as
+     * modified SQL that is not a single SELECT statement, and queries with
+     * an ORDER BY, whose category order would be lost. When the rows are
+     * aggregated in the database the query's row limit limits the number of
+     * categories instead of the number of rows that are aggregated.
+     */
+    private String createAggregateQuery() {
+    	if (!aggregateInDatabase || aggregateQueryFailed) return null;
+    	if (!(query instanceof QueryCache) || query.isStreaming()) return null;
+    	if (type == null || type.getDatasetType() != DatasetType.CATEGORY) return null;
+    	return ChartUtil.createAggregateQuery(((QueryCache) query).generateQuery(), 
+    			findRoleColumns(ColumnRole.CATEGORY), findRoleColumns(ColumnRole.SERIES), aggregate);
+    }
+    
     /**
      * Tells if this chart is a streaming chart or not.
      */
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.report.chart;
+
+/**
+ * The ways the series values of the rows that fall in the same category of a
+ * category chart can be combined into the single value that is charted.
+ * Null values are ignored by all of the aggregates, as they are in SQL.
+ */
+public enum ChartAggregate {
+    SUM("Sum"),
+    AVG("Average"),
+    MIN("Minimum"),
+    MAX("Maximum"),
+    COUNT("Count");
+    
+    /**
+     * The name of this aggregate shown to users.
+     */
+    private final String displayName;
+    
+    private ChartAggregate(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Returns the SQL expression that applies this aggregate to the given
+     * column expression.
+     */
+    public String toSql(String column) {
+        return name() + "(" + column + ")";
+    }
+    
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
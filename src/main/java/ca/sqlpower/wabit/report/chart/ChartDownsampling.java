@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.report.chart;
+
+/**
+ * The ways the points of each series of an XY chart can be reduced to the
+ * number of points that can be told apart at the width the chart is drawn at.
+ * Drawing a line through a million points on a plot a few hundred pixels wide
+ * takes a long time and makes large documents, but looks the same as drawing
+ * a line through the right few thousand of them.
+ */
+public enum ChartDownsampling {
+
+    /**
+     * All of the points are drawn.
+     */
+    NONE("None") {
+        @Override
+        int[] selectPoints(double[] x, double[] y, int maxPoints) {
+            return null;
+        }
+    },
+
+    /**
+     * The points are split into buckets and the point of each bucket that
+     * forms the largest triangle with the points chosen in the buckets next to
+     * it is kept. This keeps the overall shape of the line, including its
+     * peaks, with the points spread evenly along it.
+     */
+    LARGEST_TRIANGLE("Largest triangle") {
+        @Override
+        int[] selectPoints(double[] x, double[] y, int maxPoints) {
+            return Downsampler.largestTriangleThreeBuckets(x, y, maxPoints);
+        }
+    },
+
+    /**
+     * The points are split into buckets and the points with the lowest and
+     * highest value of each bucket are kept. This keeps every extreme of the
+     * line.
+     */
+    MIN_MAX("Minimum and maximum") {
+        @Override
+        int[] selectPoints(double[] x, double[] y, int maxPoints) {
+            return Downsampler.minMax(y, maxPoints);
+        }
+    };
+    
+    /**
+     * The name of this way of downsampling shown to users.
+     */
+    private final String displayName;
+    
+    private ChartDownsampling(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Chooses the points of one series to draw.
+     * 
+     * @param x
+     *            The x value of each point of the series in the order they are
+     *            drawn.
+     * @param y
+     *            The y value of each point of the series.
+     * @param maxPoints
+     *            The largest number of points to choose.
+     * @return The indexes of the chosen points in increasing order, or null if
+     *         all of the points should be drawn.
+     */
+    abstract int[] selectPoints(double[] x, double[] y, int maxPoints);
+    
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
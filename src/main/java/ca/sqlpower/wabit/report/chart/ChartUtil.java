@@ -24,7 +24,14 @@ import java.util.List;
 
 import javax.annotation.Nonnull;
 
+import org.jfree.data.time.TimePeriodValues;
+import org.jfree.data.time.TimePeriodValuesCollection;
+import org.jfree.data.xy.XYDataset;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+
 import ca.sqlpower.wabit.report.chart.ChartColumn.DataType;
+import ca.sqlpower.wabit.rs.SubqueryUtil;
 import ca.sqlpower.wabit.rs.olap.OlapQuery;
 
 /**
@@ -133,4 +140,128 @@ public class ChartUtil {
             throw new UnsupportedOperationException("Unknown chart type " + chart.getType());
         }
     }
+
+    /**
+     * Creates a query that groups the rows of the given query by the category
+     * columns and applies the aggregate to each series column, so that the
+     * database only returns one row for each category of a chart. The
+     * resulting columns have the same names as the columns of the given
+     * query, and the rows are ordered by the category columns.
+     * <p>
+     * Queries that order their own rows are not wrapped, as the order of
+     * their categories, such as months or a ranking, would be lost. Their
+     * rows are aggregated by the chart in the order the categories appear.
+     * <p>
+     * A row limit applied to the returned query limits the number of
+     * categories, not the number of rows of the given query that are
+     * aggregated. With the ordering the chart shows the first categories
+     * completely instead of every category computed from some of the rows.
+     * 
+     * @param sql
+     *            The query whose rows should be aggregated. This must be a
+     *            single SELECT statement.
+     * @param categoryColumns
+     *            The columns to group the rows by.
+     * @param seriesColumns
+     *            The columns to aggregate.
+     * @param aggregate
+     *            The aggregate to apply to the series columns.
+     * @return The aggregating query, or null if the given query cannot be
+     *         wrapped in one. This is the case if it is not a single SELECT
+     *         statement, if it has an ORDER BY or if one of the column names
+     *         would need quoting.
+     */
+    static String createAggregateQuery(String sql, List<ChartColumn> categoryColumns,
+            List<ChartColumn> seriesColumns, @Nonnull ChartAggregate aggregate) {
+        if (categoryColumns.isEmpty() || seriesColumns.isEmpty()) return null;
+        String innerSql = SubqueryUtil.toSubquery(sql);
+        if (innerSql == null || SubqueryUtil.hasOrderBy(innerSql)) return null;
+        
+        StringBuilder groupBy = new StringBuilder();
+        for (ChartColumn column : categoryColumns) {
+            if (!SubqueryUtil.isSimpleIdentifier(column.getColumnName())) return null;
+            if (groupBy.length() > 0) {
+                groupBy.append(", ");
+            }
+            groupBy.append(column.getColumnName());
+        }
+        StringBuilder select = new StringBuilder(groupBy);
+        for (ChartColumn column : seriesColumns) {
+            if (!SubqueryUtil.isSimpleIdentifier(column.getColumnName())) return null;
+            select.append(", ").append(aggregate.toSql(column.getColumnName()))
+                .append(" AS ").append(column.getColumnName());
+        }
+        
+        return SubqueryUtil.selectFrom(select.toString(), innerSql, "chart_rows") + 
+            " GROUP BY " + groupBy + " ORDER BY " + groupBy;
+    }
+
+    /**
+     * Returns a copy of the given dataset with at most maxPoints points in each
+     * series, chosen by the given way of downsampling. Series that already
+     * have few enough points are copied as they are. Only the datasets created
+     * for XY charts can be downsampled; other datasets are returned unchanged.
+     * 
+     * @param dataset
+     *            The dataset to downsample.
+     * @param downsampling
+     *            The way to choose the points to keep.
+     * @param maxPoints
+     *            The largest number of points to keep in each series. This is
+     *            normally based on the width the chart is drawn at.
+     * @return A dataset of the same type as the given dataset, or the given
+     *         dataset if no series has more than maxPoints points.
+     */
+    public static XYDataset downsample(@Nonnull XYDataset dataset, 
+            @Nonnull ChartDownsampling downsampling, int maxPoints) {
+        if (!(dataset instanceof XYSeriesCollection) 
+                && !(dataset instanceof TimePeriodValuesCollection)) {
+            return dataset;
+        }
+        boolean tooManyPoints = false;
+        for (int series = 0; series < dataset.getSeriesCount(); series++) {
+            if (dataset.getItemCount(series) > maxPoints) {
+                tooManyPoints = true;
+                break;
+            }
+        }
+        if (!tooManyPoints || downsampling == ChartDownsampling.NONE) return dataset;
+        
+        XYSeriesCollection xyCollection = new XYSeriesCollection();
+        TimePeriodValuesCollection timeCollection = new TimePeriodValuesCollection();
+        for (int series = 0; series < dataset.getSeriesCount(); series++) {
+            int itemCount = dataset.getItemCount(series);
+            double[] x = new double[itemCount];
+            double[] y = new double[itemCount];
+            for (int i = 0; i < itemCount; i++) {
+                x[i] = dataset.getXValue(series, i);
+                y[i] = dataset.getYValue(series, i);
+            }
+            int[] selected = downsampling.selectPoints(x, y, maxPoints);
+            if (dataset instanceof XYSeriesCollection) {
+                XYSeries original = ((XYSeriesCollection) dataset).getSeries(series);
+                XYSeries sampled = new XYSeries(original.getKey(), 
+                        original.getAutoSort(), original.getAllowDuplicateXValues());
+                for (int i = 0; i < (selected == null ? itemCount : selected.length); i++) {
+                    int item = selected == null ? i : selected[i];
+                    sampled.add(original.getDataItem(item), false);
+                }
+                xyCollection.addSeries(sampled);
+            } else {
+                TimePeriodValues original = ((TimePeriodValuesCollection) dataset).getSeries(series);
+                TimePeriodValues sampled = new TimePeriodValues(original.getKey().toString());
+                for (int i = 0; i < (selected == null ? itemCount : selected.length); i++) {
+                    int item = selected == null ? i : selected[i];
+                    sampled.add(original.getDataItem(item));
+                }
+                timeCollection.addSeries(sampled);
+            }
+        }
+        if (dataset instanceof XYSeriesCollection) {
+            return xyCollection;
+        } else {
+            timeCollection.setXPosition(((TimePeriodValuesCollection) dataset).getXPosition());
+            return timeCollection;
+        }
+    }
 }
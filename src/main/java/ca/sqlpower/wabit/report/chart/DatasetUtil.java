@@ -23,7 +23,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.jfree.data.category.CategoryDataset;
@@ -36,6 +40,9 @@ import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
 
 import ca.sqlpower.sql.SQL;
+import ca.sqlpower.wabit.rs.CancellationToken;
+import ca.sqlpower.wabit.rs.ResultSetCursor;
+import ca.sqlpower.wabit.rs.ResultSetCursor.Column;
 
 /**
  * Package private helper class for building datasets from Chart instances.
@@ -45,13 +52,28 @@ import ca.sqlpower.sql.SQL;
 class DatasetUtil {
 
     private static final Logger logger = Logger.getLogger(DatasetUtil.class);
+
+    /**
+     * The number of categories the value arrays of a category dataset are
+     * created for. The arrays double in size as more categories are found.
+     */
+    private static final int INITIAL_CATEGORY_CAPACITY = 64;
+
+    /**
+     * Category datasets with more categories than this are returned as an
+     * {@link IndexedCategoryDataset}. Smaller datasets are returned as a
+     * {@link org.jfree.data.category.DefaultCategoryDataset}, which is slow to
+     * build with many categories but can be animated.
+     */
+    static final int INDEXED_DATASET_THRESHOLD = 1000;
     
     /**
      * This is a helper method for creating a CategoryDataset for relational
      * queries. This method takes in a {@link ResultSet} as well as information
      * about what columns to set as categories and series to make a dataset.
      * This is done differently from the OLAP version as they each get
-     * information in different ways.
+     * information in different ways. The series values of rows in the same
+     * category are summed.
      * <p>
      * This is package private for testing.
      */
@@ -60,6 +82,25 @@ class DatasetUtil {
             ResultSet resultSet, 
             List<ChartColumn> categoryColumnIdentifiers) 
     {
+        return createCategoryDataset(columnNamesInOrder, resultSet, categoryColumnIdentifiers, 
+                ChartAggregate.SUM, new CancellationToken());
+    }
+
+    /**
+     * Creates a CategoryDataset the same way as
+     * {@link #createCategoryDataset(List, ResultSet, List)}, combining the
+     * series values of rows in the same category with the given aggregate and
+     * stopping with a {@link java.util.concurrent.CancellationException} once
+     * the given token of the execution that produced the result set is
+     * cancelled.
+     */
+    static CategoryDataset createCategoryDataset(
+            List<ChartColumn> columnNamesInOrder,
+            ResultSet resultSet, 
+            List<ChartColumn> categoryColumnIdentifiers,
+            ChartAggregate aggregate,
+            CancellationToken cancellationToken) 
+    {
     	
     	try {
 			if (resultSet.getMetaData().getColumnCount() == 0) {
@@ -69,33 +110,6 @@ class DatasetUtil {
 			throw new AssertionError(e1);
 		}
 		
-        //Create a list of unique category row names to label each bar with. Category rows
-        //with the same name are currently summed.
-        List<String> uniqueNamesInCategory = new ArrayList<String>();
-        final List<String> categoryColumnNames = new ArrayList<String>();
-        for (ChartColumn chartCol : categoryColumnIdentifiers) {
-            categoryColumnNames.add(chartCol.getColumnName());
-        }
-        List<Integer> columnIndicies = new ArrayList<Integer>();
-        try {
-            for (String categoryColumnName : categoryColumnNames) {
-                columnIndicies.add(resultSet.findColumn(categoryColumnName));
-            }
-            resultSet.beforeFirst();
-            while (resultSet.next()) {
-                List<String> categoryRowNames = new ArrayList<String>();
-                for (Integer columnIndex : columnIndicies) {
-                    categoryRowNames.add(resultSet.getString(columnIndex));
-                }
-                String categoryRowName = ChartUtil.createCategoryName(categoryRowNames);
-                if (!uniqueNamesInCategory.contains(categoryRowName)) {
-                    uniqueNamesInCategory.add(categoryRowName);
-                }
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-        
         List<String> seriesColumnNames = new ArrayList<String>();
         for (ChartColumn chartCol : columnNamesInOrder) {
             if (chartCol.getRoleInChart().equals(ColumnRole.SERIES)) {
@@ -103,32 +117,109 @@ class DatasetUtil {
             }
         }
         
-        double[][] data = new double[seriesColumnNames.size()][uniqueNamesInCategory.size()];
+        //Create a list of unique category row names to label each bar with. Category rows
+        //with the same name are currently summed.
+        List<String> uniqueNamesInCategory = new ArrayList<String>();
+        Map<String, Integer> categoryIndexes = new HashMap<String, Integer>();
+        double[][] data;
         try {
-            resultSet.beforeFirst();
-            int j = 0;
-            while (resultSet.next()) {
-                List<String> categoryRowNames = new ArrayList<String>();
-                for (Integer columnIndex : columnIndicies) {
-                    categoryRowNames.add(resultSet.getString(columnIndex));
+            ResultSetCursor cursor = ResultSetCursor.create(resultSet);
+            Column[] categoryColumns = new Column[categoryColumnIdentifiers.size()];
+            for (int i = 0; i < categoryColumns.length; i++) {
+                categoryColumns[i] = cursor.getColumn(categoryColumnIdentifiers.get(i).getColumnName());
+            }
+            Column[] seriesColumns = new Column[seriesColumnNames.size()];
+            for (int i = 0; i < seriesColumns.length; i++) {
+                seriesColumns[i] = cursor.getColumn(seriesColumnNames.get(i));
+            }
+            
+            int categoryCapacity = INITIAL_CATEGORY_CAPACITY;
+            data = new double[seriesColumns.length][categoryCapacity];
+            //The number of non-null values aggregated into each entry of data.
+            int[][] counts = new int[seriesColumns.length][categoryCapacity];
+            List<String> categoryRowNames = new ArrayList<String>(categoryColumns.length);
+            Object[][] block = new Object[ResultSetCursor.DEFAULT_BLOCK_SIZE][];
+            int blockSize;
+            while ((blockSize = cursor.nextBlock(block)) > 0) {
+                cancellationToken.throwIfCancelled();
+                for (int i = 0; i < blockSize; i++) {
+                    Object[] row = block[i];
+                    String categoryRowName;
+                    if (categoryColumns.length == 1) {
+                        categoryRowName = String.valueOf(categoryColumns[0].getString(row));
+                    } else {
+                        categoryRowNames.clear();
+                        for (Column column : categoryColumns) {
+                            categoryRowNames.add(column.getString(row));
+                        }
+                        categoryRowName = ChartUtil.createCategoryName(categoryRowNames);
+                    }
+                    Integer categoryIndex = categoryIndexes.get(categoryRowName);
+                    if (categoryIndex == null) {
+                        categoryIndex = uniqueNamesInCategory.size();
+                        categoryIndexes.put(categoryRowName, categoryIndex);
+                        uniqueNamesInCategory.add(categoryRowName);
+                        if (categoryIndex == categoryCapacity) {
+                            categoryCapacity *= 2;
+                            for (int series = 0; series < data.length; series++) {
+                                data[series] = Arrays.copyOf(data[series], categoryCapacity);
+                                counts[series] = Arrays.copyOf(counts[series], categoryCapacity);
+                            }
+                        }
+                    }
+                    for (int series = 0; series < seriesColumns.length; series++) {
+                        if (seriesColumns[series].isNull(row)) continue;
+                        //XXX Getting numeric values as double causes problems for BigDecimal and BigInteger.
+                        double value = seriesColumns[series].getDouble(row);
+                        int count = counts[series][categoryIndex]++;
+                        switch (aggregate) {
+                        case SUM:
+                        case AVG:
+                            data[series][categoryIndex] += value;
+                            break;
+                        case MIN:
+                            if (count == 0 || value < data[series][categoryIndex]) {
+                                data[series][categoryIndex] = value;
+                            }
+                            break;
+                        case MAX:
+                            if (count == 0 || value > data[series][categoryIndex]) {
+                                data[series][categoryIndex] = value;
+                            }
+                            break;
+                        case COUNT:
+                            break;
+                        default:
+                            throw new IllegalStateException("Unknown aggregate " + aggregate);
+                        }
+                    }
                 }
-                String categoryRowName = ChartUtil.createCategoryName(categoryRowNames);
-                for (String colName : seriesColumnNames) {
-                    if (logger.isDebugEnabled() && (seriesColumnNames.indexOf(colName) == -1 || uniqueNamesInCategory.indexOf(categoryRowName) == -1)) {
-                        logger.debug("Index of series " + colName + " is " + seriesColumnNames.indexOf(colName) + ", index of category " + categoryColumnIdentifiers + " is " + uniqueNamesInCategory.indexOf(categoryRowName));
+            }
+            if (aggregate == ChartAggregate.AVG || aggregate == ChartAggregate.COUNT) {
+                for (int series = 0; series < data.length; series++) {
+                    for (int category = 0; category < uniqueNamesInCategory.size(); category++) {
+                        int count = counts[series][category];
+                        if (aggregate == ChartAggregate.COUNT) {
+                            data[series][category] = count;
+                        } else if (count > 0) {
+                            data[series][category] /= count;
+                        }
                     }
-                    //XXX Getting numeric values as double causes problems for BigDecimal and BigInteger.
-                    //XXX Add a property to decide if the values should be summed or aggregated in a 
-                    // different way like max, min, avg, etc
-                    data[seriesColumnNames.indexOf(colName)][uniqueNamesInCategory.indexOf(categoryRowName)] += 
-                        resultSet.getDouble(colName);
                 }
-                j++;
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        CategoryDataset dataset = DatasetUtilities.createCategoryDataset(seriesColumnNames.toArray(new String[]{}), uniqueNamesInCategory.toArray(new String[]{}), data);
+        
+        String[] seriesNames = seriesColumnNames.toArray(new String[seriesColumnNames.size()]);
+        if (uniqueNamesInCategory.size() > INDEXED_DATASET_THRESHOLD) {
+            return new IndexedCategoryDataset(seriesNames, uniqueNamesInCategory, categoryIndexes, data);
+        }
+        for (int series = 0; series < data.length; series++) {
+            data[series] = Arrays.copyOf(data[series], uniqueNamesInCategory.size());
+        }
+        CategoryDataset dataset = DatasetUtilities.createCategoryDataset(seriesNames, 
+                uniqueNamesInCategory.toArray(new String[uniqueNamesInCategory.size()]), data);
         
         return dataset;
     }
@@ -141,6 +232,18 @@ class DatasetUtil {
      */
     static XYDataset createSeriesCollection(
             List<ChartColumn> columnNamesInOrder, ResultSet resultSet) {
+        return createSeriesCollection(columnNamesInOrder, resultSet, new CancellationToken());
+    }
+
+    /**
+     * Creates an XYDataset the same way as
+     * {@link #createSeriesCollection(List, ResultSet)}, stopping with a
+     * {@link java.util.concurrent.CancellationException} once the given token
+     * of the execution that produced the result set is cancelled.
+     */
+    static XYDataset createSeriesCollection(
+            List<ChartColumn> columnNamesInOrder, ResultSet resultSet,
+            CancellationToken cancellationToken) {
         boolean allNumeric = true;
         boolean allDate = true;
         
@@ -152,70 +255,105 @@ class DatasetUtil {
 			throw new AssertionError(e1);
 		}
         
+        //The series names with the x and y column of each series, resolved once.
+        List<String> seriesNames = new ArrayList<String>();
+        List<Column> xColumns = new ArrayList<Column>();
+        List<Column> yColumns = new ArrayList<Column>();
+        ResultSetCursor cursor;
         try {
+            cursor = ResultSetCursor.create(resultSet);
             for (ChartColumn chartCol : columnNamesInOrder) {
                 final ChartColumn xAxisIdentifier = chartCol.getXAxisIdentifier();
                 if (!chartCol.getRoleInChart().equals(ColumnRole.SERIES)
                         || xAxisIdentifier == null) continue;
-                int columnType = resultSet.getMetaData().getColumnType(
-                        resultSet.findColumn(
-                                xAxisIdentifier.getColumnName()));
+                Column xColumn = cursor.getColumn(xAxisIdentifier.getColumnName());
+                int columnType = xColumn.getType();
                 if (columnType != Types.DATE && columnType != Types.TIMESTAMP) {
                     allDate = false;
                 } 
                 if (!SQL.isNumeric(columnType)) {
                     allNumeric = false;
                 }
+                seriesNames.add(chartCol.getColumnName());
+                xColumns.add(xColumn);
+                yColumns.add(cursor.getColumn(chartCol.getColumnName()));
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+        int seriesCount = seriesNames.size();
+        Object[][] block = new Object[ResultSetCursor.DEFAULT_BLOCK_SIZE][];
         if (allNumeric) {
             logger.debug("Creating a new XYSeriesCollection dataset");
-            XYSeriesCollection xyCollection = new XYSeriesCollection();
-            for (ChartColumn chartCol : columnNamesInOrder) {
-                ChartColumn xAxisColIdentifier = chartCol.getXAxisIdentifier();
-                if (!chartCol.getRoleInChart().equals(ColumnRole.SERIES)
-                        || xAxisColIdentifier == null) continue;
-                XYSeries newSeries = new XYSeries(chartCol.getColumnName());
-                try {
-                    resultSet.beforeFirst();
-                    while (resultSet.next()) {
-                        //XXX: need to switch from double to bigDecimal if it is needed.
-                        newSeries.add(resultSet.getDouble(xAxisColIdentifier.getColumnName()), resultSet.getDouble(chartCol.getColumnName()));
+            double[][] xValues = new double[seriesCount][cursor.getRowCount()];
+            double[][] yValues = new double[seriesCount][cursor.getRowCount()];
+            try {
+                int row = 0;
+                int blockSize;
+                while ((blockSize = cursor.nextBlock(block)) > 0) {
+                    cancellationToken.throwIfCancelled();
+                    for (int i = 0; i < blockSize; i++, row++) {
+                        for (int series = 0; series < seriesCount; series++) {
+                            //XXX: need to switch from double to bigDecimal if it is needed.
+                            xValues[series][row] = xColumns.get(series).getDouble(block[i]);
+                            yValues[series][row] = yColumns.get(series).getDouble(block[i]);
+                        }
                     }
-                } catch (SQLException e) {
-                    throw new RuntimeException(e);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            XYSeriesCollection xyCollection = new XYSeriesCollection();
+            for (int series = 0; series < seriesCount; series++) {
+                cancellationToken.throwIfCancelled();
+                XYSeries newSeries = new XYSeries(seriesNames.get(series));
+                final double[] x = xValues[series];
+                double[] y = yValues[series];
+                //Adding the points in x order appends each point to the series
+                //instead of inserting it into the middle of the series.
+                Integer[] order = new Integer[x.length];
+                boolean sorted = true;
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = i;
+                    if (i > 0 && x[i] < x[i - 1]) sorted = false;
+                }
+                if (!sorted) {
+                    Arrays.sort(order, new Comparator<Integer>() {
+                        public int compare(Integer o1, Integer o2) {
+                            return Double.compare(x[o1], x[o2]);
+                        }
+                    });
+                }
+                for (int i : order) {
+                    newSeries.add(x[i], y[i], false);
                 }
                 xyCollection.addSeries(newSeries);
             }
             return xyCollection;
         } else if (allDate) {
             logger.debug("Creating a new TimePeriodValuesCollection dataset");
-            TimePeriodValuesCollection timeCollection = new TimePeriodValuesCollection();
-            for (ChartColumn chartCol : columnNamesInOrder) {
-                ChartColumn xAxisColIdentifier = chartCol.getXAxisIdentifier();
-                if (!chartCol.getRoleInChart().equals(ColumnRole.SERIES)
-                        || xAxisColIdentifier == null) continue;
-                TimePeriodValues newSeries = new TimePeriodValues(chartCol.getColumnName());
-                try {
-                    resultSet.beforeFirst();
-                    while (resultSet.next()) {
-                        int columnType = resultSet.getMetaData().getColumnType(resultSet.findColumn(xAxisColIdentifier.getColumnName()));
-                        if (columnType == Types.DATE) {
-                            newSeries.add(new FixedMillisecond(
-                                    resultSet.getDate(xAxisColIdentifier.getColumnName())),
-                                    resultSet.getDouble(((ChartColumn) chartCol).getColumnName()));
-                        } else if (columnType == Types.TIMESTAMP){
-                            newSeries.add(new FixedMillisecond(
-                                    resultSet.getTimestamp(xAxisColIdentifier.getColumnName())),
-                                    resultSet.getDouble(((ChartColumn) chartCol).getColumnName()));
+            TimePeriodValues[] newSeries = new TimePeriodValues[seriesCount];
+            for (int series = 0; series < seriesCount; series++) {
+                newSeries[series] = new TimePeriodValues(seriesNames.get(series));
+            }
+            try {
+                int blockSize;
+                while ((blockSize = cursor.nextBlock(block)) > 0) {
+                    cancellationToken.throwIfCancelled();
+                    for (int i = 0; i < blockSize; i++) {
+                        for (int series = 0; series < seriesCount; series++) {
+                            newSeries[series].add(new FixedMillisecond(
+                                    xColumns.get(series).getDate(block[i])),
+                                    yColumns.get(series).getDouble(block[i]));
                         }
                     }
-                } catch (SQLException e) {
-                    throw new RuntimeException(e);
                 }
-                timeCollection.addSeries(newSeries);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            TimePeriodValuesCollection timeCollection = new TimePeriodValuesCollection();
+            for (TimePeriodValues series : newSeries) {
+                timeCollection.addSeries(series);
             }
             return timeCollection;
         } else {
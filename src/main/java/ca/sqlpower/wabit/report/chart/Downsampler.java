@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.report.chart;
+
+import java.util.Arrays;
+
+/**
+ * Package private implementations of the ways points can be chosen by
+ * {@link ChartDownsampling}. The points are split into buckets of the same
+ * number of points in the order they are drawn, which also works for series
+ * that are not sorted by x. The first and last points are always kept.
+ */
+class Downsampler {
+
+    /**
+     * This class should not be instantiated. Don't call this.
+     */
+    private Downsampler() { /* don't */ }
+
+    /**
+     * Chooses points with the largest-triangle-three-buckets algorithm. The
+     * points between the first and last point are split into maxPoints - 2
+     * buckets. For each bucket the point that forms the largest triangle with
+     * the point chosen in the previous bucket and the average of the points in
+     * the next bucket is chosen.
+     * 
+     * @return The indexes of the chosen points in increasing order, or null if
+     *         there are no more than maxPoints points.
+     */
+    static int[] largestTriangleThreeBuckets(double[] x, double[] y, int maxPoints) {
+        int pointCount = x.length;
+        if (pointCount <= maxPoints || maxPoints < 3) return null;
+        
+        int[] selected = new int[maxPoints];
+        int selectedCount = 0;
+        selected[selectedCount++] = 0;
+        double bucketSize = (double) (pointCount - 2) / (maxPoints - 2);
+        int previous = 0;
+        for (int bucket = 0; bucket < maxPoints - 2; bucket++) {
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, pointCount);
+            double averageX = 0;
+            double averageY = 0;
+            int averageCount = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                if (Double.isNaN(y[i])) continue;
+                averageX += x[i];
+                averageY += y[i];
+                averageCount++;
+            }
+            if (averageCount > 0) {
+                averageX /= averageCount;
+                averageY /= averageCount;
+            } else {
+                averageX = x[pointCount - 1];
+                averageY = y[pointCount - 1];
+            }
+            
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = nextStart;
+            double previousX = x[previous];
+            double previousY = y[previous];
+            double largestArea = -1;
+            int largest = start;
+            for (int i = start; i < end; i++) {
+                // Twice the area of the triangle, which compares the same way.
+                double area = Math.abs((previousX - averageX) * (y[i] - previousY) 
+                        - (previousX - x[i]) * (averageY - previousY));
+                if (area > largestArea) {
+                    largestArea = area;
+                    largest = i;
+                }
+            }
+            selected[selectedCount++] = largest;
+            previous = largest;
+        }
+        selected[selectedCount++] = pointCount - 1;
+        return selected;
+    }
+
+    /**
+     * Chooses the points with the lowest and highest y value in each of
+     * maxPoints / 2 buckets of points.
+     * 
+     * @return The indexes of the chosen points in increasing order, or null if
+     *         there are no more than maxPoints points.
+     */
+    static int[] minMax(double[] y, int maxPoints) {
+        int pointCount = y.length;
+        if (pointCount <= maxPoints || maxPoints < 4) return null;
+        
+        // Two of the points are the first and last points.
+        int bucketCount = (maxPoints - 2) / 2;
+        double bucketSize = (double) (pointCount - 2) / bucketCount;
+        int[] selected = new int[bucketCount * 2 + 2];
+        int selectedCount = 0;
+        selected[selectedCount++] = 0;
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = Math.min((int) ((bucket + 1) * bucketSize) + 1, pointCount - 1);
+            if (start >= end) continue;
+            int min = start;
+            int max = start;
+            for (int i = start + 1; i < end; i++) {
+                if (y[i] < y[min] || Double.isNaN(y[min])) {
+                    min = i;
+                }
+                if (y[i] > y[max] || Double.isNaN(y[max])) {
+                    max = i;
+                }
+            }
+            selected[selectedCount++] = Math.min(min, max);
+            if (min != max) {
+                selected[selectedCount++] = Math.max(min, max);
+            }
+        }
+        selected[selectedCount++] = pointCount - 1;
+        return Arrays.copyOf(selected, selectedCount);
+    }
+}
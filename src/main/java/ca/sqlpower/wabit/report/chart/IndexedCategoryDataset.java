@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.report.chart;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jfree.data.UnknownKeyException;
+import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.general.AbstractDataset;
+
+/**
+ * An immutable {@link CategoryDataset} over a table of values that looks up
+ * its row and column keys in hash maps. The
+ * {@link org.jfree.data.category.DefaultCategoryDataset} looks up its column
+ * keys by scanning a list, which makes building and reading a dataset with
+ * tens of thousands of categories take quadratic time.
+ * <p>
+ * This is package private as it is only created by {@link DatasetUtil}.
+ */
+class IndexedCategoryDataset extends AbstractDataset implements CategoryDataset {
+
+    /**
+     * The series names, one for each row of {@link #data}.
+     */
+    private final List<String> rowKeys;
+    
+    /**
+     * The category names, one for each column of {@link #data}.
+     */
+    private final List<String> columnKeys;
+    
+    private final Map<String, Integer> rowIndexes;
+    
+    private final Map<String, Integer> columnIndexes;
+    
+    /**
+     * The values of the dataset indexed by series and then by category. The
+     * arrays of each series may be longer than the number of categories.
+     */
+    private final double[][] data;
+
+    /**
+     * @param rowKeys
+     *            The name of each series.
+     * @param columnKeys
+     *            The name of each category, which must be unique.
+     * @param columnIndexes
+     *            Maps each category name to its index in columnKeys. This map
+     *            is used directly and must not be modified afterwards.
+     * @param data
+     *            The values indexed by series and then by category. The arrays
+     *            are used directly and must not be modified afterwards.
+     */
+    IndexedCategoryDataset(String[] rowKeys, List<String> columnKeys, 
+            Map<String, Integer> columnIndexes, double[][] data) {
+        this.rowKeys = Collections.unmodifiableList(Arrays.asList(rowKeys));
+        this.columnKeys = Collections.unmodifiableList(columnKeys);
+        this.columnIndexes = columnIndexes;
+        this.data = data;
+        rowIndexes = new HashMap<String, Integer>();
+        for (int i = 0; i < rowKeys.length; i++) {
+            rowIndexes.put(rowKeys[i], i);
+        }
+    }
+    
+    public int getRowCount() {
+        return rowKeys.size();
+    }
+    
+    public int getColumnCount() {
+        return columnKeys.size();
+    }
+    
+    public Number getValue(int row, int column) {
+        return data[row][column];
+    }
+    
+    @SuppressWarnings("unchecked")
+    public Comparable getRowKey(int row) {
+        return rowKeys.get(row);
+    }
+    
+    @SuppressWarnings("unchecked")
+    public int getRowIndex(Comparable key) {
+        Integer index = rowIndexes.get(key);
+        return index == null ? -1 : index;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public List getRowKeys() {
+        return rowKeys;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public Comparable getColumnKey(int column) {
+        return columnKeys.get(column);
+    }
+    
+    @SuppressWarnings("unchecked")
+    public int getColumnIndex(Comparable key) {
+        Integer index = columnIndexes.get(key);
+        return index == null ? -1 : index;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public List getColumnKeys() {
+        return columnKeys;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public Number getValue(Comparable rowKey, Comparable columnKey) {
+        int row = getRowIndex(rowKey);
+        if (row == -1) {
+            throw new UnknownKeyException("Unrecognised row key: " + rowKey);
+        }
+        int column = getColumnIndex(columnKey);
+        if (column == -1) {
+            throw new UnknownKeyException("Unrecognised column key: " + columnKey);
+        }
+        return data[row][column];
+    }
+}
@@ -31,21 +31,23 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 import org.apache.log4j.Logger;
 
 import ca.sqlpower.object.HorizontalAlignment;
-import ca.sqlpower.sql.CachedRowSet;
 import ca.sqlpower.wabit.report.ColumnInfo;
 import ca.sqlpower.wabit.report.ContentBox;
-import ca.sqlpower.wabit.report.DataType;
 import ca.sqlpower.wabit.report.ResultSetRenderer;
 import ca.sqlpower.wabit.report.ColumnInfo.GroupAndBreak;
 import ca.sqlpower.wabit.report.ResultSetRenderer.BorderStyles;
 import ca.sqlpower.wabit.report.resultset.ResultSetCell.BorderType;
+import ca.sqlpower.wabit.rs.CancellationToken;
+import ca.sqlpower.wabit.rs.ResultSetCursor;
+import ca.sqlpower.wabit.rs.ResultSetCursor.Column;
+import ca.sqlpower.wabit.trace.PerformanceTracer;
+import ca.sqlpower.wabit.trace.Span;
 
 /**
  * This class renders the result set. A new renderer should be created each time
@@ -130,51 +132,63 @@ public class ReportPositionRenderer {
     public List<List<ResultSetCell>> createResultSetLayout(Graphics2D g, ResultSet rs, List<ColumnInfo> columnInfoList,
     		double boxHeight, boolean isPrintingGrandTotals) throws SQLException {
         
+        ResultSetCursor cursor = ResultSetCursor.create(rs);
+        ReportTotals totals = new ReportTotals(columnInfoList, cursor);
+        totals.update(cursor);
+        return createResultSetLayout(g, cursor, totals, columnInfoList, boxHeight, isPrintingGrandTotals,
+        		new CancellationToken());
+    }
+
+	/**
+	 * Lays out the rows of the given cursor the same way as
+	 * {@link #createResultSetLayout(Graphics2D, ResultSet, List, double, boolean)}
+	 * using totals that were already calculated for the rows. This lets a
+	 * renderer that lays out the same results many times calculate the totals
+	 * once.
+	 * 
+	 * @param cursor
+	 *            The rows to lay out, in the order they should appear. The
+	 *            position of the cursor will be moved.
+	 * @param totals
+	 *            The totals of the rows of the cursor, calculated for the
+	 *            given column information.
+	 * @param cancellationToken
+	 *            The token of the execution the rows came from. The layout
+	 *            stops with a {@link CancellationException} at the next row
+	 *            once it is cancelled.
+	 */
+    public List<List<ResultSetCell>> createResultSetLayout(Graphics2D g, ResultSetCursor cursor,
+    		ReportTotals totals, List<ColumnInfo> columnInfoList,
+    		double boxHeight, boolean isPrintingGrandTotals, 
+    		CancellationToken cancellationToken) throws SQLException {
+    	Span span = PerformanceTracer.start(PerformanceTracer.LAYOUT_STAGE, null);
+    	span.setRowCount(cursor.getRowCount());
+    	try {
+    		return layoutRows(g, cursor, totals, columnInfoList, boxHeight, isPrintingGrandTotals, 
+    				cancellationToken);
+    	} catch (CancellationException e) {
+    		span.setCancelled(true);
+    		throw e;
+    	} finally {
+    		span.end();
+    	}
+    }
+
+    private List<List<ResultSetCell>> layoutRows(Graphics2D g, ResultSetCursor cursor,
+    		ReportTotals totals, List<ColumnInfo> columnInfoList,
+    		double boxHeight, boolean isPrintingGrandTotals, 
+    		CancellationToken cancellationToken) throws SQLException {
+    	
     	if (hasLayoutStarted) 
-    			throw new IllegalStateException("The layout of a report position renderer should only " +
-        		"be done once per renderer. Create a new renderer if a new layout is needed");
-        hasLayoutStarted = true;
-        
-        CachedRowSet rsCopy = new CachedRowSet();
-        rsCopy.populate(rs);
-        rsCopy.beforeFirst();
-        
-        List<BigDecimal> grandTotals = new ArrayList<BigDecimal>();
-        for (ColumnInfo ci : columnInfoList) {
-            if (ci.getDataType() == DataType.NUMERIC ||
-            		(ci.getWillSubtotal()
-            			&& ci.getDataType() == DataType.NUMERIC)) {
-                grandTotals.add(BigDecimal.ZERO);
-            } else {
-                grandTotals.add(null);
-            }
-        }
-        
-        List<BigDecimal> sectionTotals = new ArrayList<BigDecimal>();
-        sectionTotals = new ArrayList<BigDecimal>();
-        for (ColumnInfo ci : columnInfoList) {
-            if (ci.getWillSubtotal()) {
-                sectionTotals.add(BigDecimal.ZERO);
-            } else {
-                sectionTotals.add(null);
-            }
-        }
-        
-        Map<Integer, List<BigDecimal>> groupingTotalMap = new HashMap<Integer, List<BigDecimal>>();
-        
-        for (int i = 0; i < columnInfoList.size(); i++) {
-            if (columnInfoList.get(i).getWillGroupOrBreak().equals(GroupAndBreak.GROUP)) {
-                List<BigDecimal> groupingTotals = new ArrayList<BigDecimal>();
-                for (ColumnInfo ci : columnInfoList) {
-                    if (ci.getWillSubtotal()) {
-                        groupingTotals.add(BigDecimal.ZERO);
-                    } else {
-                        groupingTotals.add(null);
-                    }
-                }
-                groupingTotalMap.put(Integer.valueOf(i), groupingTotals);
-            }
-        }
+    		throw new IllegalStateException("The layout of a report position renderer should only " +
+    				"be done once per renderer. Create a new renderer if a new layout is needed");
+    	hasLayoutStarted = true;
+    	
+    	if (totals.getRowCount() != cursor.getRowCount()) 
+    		throw new IllegalArgumentException("The totals were calculated for " + totals.getRowCount() + 
+    				" rows but there are " + cursor.getRowCount() + " rows to lay out");
+    	
+    	cursor.beforeFirst();
         
         int yPosition = 0;
         List<Object> sectionKey = null;
@@ -187,23 +201,26 @@ public class ReportPositionRenderer {
         List<List<ResultSetCell>> headerRows = new ArrayList<List<ResultSetCell>>();
 
         //for each result set entry
-        while (rsCopy.next()) {
+        while (cursor.next()) {
+        	
+        	cancellationToken.throwIfCancelled();
         
         	// This is a temp list of rows we will need to print.
             List<List<ResultSetCell>> rowsToAdd = new ArrayList<List<ResultSetCell>>();
             
-            if (!rsCopy.isFirst() && sectionKey == null) 
+            if (!cursor.isFirst() && sectionKey == null) 
                 throw new IllegalStateException("The initial section key was undefined! " +
                         "Cannot start laying out the result set.");
                       
             boolean forcePrintHeaders = false;
             boolean forcePageBreak = false;
             
-            final List<Object> newSectionKey = createRowSectionKey(rsCopy, columnInfoList);
+            final int position = cursor.getPosition();
+            final List<Object> newSectionKey = createRowSectionKey(cursor.getRow(position), columnInfoList);
             
             if (sectionKey == null 
             		|| !newSectionKey.equals(sectionKey)
-                    || rsCopy.isFirst()) 
+                    || cursor.isFirst()) 
             {
                 sectionKey = newSectionKey;
                 forcePrintHeaders = true;
@@ -217,51 +234,17 @@ public class ReportPositionRenderer {
             headerRows.add(renderColumnHeaders(g, columnInfoList));
             
             //create a row of values, decide if we need to hide grouped columns
-            List<ResultSetCell> rowCells = renderRow(g, rsCopy, columnInfoList, false);
+            List<ResultSetCell> rowCells = renderRow(g, cursor, columnInfoList, false);
             rowsToAdd.addAll(Collections.singletonList(rowCells));
             
-            //Increment totals counters
-            for (ColumnInfo ci : columnInfoList) {
-                final int colIndex = columnInfoList.indexOf(ci);
-                if (ci.getWillSubtotal()) {
-                    final BigDecimal valueToAdd = rsCopy.getBigDecimal(colIndex + 1);
-                    BigDecimal total = sectionTotals.get(colIndex);
-                    total = total.add(valueToAdd);
-                    sectionTotals.set(colIndex, total);
-                    
-                    for (List<BigDecimal> subtotals : groupingTotalMap.values()) {
-                        BigDecimal groupTotal = subtotals.get(colIndex);
-                        groupTotal = groupTotal.add(valueToAdd);
-                        subtotals.set(colIndex, groupTotal);
-                    }
-                }
-                if (ci.getDataType() == DataType.NUMERIC ||
-                		(ci.getWillSubtotal()
-                				&& ci.getDataType() == DataType.NUMERIC)) {
-                    final BigDecimal valueToAdd = rsCopy.getBigDecimal(colIndex + 1);
-                    BigDecimal total = grandTotals.get(colIndex);
-                    BigDecimal cellValue = valueToAdd;
-                    if (cellValue == null) {
-                        cellValue = BigDecimal.valueOf(0);
-                    }
-                    total = total.add(cellValue);
-                    grandTotals.set(colIndex, total);
-                }
-            }
-
             //decide if we need to print subtotals for breaks
-            boolean hasNext = rsCopy.next();
+            boolean hasNext = position + 1 < cursor.getRowCount();
             List<Object> nextSectionKey = null;
+            Object[] nextRowValues = null;
             if (hasNext) {
-                nextSectionKey = createRowSectionKey(rsCopy, columnInfoList);
-            }
-            List<Object> nextRowValues = new ArrayList<Object>();
-            if (hasNext) {
-                for (int i = 0; i < columnInfoList.size(); i++) {
-                    nextRowValues.add(rsCopy.getObject(i + 1));
-                }
+                nextRowValues = cursor.getRow(position + 1);
+                nextSectionKey = createRowSectionKey(nextRowValues, columnInfoList);
             }
-            rsCopy.previous();
 
             
             // Now decide if we need to print sub-totals, due to grouping
@@ -270,9 +253,9 @@ public class ReportPositionRenderer {
             // Start by looking for section breaks
             if (!hasNext || !nextSectionKey.equals(sectionKey)) { 
                 for (int i = columnInfoList.size() - 1; i >= 0; i--) {
-                    if (groupingTotalMap.get(i) != null) {
-                        List<BigDecimal> groupingTotals = groupingTotalMap.get(i);
-                        String groupingText = "Total for " + rsCopy.getString(i + 1);
+                    List<BigDecimal> groupingTotals = totals.getGroupTotals(position, i);
+                    if (groupingTotals != null) {
+                        String groupingText = "Total for " + cursor.getColumn(i + 1).getString();
 
                         rowsToAdd.addAll(
                         		renderTotals(
@@ -285,12 +268,6 @@ public class ReportPositionRenderer {
 		                                cellsGroupedPerPage,
 		                                boxHeight,
 		                                false));
-
-                        for (int j = 0; j < groupingTotals.size(); j++) {
-                            if (groupingTotals.get(j) != null) {
-                                groupingTotals.set(j, BigDecimal.ZERO);
-                            }
-                        }
                     }
                 }
                 
@@ -309,7 +286,7 @@ public class ReportPositionRenderer {
                 	rowsToAdd.addAll(
                 			renderTotals(
                 					g, 
-                					sectionTotals, 
+                					totals.getSectionTotals(position), 
                 					columnInfoList, 
                 					false,
                 					sectionKeyText.toString(), 
@@ -317,29 +294,20 @@ public class ReportPositionRenderer {
                 					cellsGroupedPerPage,
                 					boxHeight,
                 					false));
-                	
-                	sectionTotals = new ArrayList<BigDecimal>();
-                	for (ColumnInfo ci : columnInfoList) {
-                		if (ci.getWillSubtotal()) {
-                			sectionTotals.add(BigDecimal.ZERO);
-                		} else {
-                			sectionTotals.add(null);
-                		}
-                	}
                 }
                 
             // Now look for grouping changes
             } else if (hasNext) { 
                 
                 for (int i = columnInfoList.size() - 1; i >= 0; i--) {
-                    Object oldValue = rsCopy.getObject(i + 1);
-                    Object nextValue = nextRowValues.get(i);
-                    if (groupingTotalMap.get(i) != null && 
+                    Object oldValue = cursor.getColumn(i + 1).getObject();
+                    Object nextValue = nextRowValues[i];
+                    List<BigDecimal> groupingTotals = totals.getGroupTotals(position, i);
+                    if (groupingTotals != null && 
                             ((oldValue != null && !oldValue.equals(nextValue))
                             || (oldValue == null && nextValue != null))) {
                     	
-                        List<BigDecimal> groupingTotals = groupingTotalMap.get(i);
-                        String groupingText = String.valueOf(rsCopy.getString(i + 1));
+                        String groupingText = String.valueOf(cursor.getColumn(i + 1).getString());
                         
                         rowsToAdd.addAll(
                         		renderTotals(
@@ -352,13 +320,6 @@ public class ReportPositionRenderer {
                         				cellsGroupedPerPage,
                         				boxHeight,
                         				true));
-                        
-                        
-                        for (int j = 0; j < groupingTotals.size(); j++) {
-                            if (groupingTotals.get(j) != null) {
-                                groupingTotals.set(j, BigDecimal.ZERO);
-                            }
-                        }
                     }
                 }
                 
@@ -381,7 +342,7 @@ public class ReportPositionRenderer {
         	yPosition = addRowsGroup(
         			renderTotals(
         				g, 
-        				grandTotals, 
+        				totals.getGrandTotals(), 
         				columnInfoList, 
         				true, 
         				"Grand Total", 
@@ -402,18 +363,19 @@ public class ReportPositionRenderer {
 
     /**
      * This helper method for {@link #createResultSetLayout(Graphics2D, ResultSet, List, ContentBox, boolean)}
-     * will return a list of objects that defines a new section of the result set when laid out.
+     * will return a list of objects that defines a new section of the result set when laid out
+     * for the given row of values.
      * The list contains one value per column in the result set where each value could be the value
      * in that column in the current row if it is part of the section header or null if it is not
      * part of the section header.
      */
-    private List<Object> createRowSectionKey(ResultSet rs,
-            List<ColumnInfo> columnInfoList) throws SQLException {
+    private List<Object> createRowSectionKey(Object[] row,
+            List<ColumnInfo> columnInfoList) {
         List<Object> newSectionKey = new ArrayList<Object>();
         for (ColumnInfo ci : columnInfoList) {
             if (ci.getWillGroupOrBreak().equals(GroupAndBreak.BREAK)
             		|| ci.getWillGroupOrBreak().equals(GroupAndBreak.PAGEBREAK)) {
-                newSectionKey.add(rs.getObject(columnInfoList.indexOf(ci) + 1));
+                newSectionKey.add(row[columnInfoList.indexOf(ci)]);
             } else {
                 newSectionKey.add(null);
             }
@@ -568,10 +530,10 @@ public class ReportPositionRenderer {
      * 
      * @param g
      *            The graphics to use to determine dimension information.
-     * @param rs
-     *            The result set whose current row will be used to create
-     *            {@link ResultSetCell}s. The cursor will not be modified in
-     *            this result set. The row the cursor is at will be the row
+     * @param cursor
+     *            The cursor whose current row will be used to create
+     *            {@link ResultSetCell}s. The position of the cursor will not
+     *            be modified. The row the cursor is at will be the row
      *            rendered.
      * @param columnInformation
      *            This defines properties of the columns in the result set. This
@@ -583,12 +545,12 @@ public class ReportPositionRenderer {
      */
     private List<ResultSetCell> renderRow(
     		Graphics2D g, 
-    		ResultSet rs, 
+    		ResultSetCursor cursor, 
     		List<ColumnInfo> columnInformation, 
             boolean showGroupsAsRepeat) throws SQLException 
     {
         
-        if (rs.getMetaData().getColumnCount() != columnInformation.size()) 
+        if (cursor.getColumnCount() != columnInformation.size()) 
             throw new IllegalArgumentException("The column information for rendering a row was " +
             		"missing columns for the given result set");
         
@@ -607,25 +569,28 @@ public class ReportPositionRenderer {
             Insets padding = getPadding(ci);
             cellHeight += padding.top;
             
-            Object value = rs.getObject(col + 1);
+            final Column column = cursor.getColumn(col + 1);
+            Object value = column.getObject();
             String formattedValue;
             if (ci.getFormat() != null && value != null) {
                 if (logger.isDebugEnabled()) {
-                	logger.debug("Format is:"+ ci.getFormat()+ "string is:"+ rs.getString(col + 1));
+                	logger.debug("Format is:"+ ci.getFormat()+ "string is:"+ column.getString());
                 }
                 formattedValue = ci.getFormat().format(value);
             } else {
-                formattedValue = replaceNull(rs.getString(col + 1));
+                formattedValue = replaceNull(column.getString());
             }
             
             cellHeight += padding.bottom;
             
             Font cellFont = bodyFont;
             if (ci.getWillGroupOrBreak().equals(GroupAndBreak.GROUP)) {
-                boolean prevExists = rs.previous();
+                final int position = cursor.getPosition();
+                boolean prevExists = position > 0;
+                Object prevValue = prevExists ? column.getObject(cursor.getRow(position - 1)) : null;
                 if (prevExists &&
-                        ((rs.getObject(col + 1) != null && rs.getObject(col + 1).equals(value)) ||
-                        (rs.getObject(col + 1) == null && value == null))) {
+                        ((prevValue != null && prevValue.equals(value)) ||
+                        (prevValue == null && value == null))) {
                     if (showGroupsAsRepeat) {
                         formattedValue = "(" + formattedValue + ")";
                         cellFont = toggleItalicness(cellFont);
@@ -633,7 +598,6 @@ public class ReportPositionRenderer {
                         formattedValue = "";
                     }
                 }
-                rs.next();
             }
             
             List<BorderType> borders = new ArrayList<BorderType>();
@@ -0,0 +1,471 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.wabit.report.resultset;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.sqlpower.wabit.report.ColumnInfo;
+import ca.sqlpower.wabit.report.DataType;
+import ca.sqlpower.wabit.report.ColumnInfo.GroupAndBreak;
+import ca.sqlpower.wabit.rs.ResultSetCursor;
+import ca.sqlpower.wabit.rs.ResultSetCursor.Column;
+
+/**
+ * Calculates the grand totals, section totals and group totals a
+ * {@link ReportPositionRenderer} prints for a result set. The totals are
+ * calculated once for a given set of rows and {@link ColumnInfo}
+ * configuration so laying out the same results again, for example when the
+ * content box is resized or its font changes, does not need to add up the
+ * rows again.
+ * <p>
+ * Integer and floating point columns are added up in primitive accumulators;
+ * only decimal columns and columns of other types are added up with
+ * {@link BigDecimal}s. Rows added to the end of the result set, as a
+ * streaming query does, can be added to the totals with
+ * {@link #update(ResultSetCursor)} without going over the rows that were
+ * already counted.
+ * <p>
+ * The totals of a section or group are recorded at the last row of the
+ * section or group. The rows given to this class must be in the order the
+ * renderer lays them out in.
+ */
+public class ReportTotals {
+
+    /**
+     * Columns whose values are added up as longs.
+     */
+    private static final int LONG_SUM = 0;
+
+    /**
+     * Columns whose values are added up as doubles.
+     */
+    private static final int DOUBLE_SUM = 1;
+
+    /**
+     * Columns whose values are added up as {@link BigDecimal}s.
+     */
+    private static final int DECIMAL_SUM = 2;
+
+    /**
+     * One set of running totals, such as the totals of the current section.
+     */
+    private class Sums {
+
+        /**
+         * True for each column this set of totals adds up.
+         */
+        private final boolean[] included;
+
+        private final long[] longSums;
+
+        private final double[] doubleSums;
+
+        /**
+         * The totals of decimal columns. For long columns this holds the part
+         * of the total that no longer fit in a long, or null if the total has
+         * not overflowed.
+         */
+        private final BigDecimal[] decimalSums;
+
+        Sums(boolean[] included) {
+            this.included = included;
+            longSums = new long[included.length];
+            doubleSums = new double[included.length];
+            decimalSums = new BigDecimal[included.length];
+            reset();
+        }
+
+        void reset() {
+            for (int i = 0; i < included.length; i++) {
+                longSums[i] = 0;
+                doubleSums[i] = 0;
+                decimalSums[i] = sumTypes[i] == DECIMAL_SUM ? BigDecimal.ZERO : null;
+            }
+        }
+
+        void addLong(int column, long value) {
+            if (!included[column]) return;
+            long sum = longSums[column] + value;
+            if (((longSums[column] ^ sum) & (value ^ sum)) < 0) {
+                // The sum overflowed, move the previous total to the decimal part.
+                BigDecimal carry = decimalSums[column];
+                if (carry == null) {
+                    carry = BigDecimal.ZERO;
+                }
+                decimalSums[column] = carry.add(BigDecimal.valueOf(longSums[column]));
+                sum = value;
+            }
+            longSums[column] = sum;
+        }
+
+        void addDouble(int column, double value) {
+            if (!included[column]) return;
+            doubleSums[column] += value;
+        }
+
+        void addDecimal(int column, BigDecimal value) {
+            if (!included[column]) return;
+            decimalSums[column] = decimalSums[column].add(value);
+        }
+
+        /**
+         * Returns the current totals in the form the
+         * {@link ReportPositionRenderer} prints them in: one entry per column
+         * which is null for the columns that are not totalled.
+         */
+        List<BigDecimal> toList() {
+            List<BigDecimal> totals = new ArrayList<BigDecimal>(included.length);
+            for (int i = 0; i < included.length; i++) {
+                if (!included[i]) {
+                    totals.add(null);
+                } else if (sumTypes[i] == LONG_SUM) {
+                    BigDecimal total = BigDecimal.valueOf(longSums[i]);
+                    if (decimalSums[i] != null) {
+                        total = total.add(decimalSums[i]);
+                    }
+                    totals.add(total);
+                } else if (sumTypes[i] == DOUBLE_SUM) {
+                    if (Double.isNaN(doubleSums[i]) || Double.isInfinite(doubleSums[i])) {
+                        totals.add(null);
+                    } else {
+                        totals.add(BigDecimal.valueOf(doubleSums[i]));
+                    }
+                } else {
+                    totals.add(decimalSums[i]);
+                }
+            }
+            return Collections.unmodifiableList(totals);
+        }
+    }
+
+    /**
+     * The column settings the totals were calculated for. See
+     * {@link #createSignature(List)}.
+     */
+    private final List<Object> signature;
+
+    /**
+     * The grouping and breaking setting of each column.
+     */
+    private final GroupAndBreak[] groupAndBreak;
+
+    /**
+     * The columns of the rows being totalled, used to read their values.
+     */
+    private final Column[] columns;
+
+    /**
+     * How the values of each column are added up. One of {@link #LONG_SUM},
+     * {@link #DOUBLE_SUM} or {@link #DECIMAL_SUM}.
+     */
+    private final int[] sumTypes;
+
+    /**
+     * True for each column that is in the grand totals or subtotals.
+     */
+    private final boolean[] totalled;
+
+    private final Sums grandTotals;
+
+    private final Sums sectionTotals;
+
+    /**
+     * The running totals of each grouped column, indexed by column. The entry
+     * is null for columns that are not grouped.
+     */
+    private final Sums[] groupTotals;
+
+    /**
+     * The section totals recorded at the last row of each section except the
+     * current one.
+     */
+    private final Map<Integer, List<BigDecimal>> sectionTotalsByRow =
+        new HashMap<Integer, List<BigDecimal>>();
+
+    /**
+     * The group totals recorded at the last row of each group except the
+     * current ones. The outer map is keyed by row, the inner one by column.
+     */
+    private final Map<Integer, Map<Integer, List<BigDecimal>>> groupTotalsByRow =
+        new HashMap<Integer, Map<Integer, List<BigDecimal>>>();
+
+    /**
+     * The number of rows that have been added to the totals.
+     */
+    private int rowCount = 0;
+
+    /**
+     * The first and last row added to the totals. These are used to notice
+     * when the rows given to {@link #update(ResultSetCursor)} are not the
+     * rows already added to the totals with more rows appended.
+     */
+    private Object[] firstRow;
+    private Object[] lastRow;
+
+    /**
+     * @param columnInfoList
+     *            The column settings to calculate the totals for. There must
+     *            be one entry for each column of the cursor.
+     * @param cursor
+     *            A cursor over the rows to total, used to find the types of
+     *            the columns. The rows are not added until
+     *            {@link #update(ResultSetCursor)} is called.
+     */
+    public ReportTotals(List<ColumnInfo> columnInfoList, ResultSetCursor cursor) throws SQLException {
+        if (cursor.getColumnCount() != columnInfoList.size()) {
+            throw new IllegalArgumentException("The column information has " + columnInfoList.size() +
+                    " columns but the result set has " + cursor.getColumnCount());
+        }
+        signature = createSignature(columnInfoList);
+        int columnCount = columnInfoList.size();
+        groupAndBreak = new GroupAndBreak[columnCount];
+        columns = new Column[columnCount];
+        sumTypes = new int[columnCount];
+        totalled = new boolean[columnCount];
+        boolean[] inGrandTotals = new boolean[columnCount];
+        boolean[] inSubtotals = new boolean[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            ColumnInfo ci = columnInfoList.get(i);
+            groupAndBreak[i] = ci.getWillGroupOrBreak();
+            columns[i] = cursor.getColumn(i + 1);
+            sumTypes[i] = getSumType(columns[i].getType());
+            inGrandTotals[i] = ci.getDataType() == DataType.NUMERIC;
+            inSubtotals[i] = ci.getWillSubtotal();
+            totalled[i] = inGrandTotals[i] || inSubtotals[i];
+        }
+        grandTotals = new Sums(inGrandTotals);
+        sectionTotals = new Sums(inSubtotals);
+        groupTotals = new Sums[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            if (groupAndBreak[i] == GroupAndBreak.GROUP) {
+                groupTotals[i] = new Sums(inSubtotals);
+            }
+        }
+    }
+
+    /**
+     * Returns the parts of the column settings that the totals depend on.
+     */
+    private static List<Object> createSignature(List<ColumnInfo> columnInfoList) {
+        List<Object> signature = new ArrayList<Object>();
+        for (ColumnInfo ci : columnInfoList) {
+            signature.add(ci.getDataType());
+            signature.add(ci.getWillGroupOrBreak());
+            signature.add(Boolean.valueOf(ci.getWillSubtotal()));
+        }
+        return signature;
+    }
+
+    private static int getSumType(int sqlType) {
+        switch (sqlType) {
+        case Types.BIGINT:
+        case Types.INTEGER:
+        case Types.SMALLINT:
+        case Types.TINYINT:
+        case Types.BIT:
+        case Types.BOOLEAN:
+            return LONG_SUM;
+        case Types.DOUBLE:
+        case Types.FLOAT:
+        case Types.REAL:
+            return DOUBLE_SUM;
+        default:
+            return DECIMAL_SUM;
+        }
+    }
+
+    /**
+     * Returns true if these totals were calculated for the given column
+     * settings. If the settings have changed a new instance must be created.
+     */
+    public boolean matches(List<ColumnInfo> columnInfoList) {
+        return signature.equals(createSignature(columnInfoList));
+    }
+
+    /**
+     * Adds the rows of the given cursor that have not been added to the
+     * totals yet. If the cursor's rows do not start with the rows already
+     * added, for example because the result set was sorted differently, the
+     * totals are calculated again from the first row.
+     */
+    public synchronized void update(ResultSetCursor cursor) throws SQLException {
+        int newRowCount = cursor.getRowCount();
+        if (newRowCount < rowCount
+                || (rowCount > 0 && (cursor.getRow(0) != firstRow || cursor.getRow(rowCount - 1) != lastRow))) {
+            clear();
+        }
+        for (int row = rowCount; row < newRowCount; row++) {
+            Object[] values = cursor.getRow(row);
+            if (row == 0) {
+                firstRow = values;
+            } else {
+                endRow(row - 1, lastRow, values);
+            }
+            addRow(values);
+            lastRow = values;
+        }
+        rowCount = newRowCount;
+    }
+
+    private void clear() {
+        grandTotals.reset();
+        sectionTotals.reset();
+        for (Sums sums : groupTotals) {
+            if (sums != null) {
+                sums.reset();
+            }
+        }
+        sectionTotalsByRow.clear();
+        groupTotalsByRow.clear();
+        rowCount = 0;
+        firstRow = null;
+        lastRow = null;
+    }
+
+    private void addRow(Object[] values) throws SQLException {
+        for (int i = 0; i < columns.length; i++) {
+            if (!totalled[i]) continue;
+            switch (sumTypes[i]) {
+            case LONG_SUM:
+                long longValue = columns[i].getLong(values);
+                grandTotals.addLong(i, longValue);
+                sectionTotals.addLong(i, longValue);
+                for (Sums sums : groupTotals) {
+                    if (sums != null) sums.addLong(i, longValue);
+                }
+                break;
+            case DOUBLE_SUM:
+                double doubleValue = columns[i].getDouble(values);
+                grandTotals.addDouble(i, doubleValue);
+                sectionTotals.addDouble(i, doubleValue);
+                for (Sums sums : groupTotals) {
+                    if (sums != null) sums.addDouble(i, doubleValue);
+                }
+                break;
+            default:
+                BigDecimal decimalValue = columns[i].getBigDecimal(values);
+                if (decimalValue == null) {
+                    decimalValue = BigDecimal.ZERO;
+                }
+                grandTotals.addDecimal(i, decimalValue);
+                sectionTotals.addDecimal(i, decimalValue);
+                for (Sums sums : groupTotals) {
+                    if (sums != null) sums.addDecimal(i, decimalValue);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records and resets the totals of the sections and groups that end at
+     * the given row now that the row after it is known.
+     */
+    private void endRow(int row, Object[] values, Object[] nextValues) {
+        boolean sectionChanged = false;
+        boolean hasSectionKey = false;
+        for (int i = 0; i < columns.length; i++) {
+            if (groupAndBreak[i] == GroupAndBreak.BREAK || groupAndBreak[i] == GroupAndBreak.PAGEBREAK) {
+                if (values[i] != null) {
+                    hasSectionKey = true;
+                }
+                if (!equal(values[i], nextValues[i])) {
+                    sectionChanged = true;
+                }
+            }
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (groupTotals[i] != null && (sectionChanged || !equal(values[i], nextValues[i]))) {
+                Map<Integer, List<BigDecimal>> rowGroupTotals = groupTotalsByRow.get(row);
+                if (rowGroupTotals == null) {
+                    rowGroupTotals = new HashMap<Integer, List<BigDecimal>>();
+                    groupTotalsByRow.put(row, rowGroupTotals);
+                }
+                rowGroupTotals.put(i, groupTotals[i].toList());
+                groupTotals[i].reset();
+            }
+        }
+        if (sectionChanged) {
+            sectionTotalsByRow.put(row, sectionTotals.toList());
+            // The renderer does not print the totals of a section without
+            // a key so they carry on to the next section.
+            if (hasSectionKey) {
+                sectionTotals.reset();
+            }
+        }
+    }
+
+    private static boolean equal(Object value, Object other) {
+        if (value == null) return other == null;
+        return value.equals(other);
+    }
+
+    /**
+     * Returns the number of rows that have been added to the totals.
+     */
+    public synchronized int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the grand totals of all the rows. The list has one entry per
+     * column which is null if the column is not numeric.
+     */
+    public synchronized List<BigDecimal> getGrandTotals() {
+        return grandTotals.toList();
+    }
+
+    /**
+     * Returns the subtotals of the section that ends at the given row, or
+     * null if the section of the row continues past it. The list has one
+     * entry per column which is null if the column is not subtotalled.
+     */
+    public synchronized List<BigDecimal> getSectionTotals(int row) {
+        if (row == rowCount - 1) {
+            return sectionTotals.toList();
+        }
+        return sectionTotalsByRow.get(row);
+    }
+
+    /**
+     * Returns the subtotals of the group of the given column that ends at the
+     * given row, or null if the group continues past the row or the column
+     * is not grouped.
+     *
+     * @param row
+     *            The index of the row, starting at 0.
+     * @param column
+     *            The index of the grouped column, starting at 0.
+     */
+    public synchronized List<BigDecimal> getGroupTotals(int row, int column) {
+        if (row == rowCount - 1) {
+            return groupTotals[column] == null ? null : groupTotals[column].toList();
+        }
+        Map<Integer, List<BigDecimal>> rowGroupTotals = groupTotalsByRow.get(row);
+        if (rowGroupTotals == null) return null;
+        return rowGroupTotals.get(column);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.report.selectors;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+import ca.sqlpower.object.SPVariableResolver;
+import ca.sqlpower.wabit.WabitObject;
+import ca.sqlpower.wabit.report.ContentBox;
+import ca.sqlpower.wabit.report.Layout;
+import ca.sqlpower.wabit.report.Page;
+import ca.sqlpower.wabit.report.ReportContentRenderer;
+import ca.sqlpower.wabit.report.WabitLabel;
+import ca.sqlpower.wabit.rs.WabitResultSetProducer;
+import ca.sqlpower.wabit.rs.olap.OlapQuery;
+import ca.sqlpower.wabit.rs.query.QueryCache;
+
+/**
+ * Works out which content of a layout depends on a set of {@link Selector}s.
+ * A content box depends on a selector if the text of a label, or the SQL or
+ * MDX of a query the content box's renderer uses, references the selector's
+ * variable. The variables each object references are only looked up once
+ * for each instance of this class, so an instance should only be used for
+ * one set of changes.
+ * <p>
+ * The dependencies are found conservatively: if the text of a result set
+ * producer cannot be read, or the producer is of a type this class does not
+ * know about, the content using it is considered to depend on every
+ * selector.
+ */
+public class SelectorDependencies {
+
+    private static final Logger logger = Logger.getLogger(SelectorDependencies.class);
+
+    /**
+     * Matches a variable reference like <code>${namespace::name}</code> and
+     * captures the text between the braces.
+     */
+    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$\\{([^}]*)\\}");
+
+    /**
+     * The variable references found in each object visited so far. A null
+     * value means the references of the object could not be found and it
+     * must be treated as depending on everything.
+     */
+    private final Map<WabitObject, Set<String>> references = new HashMap<WabitObject, Set<String>>();
+
+    /**
+     * Returns the content boxes of the given layout that depend on at least
+     * one of the given selectors. Selectors that belong to a content box can
+     * only affect that content box.
+     */
+    public Set<ContentBox> findAffectedContent(Layout layout, Collection<Selector> selectors) {
+        Set<ContentBox> affected = new LinkedHashSet<ContentBox>();
+        for (WabitObject child : layout.getChildren()) {
+            if (!(child instanceof Page)) continue;
+            for (ContentBox contentBox : ((Page) child).getContentBoxes()) {
+                if (dependsOn(contentBox, selectors)) {
+                    affected.add(contentBox);
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Returns true if the renderer of the given content box depends on at
+     * least one of the given selectors.
+     */
+    public boolean dependsOn(ContentBox contentBox, Collection<Selector> selectors) {
+        ReportContentRenderer renderer = contentBox.getContentRenderer();
+        if (renderer == null) return false;
+        
+        Set<Selector> applicableSelectors = new HashSet<Selector>();
+        for (Selector selector : selectors) {
+            if (selector.getParent() instanceof ContentBox && selector.getParent() != contentBox) {
+                continue;
+            }
+            applicableSelectors.add(selector);
+        }
+        if (applicableSelectors.isEmpty()) return false;
+        
+        return dependsOn(renderer, applicableSelectors, new HashSet<WabitObject>());
+    }
+
+    private boolean dependsOn(WabitObject object, Collection<Selector> selectors, Set<WabitObject> visited) {
+        if (!visited.add(object)) return false;
+        
+        if (object instanceof WabitLabel || object instanceof WabitResultSetProducer) {
+            Set<String> variables = getReferences(object);
+            if (variables == null) return true;
+            for (Selector selector : selectors) {
+                if (referencesSelector(variables, selector)) return true;
+            }
+        }
+        
+        for (WabitObject dependency : object.getDependencies()) {
+            if (dependsOn(dependency, selectors, visited)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the variables the given label or result set producer
+     * references, or null if they cannot be found.
+     */
+    private Set<String> getReferences(WabitObject object) {
+        if (references.containsKey(object)) {
+            return references.get(object);
+        }
+        Set<String> variables;
+        try {
+            if (object instanceof WabitLabel) {
+                variables = findVariableReferences(((WabitLabel) object).getText());
+            } else if (object instanceof QueryCache) {
+                variables = findVariableReferences(((QueryCache) object).generateQuery());
+            } else if (object instanceof OlapQuery) {
+                variables = findVariableReferences(((OlapQuery) object).getMdxText());
+            } else {
+                variables = null;
+            }
+        } catch (Exception e) {
+            logger.debug("Could not find the variables referenced by " + object.getName() + 
+                    ", assuming it depends on every selector.", e);
+            variables = null;
+        }
+        references.put(object, variables);
+        return variables;
+    }
+
+    /**
+     * Returns true if one of the given variable references could be resolved
+     * by the given selector. References that are not qualified by a namespace
+     * match the selector by name alone.
+     */
+    static boolean referencesSelector(Collection<String> variables, Selector selector) {
+        if (selector.getParent() == null) return true;
+        String key = selector.getParent().getUUID() + SPVariableResolver.NAMESPACE_DELIMITER + selector.getName();
+        for (String variable : variables) {
+            if (startsWithVariable(variable, key)) return true;
+            if (!variable.contains(SPVariableResolver.NAMESPACE_DELIMITER) 
+                    && startsWithVariable(variable, selector.getName())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the variable reference is the given key, possibly
+     * followed by a modifier such as a default value.
+     */
+    private static boolean startsWithVariable(String variable, String key) {
+        if (key == null || !variable.startsWith(key)) return false;
+        return variable.length() == key.length() 
+            || !Character.isLetterOrDigit(variable.charAt(key.length()));
+    }
+
+    /**
+     * Returns the text between the braces of each variable reference in the
+     * given text. Package private for testing.
+     */
+    static Set<String> findVariableReferences(String text) {
+        Set<String> variables = new HashSet<String>();
+        if (text == null) return variables;
+        Matcher matcher = VARIABLE_PATTERN.matcher(text);
+        while (matcher.find()) {
+            variables.add(matcher.group(1).trim());
+        }
+        return variables;
+    }
+}
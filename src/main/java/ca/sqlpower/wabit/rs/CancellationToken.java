@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.rs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.jcip.annotations.GuardedBy;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Tells the code working on one execution of a query that its results are no
+ * longer wanted. Each {@link ResultSetHandle} has a token that is cancelled
+ * when the handle is cancelled, which happens when the query is cancelled or
+ * when a chart or renderer replaces the handle with a newer execution. The
+ * code populating the handle, building chart datasets from it and laying out
+ * its rows checks the token as it goes and stops with a
+ * {@link CancellationException} once it is cancelled.
+ * <p>
+ * Work that cannot check the token itself, such as a statement waiting on
+ * the database, can register an action to run when the token is cancelled
+ * with {@link #onCancel(Runnable)}.
+ */
+public class CancellationToken {
+
+    private static final Logger logger = Logger.getLogger(CancellationToken.class);
+    
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    
+    @GuardedBy("this")
+    private final List<Runnable> cancelActions = new ArrayList<Runnable>();
+
+    /**
+     * Cancels this token and runs the actions registered with
+     * {@link #onCancel(Runnable)}. Cancelling a token more than once has no
+     * effect. An action that fails is logged and does not stop the other
+     * actions from running.
+     */
+    public void cancel() {
+        if (!cancelled.compareAndSet(false, true)) return;
+        List<Runnable> actions;
+        synchronized (this) {
+            actions = new ArrayList<Runnable>(cancelActions);
+            cancelActions.clear();
+        }
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                logger.error("A cancel action failed", e);
+            }
+        }
+    }
+    
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Throws a {@link CancellationException} if this token has been
+     * cancelled. Long running loops should call this regularly.
+     */
+    public void throwIfCancelled() throws CancellationException {
+        if (cancelled.get()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Registers an action to run when this token is cancelled. If the token
+     * has already been cancelled the action runs immediately on the calling
+     * thread.
+     */
+    public void onCancel(Runnable action) {
+        synchronized (this) {
+            if (!cancelled.get()) {
+                cancelActions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Removes an action registered with {@link #onCancel(Runnable)}. This
+     * should be done once the work the action would stop has finished.
+     */
+    public synchronized void removeOnCancel(Runnable action) {
+        cancelActions.remove(action);
+    }
+}
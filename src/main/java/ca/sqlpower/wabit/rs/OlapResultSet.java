@@ -31,7 +31,6 @@ import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.olap4j.Axis;
-import org.olap4j.Cell;
 import org.olap4j.CellSet;
 import org.olap4j.CellSetAxis;
 import org.olap4j.Position;
@@ -41,7 +40,6 @@ import org.olap4j.metadata.Level;
 import org.olap4j.metadata.Member;
 
 import ca.sqlpower.sql.CachedResultSetMetaData;
-import ca.sqlpower.sql.CachedRowSet;
 import ca.sqlpower.wabit.rs.olap.RepeatedMember;
 
 
@@ -100,7 +98,7 @@ import ca.sqlpower.wabit.rs.olap.RepeatedMember;
  * There will be a row in the result set for every Columns axis position in
  * the given Cell set.
  */
-public class OlapResultSet extends CachedRowSet {
+public class OlapResultSet extends WabitCachedRowSet {
 
     private static final Logger logger = Logger.getLogger(OlapResultSet.class);
 
@@ -118,6 +116,13 @@ public class OlapResultSet extends CachedRowSet {
      * Gets created and initialized in {@link #populate(CellSet)}.
      */
     private List<Level> rowAxisColumns;
+
+    /**
+     * The index in a row of this result set of the column each level of
+     * {@link #rowAxisColumns} is shown in. This is the first column for the
+     * first level in the list. Gets created with {@link #rowAxisColumns}.
+     */
+    private Map<Level, Integer> levelColumns;
     
     public OlapResultSet() {
         super();
@@ -133,6 +138,20 @@ public class OlapResultSet extends CachedRowSet {
      * @throws SQLException
      */
     public void populate(CellSet cellSet) throws SQLException {
+        populate(cellSet, new CancellationToken());
+    }
+
+    /**
+     * Populates this result set from the given cell set the same way as
+     * {@link #populate(CellSet)}, stopping with a
+     * {@link java.util.concurrent.CancellationException} at the next row once
+     * the given token is cancelled.
+     * <p>
+     * The rows are added to the row set directly instead of through the insert
+     * row so no row added events are fired; the cell set is already complete
+     * by the time it is converted.
+     */
+    public void populate(CellSet cellSet, CancellationToken cancellationToken) throws SQLException {
     	
     	rsmd = new CachedResultSetMetaData();
         data = new ArrayList<Object[]>();
@@ -152,7 +171,9 @@ public class OlapResultSet extends CachedRowSet {
         // Rows axis: each represented level of each dimension is a column
         CellSetAxis rowsAxis = axes.get(Axis.ROWS.axisOrdinal());
         rowAxisColumns = determineRowAxisColumns(rowsAxis);
+        levelColumns = new HashMap<Level, Integer>();
         for (Level l : rowAxisColumns) {
+            levelColumns.put(l, levelColumns.size());
             Dimension d = l.getDimension();
             String colName = d.getName() + " " + l.getName();
 
@@ -181,100 +202,62 @@ public class OlapResultSet extends CachedRowSet {
         }
 
         // the data: each position along the rows axis is a row in the result set!
-        final Map<Level, RepeatedMember> currentMembers = new HashMap<Level, RepeatedMember>();
-        for (Position p : rowsAxis.getPositions()) {
-            moveToInsertRow();
-            int col;
+        // Cells are read by ordinal, which is the column position plus the row
+        // position times the number of columns for a two-axis cell set.
+        final int levelColumnCount = rowAxisColumns.size();
+        final int columnCount = rsmd.getColumnCount();
+        final int colsAxisSize = colsAxis.getPositionCount();
+        final List<Position> rowPositions = rowsAxis.getPositions();
+        data = new ArrayList<Object[]>(rowPositions.size());
+        
+        // The same wrapper is shared by every row a member is repeated in.
+        final RepeatedMember[] currentMembers = new RepeatedMember[levelColumnCount];
+        for (Position p : rowPositions) {
+            cancellationToken.throwIfCancelled();
+            Object[] row = new Object[columnCount];
             for (Member m : p.getMembers()) {
-                col = findColumnForLevel(m.getLevel());
-                if (col == -1) {
+                Integer levelColumn = levelColumns.get(m.getLevel());
+                if (levelColumn == null) {
                     throw new IllegalStateException(
                             "Found a member in the rows axis whose level doesn't" +
                             " have a column in the result set!");
                 }
-                updateString(col, m.getName());
-                currentMembers.put(m.getLevel(), new RepeatedMember(m));
+                int col = levelColumn;
+                row[col] = m.getName();
+                if (currentMembers[col] == null || !currentMembers[col].getMember().equals(m)) {
+                    currentMembers[col] = new RepeatedMember(m);
+                }
                 
                 // backfill higher levels of this dimension
                 col--;
-                while (col > 0 && getLevelForColumn(col) != null) {
-                    Level l = getLevelForColumn(col);
+                while (col >= 0) {
+                    Level l = rowAxisColumns.get(col);
                     if ( ! l.getDimension().equals(m.getDimension()) ) break;
-                    RepeatedMember ancestor = currentMembers.get(l);
-                    if (ancestor != null) {
-                        updateObject(col, ancestor);
+                    if (currentMembers[col] != null) {
+                        row[col] = currentMembers[col];
                     }
                     col--;
                 }
             }
-            col = rowAxisColumns.size() + 1;
-            for (Position colPos : colsAxis.getPositions()) {
-                Cell cell = cellSet.getCell(colPos, p);
-                Object value = cell.getValue();
+            int ordinal = p.getOrdinal() * colsAxisSize;
+            for (int col = levelColumnCount; col < columnCount; col++, ordinal++) {
+                Object value = cellSet.getCell(ordinal).getValue();
                 if (value instanceof Number) {
-                    updateObject(col, ((Number) value).doubleValue());
-                } else if (value == null) {
-                    updateObject(col, null);
-                } else {
+                    row[col] = ((Number) value).doubleValue();
+                } else if (value != null) {
                     if (logger.isInfoEnabled()) {
                         logger.info(
                                 "Value at position " + p + " isn't a number and isn't null: " +
                                 value + "(" + value.getClass().getName() + ")");
                     }
-                    updateObject(col, null);
                 }
-                col++;
             }
-            insertRow();
+            data.add(row);
         }
         
         beforeFirst();
     }
 
-    /**
-     * Returns the column number in this result set that the given level's
-     * members are shown in.
-     * 
-     * @param level
-     *            The level whose column number to look up. Hint: only levels
-     *            that were in the original cell set's rows axis will have their
-     *            own column in this result set. The levels of the columns axis
-     *            are handled differently.
-     * @return The column in this result set that corresponds with the given
-     *         Level, or -1 if the given level does not have a column in this
-     *         result set.
-     */
-    private int findColumnForLevel(Level level) {
-        int index = rowAxisColumns.indexOf(level);
-        if (index >= 0) {
-            return index + 1;
-        } else {
-            return -1;
-        }
-    }
-
-    /**
-     * Provides the inverse mapping of {@link #findColumnForLevel(Level)}.
-     * 
-     * @param colNum
-     *            The result set column number (1-based; first column is 1).
-     * @return The Level associated with the given column, or null if the given
-     *         column does not exist or is not a Level column.
-     * @throws SQLException
-     *             if colNum is not a legal column index in this result set.
-     */
-    private Level getLevelForColumn(int colNum) throws SQLException {
-        if (colNum > rsmd.getColumnCount() || colNum < 1) {
-            throw new SQLException(
-                    "Column index out of bounds. You requested " + colNum +
-                    "; legal range is 1.." + rsmd.getColumnCount());
-        } else if (colNum <= rowAxisColumns.size()) {
-            return rowAxisColumns.get(colNum - 1);
-        } else {
-            return null;
-        }
-    }
-
     /**
      * 
      * @param axis
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.rs;
+
+import net.jcip.annotations.Immutable;
+import ca.sqlpower.wabit.rs.ResultSetHandle.ResultSetStatus;
+
+/**
+ * The progress of one partition of a partitioned execution at one point in
+ * time. See {@link QueryPartitioning}.
+ */
+@Immutable
+public final class PartitionProgress {
+
+    private final int partitionIndex;
+    
+    private final ResultSetStatus status;
+    
+    private final long rowCount;
+    
+    private final long elapsedTime;
+    
+    PartitionProgress(int partitionIndex, ResultSetStatus status, long rowCount, long elapsedTime) {
+        this.partitionIndex = partitionIndex;
+        this.status = status;
+        this.rowCount = rowCount;
+        this.elapsedTime = elapsedTime;
+    }
+
+    /**
+     * Returns the position of the range of this partition among the ranges
+     * of all partitions, starting at 0.
+     */
+    public int getPartitionIndex() {
+        return partitionIndex;
+    }
+    
+    public ResultSetStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the number of rows the partition has read so far.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the time in milliseconds the partition has been executing for,
+     * or took to execute if it has finished. This is 0 if it has not started.
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+    
+    @Override
+    public String toString() {
+        return "Partition " + partitionIndex + ": " + status + ", " + rowCount + " rows in " + 
+            elapsedTime + "ms";
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.rs;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Describes how to split the execution of a relational query into statements
+ * that each return the rows whose partition column falls in one range of
+ * values. The statements are executed concurrently on their own pooled
+ * connections and their rows are merged into one {@link ResultSetHandle}.
+ * <p>
+ * The ranges are found by first asking the database for the smallest and
+ * largest value of the partition column in the query's rows. The range
+ * between them is cut into {@link #getPartitionCount()} ranges of equal
+ * width. The first partition also returns the rows whose partition column is
+ * null, and the first and last partitions are open ended so no row is missed
+ * if the rows change between the queries.
+ * <p>
+ * The partition column must be a numeric or date column. Queries that cannot
+ * be partitioned, because they are not a single SELECT statement or because
+ * the column holds other values, are executed as one statement.
+ */
+@Immutable
+public final class QueryPartitioning {
+
+    /**
+     * The alias of the original query in the queries built around it.
+     */
+    private static final String SUBQUERY_ALIAS = "partitioned_rows";
+
+    private final String columnName;
+    
+    private final int partitionCount;
+    
+    private final boolean ordered;
+
+    /**
+     * @param columnName
+     *            The name of the numeric or date column in the query's result
+     *            set to partition the rows by.
+     * @param partitionCount
+     *            The number of statements to execute. This must be at least 1.
+     * @param ordered
+     *            True to merge the rows of the partitions in the order of
+     *            their ranges. The rows of a partition are added as soon as
+     *            it and every partition before it have finished, so the rows
+     *            of the first partitions show while later ones still run.
+     *            False to add the rows of each partition as soon as it
+     *            finishes, which shows rows sooner but in no particular
+     *            order.
+     */
+    public QueryPartitioning(@Nonnull String columnName, int partitionCount, boolean ordered) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("A query needs at least one partition but " + 
+                    partitionCount + " were requested");
+        }
+        this.columnName = columnName;
+        this.partitionCount = partitionCount;
+        this.ordered = ordered;
+    }
+    
+    public String getColumnName() {
+        return columnName;
+    }
+    
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+    
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * Creates the query that returns the smallest and largest value of the
+     * partition column in the rows of the given query.
+     * 
+     * @return The query, or null if the given query cannot be partitioned.
+     *         This is the case if it is not a single SELECT statement or if
+     *         the partition column name would need quoting.
+     */
+    public String createBoundsQuery(String sql) {
+        String innerSql = SubqueryUtil.toSubquery(sql);
+        if (innerSql == null || !SubqueryUtil.isSimpleIdentifier(columnName)) return null;
+        return SubqueryUtil.selectFrom("MIN(" + columnName + "), MAX(" + columnName + ")", 
+                innerSql, SUBQUERY_ALIAS);
+    }
+
+    /**
+     * Creates the queries of the partitions of the given query.
+     * 
+     * @param sql
+     *            The query to partition.
+     * @param min
+     *            The smallest value of the partition column, as returned by
+     *            the query from {@link #createBoundsQuery(String)}.
+     * @param max
+     *            The largest value of the partition column.
+     * @return The queries of the partitions in the order of their ranges. If
+     *         the rows cannot be split, because the column is empty, holds a
+     *         single value or holds values that are not numbers or dates, the
+     *         list only contains the given query.
+     */
+    public List<String> createPartitionQueries(String sql, Object min, Object max) {
+        String innerSql = SubqueryUtil.toSubquery(sql);
+        if (innerSql == null || !SubqueryUtil.isSimpleIdentifier(columnName)) {
+            return Collections.singletonList(sql);
+        }
+        List<String> cutPoints = createCutPoints(min, max);
+        if (cutPoints.isEmpty()) {
+            return Collections.singletonList(sql);
+        }
+        
+        List<String> queries = new ArrayList<String>(cutPoints.size() + 1);
+        String prefix = SubqueryUtil.selectFrom("*", innerSql, SUBQUERY_ALIAS) + " WHERE ";
+        queries.add(prefix + columnName + " < " + cutPoints.get(0) + " OR " + columnName + " IS NULL");
+        for (int i = 1; i < cutPoints.size(); i++) {
+            queries.add(prefix + columnName + " >= " + cutPoints.get(i - 1) + 
+                    " AND " + columnName + " < " + cutPoints.get(i));
+        }
+        queries.add(prefix + columnName + " >= " + cutPoints.get(cutPoints.size() - 1));
+        return queries;
+    }
+
+    /**
+     * Returns the SQL literals of the values that separate the partitions,
+     * in increasing order. This is one less than the number of partitions, or
+     * empty if the range cannot be split.
+     */
+    List<String> createCutPoints(Object min, Object max) {
+        List<String> cutPoints = new ArrayList<String>();
+        if (partitionCount < 2 || min == null || max == null) return cutPoints;
+        
+        if (isIntegral(min) && isIntegral(max)) {
+            BigInteger low = toBigInteger(min);
+            BigInteger high = toBigInteger(max);
+            BigInteger range = high.subtract(low).add(BigInteger.ONE);
+            int count = range.min(BigInteger.valueOf(partitionCount)).intValue();
+            for (int i = 1; i < count; i++) {
+                BigInteger cut = low.add(range.multiply(BigInteger.valueOf(i))
+                        .divide(BigInteger.valueOf(count)));
+                cutPoints.add(cut.toString());
+            }
+        } else if (min instanceof Number && max instanceof Number) {
+            BigDecimal low = toBigDecimal((Number) min);
+            BigDecimal high = toBigDecimal((Number) max);
+            if (low == null || high == null || low.compareTo(high) >= 0) return cutPoints;
+            BigDecimal width = high.subtract(low).divide(
+                    BigDecimal.valueOf(partitionCount), MathContext.DECIMAL64);
+            for (int i = 1; i < partitionCount; i++) {
+                cutPoints.add(low.add(width.multiply(BigDecimal.valueOf(i))).toPlainString());
+            }
+        } else if (min instanceof java.util.Date && max instanceof java.util.Date) {
+            long low = ((java.util.Date) min).getTime();
+            long high = ((java.util.Date) max).getTime();
+            if (low >= high) return cutPoints;
+            long range = high - low + 1;
+            int count = (int) Math.min(range, partitionCount);
+            for (int i = 1; i < count; i++) {
+                long cut = low + (long) (range * ((double) i / count));
+                // The JDBC escape syntax lets the driver translate the
+                // timestamp into its database's own literal.
+                cutPoints.add("{ts '" + new Timestamp(cut) + "'}");
+            }
+        }
+        return cutPoints;
+    }
+    
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short 
+            || value instanceof Byte || value instanceof BigInteger
+            || (value instanceof BigDecimal && ((BigDecimal) value).scale() <= 0);
+    }
+    
+    private static BigInteger toBigInteger(Object value) {
+        if (value instanceof BigInteger) {
+            return (BigInteger) value;
+        } else if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toBigInteger();
+        } else {
+            return BigInteger.valueOf(((Number) value).longValue());
+        }
+    }
+
+    /**
+     * Returns the given number as a {@link BigDecimal}, or null if it is not a
+     * finite number.
+     */
+    private static BigDecimal toBigDecimal(Number value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        double d = value.doubleValue();
+        if (Double.isNaN(d) || Double.isInfinite(d)) return null;
+        return BigDecimal.valueOf(d);
+    }
+    
+    @Override
+    public String toString() {
+        return "Partitioned by " + columnName + " into " + partitionCount + 
+            (ordered ? " ordered" : " unordered") + " partitions";
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.wabit.rs;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.sqlpower.sql.CachedRowSet;
+
+/**
+ * A typed, read-only cursor over the rows of a result set. Columns are looked
+ * up once with {@link #getColumn(String)} and the returned {@link Column} is
+ * then used to read the value of that column in each row, which avoids
+ * finding the column by name and boxing numbers for every value the way code
+ * calling {@link ResultSet#getDouble(String)} in a loop does.
+ * <p>
+ * A cursor keeps its own position. When it is created on a
+ * {@link CachedRowSet}, such as the result set of a {@link ResultSetHandle},
+ * it takes a snapshot of the row set's list of rows, sharing the row arrays
+ * instead of copying them, and does not move the row set's cursor. Any other
+ * result set is read into memory once when the cursor is created.
+ * <p>
+ * The cursor sees the rows that were in the result set when it was created.
+ * Rows added afterwards by a streaming query need a new cursor.
+ * <p>
+ * Rows can be read one at a time with {@link #next()} or in blocks with
+ * {@link #nextBlock(Object[][])}, which is useful for tight loops over large
+ * result sets.
+ */
+public class ResultSetCursor {
+
+    /**
+     * A reasonable number of rows to read at a time with
+     * {@link ResultSetCursor#nextBlock(Object[][])}.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    /**
+     * Reads the values of one column of the cursor it was created by. The
+     * getters without a row argument read the cursor's current row, the ones
+     * taking a row read a row returned by
+     * {@link ResultSetCursor#nextBlock(Object[][])}. Numeric getters follow
+     * the JDBC convention of returning 0 for null values; use
+     * {@link #isNull()} to tell the two apart.
+     */
+    public final class Column {
+
+        /**
+         * The index of this column in the row arrays. This is one less than
+         * the JDBC column index.
+         */
+        private final int index;
+
+        private final String name;
+
+        /**
+         * The type of the column as defined in {@link java.sql.Types}.
+         */
+        private final int type;
+
+        private Column(int index, String name, int type) {
+            this.index = index;
+            this.name = name;
+            this.type = type;
+        }
+
+        /**
+         * Returns the JDBC column index of this column, starting at 1.
+         */
+        public int getColumnIndex() {
+            return index + 1;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the type of this column as defined in {@link java.sql.Types}.
+         */
+        public int getType() {
+            return type;
+        }
+
+        public Object getObject() {
+            return currentRow()[index];
+        }
+
+        public Object getObject(Object[] row) {
+            return row[index];
+        }
+
+        public boolean isNull() {
+            return currentRow()[index] == null;
+        }
+
+        public boolean isNull(Object[] row) {
+            return row[index] == null;
+        }
+
+        public String getString() {
+            return asString(currentRow()[index]);
+        }
+
+        public String getString(Object[] row) {
+            return asString(row[index]);
+        }
+
+        public double getDouble() throws SQLException {
+            return toDouble(currentRow()[index]);
+        }
+
+        public double getDouble(Object[] row) throws SQLException {
+            return toDouble(row[index]);
+        }
+
+        public long getLong() throws SQLException {
+            return toLong(currentRow()[index]);
+        }
+
+        public long getLong(Object[] row) throws SQLException {
+            return toLong(row[index]);
+        }
+
+        /**
+         * Returns the value of this column as a {@link BigDecimal}, or null if
+         * the value is null.
+         */
+        public BigDecimal getBigDecimal() throws SQLException {
+            return toBigDecimal(currentRow()[index]);
+        }
+
+        public BigDecimal getBigDecimal(Object[] row) throws SQLException {
+            return toBigDecimal(row[index]);
+        }
+
+        /**
+         * Returns the value of this column as a date. Values of DATE, TIME and
+         * TIMESTAMP columns are all returned as they are stored. Returns null
+         * if the value is null.
+         */
+        public java.util.Date getDate() throws SQLException {
+            return toDate(currentRow()[index]);
+        }
+
+        public java.util.Date getDate(Object[] row) throws SQLException {
+            return toDate(row[index]);
+        }
+
+        private String asString(Object value) {
+            if (value == null) return null;
+            return value.toString();
+        }
+
+        private double toDouble(Object value) throws SQLException {
+            if (value == null) {
+                return 0;
+            } else if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            } else if (value instanceof Boolean) {
+                return ((Boolean) value).booleanValue() ? 1 : 0;
+            }
+            try {
+                return Double.parseDouble(value.toString().trim());
+            } catch (NumberFormatException e) {
+                throw conversionException(value, "double", e);
+            }
+        }
+
+        private long toLong(Object value) throws SQLException {
+            if (value == null) {
+                return 0;
+            } else if (value instanceof Number) {
+                return ((Number) value).longValue();
+            } else if (value instanceof Boolean) {
+                return ((Boolean) value).booleanValue() ? 1 : 0;
+            }
+            try {
+                return Long.parseLong(value.toString().trim());
+            } catch (NumberFormatException e) {
+                throw conversionException(value, "long", e);
+            }
+        }
+
+        private BigDecimal toBigDecimal(Object value) throws SQLException {
+            if (value == null) {
+                return null;
+            } else if (value instanceof BigDecimal) {
+                return (BigDecimal) value;
+            } else if (value instanceof BigInteger) {
+                return new BigDecimal((BigInteger) value);
+            } else if (value instanceof Long || value instanceof Integer
+                    || value instanceof Short || value instanceof Byte) {
+                return BigDecimal.valueOf(((Number) value).longValue());
+            }
+            try {
+                return new BigDecimal(value.toString().trim());
+            } catch (NumberFormatException e) {
+                throw conversionException(value, "BigDecimal", e);
+            }
+        }
+
+        private java.util.Date toDate(Object value) throws SQLException {
+            if (value == null) {
+                return null;
+            } else if (value instanceof java.util.Date) {
+                return (java.util.Date) value;
+            }
+            throw conversionException(value, "date", null);
+        }
+
+        private SQLException conversionException(Object value, String targetType, Exception cause) {
+            SQLException e = new SQLException("The value " + value + " in column " + name +
+                    " cannot be converted to a " + targetType);
+            if (cause != null) {
+                e.initCause(cause);
+            }
+            return e;
+        }
+    }
+
+    /**
+     * Creates a cursor over the rows currently in the given result set. If
+     * the result set is not a {@link CachedRowSet} its rows are read from the
+     * start, which moves its cursor to the end. The rows of a
+     * {@link CachedRowSet} are copied to a new list while holding the row
+     * set's lock. The lock is held by {@link WabitCachedRowSet} when it
+     * replaces or appends rows, but not by {@link CachedRowSet#populate},
+     * so a cursor must not be created on a row set that is still being
+     * populated.
+     */
+    public static ResultSetCursor create(ResultSet rs) throws SQLException {
+        final ResultSetMetaData metaData = rs.getMetaData();
+        final List<Object[]> rows;
+        if (rs instanceof CachedRowSet) {
+            synchronized (rs) {
+                List<Object[]> data = ((CachedRowSet) rs).getData();
+                rows = data == null ? new ArrayList<Object[]>() : new ArrayList<Object[]>(data);
+            }
+        } else {
+            final int columnCount = metaData.getColumnCount();
+            rows = new ArrayList<Object[]>();
+            rs.beforeFirst();
+            while (rs.next()) {
+                Object[] row = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                rows.add(row);
+            }
+        }
+        return new ResultSetCursor(metaData, rows);
+    }
+
+    private final ResultSetMetaData metaData;
+
+    private final List<Object[]> rows;
+
+    /**
+     * The number of rows this cursor iterates over.
+     */
+    private final int rowCount;
+
+    /**
+     * The columns already resolved by {@link #getColumn(int)}, indexed by
+     * their position in the row arrays.
+     */
+    private final Column[] columns;
+
+    /**
+     * The index of the current row, -1 if the cursor is before the first row
+     * and {@link #rowCount} if it is after the last row.
+     */
+    private int position = -1;
+
+    private Object[] currentRow;
+
+    private ResultSetCursor(ResultSetMetaData metaData, List<Object[]> rows) throws SQLException {
+        this.metaData = metaData;
+        this.rows = rows;
+        this.rowCount = rows.size();
+        this.columns = new Column[metaData.getColumnCount()];
+    }
+
+    /**
+     * Returns the column with the given JDBC column index, starting at 1.
+     */
+    public Column getColumn(int columnIndex) throws SQLException {
+        if (columnIndex < 1 || columnIndex > columns.length) {
+            throw new SQLException("Column index out of bounds. You requested " + columnIndex +
+                    "; legal range is 1.." + columns.length);
+        }
+        Column column = columns[columnIndex - 1];
+        if (column == null) {
+            column = new Column(columnIndex - 1, metaData.getColumnName(columnIndex),
+                    metaData.getColumnType(columnIndex));
+            columns[columnIndex - 1] = column;
+        }
+        return column;
+    }
+
+    /**
+     * Returns the first column with the given name, ignoring case as
+     * {@link ResultSet#findColumn(String)} does. The column label is checked
+     * as well as the column name.
+     *
+     * @throws SQLException
+     *             If there is no column with the given name.
+     */
+    public Column getColumn(String columnName) throws SQLException {
+        for (int i = 1; i <= columns.length; i++) {
+            if (columnName.equalsIgnoreCase(metaData.getColumnName(i))
+                    || columnName.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                return getColumn(i);
+            }
+        }
+        throw new SQLException("No such column: " + columnName);
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the index of the current row starting at 0. This is -1 before
+     * the first row and {@link #getRowCount()} after the last row.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Moves the cursor to the row at the given index, starting at 0. The
+     * index can be -1 to move before the first row or {@link #getRowCount()}
+     * to move after the last row.
+     *
+     * @return True if the cursor is on a row.
+     */
+    public boolean setPosition(int position) {
+        if (position < -1 || position > rowCount) {
+            throw new IndexOutOfBoundsException("Row " + position + " is not in the range -1.." + rowCount);
+        }
+        this.position = position;
+        if (position >= 0 && position < rowCount) {
+            currentRow = rows.get(position);
+            return true;
+        } else {
+            currentRow = null;
+            return false;
+        }
+    }
+
+    public void beforeFirst() {
+        setPosition(-1);
+    }
+
+    public boolean next() {
+        if (position >= rowCount) return false;
+        return setPosition(position + 1);
+    }
+
+    public boolean previous() {
+        if (position < 0) return false;
+        return setPosition(position - 1);
+    }
+
+    public boolean isFirst() {
+        return position == 0 && rowCount > 0;
+    }
+
+    public boolean isLast() {
+        return position == rowCount - 1 && rowCount > 0;
+    }
+
+    /**
+     * Returns the values of the row at the given index. The array must not be
+     * modified.
+     */
+    public Object[] getRow(int position) {
+        return rows.get(position);
+    }
+
+    /**
+     * Fills the given array with the rows following the current row and
+     * moves the cursor to the last row placed in the array. The values of the
+     * rows can be read with the getters of {@link Column} that take a row.
+     *
+     * @param block
+     *            The array to fill. Its entries past the returned count are
+     *            left as they were.
+     * @return The number of rows placed in the block, 0 if there are no more
+     *         rows.
+     */
+    public int nextBlock(Object[][] block) {
+        int start = position + 1;
+        int count = Math.min(block.length, rowCount - start);
+        if (count <= 0) {
+            setPosition(rowCount);
+            return 0;
+        }
+        for (int i = 0; i < count; i++) {
+            block[i] = rows.get(start + i);
+        }
+        setPosition(start + count - 1);
+        return count;
+    }
+
+    private Object[] currentRow() {
+        if (currentRow == null) {
+            throw new IllegalStateException("The cursor is not on a row. Its position is " + position);
+        }
+        return currentRow;
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.rs;
+
+import java.awt.GraphicsEnvironment;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nonnull;
+import javax.swing.SwingUtilities;
+
+import org.apache.log4j.Logger;
+
+import ca.sqlpower.wabit.WabitSession;
+
+/**
+ * Delivers the events of {@link ResultSetHandle}s and
+ * {@link ResultSetProducerSupport} to their listeners on the foreground thread
+ * of a session. Swing sessions use the Swing event dispatch thread. Other
+ * sessions deliver their events with {@link WabitSession#runInForeground(Runnable)}
+ * so they do not need a thread of their own. Handles that do not belong to a
+ * session in a headless JVM share one thread for their events.
+ * <p>
+ * The new data events of each handle are coalesced by one scheduler shared by
+ * all of the dispatchers instead of a timer for each handle. A handle never has
+ * more than one new data event waiting to be delivered, and if its listeners
+ * take longer than {@link #UPDATE_INTERVAL} to handle an event the next event
+ * waits as long as they took. Listeners that fall behind get fewer events
+ * instead of a growing queue of them.
+ */
+public class ResultSetEventDispatcher {
+
+    private static final Logger logger = Logger.getLogger(ResultSetEventDispatcher.class);
+
+    /**
+     * The shortest time in milliseconds between two new data events of one
+     * handle.
+     */
+    public static final long UPDATE_INTERVAL = 500;
+
+    /**
+     * Decides when the coalesced new data events of every handle are
+     * delivered. The scheduler only hands the events to the foreground
+     * executor of their dispatcher so one thread is enough for all of them.
+     */
+    private static final ScheduledExecutorService updateScheduler = 
+        Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Result set update scheduler");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+    /**
+     * The dispatcher that delivers events on the Swing event dispatch thread.
+     */
+    private static final ResultSetEventDispatcher swingDispatcher = new ResultSetEventDispatcher(null);
+
+    /**
+     * The dispatcher used by handles that do not belong to a session when
+     * there is no display. This is created the first time it is needed.
+     */
+    private static ResultSetEventDispatcher headlessDispatcher;
+
+    /**
+     * Returns the dispatcher that delivers events on the Swing event dispatch
+     * thread.
+     */
+    public static ResultSetEventDispatcher getSwingDispatcher() {
+        return swingDispatcher;
+    }
+
+    /**
+     * Creates a dispatcher that delivers events with the given session's
+     * {@link WabitSession#runInForeground(Runnable)}.
+     */
+    public static ResultSetEventDispatcher createSessionDispatcher(@Nonnull WabitSession session) {
+        return new ResultSetEventDispatcher(session);
+    }
+
+    /**
+     * Creates a dispatcher that delivers events on a new thread of its own,
+     * one event at a time. The thread ends when the dispatcher is
+     * {@link #shutdown()}.
+     * 
+     * @param threadName
+     *            The name of the thread events are delivered on.
+     */
+    public static ResultSetEventDispatcher createSerialDispatcher(@Nonnull final String threadName) {
+        return new ResultSetEventDispatcher(threadName);
+    }
+
+    /**
+     * Returns the dispatcher for handles that do not belong to a session. This
+     * is the Swing dispatcher unless there is no display.
+     */
+    public static synchronized ResultSetEventDispatcher getDefault() {
+        if (!GraphicsEnvironment.isHeadless()) {
+            return swingDispatcher;
+        }
+        if (headlessDispatcher == null) {
+            headlessDispatcher = createSerialDispatcher("Result set events");
+        }
+        return headlessDispatcher;
+    }
+
+    /**
+     * Runs the events of this dispatcher if it has a thread of its own. This
+     * is null for the Swing dispatcher and for session dispatchers.
+     */
+    private final ExecutorService foregroundExecutor;
+
+    /**
+     * The session whose foreground thread events are delivered on. This is
+     * null unless the dispatcher was created for a session.
+     */
+    private final WabitSession session;
+
+    /**
+     * The thread of {@link #foregroundExecutor}.
+     */
+    private volatile Thread foregroundThread;
+
+    /**
+     * Creates a dispatcher that delivers its events on a thread with the given
+     * name, or on the Swing event dispatch thread if the name is null.
+     */
+    private ResultSetEventDispatcher(final String threadName) {
+        session = null;
+        if (threadName == null) {
+            foregroundExecutor = null;
+        } else {
+            foregroundExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, threadName);
+                    t.setDaemon(true);
+                    foregroundThread = t;
+                    return t;
+                }
+            });
+        }
+    }
+
+    /**
+     * Creates a dispatcher that delivers its events on the foreground thread
+     * of the given session.
+     */
+    private ResultSetEventDispatcher(WabitSession session) {
+        this.session = session;
+        foregroundExecutor = null;
+    }
+
+    /**
+     * Returns true if the calling thread is the thread this dispatcher
+     * delivers events on.
+     */
+    public boolean isForegroundThread() {
+        if (session != null) {
+            return session.isForegroundThread();
+        }
+        if (foregroundExecutor == null) {
+            return SwingUtilities.isEventDispatchThread();
+        }
+        return Thread.currentThread() == foregroundThread;
+    }
+
+    /**
+     * Runs the given event delivery now if this is called on the foreground
+     * thread, otherwise queues it to run on the foreground thread.
+     */
+    public void dispatch(@Nonnull Runnable delivery) {
+        if (isForegroundThread()) {
+            delivery.run();
+        } else {
+            dispatchLater(delivery);
+        }
+    }
+
+    /**
+     * Queues the given event delivery to run on the foreground thread after
+     * the events already queued, even if this is called on the foreground
+     * thread. Sessions that run their foreground work on the calling thread
+     * deliver the event right away.
+     */
+    public void dispatchLater(@Nonnull Runnable delivery) {
+        if (session != null) {
+            session.runInForeground(delivery);
+            return;
+        }
+        if (foregroundExecutor == null) {
+            SwingUtilities.invokeLater(delivery);
+            return;
+        }
+        try {
+            foregroundExecutor.execute(delivery);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Dropped a result set event sent after the dispatcher was shut down", e);
+        }
+    }
+
+    /**
+     * Stops the thread of this dispatcher once the events already queued have
+     * been delivered. Events sent after this are dropped. This does nothing
+     * for the Swing dispatcher and for session dispatchers.
+     */
+    public void shutdown() {
+        if (foregroundExecutor != null) {
+            foregroundExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Creates a coalescer that delivers the new data events of one handle with
+     * this dispatcher.
+     * 
+     * @param delivery
+     *            Notifies the listeners of the handle that new data is
+     *            available. This is run on the foreground thread.
+     */
+    public UpdateCoalescer createUpdateCoalescer(@Nonnull Runnable delivery) {
+        return new UpdateCoalescer(delivery);
+    }
+
+    /**
+     * Turns any number of notifications that new data is available into at
+     * most one new data event per {@link ResultSetEventDispatcher#UPDATE_INTERVAL}.
+     */
+    public class UpdateCoalescer {
+        
+        private final Runnable delivery;
+
+        /**
+         * True from the time an update is available until the event for it is
+         * delivered. Updates that arrive in this time are covered by the event
+         * that is already scheduled or queued.
+         */
+        private final AtomicBoolean updatePending = new AtomicBoolean(false);
+        
+        private volatile boolean stopped = false;
+
+        /**
+         * The {@link System#nanoTime()} when the last event finished being
+         * delivered.
+         */
+        private volatile long lastDeliveryEnd = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(UPDATE_INTERVAL);
+
+        /**
+         * How long the listeners took to handle the last event, in
+         * nanoseconds.
+         */
+        private volatile long lastDeliveryTime = 0;
+        
+        private final Runnable deliverUpdate = new Runnable() {
+            public void run() {
+                updatePending.set(false);
+                if (stopped) return;
+                long start = System.nanoTime();
+                try {
+                    delivery.run();
+                } finally {
+                    long end = System.nanoTime();
+                    lastDeliveryTime = end - start;
+                    lastDeliveryEnd = end;
+                }
+            }
+        };
+        
+        private final Runnable queueUpdate = new Runnable() {
+            public void run() {
+                dispatchLater(deliverUpdate);
+            }
+        };
+        
+        private UpdateCoalescer(Runnable delivery) {
+            this.delivery = delivery;
+        }
+
+        /**
+         * Tells this coalescer new data is available. An event is delivered
+         * right away if none was delivered in the last interval, otherwise
+         * once the interval has passed. This can be called on any thread.
+         */
+        public void updateAvailable() {
+            if (stopped || !updatePending.compareAndSet(false, true)) return;
+            long wait = Math.max(TimeUnit.MILLISECONDS.toNanos(UPDATE_INTERVAL), lastDeliveryTime);
+            long delay = lastDeliveryEnd + wait - System.nanoTime();
+            if (delay <= 0) {
+                queueUpdate.run();
+            } else {
+                updateScheduler.schedule(queueUpdate, delay, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * Stops delivering events, including an event that is already
+         * scheduled.
+         */
+        public void stop() {
+            stopped = true;
+        }
+    }
+}
@@ -19,23 +19,27 @@
 
 package ca.sqlpower.wabit.rs;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import javax.swing.SwingUtilities;
-import javax.swing.Timer;
 
 import net.jcip.annotations.GuardedBy;
 
@@ -47,18 +51,23 @@ import ca.sqlpower.object.SPVariableHelper;
 import ca.sqlpower.sql.CachedRowSet;
 import ca.sqlpower.sql.JDBCDataSource;
 import ca.sqlpower.sql.Olap4jDataSource;
+import ca.sqlpower.sql.RowFilter;
 import ca.sqlpower.sql.RowSetChangeEvent;
 import ca.sqlpower.sql.RowSetChangeListener;
 import ca.sqlpower.swingui.SPSUtils;
 import ca.sqlpower.wabit.OlapConnectionProvider;
 import ca.sqlpower.wabit.SqlConnectionProvider;
 import ca.sqlpower.wabit.swingui.ExceptionHandler;
+import ca.sqlpower.wabit.trace.PerformanceTracer;
+import ca.sqlpower.wabit.trace.Span;
 
 /**
  * This object is a wrapper for a background executing query that will return
  * a {@link ResultSet} once it completes.
  * 
- * All events fired from this object will be fired on the Swing event thread.
+ * All events fired from this object are fired on the foreground thread of the
+ * {@link ResultSetEventDispatcher} given to it, which is the Swing event thread
+ * in Swing sessions.
  */
 public class ResultSetHandle {
 	
@@ -72,18 +81,34 @@ public class ResultSetHandle {
 		NEW,
 		RUNNING,
 		SUCCESS,
-		ERROR
+		ERROR,
+		CANCELLED
 	}
 	
 	private final ResultSetType rsType;
 	
-	private ResultSetStatus status = ResultSetStatus.NEW;
+	private volatile ResultSetStatus status = ResultSetStatus.NEW;
 	
 	private Exception exception = null;
 
 	private final Task task;
+
+	/**
+	 * Cancelled when this handle is cancelled. The population of this handle
+	 * and the code that builds datasets and layouts from its results check
+	 * this token so they stop working on results that are no longer wanted.
+	 */
+	private final CancellationToken cancellationToken = new CancellationToken();
 	
 	private boolean populated = false;
+	
+	/**
+	 * The result of submitting the {@link #task} to the executor if this
+	 * handle is being populated asynchronously. This will be null if the
+	 * handle has not been populated yet or if it was populated on the
+	 * calling thread.
+	 */
+	private volatile Future<?> taskFuture = null;
 
 	private final int rowLimit;
     
@@ -93,12 +118,54 @@ public class ResultSetHandle {
      * This is the internal {@link CachedRowSet} data object.
      * We will populate it on a background thread.
      */
-    private final CachedRowSet cachedRowSet;
+    private final WabitCachedRowSet cachedRowSet;
     
     /**
      * This is the internal CellSet object 
      */
-    private CellSet olapCellSet = null;
+    private volatile CellSet olapCellSet = null;
+
+    /**
+     * True once the {@link OlapResultSet} of an OLAP handle has been
+     * populated from {@link #olapCellSet}. The conversion to a result set is
+     * only done the first time something asks for the rows of the handle
+     * because most OLAP results are only ever shown as a cell set.
+     */
+    @GuardedBy("cachedRowSet")
+    private boolean olapResultSetPopulated = false;
+
+    /**
+     * The rows a streaming handle retains. The oldest rows are evicted once
+     * the row limit of the handle is reached. This is null for other handles.
+     */
+    private final StreamingRowBuffer streamingBuffer;
+
+    /**
+     * The {@link StreamingRowBuffer#getNextSequence()} of the streaming buffer
+     * when {@link #cachedRowSet} was last refreshed from it.
+     */
+    @GuardedBy("cachedRowSet")
+    private long streamingRowSetSequence = 0;
+
+    /**
+     * Describes how to split the execution of a relational handle into
+     * concurrent statements. This is null if the query of the handle is
+     * executed as one statement.
+     */
+    private final QueryPartitioning partitioning;
+
+    /**
+     * The partitions of a partitioned execution, in the order of their
+     * ranges. This is empty until the ranges of the partitions are known.
+     */
+    private volatile List<Partition> partitions = Collections.emptyList();
+
+    /**
+     * Set once the rows merged from the partitions of a partitioned execution
+     * reach the row limit. The partitions still running are stopped then as
+     * none of their rows would be merged.
+     */
+    private volatile boolean partitionRowLimitReached = false;
     
     private static ExecutorService executorService;
     
@@ -114,7 +181,12 @@ public class ResultSetHandle {
     private final List<ResultSetListener> resultSetListeners = 
     		new CopyOnWriteArrayList<ResultSetListener>();
     
-    private InternalRowSetListener internalListener = new InternalRowSetListener();
+    private final InternalRowSetListener internalListener;
+
+    /**
+     * Delivers the events of this handle to its listeners.
+     */
+    private final ResultSetEventDispatcher eventDispatcher;
     
     /**
      * Internal listener to forward row updates to
@@ -122,39 +194,35 @@ public class ResultSetHandle {
      */
     private class InternalRowSetListener implements RowSetChangeListener {
     	
-    	private AtomicBoolean hasUpdates = new AtomicBoolean(false);
-    	
-    	private final Timer timer = new Timer(500, new ActionListener() {
-			
-    		public void actionPerformed(ActionEvent e) {
-				
-				if (hasUpdates.get()) {
-					
-					final ResultSetEvent rse = ResultSetEvent.getNewDataEvent(
-							ResultSetHandle.this);
-					
-					for (ResultSetListener listener : resultSetListeners) {
-						listener.newData(rse);
-					}
-				
-					hasUpdates.set(false);
-				}
-			}
-		});
-    	
-    	public InternalRowSetListener() {
-    		this.timer.setInitialDelay(0);
-    		this.timer.setCoalesce(true);
-    		this.timer.setRepeats(true);
-    		this.timer.start();
-    	}
+    	private final ResultSetEventDispatcher.UpdateCoalescer coalescer = 
+    		eventDispatcher.createUpdateCoalescer(new Runnable() {
+    			public void run() {
+    				if (streamingBuffer != null) {
+    					streamingBuffer.rowsDelivered();
+    				}
+    				final ResultSetEvent rse = ResultSetEvent.getNewDataEvent(
+    						ResultSetHandle.this);
+    				for (ResultSetListener listener : resultSetListeners) {
+    					listener.newData(rse);
+    				}
+    			}
+    		});
     	
     	public void cleanup() {
-    		this.timer.stop();
+    		this.coalescer.stop();
     	}
     	
 		public void rowAdded(RowSetChangeEvent e) {
-			hasUpdates.set(true);
+			coalescer.updateAvailable();
+		}
+		
+		/**
+		 * Tells the listeners rows arrived in the streaming buffer, or that
+		 * the rows or progress of a partition of a partitioned execution
+		 * changed.
+		 */
+		public void rowsAdded() {
+			coalescer.updateAvailable();
 		}
 	};
 	
@@ -187,8 +255,37 @@ public class ResultSetHandle {
     		SPVariableHelper variablesContext,
 			ResultSetType type, 
 			int rowLimit, 
-			@Nullable final ExceptionHandler injectedHandler) 
+			@Nullable final ExceptionHandler injectedHandler,
+			@Nullable ResultSetEventDispatcher eventDispatcher) 
     {
+    	this(connectionProvider, dataSource, query, variablesContext, type, rowLimit, 
+    			null, injectedHandler, eventDispatcher);
+    }
+
+	/**
+	 * Creates a handle for a relational or streaming query. A relational
+	 * query can be split into partitions that are executed concurrently on
+	 * pooled connections of the data source.
+	 * 
+	 * @param partitioning
+	 *            Describes how to partition the query, or null to execute it
+	 *            as one statement. Only relational queries can be
+	 *            partitioned.
+	 */
+    public ResultSetHandle(
+    		SqlConnectionProvider connectionProvider,
+    		JDBCDataSource dataSource,
+    		String query, 
+    		SPVariableHelper variablesContext,
+			ResultSetType type, 
+			int rowLimit, 
+			@Nullable QueryPartitioning partitioning,
+			@Nullable final ExceptionHandler injectedHandler,
+			@Nullable ResultSetEventDispatcher eventDispatcher) 
+    {
+    	if (partitioning != null && !type.equals(ResultSetType.RELATIONAL)) {
+    		throw new IllegalArgumentException("Only relational queries can be partitioned, not " + type);
+    	}
     	if (query == null) {
     		throw new NullPointerException("Query cannot be null");
     	}
@@ -198,11 +295,20 @@ public class ResultSetHandle {
     	
     	this.rowLimit = rowLimit;
     	this.rsType = type;
+    	this.partitioning = partitioning;
+    	if (type.equals(ResultSetType.STREAMING)) {
+    		this.streamingBuffer = new StreamingRowBuffer(Math.max(1, rowLimit));
+    	} else {
+    		this.streamingBuffer = null;
+    	}
+    	this.eventDispatcher = eventDispatcher != null ? 
+    			eventDispatcher : ResultSetEventDispatcher.getDefault();
+    	this.internalListener = new InternalRowSetListener();
     	
     	if (this.rsType.equals(ResultSetType.OLAP)) {
     		this.cachedRowSet = new OlapResultSet();
     	} else {
-    		this.cachedRowSet = new CachedRowSet();
+    		this.cachedRowSet = new WabitCachedRowSet();
     	}
     	
     	this.cachedRowSet.addRowSetListener(this.internalListener);
@@ -225,7 +331,8 @@ public class ResultSetHandle {
     		SPVariableHelper variablesContext,
 			ResultSetType type, 
 			int rowLimit, 
-			@Nullable final ExceptionHandler injectedHandler) 
+			@Nullable final ExceptionHandler injectedHandler,
+			@Nullable ResultSetEventDispatcher eventDispatcher) 
     {
     	if (query == null) {
     		throw new NullPointerException("Query cannot be null");
@@ -236,11 +343,16 @@ public class ResultSetHandle {
     	
     	this.rowLimit = rowLimit;
     	this.rsType = type;
+    	this.partitioning = null;
+    	this.streamingBuffer = null;
+    	this.eventDispatcher = eventDispatcher != null ? 
+    			eventDispatcher : ResultSetEventDispatcher.getDefault();
+    	this.internalListener = new InternalRowSetListener();
     	
     	if (this.rsType.equals(ResultSetType.OLAP)) {
     		this.cachedRowSet = new OlapResultSet();
     	} else {
-    		this.cachedRowSet = new CachedRowSet();
+    		this.cachedRowSet = new WabitCachedRowSet();
     	}
     	
     	this.cachedRowSet.addRowSetListener(this.internalListener);
@@ -258,7 +370,7 @@ public class ResultSetHandle {
 
 	private class Task implements Runnable {
     	
-		private PreparedStatement statement = null;
+		private volatile PreparedStatement statement = null;
 		
 		private final UncaughtExceptionHandler handler;
 		private String query = null;
@@ -298,17 +410,127 @@ public class ResultSetHandle {
 			handler = injectedHandler;
 		}
 		
-		public void cancel() {
-			try {
-				if (statement != null) {
-					statement.cancel();    				
+		/**
+		 * Stops the statement of this task while it waits on the database or
+		 * while its rows are being read. This is registered with the
+		 * cancellation token of the handle while the statement is open.
+		 */
+		private final Runnable cancelStatement = new Runnable() {
+			public void run() {
+				PreparedStatement currentStatement = statement;
+				if (currentStatement == null) return;
+				try {
+					currentStatement.cancel();
+				} catch (SQLException e) {
+					logger.warn("The statement could not be cancelled, its rows " +
+							"will be discarded as they arrive", e);
+				}
+			}
+		};
+
+		/**
+		 * Stops the population of the row set at the next row once the
+		 * handle is cancelled.
+		 */
+		private final RowFilter cancellationFilter = new RowFilter() {
+			public boolean acceptsRow(Object[] row) {
+				cancellationToken.throwIfCancelled();
+				return true;
+			}
+		};
+
+		/**
+		 * Moves each row of a streaming query into the streaming buffer
+		 * instead of the row set, which only gets the metadata of the stream.
+		 * The row set is refreshed from the buffer when it is asked for.
+		 */
+		private final RowFilter streamingFilter = new RowFilter() {
+			public boolean acceptsRow(Object[] row) {
+				cancellationToken.throwIfCancelled();
+				streamingBuffer.append(row);
+				internalListener.rowsAdded();
+				return false;
+			}
+		};
+		
+		/**
+		 * Splits the query into partitions using the range of values
+		 * returned by the bounds query in {@link #statement} and executes the
+		 * partitions concurrently, merging their rows into the row set of
+		 * this handle. If one partition fails the others are stopped and the
+		 * failure is thrown once they have all ended. Each partition reads at
+		 * most the row limit of the handle, and the partitions still running
+		 * are stopped once the merged rows reach the limit.
+		 */
+		private void executePartitions() throws Exception {
+			statement.execute();
+			Object min = null;
+			Object max = null;
+			final ResultSet bounds = statement.getResultSet();
+			if (bounds != null) {
+				try {
+					if (bounds.next()) {
+						min = bounds.getObject(1);
+						max = bounds.getObject(2);
+					}
+				} finally {
+					bounds.close();
 				}
-			} catch (SQLException e) {
-				throw new RuntimeException(e);
+			}
+			
+			List<String> partitionQueries = partitioning.createPartitionQueries(query, min, max);
+			logger.debug("Executing " + partitionQueries.size() + " partitions between " + 
+					min + " and " + max);
+			List<Partition> newPartitions = new ArrayList<Partition>(partitionQueries.size());
+			for (int i = 0; i < partitionQueries.size(); i++) {
+				newPartitions.add(new Partition(i, partitionQueries.get(i), this));
+			}
+			partitions = Collections.unmodifiableList(newPartitions);
+			
+			List<Future<WabitCachedRowSet>> futures = 
+				new ArrayList<Future<WabitCachedRowSet>>(newPartitions.size());
+			for (Partition partition : newPartitions) {
+				futures.add(executorService.submit(partition));
+			}
+			
+			Throwable failure = null;
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					WabitCachedRowSet rows = futures.get(i).get();
+					if (partitioning.isOrdered()) {
+						// Partitions are merged in the order of their ranges
+						// as soon as the partitions before them are merged.
+						appendPartitionRows(rows);
+					}
+				} catch (ExecutionException e) {
+					if (partitionRowLimitReached) {
+						// The partition was stopped because the handle
+						// already has all of the rows it can hold.
+						logger.debug("Partition " + i + " ended after the row limit was reached", 
+								e.getCause());
+					} else if (failure == null) {
+						failure = e.getCause();
+						for (Partition partition : newPartitions) {
+							partition.stop();
+						}
+					}
+				}
+			}
+			if (failure instanceof Exception) {
+				throw (Exception) failure;
+			} else if (failure != null) {
+				throw new RuntimeException(failure);
 			}
 		}
+		
 		public void run() {
+			final Span span = PerformanceTracer.start(PerformanceTracer.QUERY_STAGE, query);
+			final String boundsQuery = 
+				partitioning != null ? partitioning.createBoundsQuery(query) : null;
 			try {
+				
+				// A handle cancelled before it started does not need to run.
+				cancellationToken.throwIfCancelled();
             	
             	status = ResultSetStatus.RUNNING;
             	
@@ -325,11 +547,7 @@ public class ResultSetHandle {
     					}
         			}
         		};
-        		if (SwingUtilities.isEventDispatchThread()) {
-        			runnable.run();
-        		} else {
-        			SwingUtilities.invokeLater(runnable);
-        		}
+        		eventDispatcher.dispatch(runnable);
         		
         		switch (rsType) {
         		
@@ -339,52 +557,81 @@ public class ResultSetHandle {
                 		
             		case RELATIONAL:
             		case STREAMING:
-            			statement = sqlConnectionProvider.createPreparedStatement(jdbcDataSource, query, variablesContext);
+            			// A partitioned execution starts by finding the range of
+            			// values to split.
+            			statement = sqlConnectionProvider.createPreparedStatement(jdbcDataSource, 
+            					boundsQuery != null ? boundsQuery : query, variablesContext);
             			break;
             			
             		default:
             			throw new RuntimeException("Program error.");
             			
         		}
+        		cancellationToken.onCancel(cancelStatement);
+        		cancellationToken.throwIfCancelled();
         		
             	switch (rsType) {
             	
                 	case OLAP:
                 		olapCellSet = ((PreparedOlapStatement)statement).executeQuery();
-                		((OlapResultSet)cachedRowSet).populate(olapCellSet);
                 		status = ResultSetStatus.SUCCESS;
                 		break;
                 
                 	case STREAMING:
                 		statement.execute();
                 		final ResultSet streamingRS = statement.getResultSet();
-            			cachedRowSet.follow(streamingRS, rowLimit);
+                		if (streamingRS != null) {
+                			cachedRowSet.populate(streamingRS, streamingFilter);
+                		}
+                		span.setRowCount(streamingBuffer.getNextSequence());
             			status = ResultSetStatus.SUCCESS;
             			break;
                 	
                 	case RELATIONAL:
+                		if (boundsQuery != null) {
+                			executePartitions();
+                			span.setRowCount(cachedRowSet.size());
+                			status = ResultSetStatus.SUCCESS;
+                			break;
+                		}
                 		statement.setMaxRows(rowLimit);
                 		statement.execute();
                 		final ResultSet rs = statement.getResultSet();
                 		if (rs != null) {
-                			cachedRowSet.populate(rs);                			                			
+                			cachedRowSet.populate(rs, cancellationFilter);
+                			span.setRowCount(cachedRowSet.size());
                 		}
                 		status = ResultSetStatus.SUCCESS;
                 		break;
                 	default:
             			throw new RuntimeException("Program error.");
             	}
+            	cancellationToken.throwIfCancelled();
             	
             } catch (Throwable t) {
-                logger.error("Exception ecountered while executing the query", t);
-                status = ResultSetStatus.ERROR;
-                SQLException e = new SQLException();
-                e.initCause(t);
-                exception = e;
+            	if (cancellationToken.isCancelled()) {
+            		// The statement fails in many different ways when it is
+            		// cancelled, none of which are errors.
+            		logger.debug("Execution of the query was cancelled", t);
+            		status = ResultSetStatus.CANCELLED;
+            		span.setCancelled(true);
+            	} else {
+            		logger.error("Exception ecountered while executing the query", t);
+            		status = ResultSetStatus.ERROR;
+            		SQLException e = new SQLException();
+            		e.initCause(t);
+            		exception = e;
+            	}
             } finally {
+            	span.end();
+            	if (streamingBuffer != null && logger.isDebugEnabled()) {
+            		logger.debug("Stream ended. " + streamingBuffer.getStatistics());
+            	}
+            	cancellationToken.removeOnCancel(cancelStatement);
             	try {
             		if (statement != null) {
             			statement.close();
+            			statement = null;
                 	}
             		ResultSetHandle.this.internalListener.cleanup();
             	} catch (Exception eX) {
@@ -399,16 +646,185 @@ public class ResultSetHandle {
         					}
             			}
             		};
-            		if (SwingUtilities.isEventDispatchThread()) {
-            			task.run();
-            		} else {
-            			SwingUtilities.invokeLater(task);
-            		}
+            		eventDispatcher.dispatch(task);
             	}
             }
         }
     }
 
+	/**
+	 * Adds the rows of a finished partition to the row set of this handle,
+	 * up to the row limit of the handle. Once the row limit is reached the
+	 * partitions that are still running are stopped.
+	 */
+	private void appendPartitionRows(WabitCachedRowSet rows) throws SQLException {
+		boolean full;
+		synchronized (cachedRowSet) {
+			cachedRowSet.appendRows(rows, rowLimit);
+			full = rowLimit > 0 && cachedRowSet.getData().size() >= rowLimit;
+		}
+		if (full && !partitionRowLimitReached) {
+			partitionRowLimitReached = true;
+			for (Partition partition : partitions) {
+				partition.stop();
+			}
+		}
+		internalListener.rowsAdded();
+	}
+
+	/**
+	 * Executes the query of one partition of a partitioned execution on a
+	 * connection of its own and tracks its progress. Listeners of the handle
+	 * get new data events as the partition reads its rows.
+	 */
+	private class Partition implements Callable<WabitCachedRowSet> {
+		
+		private final int index;
+		
+		private final String sql;
+
+		/**
+		 * The task of the handle, which has the connection provider and
+		 * variables the partition's statement is created with.
+		 */
+		private final Task task;
+		
+		private final AtomicLong rowCount = new AtomicLong();
+		
+		private volatile ResultSetStatus partitionStatus = ResultSetStatus.NEW;
+
+		/**
+		 * The {@link System#nanoTime()} the partition started and ended at.
+		 * These are 0 until it has.
+		 */
+		private volatile long startTime = 0;
+		private volatile long endTime = 0;
+
+		/**
+		 * Set when another partition failed or the handle has all of the rows
+		 * it can hold, and this partition should stop.
+		 */
+		private volatile boolean stopped = false;
+		
+		private volatile PreparedStatement partitionStatement = null;
+		
+		private final Runnable cancelStatement = new Runnable() {
+			public void run() {
+				PreparedStatement currentStatement = partitionStatement;
+				if (currentStatement == null) return;
+				try {
+					currentStatement.cancel();
+				} catch (SQLException e) {
+					logger.warn("The statement of partition " + index + " could not be " +
+							"cancelled, its rows will be discarded as they arrive", e);
+				}
+			}
+		};
+		
+		private final RowFilter rowCounter = new RowFilter() {
+			public boolean acceptsRow(Object[] row) {
+				cancellationToken.throwIfCancelled();
+				if (stopped) {
+					throw new CancellationException("Partition " + index + " was stopped");
+				}
+				rowCount.incrementAndGet();
+				internalListener.rowsAdded();
+				return true;
+			}
+		};
+		
+		Partition(int index, String sql, Task task) {
+			this.index = index;
+			this.sql = sql;
+			this.task = task;
+		}
+		
+		public WabitCachedRowSet call() throws Exception {
+			final Span span = PerformanceTracer.start(PerformanceTracer.QUERY_STAGE, sql);
+			startTime = System.nanoTime();
+			partitionStatus = ResultSetStatus.RUNNING;
+			Connection con = null;
+			try {
+				cancellationToken.throwIfCancelled();
+				if (stopped) {
+					throw new CancellationException("Partition " + index + " was stopped");
+				}
+				con = task.sqlConnectionProvider.createConnection(task.jdbcDataSource);
+				partitionStatement = task.variablesContext.substituteForDb(con, sql);
+				cancellationToken.onCancel(cancelStatement);
+				cancellationToken.throwIfCancelled();
+				
+				partitionStatement.setMaxRows(rowLimit);
+				partitionStatement.execute();
+				WabitCachedRowSet rows = new WabitCachedRowSet();
+				ResultSet rs = partitionStatement.getResultSet();
+				if (rs != null) {
+					rows.populate(rs, rowCounter);
+				}
+				span.setRowCount(rowCount.get());
+				partitionStatus = ResultSetStatus.SUCCESS;
+				if (!partitioning.isOrdered()) {
+					appendPartitionRows(rows);
+				}
+				return rows;
+			} finally {
+				endTime = System.nanoTime();
+				if (partitionStatus == ResultSetStatus.RUNNING) {
+					if (stopped || cancellationToken.isCancelled()) {
+						partitionStatus = ResultSetStatus.CANCELLED;
+						span.setCancelled(true);
+					} else {
+						partitionStatus = ResultSetStatus.ERROR;
+					}
+				}
+				span.end();
+				cancellationToken.removeOnCancel(cancelStatement);
+				try {
+					if (partitionStatement != null) {
+						partitionStatement.close();
+						partitionStatement = null;
+					}
+					if (con != null) {
+						con.close();
+					}
+				} catch (SQLException e) {
+					logger.debug("Exception encountered while closing the connection of partition " + 
+							index, e);
+				}
+				internalListener.rowsAdded();
+			}
+		}
+
+		/**
+		 * Stops this partition at its next row because another partition
+		 * failed or the handle has all of the rows it can hold. This does
+		 * nothing if the partition has already finished.
+		 */
+		void stop() {
+			if (partitionStatus != ResultSetStatus.NEW 
+					&& partitionStatus != ResultSetStatus.RUNNING) {
+				return;
+			}
+			stopped = true;
+			cancelStatement.run();
+		}
+		
+		PartitionProgress getProgress() {
+			long start = startTime;
+			long end = endTime;
+			long elapsed;
+			if (start == 0) {
+				elapsed = 0;
+			} else if (end == 0) {
+				elapsed = System.nanoTime() - start;
+			} else {
+				elapsed = end - start;
+			}
+			return new PartitionProgress(index, partitionStatus, rowCount.get(), 
+					TimeUnit.NANOSECONDS.toMillis(elapsed));
+		}
+	}
+
 	/**
      * Triggers the population of this handle.
      */
@@ -421,7 +837,7 @@ public class ResultSetHandle {
     	
     	// Streaming queries are always async.
     	if (this.rsType.equals(ResultSetType.STREAMING)) {
-    		executorService.execute(task);
+    		taskFuture = executorService.submit(task);
     		return;
     	}
     	
@@ -430,13 +846,36 @@ public class ResultSetHandle {
 						System.getProperty("ca.sqlpower.wabit.rs.ResultSetHandle.forceSync"));
     	
     	if (async && !forceSync) {
-    		executorService.execute(task);
+    		taskFuture = executorService.submit(task);
     		return;
     	} else {
     		task.run();
     	}
     }
 
+    /**
+     * Blocks the calling thread until this handle has finished populating its
+     * results, successfully or not. This returns immediately if the handle was
+     * populated synchronously or has already completed. Streaming handles do
+     * not complete until their stream ends so callers should not wait on them.
+     * <p>
+     * Listeners of this handle are notified of the completion on the
+     * foreground thread of its {@link ResultSetEventDispatcher}, which means
+     * they may not have been notified yet when this method returns.
+     */
+    public void waitForCompletion() {
+    	Future<?> future = taskFuture;
+    	if (future == null) return;
+    	try {
+    		future.get();
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    	} catch (ExecutionException e) {
+    		// The task records its own exceptions in this handle's status.
+    		logger.debug("Execution of the result set handle failed", e);
+    	}
+    }
+
     /**
      * The added listener will be notified when all of the streaming queries have stopped.
      * This cannot be null.
@@ -465,11 +904,139 @@ public class ResultSetHandle {
      * 
      * To get notified when the rows start coming in, one can listen to
      * this object by registering a {@link ResultSetListener}
+     * 
+     * The result set of an OLAP handle is converted from its {@link CellSet}
+     * the first time this is called after the execution succeeds. If the
+     * conversion fails the result set is empty and the handle's status
+     * becomes {@link ResultSetStatus#ERROR}. The result
+     * set of a streaming handle holds the rows of its streaming buffer as of
+     * the last call; use {@link #getStreamingRowsSince(long)} to read only the
+     * rows that are new.
      */
     public ResultSet getResultSet() {
+        populateOlapResultSet();
+        try {
+            refreshStreamingRowSet();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
         return this.cachedRowSet;
     }
-    
+
+    /**
+     * Returns a new {@link ResultSetCursor} over the rows this handle has
+     * received so far. The cursor reads the rows in place and has its own
+     * position so it can be used while other code is reading
+     * {@link #getResultSet()}.
+     */
+    public ResultSetCursor getCursor() throws SQLException {
+    	populateOlapResultSet();
+    	refreshStreamingRowSet();
+    	return ResultSetCursor.create(this.cachedRowSet);
+    }
+
+    /**
+     * Converts the cell set of a successfully executed OLAP handle into its
+     * result set the first time it is called. This does nothing for other
+     * handles, for OLAP handles that have not finished executing and after the
+     * first conversion.
+     * <p>
+     * A conversion stopped by the handle being cancelled while it runs leaves
+     * the result set empty and is tried again on the next call. A conversion
+     * that fails leaves the result set empty and records the failure in the
+     * status of this handle.
+     */
+    private void populateOlapResultSet() {
+    	if (!rsType.equals(ResultSetType.OLAP) || status != ResultSetStatus.SUCCESS) return;
+    	synchronized (cachedRowSet) {
+    		if (olapResultSetPopulated) return;
+    		OlapResultSet olapResultSet = (OlapResultSet) cachedRowSet;
+    		// A handle cancelled after it succeeded, such as one replaced by a
+    		// newer execution, still has results for the code reading them.
+    		CancellationToken token = 
+    			cancellationToken.isCancelled() ? new CancellationToken() : cancellationToken;
+    		try {
+    			olapResultSet.populate(olapCellSet, token);
+    			olapResultSetPopulated = true;
+    		} catch (CancellationException e) {
+    			logger.debug("Conversion of the cell set was cancelled");
+    			clearOlapResultSet(olapResultSet);
+    		} catch (Exception e) {
+    			logger.error("Could not convert the cell set into a result set", e);
+    			clearOlapResultSet(olapResultSet);
+    			exception = e;
+    			status = ResultSetStatus.ERROR;
+    		}
+    	}
+    }
+
+    /**
+     * Removes the rows of a partly converted OLAP result set.
+     */
+    private void clearOlapResultSet(OlapResultSet olapResultSet) {
+    	try {
+    		olapResultSet.populate(null);
+    	} catch (SQLException e) {
+    		// populating from no cell set only creates empty rows and metadata
+    		throw new RuntimeException(e);
+    	}
+    }
+
+    /**
+     * Replaces the rows of the result set of a streaming handle with the rows
+     * currently in its streaming buffer if rows arrived since the last time.
+     * The rows are replaced with a new list so cursors created before keep
+     * reading the rows they were created on. This does nothing for other
+     * handles.
+     */
+    private void refreshStreamingRowSet() throws SQLException {
+    	if (streamingBuffer == null) return;
+    	synchronized (cachedRowSet) {
+    		long nextSequence = streamingBuffer.getNextSequence();
+    		if (nextSequence == streamingRowSetSequence) return;
+    		cachedRowSet.setRows(streamingBuffer.getRows());
+    		streamingRowSetSequence = nextSequence;
+    	}
+    }
+
+    /**
+     * Returns the rows of a streaming handle that arrived at or after the
+     * given sequence number and have not been evicted yet. Consumers that
+     * follow a stream pass the {@link StreamingRowBuffer.Delta#getNextSequence()}
+     * of the previous delta to read only the new rows.
+     */
+    public StreamingRowBuffer.Delta getStreamingRowsSince(long sequence) {
+    	if (streamingBuffer == null) {
+    		throw new UnsupportedOperationException("Only streaming result set handles have a streaming buffer.");
+    	}
+    	return streamingBuffer.getRowsSince(sequence);
+    }
+
+    /**
+     * Returns the progress of each partition of a partitioned execution in
+     * the order of their ranges. This is empty for handles that are not
+     * partitioned and until the ranges of the partitions are known. The new
+     * data events of a partitioned handle are also sent when the progress of
+     * its partitions changes.
+     */
+    public List<PartitionProgress> getPartitionProgress() {
+    	List<PartitionProgress> progress = new ArrayList<PartitionProgress>();
+    	for (Partition partition : partitions) {
+    		progress.add(partition.getProgress());
+    	}
+    	return progress;
+    }
+
+    /**
+     * Returns the throughput and delivery lag of a streaming handle.
+     */
+    public StreamingRowBuffer.Statistics getStreamingStatistics() {
+    	if (streamingBuffer == null) {
+    		throw new UnsupportedOperationException("Only streaming result set handles have a streaming buffer.");
+    	}
+    	return streamingBuffer.getStatistics();
+    }
+
     /**
      * This method will block and return the CellSet object as soon as the
      * execution is finished. It is preferable to use {@link ResultSetHandle#isRunning()}
@@ -483,14 +1050,46 @@ public class ResultSetHandle {
     }
     
     /**
-     * Cancels this 
+     * Cancels this handle whether it is running or still waiting to run. The
+     * statement of a running handle is cancelled and the handle stops adding
+     * rows to its result set at the next row, closing its statement. Charts
+     * and renderers still working with the results of this handle stop at
+     * their next check of its {@link #getCancellationToken() token}.
      */
     public void cancel() {
-    	if (this.isRunning()) {
-    		this.task.cancel();
-    	}
+    	this.cancellationToken.cancel();
     	this.internalListener.cleanup();
     }
+
+    /**
+     * Returns the token that is cancelled when this handle is cancelled. Code
+     * that does lengthy work with the results of this handle should check it
+     * regularly so superseded results are not worked on.
+     */
+    public CancellationToken getCancellationToken() {
+    	return this.cancellationToken;
+    }
+
+
+    /**
+     * Cancels this handle when the given token is cancelled. Handles that
+     * work towards one result, such as the preview of a query and the full
+     * execution that follows it, share a token this way so stopping the
+     * query stops all of them.
+     */
+    public void cancelWith(@Nonnull final CancellationToken token) {
+    	final Runnable cancelHandle = new Runnable() {
+    		public void run() {
+    			cancel();
+    		}
+    	};
+    	token.onCancel(cancelHandle);
+    	cancellationToken.onCancel(new Runnable() {
+    		public void run() {
+    			token.removeOnCancel(cancelHandle);
+    		}
+    	});
+    }
     
     /**
      * Returns true if at least one of the distributed handles is still running.
@@ -63,6 +63,23 @@ public interface ResultSetProducer {
     		@Nullable SPVariableHelper variablesContext,
     		@Nullable ResultSetListener listener,
     		@Nonnull boolean async) throws ResultSetProducerException;
+
+    /**
+     * Same as the {@link ResultSetProducer#execute(SPVariableHelper, ResultSetListener, boolean)}
+     * but the execution is also cancelled when the given token is cancelled.
+     * Callers that may give up on the results before they arrive, such as a
+     * renderer whose content is replaced, pass their own token this way. If
+     * the token is already cancelled the query is not run.
+     * 
+     * @param token
+     *            The caller's token, or null to only cancel the execution
+     *            through the returned handle or {@link #cancel()}.
+     */
+    ResultSetHandle execute(
+    		@Nullable SPVariableHelper variablesContext,
+    		@Nullable ResultSetListener listener,
+    		@Nonnull boolean async,
+    		@Nullable CancellationToken token) throws ResultSetProducerException;
     
     
 
@@ -26,14 +26,20 @@ import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import javax.swing.SwingUtilities;
+
+import net.jcip.annotations.GuardedBy;
+
+import org.apache.log4j.Logger;
 
 import ca.sqlpower.object.SPVariableHelper;
 import ca.sqlpower.object.SPVariableResolver;
 import ca.sqlpower.sql.JDBCDataSource;
 import ca.sqlpower.sql.Olap4jDataSource;
 import ca.sqlpower.wabit.OlapConnectionProvider;
+import ca.sqlpower.wabit.SessionNotFoundException;
 import ca.sqlpower.wabit.SqlConnectionProvider;
+import ca.sqlpower.wabit.WabitObject;
+import ca.sqlpower.wabit.WabitUtils;
 import ca.sqlpower.wabit.rs.ResultSetHandle.ResultSetType;
 
 
@@ -43,6 +49,8 @@ import ca.sqlpower.wabit.rs.ResultSetHandle.ResultSetType;
  * 
  */
 public class ResultSetProducerSupport {
+	
+	private static final Logger logger = Logger.getLogger(ResultSetProducerSupport.class);
 
 	private final List<ResultSetHandle> handles = new CopyOnWriteArrayList<ResultSetHandle>();
 	
@@ -58,6 +66,9 @@ public class ResultSetProducerSupport {
 	     */
 		public void executionComplete(ResultSetEvent evt) {
 			// We get called here when one of our handles has completed it's work.
+			// Finished handles are let go right away so their rows can be
+			// collected as soon as their consumers are done with them.
+			handles.remove(evt.getSourceHandle());
 			ResultSetProducerSupport.this.fireExecutionComplete();
 		}
 		
@@ -75,6 +86,77 @@ public class ResultSetProducerSupport {
 	};
 
 	private final ResultSetProducer source;
+
+	/**
+	 * True while a delivery of {@link #deliverEvents} is queued on the event
+	 * dispatcher. Events fired in this time are delivered by it, so each kind
+	 * of producer event is queued at most once no matter how often it is
+	 * fired. The new data events of the handles are coalesced by their own
+	 * dispatcher.
+	 */
+	@GuardedBy("this")
+	private boolean deliveryQueued;
+	
+	@GuardedBy("this")
+	private boolean structureChangePending;
+	
+	@GuardedBy("this")
+	private boolean executionStartPending;
+	
+	@GuardedBy("this")
+	private boolean executionStopPending;
+
+	/**
+	 * True if the last execution event fired was a start, false if it was a
+	 * stop. When both are pending this one is delivered last so the listeners
+	 * end up with the current state of the producer.
+	 */
+	@GuardedBy("this")
+	private boolean lastExecutionEventStarted;
+
+	/**
+	 * Delivers the pending producer events to the listeners.
+	 */
+	private final Runnable deliverEvents = new Runnable() {
+		public void run() {
+			final boolean structureChanged;
+			final boolean started;
+			final boolean stopped;
+			final boolean startedLast;
+			synchronized (ResultSetProducerSupport.this) {
+				structureChanged = structureChangePending;
+				started = executionStartPending;
+				stopped = executionStopPending;
+				startedLast = lastExecutionEventStarted;
+				structureChangePending = false;
+				executionStartPending = false;
+				executionStopPending = false;
+				deliveryQueued = false;
+			}
+			
+			ResultSetProducerEvent evt = new ResultSetProducerEvent(source);
+			if (structureChanged) {
+				for (ResultSetProducerListener rspl : listeners) {
+					rspl.structureChanged(evt);
+				}
+			}
+			if (started && !(stopped && startedLast)) {
+				for (ResultSetProducerListener rspl : listeners) {
+					rspl.executionStarted(evt);
+				}
+			}
+			if (stopped) {
+				for (ResultSetProducerListener rspl : listeners) {
+					rspl.executionStopped(evt);
+				}
+			}
+			if (started && stopped && startedLast) {
+				for (ResultSetProducerListener rspl : listeners) {
+					rspl.executionStarted(evt);
+				}
+			}
+		}
+	};
 	
 	
 	/**
@@ -107,6 +189,22 @@ public class ResultSetProducerSupport {
     }
     
     
+    /**
+     * Returns the dispatcher of the session the source of this support object
+     * belongs to. The default dispatcher is used while the source is not part
+     * of a session's workspace.
+     */
+    private ResultSetEventDispatcher getEventDispatcher() {
+    	if (source instanceof WabitObject) {
+    		try {
+    			return WabitUtils.getSession((WabitObject) source).getResultSetEventDispatcher();
+    		} catch (SessionNotFoundException e) {
+    			// The source is not in a workspace yet.
+    		}
+    	}
+    	return ResultSetEventDispatcher.getDefault();
+    }
+    
     public void addResultSetListener(@Nonnull ResultSetProducerListener listener) {
         if (listener == null) {
             throw new NullPointerException("Null listener not allowed");
@@ -144,6 +242,36 @@ public class ResultSetProducerSupport {
             @Nullable final ResultSetListener listener,
             boolean async) throws SQLException
     {
+    	return execute(connectionProvider, dataSource, query, variablesContext, type, 
+    			rowLimit, null, listener, async, null);
+    }
+
+    /**
+     * Builds a {@link ResultSetHandle} the same way as
+     * {@link #execute(SqlConnectionProvider, JDBCDataSource, String, SPVariableHelper, ResultSetType, int, ResultSetListener, boolean)}
+     * that can split a relational query into partitions executed
+     * concurrently.
+     * 
+     * @param partitioning
+     *            Describes how to partition the query, or null to execute it
+     *            as one statement.
+     * @param token
+     *            The execution is cancelled when this token is cancelled. If
+     *            it is null the execution is only cancelled through its
+     *            handle or {@link #cancel()}.
+     */
+    public ResultSetHandle execute(
+    		@Nonnull final SqlConnectionProvider connectionProvider,
+    		@Nonnull final JDBCDataSource dataSource,
+    		@Nonnull final String query,
+    		@Nonnull final SPVariableHelper variablesContext,
+    		@Nonnull final ResultSetType type,
+    		final int rowLimit,
+    		@Nullable final QueryPartitioning partitioning,
+    		@Nullable final ResultSetListener listener,
+    		boolean async,
+    		@Nullable CancellationToken token) throws SQLException
+    {
     		
 		ResultSetHandle rsh = 
 			new ResultSetHandle(
@@ -153,13 +281,19 @@ public class ResultSetProducerSupport {
 					variablesContext,
 					type,
 					rowLimit,
-					null);
+					partitioning,
+					null,
+					getEventDispatcher());
 		
 		rsh.addResultSetListener(internalListener);
 		if (listener != null) {
 			rsh.addResultSetListener(listener);
 		}
 		
+		if (token != null) {
+			rsh.cancelWith(token);
+		}
+		
 		// Save this new one
 		this.handles.add(rsh);
 		
@@ -181,6 +315,7 @@ public class ResultSetProducerSupport {
      * @param isStreaming Whether or not this is a streaming query.
      * @param rowLimit The row limit for queries 
      * @param listener A listener to bind to the {@link ResultSetHandle}
+     * @param token The execution is cancelled when this token is cancelled. Can be null.
      * @return An executing {@link ResultSetHandle}
      * @throws SQLException
      */
@@ -192,7 +327,8 @@ public class ResultSetProducerSupport {
     		@Nonnull final ResultSetType type,
             final int rowLimit,
             @Nullable final ResultSetListener listener,
-            boolean async) throws SQLException
+            boolean async,
+            @Nullable CancellationToken token) throws SQLException
     {
 		ResultSetHandle rsh = 
 			new ResultSetHandle(
@@ -202,13 +338,18 @@ public class ResultSetProducerSupport {
 					variablesContext,
 					type,
 					rowLimit,
-					null);
+					null,
+					getEventDispatcher());
 		
 		rsh.addResultSetListener(internalListener);
 		if (listener != null) {
 			rsh.addResultSetListener(listener);
 		}
 		
+		if (token != null) {
+			rsh.cancelWith(token);
+		}
+		
 		// Save this new one
 		this.handles.add(rsh);
 		
@@ -218,20 +359,28 @@ public class ResultSetProducerSupport {
     }
     
     /**
-     * Cancels the execution of every handle.
+     * Cancels the execution of every handle. Every handle is cancelled even
+     * if cancelling one of them fails. Each failure is logged and the first
+     * one is rethrown once all of the handles have been cancelled.
      */
     public void cancel() {
-    	Throwable rethrown = null;
+    	RuntimeException firstFailure = null;
+    	int failureCount = 0;
 		for (ResultSetHandle rsh : this.handles) {
 			try {
 				rsh.cancel();				
-			} catch (Throwable t) {
-				rethrown = t;
+			} catch (RuntimeException e) {
+				logger.error("Failed to cancel a result set handle", e);
+				failureCount++;
+				if (firstFailure == null) {
+					firstFailure = e;
+				}
 			}
 			this.handles.remove(rsh);
 		}
-		if (rethrown != null) {
-			throw new RuntimeException(rethrown);
+		if (firstFailure != null) {
+			throw new RuntimeException("Failed to cancel " + failureCount + " of the result set handles", 
+					firstFailure);
 		}
     }
 
@@ -239,14 +388,15 @@ public class ResultSetProducerSupport {
      * Notifies all listeners that this producer's structure has
      * changed and the subsequent handles will be different.
      */
-	public synchronized void fireStructureChanged() {
-		SwingUtilities.invokeLater(new Runnable() {
-			public void run() {
-				for (ResultSetProducerListener rspl : ResultSetProducerSupport.this.listeners) {
-					rspl.structureChanged(new ResultSetProducerEvent(source));
-				}
-			}
-		});
+	public void fireStructureChanged() {
+		boolean queue;
+		synchronized (this) {
+			structureChangePending = true;
+			queue = markDeliveryQueued();
+		}
+		if (queue) {
+			dispatchEvents();
+		}
 	}
 	
 	/**
@@ -257,26 +407,27 @@ public class ResultSetProducerSupport {
 	 * the {@link ResultSetProducerStatusInformant} passed at construction
 	 * time will be asked to report on the current status of the execution.
 	 */
-	public synchronized void fireExecutionStarted() {
-		
-		boolean isRunning = false;
-
+	public void fireExecutionStarted() {
 		
-		if (this.informant != null &&
-			this.informant.isRunning()) {
-			isRunning = true;
+		boolean queue = false;
+		synchronized (this) {
+			boolean isRunning = false;
+			
+			if (this.informant != null &&
+					this.informant.isRunning()) {
+				isRunning = true;
+			}
+			
+			isRunning |= isRunning();
+			
+			if (isRunning) {
+				executionStartPending = true;
+				lastExecutionEventStarted = true;
+				queue = markDeliveryQueued();
+			}
 		}
-		
-		isRunning |= isRunning();
-		
-		if (isRunning) {
-			SwingUtilities.invokeLater(new Runnable() {
-				public void run() {
-					for (ResultSetProducerListener rspl : ResultSetProducerSupport.this.listeners) {
-						rspl.executionStarted(new ResultSetProducerEvent(source));
-					}
-				}
-			});
+		if (queue) {
+			dispatchEvents();
 		}
 	}
 	
@@ -284,29 +435,52 @@ public class ResultSetProducerSupport {
 	 * This method will determine if the execution is in fact completed and
 	 * will fire required events if necessary.
 	 */
-	public synchronized void fireExecutionComplete() {
+	public void fireExecutionComplete() {
 		
-		boolean isRunning = false;
+		boolean queue = false;
+		synchronized (this) {
+			boolean isRunning = false;
+			
+			// Notify listeners if necessary that the last
+			// handle has stopped executing
+			if (informant != null &&
+					informant.isRunning()) {
+				isRunning = true;
+			}
+			
+			isRunning |= isRunning();
 			
-		// Notify listeners if necessary that the last
-		// handle has stopped executing
-		if (informant != null &&
-				informant.isRunning()) {
-			isRunning = true;
+			if (!isRunning) {
+				executionStopPending = true;
+				lastExecutionEventStarted = false;
+				queue = markDeliveryQueued();
+			}
 		}
-		
-		isRunning |= isRunning();
-		
-		if (!isRunning) {
-			SwingUtilities.invokeLater(new Runnable() {
-				public void run() {
-					for (ResultSetProducerListener rspl : ResultSetProducerSupport.this.listeners) {
-						rspl.executionStopped(new ResultSetProducerEvent(source));
-					}
-				}
-			});
+		if (queue) {
+			dispatchEvents();
 		}
 	}
+
+	/**
+	 * Marks the delivery of the pending events as queued. Returns true if the
+	 * caller must queue it with {@link #dispatchEvents()}, false if it is
+	 * queued already.
+	 */
+	@GuardedBy("this")
+	private boolean markDeliveryQueued() {
+		if (deliveryQueued) return false;
+		deliveryQueued = true;
+		return true;
+	}
+
+	/**
+	 * Queues the delivery of the pending events. This must not be called
+	 * while holding the lock of this object, as dispatchers of sessions
+	 * without a user interface deliver the events on the calling thread.
+	 */
+	private void dispatchEvents() {
+		getEventDispatcher().dispatchLater(deliverEvents);
+	}
 	
 	public boolean isRunning() {
 		boolean running = false;
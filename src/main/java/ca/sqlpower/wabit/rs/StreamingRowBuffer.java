@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.rs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Holds the most recent rows of a streaming query in a ring of fixed
+ * capacity. Once the ring is full each new row replaces the oldest one, so a
+ * query can follow a live feed indefinitely in bounded memory.
+ * <p>
+ * Every row gets a sequence number, starting at 0, in the order it arrived.
+ * Consumers remember the {@link Delta#getNextSequence()} of the last delta they
+ * read and pass it to {@link #getRowsSince(long)} to get only the rows that
+ * arrived after it, instead of reading every retained row each time new data
+ * is available.
+ * <p>
+ * The buffer also keeps the throughput of the stream and the delay between a
+ * row arriving and the listeners being told about it, which are available as
+ * {@link Statistics}.
+ */
+@ThreadSafe
+public class StreamingRowBuffer {
+
+    /**
+     * The rows that arrived after a given sequence number and are still in
+     * the buffer.
+     */
+    @Immutable
+    public static final class Delta {
+        
+        private final List<Object[]> rows;
+        
+        private final long firstSequence;
+        
+        private final long missedRowCount;
+        
+        private Delta(List<Object[]> rows, long firstSequence, long missedRowCount) {
+            this.rows = Collections.unmodifiableList(rows);
+            this.firstSequence = firstSequence;
+            this.missedRowCount = missedRowCount;
+        }
+
+        /**
+         * Returns the rows of this delta, oldest first. The arrays must not be
+         * modified.
+         */
+        public List<Object[]> getRows() {
+            return rows;
+        }
+
+        /**
+         * Returns the sequence number of the first row of this delta.
+         */
+        public long getFirstSequence() {
+            return firstSequence;
+        }
+
+        /**
+         * Returns the sequence number to ask for the next delta with. This is
+         * one past the last row of this delta.
+         */
+        public long getNextSequence() {
+            return firstSequence + rows.size();
+        }
+
+        /**
+         * Returns the number of rows that arrived after the requested sequence
+         * number but were evicted before they could be read. This is 0 unless
+         * the consumer fell more than the capacity of the buffer behind.
+         */
+        public long getMissedRowCount() {
+            return missedRowCount;
+        }
+    }
+
+    /**
+     * The throughput and lag of a streaming query at one point in time.
+     */
+    @Immutable
+    public static final class Statistics {
+        
+        private final int capacity;
+        private final int retainedRowCount;
+        private final long receivedRowCount;
+        private final double rowsPerSecond;
+        private final long lastDeliveryLag;
+        private final long maxDeliveryLag;
+        
+        private Statistics(int capacity, int retainedRowCount, long receivedRowCount, 
+                double rowsPerSecond, long lastDeliveryLag, long maxDeliveryLag) {
+            this.capacity = capacity;
+            this.retainedRowCount = retainedRowCount;
+            this.receivedRowCount = receivedRowCount;
+            this.rowsPerSecond = rowsPerSecond;
+            this.lastDeliveryLag = lastDeliveryLag;
+            this.maxDeliveryLag = maxDeliveryLag;
+        }
+        
+        public int getCapacity() {
+            return capacity;
+        }
+
+        /**
+         * Returns the number of rows currently in the buffer.
+         */
+        public int getRetainedRowCount() {
+            return retainedRowCount;
+        }
+
+        /**
+         * Returns the number of rows received since the stream started,
+         * including the ones evicted since.
+         */
+        public long getReceivedRowCount() {
+            return receivedRowCount;
+        }
+
+        /**
+         * Returns the number of rows evicted to make room for newer rows.
+         */
+        public long getEvictedRowCount() {
+            return receivedRowCount - retainedRowCount;
+        }
+
+        /**
+         * Returns the rate rows arrived at over the last
+         * {@link StreamingRowBuffer#THROUGHPUT_WINDOW} milliseconds.
+         */
+        public double getRowsPerSecond() {
+            return rowsPerSecond;
+        }
+
+        /**
+         * Returns the time in milliseconds between the arrival of the oldest
+         * row of the last delivery and the delivery to the listeners.
+         */
+        public long getLastDeliveryLag() {
+            return lastDeliveryLag;
+        }
+
+        /**
+         * Returns the longest time in milliseconds a row waited to be
+         * delivered to the listeners since the stream started.
+         */
+        public long getMaxDeliveryLag() {
+            return maxDeliveryLag;
+        }
+        
+        @Override
+        public String toString() {
+            return "Streaming statistics: " + retainedRowCount + "/" + capacity + " rows retained, " + 
+                receivedRowCount + " received, " + rowsPerSecond + " rows/s, lag " + 
+                lastDeliveryLag + "ms (max " + maxDeliveryLag + "ms)";
+        }
+    }
+
+    /**
+     * The length in milliseconds of the window the throughput of the stream is
+     * measured over.
+     */
+    public static final long THROUGHPUT_WINDOW = 1000;
+
+    /**
+     * The number of rows the buffer has room for before it first grows.
+     */
+    private static final int INITIAL_SIZE = 64;
+
+    private final int capacity;
+
+    /**
+     * The retained rows. This starts small and doubles in size as rows
+     * arrive until it reaches the capacity, so a large capacity only takes
+     * memory once that many rows have arrived. The buffer only starts to wrap
+     * around once it has reached the capacity.
+     */
+    @GuardedBy("this")
+    private Object[][] rows;
+
+    /**
+     * The {@link System#nanoTime()} each row in {@link #rows} arrived at.
+     */
+    @GuardedBy("this")
+    private long[] arrivalTimes;
+
+    /**
+     * The sequence number the next row appended will get. This is also the
+     * number of rows received.
+     */
+    @GuardedBy("this")
+    private long nextSequence = 0;
+
+    /**
+     * The sequence number of the first row the listeners have not been told
+     * about yet.
+     */
+    @GuardedBy("this")
+    private long undeliveredSequence = 0;
+    
+    @GuardedBy("this")
+    private long windowStart = System.nanoTime();
+    
+    @GuardedBy("this")
+    private long windowRowCount = 0;
+
+    /**
+     * The throughput of the last complete window, or -1 before the first
+     * window completes.
+     */
+    @GuardedBy("this")
+    private double lastWindowRate = -1;
+    
+    @GuardedBy("this")
+    private long lastDeliveryLag = 0;
+    
+    @GuardedBy("this")
+    private long maxDeliveryLag = 0;
+
+    /**
+     * @param capacity
+     *            The number of rows to retain. This must be at least 1.
+     */
+    public StreamingRowBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of a streaming buffer must be " +
+                    "at least 1 but was " + capacity);
+        }
+        this.capacity = capacity;
+        this.rows = new Object[Math.min(capacity, INITIAL_SIZE)][];
+        this.arrivalTimes = new long[rows.length];
+    }
+    
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Adds a row to the buffer, evicting the oldest row if the buffer is full.
+     * The array is kept as it is and must not be modified afterwards.
+     * 
+     * @return The sequence number of the row.
+     */
+    public synchronized long append(@Nonnull Object[] row) {
+        if (nextSequence == rows.length && rows.length < capacity) {
+            int newSize = (int) Math.min(capacity, rows.length * 2L);
+            rows = Arrays.copyOf(rows, newSize);
+            arrivalTimes = Arrays.copyOf(arrivalTimes, newSize);
+        }
+        long now = System.nanoTime();
+        int slot = (int) (nextSequence % capacity);
+        rows[slot] = row;
+        arrivalTimes[slot] = now;
+        
+        windowRowCount++;
+        long windowLength = now - windowStart;
+        if (windowLength >= TimeUnit.MILLISECONDS.toNanos(THROUGHPUT_WINDOW)) {
+            lastWindowRate = windowRowCount * (double) TimeUnit.SECONDS.toNanos(1) / windowLength;
+            windowStart = now;
+            windowRowCount = 0;
+        }
+        
+        return nextSequence++;
+    }
+
+    /**
+     * Returns the number of rows in the buffer.
+     */
+    public synchronized int size() {
+        return (int) Math.min(nextSequence, capacity);
+    }
+
+    /**
+     * Returns the sequence number the next row will get. Reading the rows
+     * since this sequence number returns nothing until another row arrives.
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Returns the sequence number of the oldest row still in the buffer.
+     */
+    private long getFirstRetainedSequence() {
+        return Math.max(0, nextSequence - capacity);
+    }
+
+    /**
+     * Returns the rows that arrived at or after the given sequence number and
+     * are still in the buffer. Pass 0 to get every retained row.
+     */
+    public synchronized Delta getRowsSince(long sequence) {
+        if (sequence < 0) {
+            throw new IllegalArgumentException("Sequence numbers start at 0, " + sequence + 
+                    " is not valid");
+        }
+        long firstRetained = getFirstRetainedSequence();
+        long first = Math.max(sequence, firstRetained);
+        long missed = Math.max(0, firstRetained - sequence);
+        List<Object[]> delta = new ArrayList<Object[]>((int) Math.max(0, nextSequence - first));
+        for (long s = first; s < nextSequence; s++) {
+            delta.add(rows[(int) (s % capacity)]);
+        }
+        return new Delta(delta, Math.min(first, nextSequence), missed);
+    }
+
+    /**
+     * Returns every row in the buffer, oldest first. The list is a copy that
+     * is not affected by rows arriving later.
+     */
+    public synchronized List<Object[]> getRows() {
+        List<Object[]> retained = new ArrayList<Object[]>(size());
+        for (long s = getFirstRetainedSequence(); s < nextSequence; s++) {
+            retained.add(rows[(int) (s % capacity)]);
+        }
+        return retained;
+    }
+
+    /**
+     * Records that the listeners have just been told about every row received
+     * so far, which is used to measure the delivery lag.
+     */
+    public synchronized void rowsDelivered() {
+        if (undeliveredSequence >= nextSequence) return;
+        long oldest = Math.max(undeliveredSequence, getFirstRetainedSequence());
+        long lag = TimeUnit.NANOSECONDS.toMillis(
+                System.nanoTime() - arrivalTimes[(int) (oldest % capacity)]);
+        lastDeliveryLag = lag;
+        maxDeliveryLag = Math.max(maxDeliveryLag, lag);
+        undeliveredSequence = nextSequence;
+    }
+    
+    public synchronized Statistics getStatistics() {
+        double rate = lastWindowRate;
+        long windowLength = System.nanoTime() - windowStart;
+        if (rate < 0 || windowLength >= TimeUnit.MILLISECONDS.toNanos(THROUGHPUT_WINDOW)) {
+            // No window has completed yet, or the stream has been quiet for at
+            // least a window, so the rows in the current window are the best
+            // measure of the rate.
+            rate = windowLength > 0 ? 
+                    windowRowCount * (double) TimeUnit.SECONDS.toNanos(1) / windowLength : 0;
+        }
+        return new Statistics(capacity, size(), nextSequence, rate, lastDeliveryLag, maxDeliveryLag);
+    }
+}
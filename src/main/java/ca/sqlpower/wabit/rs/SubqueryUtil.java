@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.rs;
+
+import java.util.regex.Pattern;
+
+/**
+ * Helpers for building queries around the SQL of a relational query, such as
+ * the queries that partition or aggregate its rows in the database.
+ */
+public class SubqueryUtil {
+
+    /**
+     * Matches the column names that can be used in SQL without quoting them.
+     */
+    private static final Pattern SIMPLE_IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    /**
+     * Finds an ORDER BY clause anywhere in a query.
+     */
+    private static final Pattern ORDER_BY = Pattern.compile("\\border\\s+by\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * This class should not be instantiated. Don't call this.
+     */
+    private SubqueryUtil() { /* don't */ }
+
+    /**
+     * Returns the given query without trailing semicolons if it is a single
+     * SELECT statement, or null if it is not and cannot be used as a
+     * subquery.
+     */
+    public static String toSubquery(String sql) {
+        if (sql == null) return null;
+        String innerSql = sql.trim();
+        while (innerSql.endsWith(";")) {
+            innerSql = innerSql.substring(0, innerSql.length() - 1).trim();
+        }
+        if (innerSql.indexOf(';') != -1) return null;
+        if (innerSql.length() <= "select".length() 
+                || !innerSql.regionMatches(true, 0, "select", 0, "select".length())
+                || !Character.isWhitespace(innerSql.charAt("select".length()))) {
+            return null;
+        }
+        return innerSql;
+    }
+
+    /**
+     * Returns true if the given column name can be used in SQL without
+     * quoting it.
+     */
+    public static boolean isSimpleIdentifier(String name) {
+        return name != null && SIMPLE_IDENTIFIER.matcher(name).matches();
+    }
+
+    /**
+     * Returns true if the given query orders its rows. This errs on the side
+     * of finding an order: an ORDER BY in a nested query, a comment or a
+     * string literal counts as well.
+     */
+    public static boolean hasOrderBy(String sql) {
+        return sql != null && ORDER_BY.matcher(sql).find();
+    }
+
+    /**
+     * Returns a query that selects the given list of columns or expressions
+     * from the rows of the given subquery. Clauses such as WHERE or GROUP BY
+     * can be appended to the returned query.
+     * 
+     * @param selectList
+     *            The SQL of the select list, such as "*".
+     * @param subquery
+     *            A query returned by {@link #toSubquery(String)}.
+     * @param alias
+     *            The name to give the subquery's rows.
+     */
+    public static String selectFrom(String selectList, String subquery, String alias) {
+        // The inner query ends on its own line in case it ends with a comment.
+        return "SELECT " + selectList + " FROM (\n" + subquery + "\n) " + alias;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.wabit.rs;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.sqlpower.sql.CachedRowSet;
+
+/**
+ * A {@link CachedRowSet} whose rows can be replaced or added to by the classes
+ * in this package while a query is running. The rows are replaced or added to
+ * by this class while holding the lock of the row set so a
+ * {@link ResultSetCursor} created on it at the same time sees a consistent
+ * list of rows. The inherited populate methods do not hold the lock.
+ */
+public class WabitCachedRowSet extends CachedRowSet {
+
+    /**
+     * True once {@link #appendRows(WabitCachedRowSet, int)} has been called.
+     * The first call replaces the metadata and rows of this row set, later
+     * calls add to the rows.
+     */
+    private boolean rowsAppended = false;
+
+    public WabitCachedRowSet() {
+        super();
+    }
+
+    /**
+     * Replaces the rows of this row set with the given rows and moves the
+     * cursor before the first row. The metadata must already describe the
+     * columns of the rows. The list is used as it is.
+     */
+    synchronized void setRows(List<Object[]> rows) throws SQLException {
+        data = rows;
+        beforeFirst();
+    }
+
+    /**
+     * Adds the rows of the given row set to the end of the rows of this one.
+     * The first row set appended replaces the metadata and rows this row set
+     * had before, so all of the row sets appended must have the same columns.
+     * 
+     * @param rowLimit
+     *            The most rows this row set should have. Rows past the limit
+     *            are not appended. If this is 0 or less there is no limit.
+     */
+    synchronized void appendRows(WabitCachedRowSet rowSet, int rowLimit) throws SQLException {
+        if (!rowsAppended) {
+            rsmd = rowSet.rsmd;
+            data = new ArrayList<Object[]>();
+            rowsAppended = true;
+            beforeFirst();
+        }
+        List<Object[]> rows = rowSet.getData();
+        int count = rows.size();
+        if (rowLimit > 0) {
+            count = Math.max(0, Math.min(count, rowLimit - data.size()));
+        }
+        data.addAll(rows.subList(0, count));
+    }
+}
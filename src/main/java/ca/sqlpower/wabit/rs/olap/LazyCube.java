@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.rs.olap;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+import net.jcip.annotations.GuardedBy;
+
+import org.olap4j.OlapException;
+import org.olap4j.metadata.Cube;
+
+import ca.sqlpower.sql.Olap4jDataSource;
+import ca.sqlpower.wabit.OlapConnectionProvider;
+
+/**
+ * A {@link Cube} that is only looked up in its data source the first time it
+ * is used. This lets a workspace be loaded without connecting to each OLAP
+ * data source and walking its metadata for every cube the workspace
+ * references. The name of the cube and the names of its schema and catalog
+ * are known without connecting; every other method of the cube connects,
+ * finds the cube through the {@link OlapMetadataCache} and delegates to it.
+ * <p>
+ * Use {@link #create} to make a lazy cube and {@link #getHandle(Cube)} to
+ * find out if a cube is lazy.
+ */
+public class LazyCube implements InvocationHandler {
+
+    /**
+     * Returns a cube that will be found in the given data source by its
+     * names when it is first used.
+     */
+    public static Cube create(OlapConnectionProvider connectionProvider, Olap4jDataSource dataSource,
+            String catalogName, String schemaName, String cubeName) {
+        return (Cube) Proxy.newProxyInstance(Cube.class.getClassLoader(), new Class<?>[] { Cube.class },
+                new LazyCube(connectionProvider, dataSource, catalogName, schemaName, cubeName));
+    }
+
+    /**
+     * Returns the handle of the given cube if it was created by
+     * {@link #create}, or null if it is an ordinary cube.
+     */
+    public static LazyCube getHandle(Cube cube) {
+        if (cube != null && Proxy.isProxyClass(cube.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(cube);
+            if (handler instanceof LazyCube) {
+                return (LazyCube) handler;
+            }
+        }
+        return null;
+    }
+
+    private final OlapConnectionProvider connectionProvider;
+
+    private final Olap4jDataSource dataSource;
+
+    private final String catalogName;
+
+    private final String schemaName;
+
+    private final String cubeName;
+
+    /**
+     * The cube this handle delegates to, null until it has been found.
+     */
+    @GuardedBy("this")
+    private Cube cube;
+
+    private LazyCube(OlapConnectionProvider connectionProvider, Olap4jDataSource dataSource,
+            String catalogName, String schemaName, String cubeName) {
+        this.connectionProvider = connectionProvider;
+        this.dataSource = dataSource;
+        this.catalogName = catalogName;
+        this.schemaName = schemaName;
+        this.cubeName = cubeName;
+    }
+
+    public Olap4jDataSource getDataSource() {
+        return dataSource;
+    }
+
+    public String getCatalogName() {
+        return catalogName;
+    }
+
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    public String getCubeName() {
+        return cubeName;
+    }
+
+    public synchronized boolean isResolved() {
+        return cube != null;
+    }
+
+    /**
+     * Returns the cube this handle stands for, connecting to the data source
+     * to find it if it has not been found yet.
+     */
+    public synchronized Cube resolve() throws OlapException {
+        if (cube == null) {
+            try {
+                cube = connectionProvider.getMetadataCache(dataSource).findCube(
+                        connectionProvider.createConnection(dataSource), 
+                        catalogName, schemaName, cubeName);
+            } catch (OlapException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new OlapException("Error connecting to data source " + 
+                        dataSource.getName() + " to get the cube " + cubeName, e);
+            }
+        }
+        return cube;
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            if (method.getName().equals("equals")) {
+                return proxy == args[0];
+            } else if (method.getName().equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (method.getName().equals("toString")) {
+                return "Cube " + catalogName + "." + schemaName + "." + cubeName;
+            }
+        } else if (method.getName().equals("getName") && method.getParameterTypes().length == 0) {
+            return cubeName;
+        }
+        
+        Cube target;
+        try {
+            target = resolve();
+        } catch (OlapException e) {
+            if (Arrays.asList(method.getExceptionTypes()).contains(OlapException.class)) {
+                throw e;
+            }
+            throw new RuntimeException(e);
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.rs.olap;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import net.jcip.annotations.GuardedBy;
+
+import org.olap4j.OlapConnection;
+import org.olap4j.OlapException;
+import org.olap4j.metadata.Catalog;
+import org.olap4j.metadata.Cube;
+import org.olap4j.metadata.Schema;
+
+import ca.sqlpower.sql.Olap4jDataSource;
+
+/**
+ * Caches the cubes found by walking the catalogs and schemas of an
+ * {@link Olap4jDataSource}'s connection. Walking the metadata can take
+ * seconds for each cube on an XML/A server, and every query on the same cube
+ * would otherwise walk it again. If several threads look up the same cube at
+ * the same time only one of them walks the metadata.
+ * <p>
+ * The cubes cached for a data source are discarded when they are looked up
+ * through a connection other than the one they were found with, as the
+ * metadata objects belong to the connection.
+ * <p>
+ * Each {@link ca.sqlpower.wabit.OlapConnectionProvider} keeps one cache for
+ * each data source it connects to, alongside the connection, and clears the
+ * caches when it is closed. Use
+ * {@link ca.sqlpower.wabit.OlapConnectionProvider#getMetadataCache(Olap4jDataSource)}
+ * to get the cache of a data source.
+ */
+public class OlapMetadataCache {
+
+    /**
+     * The connection the cached cubes were found through.
+     */
+    @GuardedBy("this")
+    private OlapConnection connection;
+
+    /**
+     * The lookups of each catalog, schema and cube name, in that order.
+     */
+    private final ConcurrentMap<List<String>, Future<Cube>> cubes = 
+        new ConcurrentHashMap<List<String>, Future<Cube>>();
+
+    public OlapMetadataCache() {
+        // the caches are kept by the connection providers
+    }
+
+    /**
+     * Discards every cube in this cache and the connection they were found
+     * through.
+     */
+    public synchronized void clear() {
+        cubes.clear();
+        connection = null;
+    }
+
+    /**
+     * Returns the cube with the given catalog, schema and cube names,
+     * walking the metadata of the given connection if the cube has not been
+     * looked up through it before. Failed lookups are not cached.
+     * 
+     * @throws OlapException
+     *             If the catalog, schema or cube does not exist or the
+     *             metadata could not be read.
+     */
+    public Cube findCube(final OlapConnection connection, final String catalogName, 
+            final String schemaName, final String cubeName) throws OlapException {
+        synchronized (this) {
+            if (this.connection != connection) {
+                cubes.clear();
+                this.connection = connection;
+            }
+        }
+        
+        List<String> key = Arrays.asList(catalogName, schemaName, cubeName);
+        Future<Cube> lookup = cubes.get(key);
+        if (lookup == null) {
+            FutureTask<Cube> task = new FutureTask<Cube>(new Callable<Cube>() {
+                public Cube call() throws Exception {
+                    Catalog catalog = connection.getCatalogs().get(catalogName);
+                    if (catalog == null) {
+                        throw new OlapException("The catalog " + catalogName + " does not exist.");
+                    }
+                    Schema schema = catalog.getSchemas().get(schemaName);
+                    if (schema == null) {
+                        throw new OlapException("The schema " + schemaName + " does not exist in " + 
+                                catalogName + ".");
+                    }
+                    Cube cube = schema.getCubes().get(cubeName);
+                    if (cube == null) {
+                        throw new OlapException("The cube " + cubeName + " does not exist in " + 
+                                catalogName + "." + schemaName + ".");
+                    }
+                    return cube;
+                }
+            });
+            lookup = cubes.putIfAbsent(key, task);
+            if (lookup == null) {
+                lookup = task;
+                task.run();
+            }
+        }
+        
+        try {
+            return lookup.get();
+        } catch (ExecutionException e) {
+            cubes.remove(key, lookup);
+            if (e.getCause() instanceof OlapException) {
+                throw (OlapException) e.getCause();
+            }
+            throw new OlapException("Cannot find the cube " + cubeName, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OlapException("Interrupted while finding the cube " + cubeName, e);
+        }
+    }
+}
@@ -39,14 +39,12 @@ import org.olap4j.Axis;
 import org.olap4j.OlapConnection;
 import org.olap4j.OlapException;
 import org.olap4j.mdx.SelectNode;
-import org.olap4j.metadata.Catalog;
 import org.olap4j.metadata.Cube;
 import org.olap4j.metadata.Dimension;
 import org.olap4j.metadata.Hierarchy;
 import org.olap4j.metadata.Level;
 import org.olap4j.metadata.Measure;
 import org.olap4j.metadata.Member;
-import org.olap4j.metadata.Schema;
 import org.olap4j.metadata.Member.Type;
 import org.olap4j.query.Query;
 import org.olap4j.query.QueryAxis;
@@ -66,6 +64,7 @@ import ca.sqlpower.wabit.AbstractWabitObject;
 import ca.sqlpower.wabit.OlapConnectionProvider;
 import ca.sqlpower.wabit.WabitDataSource;
 import ca.sqlpower.wabit.WabitObject;
+import ca.sqlpower.wabit.rs.CancellationToken;
 import ca.sqlpower.wabit.rs.ResultSetHandle;
 import ca.sqlpower.wabit.rs.ResultSetListener;
 import ca.sqlpower.wabit.rs.ResultSetProducerException;
@@ -212,6 +211,28 @@ public class OlapQuery extends AbstractWabitObject implements WabitResultSetProd
             return newQuery;
         }
     }
+
+    /**
+     * Returns a snapshot of the current state of this query. Unlike
+     * {@link #copyOlapQuery(OlapQuery)} the snapshot does not need to resolve
+     * the cube and members of the query again before it can be executed, and
+     * one snapshot can be shared by everything that shows the query as it is
+     * now.
+     * 
+     * @throws QueryInitializationException
+     *             If this query has to be initialized to produce its MDX and
+     *             the initialization fails.
+     */
+    public synchronized OlapQuerySnapshot createSnapshot() throws QueryInitializationException {
+        String mdxText = null;
+        if (modifiedOlapQuery == null 
+                && !getRowHierarchies().isEmpty() && !getColumnHierarchies().isEmpty()) {
+            mdxText = getMDXQuery().getSelect().toString();
+        }
+        updateAttributes();
+        return new OlapQuerySnapshot(this, olapMapping, mdxText, actsAsVariableProvider);
+    }
+    
     /**
      * The current query. Gets replaced whenever a new cube is selected via
      * {@link #setCurrentCube(Cube)}. This variable should only be accessed
@@ -395,7 +416,13 @@ public class OlapQuery extends AbstractWabitObject implements WabitResultSetProd
         	setMdxQuery(new Query(OLAP4J_QUERY_NAME, currentCube));
         }
         
-        if (currentCube != null) {
+        LazyCube lazyCube = LazyCube.getHandle(currentCube);
+        if (lazyCube != null) {
+        	// Avoid connecting to the data source only to find the names we already know
+        	cubeName = lazyCube.getCubeName();
+        	schemaName = lazyCube.getSchemaName();
+        	catalogName = lazyCube.getCatalogName();
+        } else if (currentCube != null) {
         	cubeName = currentCube.getName();
         	schemaName = currentCube.getSchema().getName();
         	catalogName = currentCube.getSchema().getCatalog().getName();
@@ -664,26 +691,84 @@ public class OlapQuery extends AbstractWabitObject implements WabitResultSetProd
      * will be wrapped in a QueryInitializationException, including runtime exceptions, as methods
      * calling init should be aware of any errors with initialization.
      * <p>
+     * The cube is looked up through the {@link OlapMetadataCache} so queries
+     * on the same cube only walk the data source's metadata once. To look up
+     * the cube on a background thread use {@link #findCubeForInit()} there and
+     * pass its cube to {@link #initInForeground(Cube)}, see
+     * {@link OlapQueryInitializer}.
+     * <p>
      * This is package private for testing.
      */
-    public void init() throws QueryInitializationException {
+    public synchronized void init() throws QueryInitializationException {
     	logger.debug("Initializing Olap Query");
     	logger.debug("Was loaded " + wasLoadedFromDao + ", init done " + initDone + ", mdxQuery is null " + (mdxQuery == null));
-        if (!this.wasLoadedFromDao || this.initDone || this.mdxQuery!=null) return;
-        
-        if (getOlapDataSource() == null) {
-			throw new QueryInitializationException("Missing database for cube " + cubeName + " for use in " + getName() + ".");
+        if (!needsInit()) return;
+        init(findCubeForInit());
+    }
+
+    /**
+     * Returns true if this query was loaded and still has to be initialized
+     * by {@link #init()}.
+     */
+    synchronized boolean needsInit() {
+        return this.wasLoadedFromDao && !this.initDone && this.mdxQuery == null;
+    }
+
+    /**
+     * Connects to the data source of this query and finds the cube the query
+     * was loaded with. This does not change the query, so unlike
+     * {@link #init()} it can be called on any thread; the slow part of
+     * initializing a query is finding its cube.
+     */
+    Cube findCubeForInit() throws QueryInitializationException {
+        final Olap4jDataSource dataSource;
+        final String catalog;
+        final String schema;
+        final String cube;
+        synchronized (this) {
+            dataSource = getOlapDataSource();
+            catalog = catalogName;
+            schema = schemaName;
+            cube = cubeName;
+        }
+        if (dataSource == null) {
+			throw new QueryInitializationException("Missing database for cube " + cube + " for use in " + getName() + ".");
 		}
 		try {
-			logger.debug("Creating cube with catalog=" + catalogName + ", schema=" + schemaName + ", cube=" + cubeName);
-			OlapConnection createOlapConnection = this.getSession().getContext().createConnection(getOlapDataSource());
-			Catalog catalog = createOlapConnection.getCatalogs().get(catalogName);
-			Schema schema = catalog.getSchemas().get(schemaName);
-			Cube cube = schema.getCubes().get(cubeName);
-			this.currentCube = cube; // We don't like firing property changes which wipe out the query
+			logger.debug("Creating cube with catalog=" + catalog + ", schema=" + schema + ", cube=" + cube);
+			OlapConnectionProvider context = this.getSession().getContext();
+			OlapConnection createOlapConnection = context.createConnection(dataSource);
+			return context.getMetadataCache(dataSource).findCube(
+					createOlapConnection, catalog, schema, cube);
 		} catch (Exception e) {
-			throw new QueryInitializationException("Cannot connect to " + getOlapDataSource(), e);
+			throw new QueryInitializationException("Cannot connect to " + dataSource, e);
 		}
+    }
+
+    /**
+     * Initializes this query with the given cube, found by
+     * {@link #findCubeForInit()}, on the foreground thread of the session.
+     * Nothing happens if the query was initialized in the meantime.
+     */
+    void initInForeground(final Cube cube) {
+        runInForeground(new Runnable() {
+            public void run() {
+                try {
+                    init(cube);
+                } catch (QueryInitializationException e) {
+                    logger.debug("Could not initialize " + getName(), e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the MDX query and the axes of this query on the given cube. The
+     * fields of the query are only changed once the whole query is built.
+     */
+    private synchronized void init(Cube cube) throws QueryInitializationException {
+        if (!needsInit()) return;
+        this.currentCube = cube; // We don't like firing property changes which wipe out the query
 		
 		Query localMDXQuery = null;
 		try {
@@ -1361,6 +1446,15 @@ public class OlapQuery extends AbstractWabitObject implements WabitResultSetProd
     		@Nullable ResultSetListener listener,
     		boolean async) throws ResultSetProducerException
 	{
+    	return this.execute(variablesContext, listener, async, null);
+	}
+
+    public ResultSetHandle execute(
+    		@Nullable SPVariableHelper variablesContext,
+    		@Nullable ResultSetListener listener,
+    		boolean async,
+    		@Nullable CancellationToken token) throws ResultSetProducerException
+	{
         try {
         	
         	String textualQuery;
@@ -1392,7 +1486,8 @@ public class OlapQuery extends AbstractWabitObject implements WabitResultSetProd
         				ResultSetType.OLAP, 
 	        			0, 
 	        			listener,
-	        			async);	
+	        			async,
+	        			token);	
             
         } catch (Exception e) {
             throw new ResultSetProducerException("Couldn't create database connection for Olap query", e);
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.rs.olap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import ca.sqlpower.object.SPObject;
+
+/**
+ * Initializes the {@link OlapQuery} objects of a workspace after the workspace
+ * has been loaded. Loading a workspace does not connect to the OLAP data
+ * sources; without this each query would connect and look up its cube the
+ * first time it is displayed, one at a time and usually on the event dispatch
+ * thread.
+ * <p>
+ * Only the connection and the cube lookup happen on the background threads.
+ * The query itself is built and its fields are set on the session's
+ * foreground thread once its cube has been found, so the query is never
+ * changed by two threads at once.
+ * <p>
+ * A query that fails to initialize is left as it was so the failure is
+ * reported when the query is next used.
+ */
+public class OlapQueryInitializer {
+
+    private static final Logger logger = Logger.getLogger(OlapQueryInitializer.class);
+
+    /**
+     * The most queries that will be initialized at the same time.
+     */
+    private static final int MAX_THREADS = 4;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private OlapQueryInitializer() {
+        // utility class
+    }
+
+    /**
+     * Starts initializing every {@link OlapQuery} that descends from the
+     * given object, including the queries of cell set renderers, and returns
+     * immediately.
+     */
+    public static void initInBackground(SPObject root) {
+        final List<OlapQuery> queries = new ArrayList<OlapQuery>();
+        findQueries(root, queries);
+        if (queries.isEmpty()) return;
+        
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(MAX_THREADS, queries.size()), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "OLAP query initializer " + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        for (final OlapQuery query : queries) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        if (!query.needsInit()) return;
+                        query.initInForeground(query.findCubeForInit());
+                    } catch (Exception e) {
+                        logger.debug("Could not initialize " + query.getName() + 
+                                " in the background", e);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    private static void findQueries(SPObject parent, List<OlapQuery> queries) {
+        if (parent instanceof OlapQuery) {
+            if (!((OlapQuery) parent).isInitDone()) {
+                queries.add((OlapQuery) parent);
+            }
+            return;
+        }
+        for (SPObject child : parent.getChildren()) {
+            findQueries(child, queries);
+        }
+    }
+}
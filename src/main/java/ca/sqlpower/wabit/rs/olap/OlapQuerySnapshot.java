@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.rs.olap;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.jcip.annotations.Immutable;
+import ca.sqlpower.object.SPVariableHelper;
+import ca.sqlpower.sql.Olap4jDataSource;
+import ca.sqlpower.wabit.OlapConnectionProvider;
+import ca.sqlpower.wabit.rs.ResultSetEventDispatcher;
+import ca.sqlpower.wabit.rs.ResultSetHandle;
+import ca.sqlpower.wabit.rs.ResultSetListener;
+import ca.sqlpower.wabit.rs.ResultSetHandle.ResultSetType;
+
+/**
+ * An unchanging copy of the state of an {@link OlapQuery}: its cube, the
+ * selections and sort order of its axes, its non-empty setting and the MDX
+ * the query produces. Snapshots can be shared by any number of objects, such
+ * as a cell set renderer and all of its duplicates, and executed without
+ * connecting to the data source to resolve the cube and members again. A
+ * live {@link OlapQuery} is only made from a snapshot with
+ * {@link #createQuery()} when the query is going to be edited.
+ */
+@Immutable
+public final class OlapQuerySnapshot {
+
+    private final OlapConnectionProvider olapMapping;
+    
+    private final String name;
+    
+    private final String queryName;
+    
+    private final String catalogName;
+    
+    private final String schemaName;
+    
+    private final String cubeName;
+
+    /**
+     * The MDX the user typed in place of the query built from the axes, or
+     * null if the query has not been replaced.
+     */
+    private final String modifiedOlapQuery;
+
+    /**
+     * The MDX built from the axes of the query, or null if the query did not
+     * have hierarchies on both its rows and columns axes.
+     */
+    private final String mdxText;
+    
+    private final boolean nonEmpty;
+    
+    private final boolean actsAsVariableProvider;
+    
+    private final Olap4jDataSource olapDataSource;
+
+    /**
+     * Copies of the axes of the query. These wrappers are never given a parent
+     * or initialized and are only copied again by {@link #createQuery()}.
+     */
+    private final List<WabitOlapAxis> axes;
+
+    /**
+     * Creates a snapshot of the given query. This is only called by
+     * {@link OlapQuery#createSnapshot()} while it holds the lock on the query.
+     */
+    OlapQuerySnapshot(@Nonnull OlapQuery query, OlapConnectionProvider olapMapping, 
+            @Nullable String mdxText, boolean actsAsVariableProvider) {
+        this.olapMapping = olapMapping;
+        this.name = query.getName();
+        this.queryName = query.getQueryName();
+        this.catalogName = query.getCatalogName();
+        this.schemaName = query.getSchemaName();
+        this.cubeName = query.getCubeName();
+        this.modifiedOlapQuery = query.getModifiedOlapQuery();
+        this.mdxText = mdxText;
+        this.nonEmpty = query.isNonEmpty();
+        this.actsAsVariableProvider = actsAsVariableProvider;
+        this.olapDataSource = query.getOlapDataSource();
+        
+        List<WabitOlapAxis> axisCopies = new ArrayList<WabitOlapAxis>();
+        for (WabitOlapAxis axis : query.getAxes()) {
+            axisCopies.add(new WabitOlapAxis(axis));
+        }
+        this.axes = Collections.unmodifiableList(axisCopies);
+    }
+
+    /**
+     * Returns the name of the query this snapshot was taken of.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the MDX that executing this snapshot runs. This is the MDX the
+     * user typed if they replaced the query, otherwise the MDX built from the
+     * axes. Returns null if the query could not be executed when the snapshot
+     * was taken.
+     */
+    public String getMdxText() {
+        if (modifiedOlapQuery != null) {
+            return modifiedOlapQuery;
+        }
+        return mdxText;
+    }
+
+    /**
+     * Creates a new query with the same state as the query this snapshot was
+     * taken of. The new query has its own copy of the axes and resolves its
+     * cube the first time it is used, the same as a query loaded from a file.
+     */
+    public OlapQuery createQuery() {
+        OlapQuery newQuery = 
+            new OlapQuery(
+                    null, 
+                    olapMapping, 
+                    name, 
+                    queryName, 
+                    catalogName, 
+                    schemaName, 
+                    cubeName,
+                    modifiedOlapQuery,
+                    actsAsVariableProvider,
+                    olapDataSource);
+        newQuery.setNonEmpty(nonEmpty);
+        for (WabitOlapAxis axis : axes) {
+            newQuery.addAxis(new WabitOlapAxis(axis));
+        }
+        return newQuery;
+    }
+
+    /**
+     * Executes the MDX of this snapshot against the data source of the query
+     * it was taken of.
+     * 
+     * @param connectionProvider
+     *            Provides the connection to the data source. This is normally
+     *            the session context.
+     * @param variablesContext
+     *            Resolves the variables in the MDX.
+     * @param listener
+     *            Notified when the execution completes. May be null.
+     * @param eventDispatcher
+     *            Delivers the events of the execution to the listener. This
+     *            is normally the dispatcher of the session the query is in.
+     *            If null the default dispatcher is used.
+     * @param async
+     *            True to execute on a background thread.
+     * @return The handle of the execution, or null if this snapshot has no
+     *         MDX to execute.
+     */
+    public ResultSetHandle execute(
+            @Nonnull OlapConnectionProvider connectionProvider,
+            @Nonnull SPVariableHelper variablesContext,
+            @Nullable ResultSetListener listener,
+            @Nullable ResultSetEventDispatcher eventDispatcher,
+            boolean async) throws SQLException 
+    {
+        String mdx = getMdxText();
+        if (mdx == null) return null;
+        
+        ResultSetHandle rsh = 
+            new ResultSetHandle(
+                    connectionProvider,
+                    olapDataSource,
+                    mdx,
+                    variablesContext,
+                    ResultSetType.OLAP,
+                    0,
+                    null,
+                    eventDispatcher);
+        if (listener != null) {
+            rsh.addResultSetListener(listener);
+        }
+        rsh.populate(async);
+        return rsh;
+    }
+}
@@ -31,6 +31,9 @@ import ca.sqlpower.wabit.rs.OlapResultSet;
  * makes identification of rollup levels easier, especially when charting. For
  * example, the table cell renderer for the chart panel renders repeated members
  * in grey and regular members in the default foreground colour (usually black).
+ * <p>
+ * Instances are immutable, so one instance is shared by all of the rows a
+ * member is repeated in.
  */
 public class RepeatedMember {
     
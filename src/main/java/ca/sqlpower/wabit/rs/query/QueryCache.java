@@ -32,6 +32,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.jcip.annotations.GuardedBy;
 
@@ -63,12 +64,16 @@ import ca.sqlpower.wabit.WabitDataSource;
 import ca.sqlpower.wabit.WabitObject;
 import ca.sqlpower.wabit.WabitUtils;
 import ca.sqlpower.wabit.WabitWorkspace;
+import ca.sqlpower.wabit.rs.CancellationToken;
+import ca.sqlpower.wabit.rs.QueryPartitioning;
+import ca.sqlpower.wabit.rs.ResultSetEvent;
 import ca.sqlpower.wabit.rs.ResultSetHandle;
 import ca.sqlpower.wabit.rs.ResultSetListener;
 import ca.sqlpower.wabit.rs.ResultSetProducerException;
 import ca.sqlpower.wabit.rs.ResultSetProducerListener;
 import ca.sqlpower.wabit.rs.ResultSetProducerSupport;
 import ca.sqlpower.wabit.rs.WabitResultSetProducer;
+import ca.sqlpower.wabit.rs.ResultSetHandle.ResultSetStatus;
 import ca.sqlpower.wabit.rs.ResultSetHandle.ResultSetType;
 
 /**
@@ -105,6 +110,46 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
      * query. If false the query should only be executed by user request.
      */
     private boolean automaticallyExecuting = true;
+
+    /**
+     * The number of partitions a query is split into by default when a
+     * partition column is chosen.
+     */
+    public static final int DEFAULT_PARTITION_COUNT = 4;
+
+    /**
+     * The numeric or date column of the query's results to split the
+     * execution of the query by. If this is null the query is executed as one
+     * statement. See {@link QueryPartitioning}.
+     */
+    private String partitionColumn;
+
+    /**
+     * The number of statements a partitioned execution of this query is
+     * split into.
+     */
+    private int partitionCount = DEFAULT_PARTITION_COUNT;
+
+    /**
+     * If true the rows of the partitions are kept in the order of the
+     * partitions' ranges, otherwise they are shown as each partition finishes.
+     */
+    private boolean partitionOrdered = true;
+
+    /**
+     * The number of rows a preview of this query in the query editor returns.
+     * The preview is shown as soon as it is done instead of waiting for the
+     * full results. If this is 0 the editor executes the query with its full
+     * row limit right away.
+     */
+    private int previewRowLimit = 0;
+
+    /**
+     * If true the full results of the query are fetched in the background
+     * after a preview that may be missing rows, and replace the preview when
+     * they are done.
+     */
+    private boolean fullResultsAfterPreview = true;
     
     /**
      * These are the listeners that want to listen directly to the query that
@@ -123,10 +168,12 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
     	private AtomicInteger compoundEdits = new AtomicInteger(0);
     	
         public void propertyChangeEvent(PropertyChangeEvent evt) {
+            revision.incrementAndGet();
             firePropertyChangeEvent(evt);
         }
     
         public void joinRemoved(QueryChangeEvent evt) {
+            revision.incrementAndGet();
             fireJoinRemoved(evt);
             if (compoundEdits.get() == 0){
             	rsps.fireStructureChanged();
@@ -135,6 +182,7 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
         }
     
         public void joinPropertyChangeEvent(PropertyChangeEvent evt) {
+            revision.incrementAndGet();
             fireJoinPropertyChangeEvent(evt);
             if (compoundEdits.get() == 0){
             	rsps.fireStructureChanged();
@@ -143,6 +191,7 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
         }
     
         public void joinAdded(QueryChangeEvent evt) {
+            revision.incrementAndGet();
             fireJoinAdded(evt);
             if (compoundEdits.get() == 0){
             	rsps.fireStructureChanged();
@@ -151,6 +200,7 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
         }
     
         public void itemRemoved(QueryChangeEvent evt) {
+            revision.incrementAndGet();
             fireItemRemoved(evt);
             if (compoundEdits.get() == 0){
             	rsps.fireStructureChanged();
@@ -159,6 +209,7 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
         }
     
         public void itemPropertyChangeEvent(PropertyChangeEvent evt) {
+            revision.incrementAndGet();
             fireItemPropertyChangeEvent(evt);
             if (compoundEdits.get() == 0){
             	rsps.fireStructureChanged();
@@ -167,6 +218,7 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
         }
     
         public void itemAdded(QueryChangeEvent evt) {
+            revision.incrementAndGet();
             fireItemAdded(evt);
             if (compoundEdits.get() == 0){
             	rsps.fireStructureChanged();
@@ -175,6 +227,7 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
         }
     
         public void containerRemoved(QueryChangeEvent evt) {
+            revision.incrementAndGet();
             fireContainerRemoved(evt);
             if (compoundEdits.get() == 0){
             	rsps.fireStructureChanged();
@@ -183,6 +236,7 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
         }
     
         public void containerAdded(QueryChangeEvent evt) {
+            revision.incrementAndGet();
             fireContainerAdded(evt);
             if (compoundEdits.get() == 0){
             	rsps.fireStructureChanged();
@@ -205,6 +259,32 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
         }
     };
     
+    /**
+     * Incremented each time the query this object delegates to changes. This
+     * lets objects that derive something from the query, like the SQL it
+     * generates, tell if the query changed since they last looked at it.
+     */
+    private final AtomicLong revision = new AtomicLong();
+
+    /**
+     * The SQL last generated from the query and the revision it was generated
+     * at. It is regenerated only when the revision changes.
+     */
+    private volatile GeneratedQuery generatedQuery;
+
+    /**
+     * A query string generated at a given revision of the query.
+     */
+    private static class GeneratedQuery {
+        private final long revision;
+        private final String sql;
+        
+        GeneratedQuery(long revision, String sql) {
+            this.revision = revision;
+            this.sql = sql;
+        }
+    }
+    
     private void updateVariables() {
     	if (variableProvider != null) {            	
         	variableProvider.setUpdateNeeded(true);
@@ -396,6 +476,11 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
     	this.query = new QueryImpl(q.query, connectListeners);
         query.addQueryChangeListener(queryChangeListener);
         query.setUUID(getUUID());
+        partitionColumn = q.partitionColumn;
+        partitionCount = q.partitionCount;
+        partitionOrdered = q.partitionOrdered;
+        previewRowLimit = q.previewRowLimit;
+        fullResultsAfterPreview = q.fullResultsAfterPreview;
         createWabitObjectWrappers(false);
     }
     
@@ -510,13 +595,62 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
     		ResultSetListener listener, 
     		boolean async) throws ResultSetProducerException 
     {
+        return execute(variableContext, listener, async, null);
+    }
+
+    public ResultSetHandle execute(
+    		SPVariableHelper variableContext, 
+    		ResultSetListener listener, 
+    		boolean async,
+    		CancellationToken token) throws ResultSetProducerException 
+    {
+        return execute(generateQuery(), 
+                isStreaming() ? ResultSetType.STREAMING : ResultSetType.RELATIONAL,
+                isStreaming() ? getStreamingRowLimit() : query.getRowLimit(),
+                getPartitioning(), variableContext, listener, async, token);
+    }
+
+    /**
+     * Executes a query derived from the SQL of this query, such as a query
+     * that aggregates its rows, on this query's data source. The derived query
+     * is executed the same way as this query, with this query's row limit
+     * applied to the rows of the derived query. Variables in the derived
+     * query are substituted as they are in this query.
+     * 
+     * @param sql
+     *            The query to execute, normally built around the SQL returned
+     *            by {@link #generateQuery()}.
+     * @param token
+     *            The execution is cancelled when this token is cancelled. Can
+     *            be null.
+     * @see #execute(SPVariableHelper, ResultSetListener, boolean, CancellationToken)
+     */
+    public ResultSetHandle executeDerivedQuery(
+            String sql,
+            SPVariableHelper variableContext, 
+            ResultSetListener listener, 
+            boolean async,
+            CancellationToken token) throws ResultSetProducerException 
+    {
+        return execute(sql, ResultSetType.RELATIONAL, query.getRowLimit(), 
+                null, variableContext, listener, async, token);
+    }
+    
+    private ResultSetHandle execute(
+            String sql,
+            ResultSetType type,
+            int rowLimit,
+            QueryPartitioning partitioning,
+            SPVariableHelper variableContext, 
+            ResultSetListener listener, 
+            boolean async,
+            CancellationToken token) throws ResultSetProducerException 
+    {
         
         if (query.getDatabase() == null || query.getDatabase().getDataSource() == null) {
             throw new NullPointerException("Data source is null.");
         }
-        	
-    	String sql = query.generateQuery();
-    	
+        
     	try {
         	
     		SPVariableHelper helper;	
@@ -531,10 +665,12 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
     				this.getDataSource(),
     				sql,
     				helper,
-    				isStreaming() ? ResultSetType.STREAMING : ResultSetType.RELATIONAL,
-    				isStreaming() ? getStreamingRowLimit() : query.getRowLimit(),
+    				type,
+    				rowLimit,
+    				partitioning,
     				listener,
-    				async);
+    				async,
+    				token);
     		
     	} catch (Exception t) {
     		throw new ResultSetProducerException(t);
@@ -648,6 +784,91 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
         return automaticallyExecuting;
     }
 
+    /**
+     * Sets the numeric or date column of this query's results that the
+     * execution of the query is split by. Partitioning suits large extracts
+     * from databases that can run several statements at once. Set this to
+     * null to execute the query as one statement.
+     */
+    public void setPartitionColumn(String partitionColumn) {
+        String oldColumn = this.partitionColumn;
+        this.partitionColumn = partitionColumn;
+        firePropertyChange("partitionColumn", oldColumn, partitionColumn);
+    }
+
+    public String getPartitionColumn() {
+        return partitionColumn;
+    }
+
+    public void setPartitionCount(int partitionCount) {
+        int oldCount = this.partitionCount;
+        this.partitionCount = partitionCount;
+        firePropertyChange("partitionCount", oldCount, partitionCount);
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public void setPartitionOrdered(boolean partitionOrdered) {
+        boolean oldOrdered = this.partitionOrdered;
+        this.partitionOrdered = partitionOrdered;
+        firePropertyChange("partitionOrdered", oldOrdered, partitionOrdered);
+    }
+
+    public boolean isPartitionOrdered() {
+        return partitionOrdered;
+    }
+
+    /**
+     * Sets the number of rows the query editor previews before the full
+     * results of this query are fetched. Set this to 0 to not preview the
+     * query. Previews suit queries that are executed automatically on every
+     * change to them but take a long time to return all of their rows.
+     */
+    public void setPreviewRowLimit(int previewRowLimit) {
+        int oldLimit = this.previewRowLimit;
+        this.previewRowLimit = previewRowLimit;
+        firePropertyChange("previewRowLimit", oldLimit, previewRowLimit);
+    }
+
+    public int getPreviewRowLimit() {
+        return previewRowLimit;
+    }
+
+    public void setFullResultsAfterPreview(boolean fullResultsAfterPreview) {
+        boolean oldFullResults = this.fullResultsAfterPreview;
+        this.fullResultsAfterPreview = fullResultsAfterPreview;
+        firePropertyChange("fullResultsAfterPreview", oldFullResults, fullResultsAfterPreview);
+    }
+
+    public boolean isFullResultsAfterPreview() {
+        return fullResultsAfterPreview;
+    }
+
+    /**
+     * Returns true if the query editor should preview this query. Streaming
+     * queries show their rows as they arrive and are never previewed, nor
+     * are queries whose row limit is no larger than the preview. A row limit
+     * of 0 or less does not limit the rows of the query.
+     */
+    private boolean isPreviewing() {
+        if (isStreaming() || previewRowLimit <= 0) return false;
+        return query.getRowLimit() <= 0 || previewRowLimit < query.getRowLimit();
+    }
+
+    /**
+     * Returns how the execution of this query is partitioned, or null if it
+     * is executed as one statement. Streaming queries are never partitioned.
+     */
+    private QueryPartitioning getPartitioning() {
+        if (isStreaming() || partitionColumn == null || partitionColumn.trim().length() == 0
+                || partitionCount < 2) {
+            return null;
+        }
+        return new QueryPartitioning(partitionColumn.trim(), partitionCount, partitionOrdered);
+    }
+
     @Override
     protected boolean removeChildImpl(SPObject child) {
         if (child instanceof WabitConstantsContainer) {
@@ -720,8 +941,30 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
     
     //------------------- start Query interface---------------------------------
     
+    /**
+     * Returns the SQL of this query. The SQL is only generated again if the
+     * query changed since the last time it was generated.
+     * 
+     * @see #getRevision()
+     */
     public String generateQuery() {
-        return query.generateQuery();
+        long currentRevision = revision.get();
+        GeneratedQuery generated = generatedQuery;
+        if (generated == null || generated.revision != currentRevision) {
+            generated = new GeneratedQuery(currentRevision, query.generateQuery());
+            generatedQuery = generated;
+        }
+        return generated.sql;
+    }
+
+    /**
+     * Returns a number that increases each time the query changes. Objects
+     * that compute something from the query can store the revision it was
+     * computed at and skip computing it again while the revision stays the
+     * same.
+     */
+    public long getRevision() {
+        return revision.get();
     }
     
     public boolean containsCrossJoins() {
@@ -743,6 +986,7 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
     	} else {
     		query.setDataSource(ds);
     	}
+    	revision.incrementAndGet();
 		firePropertyChange("dataSource", oldValue, ds);
     }
     
@@ -750,6 +994,7 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
     	JDBCDataSource oldValue = this.getDataSource();
     	boolean returnValue = query.setDataSourceWithoutSideEffects(dataSource);
     	if (returnValue) {
+    		revision.incrementAndGet();
     		firePropertyChange("dataSource", oldValue, dataSource);
     	}
     	return returnValue;
@@ -771,6 +1016,7 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
     }
     
     public void setDBMapping(SQLDatabaseMapping dbMapping) {
+        revision.incrementAndGet();
         query.setDBMapping(dbMapping);
     }
 
@@ -1211,23 +1457,107 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
     
     
     private ResultSetListener resultSetListener = null;
-    private ResultSetHandle internalHandle = null;
-    
+    private volatile ResultSetHandle internalHandle = null;
+
+	/**
+	 * Cancels the executions started by the last call to
+	 * {@link #executeStatement()}, which are the preview of the query and the
+	 * execution of its full results if it is previewed.
+	 */
+    private volatile CancellationToken statementToken = null;
 
+	/**
+	 * Forwards the events of the execution that fetches the full results
+	 * after a preview to {@link #resultSetListener}, and makes the handle of
+	 * the full results the {@link #internalHandle} once it has succeeded. The
+	 * events of a statement that has been replaced by a newer one are
+	 * dropped.
+	 */
+    private class FullResultsListener implements ResultSetListener {
+
+    	private final CancellationToken token;
+
+    	FullResultsListener(CancellationToken token) {
+    		this.token = token;
+    	}
+
+		public void executionStarted(ResultSetEvent evt) {
+			ResultSetListener listener = resultSetListener;
+			if (token == statementToken && listener != null) {
+				listener.executionStarted(evt);
+			}
+		}
+
+		public void newData(ResultSetEvent evt) {
+			ResultSetListener listener = resultSetListener;
+			if (token == statementToken && listener != null) {
+				listener.newData(evt);
+			}
+		}
+
+		public void executionComplete(ResultSetEvent evt) {
+			if (token != statementToken) return;
+			if (!token.isCancelled() && evt.getSourceHandle().getStatus() == ResultSetStatus.SUCCESS) {
+				internalHandle = evt.getSourceHandle();
+			}
+			ResultSetListener listener = resultSetListener;
+			if (listener != null) {
+				listener.executionComplete(evt);
+			}
+		}
+    }
+
+	/**
+	 * Executes this query for the query editor and waits for its results. If
+	 * the query has a preview row limit only that many rows are fetched
+	 * before this returns. If the preview may be missing rows and the full
+	 * results are wanted, the query is then executed again with its full row
+	 * limit in the background. The full results become the
+	 * {@link #getInternalHandle() internal handle} once they are done and the
+	 * result set listener is told when they are.
+	 * <p>
+	 * The preview is limited the same way as the full results, with
+	 * {@link Statement#setMaxRows(int)}, which drivers pass on to the
+	 * database in its own dialect.
+	 */
 	public boolean executeStatement() throws SQLException {
 		
+		if (this.statementToken != null) {
+			this.statementToken.cancel();
+		}
 		if (this.internalHandle != null) {
 			this.internalHandle.cancel();
 			this.internalHandle.removeResultSetListener(resultSetListener);
 		}
+		final CancellationToken token = new CancellationToken();
+		this.statementToken = token;
 		
 		try {
 			
-			this.internalHandle = 
-					this.execute(
-							new SPVariableHelper(this), 
-							this.resultSetListener, 
-							false);
+			SPVariableHelper helper = new SPVariableHelper(this);
+			if (!isPreviewing()) {
+				this.internalHandle = 
+						this.execute(
+								helper, 
+								this.resultSetListener, 
+								false,
+								token);
+				return true;
+			}
+			
+			String sql = generateQuery();
+			ResultSetHandle preview = execute(sql, ResultSetType.RELATIONAL, previewRowLimit, 
+					null, helper, this.resultSetListener, false, token);
+			this.internalHandle = preview;
+			
+			if (fullResultsAfterPreview && !token.isCancelled()
+					&& preview.getStatus() == ResultSetStatus.SUCCESS
+					&& preview.getCursor().getRowCount() >= previewRowLimit) {
+				logger.debug("Fetching the full results of " + getName() + " after a preview of " 
+						+ previewRowLimit + " rows");
+				execute(sql, ResultSetType.RELATIONAL, query.getRowLimit(), 
+						getPartitioning(), helper, new FullResultsListener(token), true, token);
+			}
 			
 			return true;
 			
@@ -1266,8 +1596,20 @@ public class QueryCache extends AbstractWabitObject implements StatementExecutor
 	public ResultSetHandle getInternalHandle() {
 		return this.internalHandle;
 	}
+
+	/**
+	 * Stops the executions started by the last call to
+	 * {@link #executeStatement()}, including the execution of the full
+	 * results that follows a preview.
+	 */
+	public void cancelStatement() {
+		CancellationToken token = this.statementToken;
+		if (token != null) {
+			token.cancel();
+		}
+	}
 	
 	public String getStatement() {
-        return query.generateQuery();
+        return generateQuery();
     }
 }
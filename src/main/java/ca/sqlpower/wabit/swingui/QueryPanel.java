@@ -41,6 +41,7 @@ import java.awt.event.MouseMotionAdapter;
 import java.awt.event.MouseMotionListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.LinkedHashMap;
@@ -73,14 +74,21 @@ import javax.swing.JToolBar;
 import javax.swing.JTree;
 import javax.swing.KeyStroke;
 import javax.swing.ListModel;
+import javax.swing.RowSorter.SortKey;
+import javax.swing.SortOrder;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
 import javax.swing.table.JTableHeader;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
 import javax.swing.tree.TreePath;
 
 import net.miginfocom.swing.MigLayout;
@@ -116,6 +124,7 @@ import ca.sqlpower.util.WorkspaceContainer;
 import ca.sqlpower.validation.swingui.StatusComponent;
 import ca.sqlpower.wabit.WabitSessionContext;
 import ca.sqlpower.wabit.rs.ResultSetEvent;
+import ca.sqlpower.wabit.rs.ResultSetHandle;
 import ca.sqlpower.wabit.rs.ResultSetListener;
 import ca.sqlpower.wabit.rs.ResultSetProducerEvent;
 import ca.sqlpower.wabit.rs.ResultSetProducerListener;
@@ -125,6 +134,7 @@ import ca.sqlpower.wabit.swingui.action.ExportSQLScriptAction;
 import ca.sqlpower.wabit.swingui.action.ExportWabitObjectAction;
 import ca.sqlpower.wabit.swingui.action.NewChartAction;
 import ca.sqlpower.wabit.swingui.action.ShowQueryPropertiesAction;
+import ca.sqlpower.wabit.swingui.query.ResultSetHandleTableModel;
 
 import com.jgoodies.forms.builder.ButtonBarBuilder;
 import com.jgoodies.forms.builder.DefaultFormBuilder;
@@ -377,6 +387,35 @@ public class QueryPanel implements WabitPanel {
 	 * The field that will search for a given string across all result sets simultaneously.
 	 */
 	private JTextField searchField;
+
+	/**
+	 * The model of the result table currently displayed. It reads the rows of
+	 * the query's result set handle as they are displayed and sorts and
+	 * filters them in the background. This is null if no result table is
+	 * displayed.
+	 */
+	private ResultSetHandleTableModel resultsTableModel;
+
+	/**
+	 * The search document {@link #searchFilterListener} is attached to.
+	 */
+	private Document searchDocument;
+
+	/**
+	 * Filters the rows of {@link #resultsTableModel} by the text of the search
+	 * field.
+	 */
+	private final DocumentListener searchFilterListener = new DocumentListener() {
+		public void removeUpdate(DocumentEvent e) {
+			updateResultsFilter();
+		}
+		public void insertUpdate(DocumentEvent e) {
+			updateResultsFilter();
+		}
+		public void changedUpdate(DocumentEvent e) {
+			updateResultsFilter();
+		}
+	};
 	
 	/**
 	 * This is the current column model of the JTable being displayed in the results.
@@ -454,7 +493,13 @@ public class QueryPanel implements WabitPanel {
 
 	private ResultSetListener resultSetListener = new ResultSetListener() {
 		public void newData(ResultSetEvent evt) {
-			// don't care
+			if (resultsTableModel != null && resultsTableModel.getHandle() == evt.getSourceHandle()) {
+				try {
+					resultsTableModel.refresh();
+				} catch (SQLException e) {
+					throw new RuntimeException(e);
+				}
+			}
 		}
 		public void executionStarted(ResultSetEvent evt) {
 			columnNameLabel.setIcon(THROBBER);
@@ -463,6 +508,15 @@ public class QueryPanel implements WabitPanel {
 		public void executionComplete(ResultSetEvent evt) {
 			columnNameLabel.setIcon(null);
 			queryUIComponents.getStopButton().setEnabled(false);
+			if (resultsTableModel != null && evt.getSourceHandle() == queryCache.getInternalHandle()
+					&& resultsTableModel.getHandle() != evt.getSourceHandle()) {
+				// the full results of a previewed query replace the preview
+				try {
+					resultsTableModel.setHandle(evt.getSourceHandle());
+				} catch (SQLException e) {
+					throw new RuntimeException(e);
+				}
+			}
 			if (evt.getSourceHandle().getException() != null) {
 				String errorMessage = SQLQueryUIComponents.createErrorStringMessage(evt.getSourceHandle().getException());
     			queryUIComponents.getLogTextArea().append(errorMessage + "\n");
@@ -694,6 +748,13 @@ public class QueryPanel implements WabitPanel {
 					}
 					e.getChangedTable().getTableHeader().removeMouseMotionListener(reorderSelectionByHeaderAutoScrollTable);
 				}
+				if (resultsTableModel != null && e.getChangedTable().getModel() == resultsTableModel) {
+					if (searchDocument != null) {
+						searchDocument.removeDocumentListener(searchFilterListener);
+						searchDocument = null;
+					}
+					resultsTableModel = null;
+				}
 			}
 		
 			public void tableAdded(final TableChangeEvent e) {
@@ -708,6 +769,7 @@ public class QueryPanel implements WabitPanel {
 					FancyExportableJTable fancyTable = (FancyExportableJTable)table;
 					sortDecorator = fancyTable.getTableModelSortDecorator();
 				}
+				installResultsTableModel(table, sortDecorator);
 				ComponentCellRenderer renderer = new ComponentCellRenderer(table, sortDecorator);
 				table.getTableHeader().setDefaultRenderer(renderer);
 
@@ -738,6 +800,8 @@ public class QueryPanel implements WabitPanel {
 				table.getTableHeader().addMouseMotionListener(reorderSelectionByHeaderAutoScrollTable);
 				
 				//TODO: Add the new renderer to result sets on both tabs when a parser exists to go between them easier.
+				// Sorting by a header sets the ORDER BY of the query, which executes
+				// it again. The handle's model sorts the rows it has until then.
 				if (queryPenAndTextTabPane.getSelectedComponent() != queryToolPanel) {
 					queryController.listenToCellRenderer(renderer);
 				}
@@ -762,6 +826,74 @@ public class QueryPanel implements WabitPanel {
 
 	}
 
+
+	/**
+	 * Replaces the model of a result table built by the query UI components
+	 * with a {@link ResultSetHandleTableModel} on the query's handle, so the
+	 * table reads only the rows it displays and never sorts or filters on the
+	 * event dispatch thread. The table's columns are kept as they are. The
+	 * sort decorator still tracks which columns the user sorted by and,
+	 * through the query controller, sets the ORDER BY of the query. The new
+	 * model sorts the rows it already has by those columns so the table shows
+	 * the new order until the query's sorted results replace the table. A
+	 * table built for the new results starts in the order of the query.
+	 */
+	private void installResultsTableModel(JTable table, final TableModelSortDecorator sortDecorator) {
+		ResultSetHandle handle = queryCache.getInternalHandle();
+		if (handle == null) return;
+		final ResultSetHandleTableModel model;
+		try {
+			model = new ResultSetHandleTableModel(handle);
+		} catch (SQLException e) {
+			logger.error("Could not read the rows of " + queryCache.getName(), e);
+			return;
+		}
+		if (model.getColumnCount() != table.getModel().getColumnCount()) {
+			logger.debug("The result table does not show the query's handle, keeping its model");
+			return;
+		}
+		boolean autoCreateColumns = table.getAutoCreateColumnsFromModel();
+		table.setAutoCreateColumnsFromModel(false);
+		table.setModel(model);
+		table.setAutoCreateColumnsFromModel(autoCreateColumns);
+		resultsTableModel = model;
+		
+		if (sortDecorator != null) {
+			sortDecorator.addTableModelListener(new TableModelListener() {
+				public void tableChanged(TableModelEvent e) {
+					List<SortKey> keys = new ArrayList<SortKey>();
+					for (int i = 0; i < sortDecorator.getColumnCount(); i++) {
+						int status = sortDecorator.getSortingStatus(i);
+						if (status == TableModelSortDecorator.ASCENDING) {
+							keys.add(new SortKey(i, SortOrder.ASCENDING));
+						} else if (status == TableModelSortDecorator.DESCENDING) {
+							keys.add(new SortKey(i, SortOrder.DESCENDING));
+						}
+					}
+					model.setSortKeys(keys);
+				}
+			});
+		}
+		
+		if (searchDocument != null) {
+			searchDocument.removeDocumentListener(searchFilterListener);
+		}
+		searchDocument = queryUIComponents.getSearchDocument();
+		searchDocument.addDocumentListener(searchFilterListener);
+		updateResultsFilter();
+	}
+
+	/**
+	 * Filters the rows of the result table by the text in the search field.
+	 */
+	private void updateResultsFilter() {
+		if (resultsTableModel == null || searchDocument == null) return;
+		try {
+			resultsTableModel.setFilter(searchDocument.getText(0, searchDocument.getLength()));
+		} catch (BadLocationException e) {
+			throw new RuntimeException(e);
+		}
+	}
 	
 	private void buildUI() {
 		JTabbedPane resultPane = queryUIComponents.getResultTabPane();
@@ -958,9 +1090,7 @@ public class QueryPanel implements WabitPanel {
 
 		queryUIComponents.getStopButton().setAction(new AbstractAction() {
 			public void actionPerformed(ActionEvent e) {
-				if (queryCache.getInternalHandle() != null) {
-					queryCache.getInternalHandle().cancel();
-				}
+				queryCache.cancelStatement();
 			}
 		});
 		toolBarBuilder.add(queryUIComponents.getStopButton(), "Stop", STOP_ICON);
@@ -1161,6 +1291,11 @@ public class QueryPanel implements WabitPanel {
 		queryController.disconnect();
 		queryCache.removeResultSetProducerListener(rsProducerListener);
 		logger.debug("Removed the query panel change listener on the query cache");
+		if (searchDocument != null) {
+			searchDocument.removeDocumentListener(searchFilterListener);
+			searchDocument = null;
+		}
+		resultsTableModel = null;
 		queryUIComponents.closeConMap();
 		queryUIComponents.disconnectListeners();
 		try {
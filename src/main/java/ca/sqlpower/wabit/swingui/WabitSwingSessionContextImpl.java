@@ -185,6 +185,7 @@ import ca.sqlpower.wabit.report.ReportContentRenderer;
 import ca.sqlpower.wabit.report.ResultSetRenderer;
 import ca.sqlpower.wabit.report.Template;
 import ca.sqlpower.wabit.report.chart.Chart;
+import ca.sqlpower.wabit.rs.olap.OlapMetadataCache;
 import ca.sqlpower.wabit.rs.olap.OlapQuery;
 import ca.sqlpower.wabit.rs.query.QueryCache;
 import ca.sqlpower.wabit.swingui.action.AboutAction;
@@ -2203,11 +2204,19 @@ public class WabitSwingSessionContextImpl implements WabitSwingSessionContext {
         return delegateContext.getDatabase(ds);
     }
 
+    public void refreshDatabaseMetadata(JDBCDataSource dataSource) {
+        delegateContext.refreshDatabaseMetadata(dataSource);
+    }
+
     public OlapConnection createConnection(Olap4jDataSource dataSource)
             throws SQLException, ClassNotFoundException, NamingException {
         return delegateContext.createConnection(dataSource);
     }
     
+    public OlapMetadataCache getMetadataCache(Olap4jDataSource dataSource) {
+        return delegateContext.getMetadataCache(dataSource);
+    }
+    
     public PreparedOlapStatement createPreparedStatement(
     		Olap4jDataSource dataSource, String mdx, SPVariableHelper helper) {
     	return delegateContext.createPreparedStatement(dataSource, mdx, helper);
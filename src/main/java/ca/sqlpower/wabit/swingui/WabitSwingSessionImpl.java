@@ -95,6 +95,7 @@ import ca.sqlpower.wabit.WabitSession;
 import ca.sqlpower.wabit.WabitWorkspace;
 import ca.sqlpower.wabit.dao.OpenWorkspaceXMLDAO;
 import ca.sqlpower.wabit.enterprise.client.WabitClientSession;
+import ca.sqlpower.wabit.rs.ResultSetEventDispatcher;
 import ca.sqlpower.wabit.rs.ResultSetProducer;
 import ca.sqlpower.wabit.rs.ResultSetProducerEvent;
 import ca.sqlpower.wabit.rs.ResultSetProducerListener;
@@ -814,4 +815,8 @@ public class WabitSwingSessionImpl implements WabitSwingSession {
 	public SPFontLoader getFontLoader() {
 		return delegateSession.getFontLoader();
 	}
+	
+	public ResultSetEventDispatcher getResultSetEventDispatcher() {
+		return ResultSetEventDispatcher.getSwingDispatcher();
+	}
 }
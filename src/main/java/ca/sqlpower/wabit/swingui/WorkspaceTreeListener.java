@@ -78,6 +78,7 @@ import ca.sqlpower.wabit.swingui.action.NewReportAction;
 import ca.sqlpower.wabit.swingui.action.NewReportTaskAction;
 import ca.sqlpower.wabit.swingui.action.NewTemplateAction;
 import ca.sqlpower.wabit.swingui.action.NewUserAction;
+import ca.sqlpower.wabit.swingui.action.RefreshDatabaseMetadataAction;
 import ca.sqlpower.wabit.swingui.action.ReportFromTemplateAction;
 import ca.sqlpower.wabit.swingui.action.ScheduleReportAction;
 import ca.sqlpower.wabit.swingui.action.SecurityAction;
@@ -446,6 +447,8 @@ public class WorkspaceTreeListener extends MouseAdapter {
 								WabitAccessManager.Permission.CREATE)) {
 							menu.addSeparator();
 						}
+						menu.add(new RefreshDatabaseMetadataAction(session, (JDBCDataSource) ds, context.getFrame()));
+						menu.addSeparator();
 					}
 					if (ds instanceof Olap4jDataSource) {
 						NewOLAPQueryAction newOlapQueryOnDS = new NewOLAPQueryAction(session, (Olap4jDataSource) ds);
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.swingui.action;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+
+import javax.swing.AbstractAction;
+import javax.swing.Action;
+
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.swingui.SPSUtils;
+import ca.sqlpower.swingui.SPSwingWorker;
+import ca.sqlpower.wabit.WabitSessionContext;
+import ca.sqlpower.wabit.swingui.WabitSwingSession;
+
+/**
+ * A Swing {@link Action} that reloads the catalogs, schemas, tables and
+ * columns of a database from the database itself. Databases are normally
+ * populated from a saved metadata snapshot, so this is how a user sees tables
+ * that were added or changed since the snapshot was saved. The database is
+ * read in the background and any failure is reported when it is done.
+ */
+public class RefreshDatabaseMetadataAction extends AbstractAction {
+
+    private final WabitSwingSession session;
+    private final JDBCDataSource dataSource;
+    private final Component dialogOwner;
+
+    public RefreshDatabaseMetadataAction(WabitSwingSession session, JDBCDataSource dataSource, 
+            Component dialogOwner) {
+        super("Refresh Database Metadata");
+        putValue(SHORT_DESCRIPTION, "Reload the tables and columns of '" + dataSource.getName() + 
+                "' from the database");
+        this.session = session;
+        this.dataSource = dataSource;
+        this.dialogOwner = dialogOwner;
+    }
+
+    public void actionPerformed(ActionEvent e) {
+        final WabitSessionContext context = session.getContext();
+        SPSwingWorker worker = new SPSwingWorker(session) {
+            @Override
+            public void doStuff() throws Exception {
+                context.refreshDatabaseMetadata(dataSource);
+            }
+            
+            @Override
+            public void cleanup() throws Exception {
+                if (getDoStuffException() != null) {
+                    SPSUtils.showExceptionDialogNoReport(dialogOwner, 
+                            "Could not refresh the metadata of " + dataSource.getName() + ".", 
+                            getDoStuffException());
+                }
+            }
+        };
+        new Thread(worker).start();
+    }
+}
@@ -22,6 +22,7 @@ package ca.sqlpower.wabit.swingui.chart;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
@@ -78,6 +79,8 @@ import ca.sqlpower.wabit.WabitObject;
 import ca.sqlpower.wabit.WabitUtils;
 import ca.sqlpower.wabit.WabitWorkspace;
 import ca.sqlpower.wabit.report.chart.Chart;
+import ca.sqlpower.wabit.report.chart.ChartAggregate;
+import ca.sqlpower.wabit.report.chart.ChartDownsampling;
 import ca.sqlpower.wabit.report.chart.ChartDataChangedEvent;
 import ca.sqlpower.wabit.report.chart.ChartDataListener;
 import ca.sqlpower.wabit.report.chart.ChartType;
@@ -183,6 +186,28 @@ public class ChartPanel implements WabitPanel {
      */
     private final JComboBox legendPositionComboBox;
 
+    /**
+     * Holds the way the chart combines the values of rows in the same category.
+     */
+    private final JComboBox aggregateComboBox = new JComboBox(ChartAggregate.values());
+
+    /**
+     * A label for the aggregate combo box. This is a member variable so we can
+     * make the label invisible when the field is not needed.
+     */
+    private final JLabel aggregateLabel = new JLabel("Aggregate");
+
+    /**
+     * Holds the way the chart reduces the points of large XY series.
+     */
+    private final JComboBox downsamplingComboBox = new JComboBox(ChartDownsampling.values());
+
+    /**
+     * A label for the downsampling combo box. This is a member variable so we
+     * can make the label invisible when the field is not needed.
+     */
+    private final JLabel downsamplingLabel = new JLabel("Downsampling");
+
     /**
      * This panel will display a JFreeChart that is a preview of what the
      * user has selected from the result table. This chart should look
@@ -399,6 +424,8 @@ public class ChartPanel implements WabitPanel {
         
         queryComboBox.addItemListener(genericItemListener);
         legendPositionComboBox.addItemListener(genericItemListener);
+        aggregateComboBox.addItemListener(genericItemListener);
+        downsamplingComboBox.addItemListener(genericItemListener);
         
         this.chartError.setAlignmentX(JXLabel.CENTER_ALIGNMENT);
         this.chartError.setAlignmentY(JXLabel.CENTER_ALIGNMENT);
@@ -491,6 +518,10 @@ public class ChartPanel implements WabitPanel {
         		if (chart.getType().getDatasetType() == DatasetType.CATEGORY) {
         			currentHeaderCellRenderer = new CategoryChartHeaderRenderer(this, resultTable.getTableHeader(), defaultHeaderCellRenderer);
         			resultTable.getTableHeader().setDefaultRenderer(currentHeaderCellRenderer);
+        			aggregateLabel.setVisible(true);
+        			aggregateComboBox.setVisible(true);
+        			downsamplingLabel.setVisible(false);
+        			downsamplingComboBox.setVisible(false);
         			
         			//Set control components visibility based on chart type
         			if (chart.getType() == ChartType.PIE){
@@ -542,6 +573,10 @@ public class ChartPanel implements WabitPanel {
         				return;
         			}
         			resultTable.getTableHeader().setDefaultRenderer(currentHeaderCellRenderer);
+        			aggregateLabel.setVisible(false);
+        			aggregateComboBox.setVisible(false);
+        			downsamplingLabel.setVisible(true);
+        			downsamplingComboBox.setVisible(true);
         			
         			xaxisNameLabel.setVisible(true);
         			xaxisNameField.setVisible(true);
@@ -568,6 +603,8 @@ public class ChartPanel implements WabitPanel {
         		} else {
         			legendPositionComboBox.setSelectedItem(LegendPosition.BOTTOM);
         		}
+        		aggregateComboBox.setSelectedItem(chart.getAggregate());
+        		downsamplingComboBox.setSelectedItem(chart.getDownsampling());
         		
         		final ResultSetTableModel model = 
         			new ResultSetTableModel(chart.getUnfilteredResultSet());
@@ -625,7 +662,9 @@ public class ChartPanel implements WabitPanel {
         	}
         	
         	
-            JFreeChart newJFreeChart = ChartSwingUtil.createChartFromQuery(chart);
+            // the preview can be resized up to the width of the screen
+            JFreeChart newJFreeChart = ChartSwingUtil.createChartFromQuery(chart, 
+                    Toolkit.getDefaultToolkit().getScreenSize().width);
             logger.debug("Created new JFree chart: " + newJFreeChart);
             this.showChart(newJFreeChart);
             if (chart.isGratuitouslyAnimated()) {
@@ -810,6 +849,12 @@ public class ChartPanel implements WabitPanel {
         builder.append("Legend Postion", legendPositionComboBox);
         builder.nextLine();
         
+        builder.append(aggregateLabel, aggregateComboBox);
+        builder.nextLine();
+        
+        builder.append(downsamplingLabel, downsamplingComboBox);
+        builder.nextLine();
+        
         builder.append(yaxisNameLabel, yaxisNameField);
         builder.nextLine();
         
@@ -876,6 +921,8 @@ public class ChartPanel implements WabitPanel {
             }
             
             chart.setLegendPosition((LegendPosition) legendPositionComboBox.getSelectedItem());
+            chart.setAggregate((ChartAggregate) aggregateComboBox.getSelectedItem());
+            chart.setDownsampling((ChartDownsampling) downsamplingComboBox.getSelectedItem());
             chart.setYaxisName(yaxisNameField.getText());
             chart.setXaxisName(xaxisNameField.getText());
             chart.setXAxisLabelRotation(xaxisLabelRotationSlider.getValue());
@@ -65,10 +65,13 @@ import org.jfree.util.TableOrder;
 import ca.sqlpower.wabit.report.chart.Chart;
 import ca.sqlpower.wabit.report.chart.ChartColumn;
 import ca.sqlpower.wabit.report.chart.ChartType;
+import ca.sqlpower.wabit.report.chart.ChartUtil;
 import ca.sqlpower.wabit.report.chart.ColumnRole;
 import ca.sqlpower.wabit.report.chart.DatasetType;
 import ca.sqlpower.wabit.report.chart.LegendPosition;
 import ca.sqlpower.wabit.rs.olap.QueryInitializationException;
+import ca.sqlpower.wabit.trace.PerformanceTracer;
+import ca.sqlpower.wabit.trace.Span;
 
 /**
  * This is a collection of swing specific chart utilities. You should not
@@ -84,6 +87,14 @@ public class ChartSwingUtil {
      */
     private ChartSwingUtil() {/* don't */}
 
+    /**
+     * The number of points per pixel of width that the series of an XY chart
+     * are reduced to when the chart has a downsampling method set. Two points
+     * per pixel leaves room for the minimum and maximum of each column of
+     * pixels so the drawn line looks the same as the full series.
+     */
+    public static final int DOWNSAMPLED_POINTS_PER_PIXEL = 2;
+
     /**
      * The stroke that gets used for horizontal and vertical grid lines in all
      * charts that need them.
@@ -105,6 +116,37 @@ public class ChartSwingUtil {
      *         produce a result set.
      */
     public static JFreeChart createChartFromQuery(Chart c) throws SQLException, QueryInitializationException, InterruptedException {
+        return createChartFromQuery(c, 0);
+    }
+
+    /**
+     * Creates a JFreeChart based on the current query results produced by the
+     * given chart that will be drawn at the given width. The points of XY
+     * charts are reduced to {@link #DOWNSAMPLED_POINTS_PER_PIXEL} points per
+     * pixel of the width as set by the chart's
+     * {@link Chart#getDownsampling()} property.
+     * 
+     * @param c
+     *            The chart from which to produce a JFreeChart component. Must
+     *            not be null.
+     * @param width
+     *            The width the chart will be drawn at in pixels. If this is 0
+     *            all of the points are drawn.
+     * @return A chart based on the data and settings in the given chart, or
+     *         null if the given chart is not sufficiently configured (for
+     *         example, if its type is not set) or it is currently unable to
+     *         produce a result set.
+     */
+    public static JFreeChart createChartFromQuery(Chart c, int width) throws SQLException, QueryInitializationException, InterruptedException {
+        Span span = PerformanceTracer.start(PerformanceTracer.CHART_STAGE, c.getName());
+        try {
+            return createChart(c, width);
+        } finally {
+            span.end();
+        }
+    }
+    
+    private static JFreeChart createChart(Chart c, int width) throws SQLException, QueryInitializationException, InterruptedException {
         logger.debug("Creating JFreeChart for Wabit chart " + c);
         ChartType chartType = c.getType();
         
@@ -140,7 +182,7 @@ public class ChartSwingUtil {
             
         } else if (chartType.getDatasetType().equals(DatasetType.XY)) {
             
-        	JFreeChart xyChart = createXYChart(c);
+        	JFreeChart xyChart = createXYChart(c, width);
             logger.debug("Made a new XY chart: " + xyChart);
             chart = xyChart;
         
@@ -469,9 +511,12 @@ public class ChartSwingUtil {
      * 
      * @param c
      *            The chart to extract the dataset and JFreeChart settings from.
+     * @param width
+     *            The width the chart will be drawn at in pixels, or 0 to draw
+     *            all of the points.
      * @return A chart based on the data in the query of the given type.
      */
-    private static JFreeChart createXYChart(Chart c) {
+    private static JFreeChart createXYChart(Chart c, int width) {
         if (c.getType().getDatasetType() != DatasetType.XY) {
             throw new IllegalStateException(
                     "Chart is not currently set up as an XY chart " +
@@ -484,7 +529,7 @@ public class ChartSwingUtil {
         String yaxisName = c.getYaxisName();
         String xaxisName = c.getXaxisName();
         
-        final XYDataset xyCollection = (XYDataset) c.createDataset();
+        XYDataset xyCollection = (XYDataset) c.createDataset();
         
         boolean containsSeries = false;
         for (ChartColumn identifier : columnNamesInOrder) {
@@ -500,6 +545,10 @@ public class ChartSwingUtil {
         if (xyCollection == null) {
             return null;
         }
+        if (width > 0) {
+            xyCollection = ChartUtil.downsample(xyCollection, c.getDownsampling(), 
+                    width * DOWNSAMPLED_POINTS_PER_PIXEL);
+        }
         return createChartFromXYDataset(c, xyCollection, c.getType(), legendPosition, 
                 chartName, yaxisName, xaxisName);
     }
@@ -27,6 +27,8 @@ import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JSpinner;
+import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -82,6 +84,35 @@ public class QueryPropertiesPanel implements DataEntryPanel {
      * side.
      */
     private final JCheckBox automaticallyExecutingCB;
+
+    /**
+     * The name of the numeric or date column the execution of the query is
+     * split by. Leaving this empty executes the query as one statement.
+     */
+    private final JTextField partitionColumnField;
+
+    /**
+     * The number of statements a partitioned query is split into.
+     */
+    private final JSpinner partitionCountField = new JSpinner(new SpinnerNumberModel(2, 2, 64, 1));
+
+    /**
+     * If checked the rows of a partitioned query stay in the order of the
+     * partitions.
+     */
+    private final JCheckBox partitionOrderedCB;
+
+    /**
+     * The number of rows the query editor previews before it fetches the full
+     * results. 0 turns the preview off.
+     */
+    private final JSpinner previewRowLimitField = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 100));
+
+    /**
+     * If checked the full results are fetched in the background after a
+     * preview.
+     */
+    private final JCheckBox fullResultsAfterPreviewCB;
 	
 	public QueryPropertiesPanel(QueryCache queryArg) {
 		this.query = queryArg;
@@ -122,6 +153,20 @@ public class QueryPropertiesPanel implements DataEntryPanel {
 		automaticallyExecutingCB = new JCheckBox("Automatically execute",
 				query.isAutomaticallyExecuting());
 		
+		partitionColumnField = new JTextField(query.getPartitionColumn());
+		partitionColumnField.setToolTipText("A numeric or date column of the results. The query " +
+				"is executed as several concurrent statements that each return one range of " +
+				"this column's values. Leave empty to execute the query as one statement.");
+		partitionCountField.setValue(Integer.valueOf(Math.max(2, query.getPartitionCount())));
+		partitionOrderedCB = new JCheckBox("Keep rows in partition order", query.isPartitionOrdered());
+		
+		previewRowLimitField.setValue(Integer.valueOf(Math.max(0, query.getPreviewRowLimit())));
+		previewRowLimitField.setToolTipText("The number of rows to show as soon as they are " +
+				"returned when the query is executed in the editor. Set to 0 to always wait " +
+				"for all of the rows.");
+		fullResultsAfterPreviewCB = new JCheckBox("Fetch all rows after the preview", 
+				query.isFullResultsAfterPreview());
+		
 		
 		panel.setLayout(new MigLayout());
 		panel.add(automaticallyExecutingCB, "span");
@@ -133,6 +178,16 @@ public class QueryPropertiesPanel implements DataEntryPanel {
 		panel.add(new JLabel("Row Limit"), "gapbefore 20");
 		panel.add(streamingRowLimitField, "wrap, wmin 100");
 		
+		panel.add(new JLabel("Partition Column"));
+		panel.add(partitionColumnField, "wrap, wmin 100");
+		panel.add(new JLabel("Partitions"), "gapbefore 20");
+		panel.add(partitionCountField, "wrap, wmin 100");
+		panel.add(partitionOrderedCB, "gapbefore 20, span");
+		
+		panel.add(new JLabel("Preview Rows"));
+		panel.add(previewRowLimitField, "wrap, wmin 100");
+		panel.add(fullResultsAfterPreviewCB, "gapbefore 20, span");
+		
 		updateUi();
 	}
 	
@@ -142,6 +197,13 @@ public class QueryPropertiesPanel implements DataEntryPanel {
 	    } else {
 	    	this.streamingRowLimitField.setEnabled(false);
 	    }
+	    // Streaming queries are never partitioned.
+	    partitionColumnField.setEnabled(!query.isStreaming());
+	    partitionCountField.setEnabled(!query.isStreaming());
+	    partitionOrderedCB.setEnabled(!query.isStreaming());
+	    // Streaming queries show their rows as they arrive instead of a preview.
+	    previewRowLimitField.setEnabled(!query.isStreaming());
+	    fullResultsAfterPreviewCB.setEnabled(!query.isStreaming());
 	}
 
 	public boolean applyChanges() {
@@ -149,6 +211,12 @@ public class QueryPropertiesPanel implements DataEntryPanel {
 	    query.setAutomaticallyExecuting(automaticallyExecutingCB.isSelected());
 	    query.setExecuteQueriesWithCrossJoins(executeWithCrossJoinsCB.isSelected());
 	    query.setStreamingRowLimit((Integer) streamingRowLimitField.getValue());
+	    String partitionColumn = partitionColumnField.getText().trim();
+	    query.setPartitionColumn(partitionColumn.length() > 0 ? partitionColumn : null);
+	    query.setPartitionCount((Integer) partitionCountField.getValue());
+	    query.setPartitionOrdered(partitionOrderedCB.isSelected());
+	    query.setPreviewRowLimit((Integer) previewRowLimitField.getValue());
+	    query.setFullResultsAfterPreview(fullResultsAfterPreviewCB.isSelected());
 		return true;
 	}
 
@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.swingui.query;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.swing.SortOrder;
+import javax.swing.SwingUtilities;
+import javax.swing.RowSorter.SortKey;
+import javax.swing.table.AbstractTableModel;
+
+import org.apache.log4j.Logger;
+
+import ca.sqlpower.wabit.rs.ResultSetCursor;
+import ca.sqlpower.wabit.rs.ResultSetHandle;
+
+/**
+ * A table model that shows the rows of a {@link ResultSetHandle} without
+ * copying them. The values of a row are read from the handle's result set
+ * through a {@link ResultSetCursor} only when the table asks for them, which
+ * it does for the rows that are visible, so the model holds nothing but an
+ * index for each row it shows.
+ * <p>
+ * Sorting and filtering never compare rows on the event dispatch thread. When
+ * the sort keys, the filter or the rows change the new order of the rows is
+ * computed on a background thread while the table keeps showing the previous
+ * order. The foreground thread only swaps in the finished index and fires one
+ * table event, so a sort of a million rows costs the event dispatch thread no
+ * more than a sort of ten. A change to the sort keys, the filter or the
+ * handle that arrives while a sort is running makes the running sort stop
+ * early and its result is thrown away. New rows do not: a {@link #refresh()}
+ * that arrives while a sort is running waits for it to be shown and then
+ * sorts once more, so rows that keep arriving do not keep restarting the
+ * sort.
+ * <p>
+ * This model must be used on the foreground thread it was given, which is the
+ * Swing event dispatch thread unless it was created for testing.
+ */
+public class ResultSetHandleTableModel extends AbstractTableModel {
+
+    private static final Logger logger = Logger.getLogger(ResultSetHandleTableModel.class);
+
+    /**
+     * The number of rows filtered or comparisons made by a background sort
+     * between checks for whether a newer sort has made it obsolete.
+     */
+    static final int STALE_CHECK_INTERVAL = 4096;
+
+    /**
+     * The thread all result tables sort and filter on. One thread is enough
+     * as a newer sort makes any sort still running obsolete.
+     */
+    private static final ExecutorService sortExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Result table sort");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    /**
+     * Runs the swaps of finished views on the Swing event dispatch thread.
+     */
+    private static final Executor swingExecutor = new Executor() {
+        public void execute(Runnable command) {
+            SwingUtilities.invokeLater(command);
+        }
+    };
+
+    /**
+     * Thrown inside a background sort to abandon it when a newer one has
+     * been started.
+     */
+    private static class StaleViewException extends RuntimeException {
+        // marker
+    }
+
+    /**
+     * The handle whose rows are shown. This is null for a model created on a
+     * fixed cursor.
+     */
+    @Nullable
+    private ResultSetHandle handle;
+
+    private final Executor backgroundExecutor;
+
+    private final Executor foregroundExecutor;
+
+    /**
+     * The rows being shown. This only changes on the foreground thread,
+     * together with {@link #viewToModel}.
+     */
+    private ResultSetCursor cursor;
+
+    /**
+     * The row of {@link #cursor} shown at each row of the table, or null to
+     * show every row in the order of the result set.
+     */
+    @Nullable
+    private int[] viewToModel;
+
+    private List<SortKey> sortKeys = Collections.emptyList();
+
+    /**
+     * The text a row must contain in one of its values to be shown, in lower
+     * case. Empty to show every row.
+     */
+    private String filterText = "";
+
+    /**
+     * Counts the views requested. A background sort whose number is no longer
+     * the current one stops and its result is dropped.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * True while a view is being computed in the background. Only used on
+     * the foreground thread.
+     */
+    private boolean viewPending = false;
+
+    /**
+     * True if {@link #refresh()} was called while {@link #viewPending} was
+     * set. The rows are refreshed again once the pending view is shown.
+     */
+    private boolean refreshPending = false;
+
+    /**
+     * Creates a model showing the rows the given handle has received so far.
+     * Call {@link #refresh()} when the handle receives more rows.
+     */
+    public ResultSetHandleTableModel(@Nonnull ResultSetHandle handle) throws SQLException {
+        this.handle = handle;
+        this.backgroundExecutor = sortExecutor;
+        this.foregroundExecutor = swingExecutor;
+        this.cursor = handle.getCursor();
+    }
+
+    /**
+     * Creates a model showing the rows of the given cursor, sorting on one
+     * executor and delivering the sorted rows on the other. For testing.
+     */
+    ResultSetHandleTableModel(@Nonnull ResultSetCursor cursor, @Nonnull Executor backgroundExecutor,
+            @Nonnull Executor foregroundExecutor) {
+        this.handle = null;
+        this.backgroundExecutor = backgroundExecutor;
+        this.foregroundExecutor = foregroundExecutor;
+        this.cursor = cursor;
+    }
+
+    /**
+     * Returns the handle this model shows, null if it was created on a
+     * cursor.
+     */
+    @Nullable
+    public ResultSetHandle getHandle() {
+        return handle;
+    }
+
+    /**
+     * Shows the rows of another handle of the same query, such as the full
+     * results of a query that was previewed, in the current order. The
+     * previous rows stay visible until the new ones are sorted.
+     */
+    public void setHandle(@Nonnull ResultSetHandle handle) throws SQLException {
+        this.handle = handle;
+        updateView(handle.getCursor());
+    }
+
+    /**
+     * Picks up the rows the handle has received since this model was created
+     * or last refreshed. The current order of the rows is applied to the new
+     * rows before they are shown. If a sort is running the rows are picked up
+     * once its result is shown, and any number of refreshes in that time are
+     * handled as one.
+     */
+    public void refresh() throws SQLException {
+        if (handle == null) return;
+        if (viewPending) {
+            refreshPending = true;
+            return;
+        }
+        updateView(handle.getCursor());
+    }
+
+    /**
+     * Sorts the rows by the given columns, the first key being the most
+     * significant. Keys with an order of {@link SortOrder#UNSORTED} are
+     * ignored.
+     */
+    public void setSortKeys(@Nonnull List<? extends SortKey> keys) {
+        List<SortKey> newKeys = new ArrayList<SortKey>();
+        for (SortKey key : keys) {
+            if (key.getSortOrder() != SortOrder.UNSORTED) {
+                newKeys.add(key);
+            }
+        }
+        if (newKeys.equals(sortKeys)) return;
+        sortKeys = Collections.unmodifiableList(newKeys);
+        updateView(cursor);
+    }
+
+    public List<SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    /**
+     * Only shows the rows that contain the given text, ignoring case, in the
+     * string value of at least one of their columns. A null or empty filter
+     * shows every row.
+     */
+    public void setFilter(@Nullable String text) {
+        String newText = (text == null ? "" : text.toLowerCase());
+        if (newText.equals(filterText)) return;
+        filterText = newText;
+        updateView(cursor);
+    }
+
+    public String getFilter() {
+        return filterText;
+    }
+
+    /**
+     * Shows the rows of the given cursor in the current order. Rows in their
+     * natural order are swapped in right away, any other order is computed
+     * in the background first.
+     */
+    private void updateView(final ResultSetCursor newCursor) {
+        final int viewGeneration = generation.incrementAndGet();
+        if (sortKeys.isEmpty() && filterText.length() == 0) {
+            swapView(newCursor, null);
+            return;
+        }
+        final List<SortKey> keys = sortKeys;
+        final String filter = filterText;
+        viewPending = true;
+        backgroundExecutor.execute(new Runnable() {
+            public void run() {
+                final int[] view;
+                try {
+                    view = createView(newCursor, keys, filter, viewGeneration);
+                } catch (StaleViewException e) {
+                    logger.debug("Abandoned sort " + viewGeneration + " of " + newCursor.getRowCount() + " rows");
+                    return;
+                }
+                foregroundExecutor.execute(new Runnable() {
+                    public void run() {
+                        if (viewGeneration != generation.get()) return;
+                        swapView(newCursor, view);
+                    }
+                });
+            }
+        });
+    }
+
+    private void swapView(ResultSetCursor newCursor, @Nullable int[] view) {
+        boolean structureChanged = newCursor.getColumnCount() != cursor.getColumnCount();
+        cursor = newCursor;
+        viewToModel = view;
+        viewPending = false;
+        if (structureChanged) {
+            fireTableStructureChanged();
+        } else {
+            fireTableDataChanged();
+        }
+        if (refreshPending) {
+            refreshPending = false;
+            try {
+                refresh();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the indices of the rows of the cursor that pass the filter, in
+     * the order given by the sort keys.
+     * 
+     * @throws StaleViewException
+     *             If a newer view was requested while this one was being
+     *             computed.
+     */
+    private int[] createView(ResultSetCursor source, List<SortKey> keys, String filter,
+            final int viewGeneration) {
+        final int rowCount = source.getRowCount();
+        Integer[] rows = new Integer[rowCount];
+        int shown = 0;
+        for (int i = 0; i < rowCount; i++) {
+            if (i % STALE_CHECK_INTERVAL == 0) {
+                checkStale(viewGeneration);
+            }
+            if (filter.length() == 0 || rowContains(source.getRow(i), filter)) {
+                rows[shown] = i;
+                shown++;
+            }
+        }
+        if (shown < rowCount) {
+            rows = Arrays.copyOf(rows, shown);
+        }
+        if (!keys.isEmpty()) {
+            Arrays.sort(rows, new RowComparator(source, keys, viewGeneration));
+        }
+        int[] view = new int[rows.length];
+        for (int i = 0; i < view.length; i++) {
+            view[i] = rows[i];
+        }
+        return view;
+    }
+
+    private void checkStale(int viewGeneration) {
+        if (viewGeneration != generation.get()) {
+            throw new StaleViewException();
+        }
+    }
+
+    private static boolean rowContains(Object[] row, String filter) {
+        for (Object value : row) {
+            if (value != null && value.toString().toLowerCase().contains(filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the rows at two indices of a cursor by the values of the sort
+     * key columns. The sort is stable so rows with equal keys keep the order
+     * of the result set.
+     */
+    private class RowComparator implements Comparator<Integer> {
+
+        private final ResultSetCursor source;
+        private final int[] columns;
+        private final boolean[] descending;
+        private final int viewGeneration;
+        private int comparisons;
+
+        RowComparator(ResultSetCursor source, List<SortKey> keys, int viewGeneration) {
+            this.source = source;
+            this.viewGeneration = viewGeneration;
+            columns = new int[keys.size()];
+            descending = new boolean[keys.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = keys.get(i).getColumn();
+                descending[i] = keys.get(i).getSortOrder() == SortOrder.DESCENDING;
+            }
+        }
+
+        public int compare(Integer row1, Integer row2) {
+            comparisons++;
+            if (comparisons % STALE_CHECK_INTERVAL == 0) {
+                checkStale(viewGeneration);
+            }
+            Object[] values1 = source.getRow(row1);
+            Object[] values2 = source.getRow(row2);
+            for (int i = 0; i < columns.length; i++) {
+                int result = compareValues(values1[columns[i]], values2[columns[i]]);
+                if (result != 0) {
+                    return descending[i] ? -result : result;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Compares two values of a column. Nulls come first, values of the same
+     * comparable type are compared naturally, numbers of different types by
+     * their double values and anything else by its string value.
+     */
+    @SuppressWarnings("unchecked")
+    static int compareValues(@Nullable Object value1, @Nullable Object value2) {
+        if (value1 == value2) return 0;
+        if (value1 == null) return -1;
+        if (value2 == null) return 1;
+        if (value1.getClass() == value2.getClass() && value1 instanceof Comparable) {
+            return ((Comparable<Object>) value1).compareTo(value2);
+        }
+        if (value1 instanceof Number && value2 instanceof Number) {
+            return Double.compare(((Number) value1).doubleValue(), ((Number) value2).doubleValue());
+        }
+        return value1.toString().compareTo(value2.toString());
+    }
+
+    public int getRowCount() {
+        if (viewToModel != null) return viewToModel.length;
+        return cursor.getRowCount();
+    }
+
+    public int getColumnCount() {
+        return cursor.getColumnCount();
+    }
+
+    /**
+     * Returns the index in the result set of the row shown at the given row
+     * of the table.
+     */
+    public int convertRowIndexToModel(int viewRow) {
+        if (viewToModel != null) return viewToModel[viewRow];
+        return viewRow;
+    }
+
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        return cursor.getRow(convertRowIndexToModel(rowIndex))[columnIndex];
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        try {
+            return cursor.getColumn(column + 1).getName();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
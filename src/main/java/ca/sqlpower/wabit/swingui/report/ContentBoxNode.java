@@ -23,10 +23,12 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.RenderingHints;
 import java.awt.Window;
 import java.awt.event.ActionEvent;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
@@ -86,6 +88,50 @@ public class ContentBoxNode extends PNode implements ReportNode {
     
     private final static int PARAMETER_BANNER_HEIGHT = 10;
     
+    /**
+     * The icon displayed in the parameters banner of content boxes whose
+     * renderer is {@link ContextAware}.
+     */
+    private static final Image PARAMETERS_ICON;
+    static {
+    	try {
+    		PARAMETERS_ICON = ImageIO.read(ContentBoxNode.class.getClassLoader().getResourceAsStream("icons/parameters-12.png"));
+    	} catch (IOException e) {
+    		throw new RuntimeException("Failed to load image file.", e);
+    	}
+    }
+
+    /**
+     * The largest number of pixels the {@link #contentBuffer} is allowed to
+     * have. If a content box at the current zoom level would need a bigger
+     * buffer its content is painted directly instead.
+     */
+    private static final int MAX_BUFFER_PIXELS = 2048 * 2048;
+
+    /**
+     * The content of this box as last rendered by the content renderer. Painting
+     * the node draws this image instead of asking the renderer to render its
+     * content again, which makes panning, zooming and repainting other content
+     * boxes cheap. This is null if the content has not been rendered yet or
+     * the content was too large to buffer.
+     */
+    private BufferedImage contentBuffer;
+
+    /**
+     * The view scale the {@link #contentBuffer} was rendered at. The buffer
+     * is rendered again if the view is zoomed in past this scale, or zoomed
+     * out far enough that the buffer wastes a lot of memory.
+     */
+    private double contentBufferScale;
+
+    /**
+     * Set to true when the content of this box has to be rendered again
+     * because the content box, its renderer or the data behind the renderer
+     * changed. Changes that only move the box or change decorations like the
+     * borders do not make the content dirty.
+     */
+    private boolean contentDirty = true;
+    
     /**
      * This is the variable which determines whether or not the borders will be
      * painted on a content box.
@@ -242,7 +288,7 @@ public class ContentBoxNode extends PNode implements ReportNode {
     private final RepaintListener modelRepaintListener = new RepaintListener() {
         public void requestRepaint() {
             updateBoundsFromContentBox();
-            repaint();
+            invalidateContent();
         }
     };
     
@@ -265,6 +311,7 @@ public class ContentBoxNode extends PNode implements ReportNode {
 		public void childRemoved(SPChildEvent e) {
 			if (e.getChild() instanceof ReportContentRenderer) {
 				setSwingContentRenderer(null);
+				invalidateContent();
 			}
 		}
 		
@@ -272,12 +319,18 @@ public class ContentBoxNode extends PNode implements ReportNode {
 			if (e.getChild() instanceof ReportContentRenderer) {
 				ReportContentRenderer renderer = (ReportContentRenderer) e.getChild();
 				setSwingContentRenderer(renderer);
+				invalidateContent();
 			}
 		}
 
         public void propertyChanged(PropertyChangeEvent evt) {
             updateBoundsFromContentBox();
-            repaint();
+            if ("x".equals(evt.getPropertyName()) || "y".equals(evt.getPropertyName())) {
+            	// Moving the box does not change its content.
+            	repaint();
+            } else {
+            	invalidateContent();
+            }
         }
 
 	};
@@ -292,7 +345,7 @@ public class ContentBoxNode extends PNode implements ReportNode {
 		selectorsDialog.getContentPane().setLayout(new MigLayout("fill"));
 		JPanel motherShip = new JPanel(new MigLayout("fill", "", "[grow][shrink]"));
 		
-		final SelectorsPanel selPanel = new SelectorsPanel(contentBox, refreshRoutine);
+		final SelectorsPanel selPanel = new SelectorsPanel(contentBox, parentPanel.getRefreshScheduler());
 		motherShip.add(selPanel, "grow, wrap, height 100%, width 100%");
 		
 		JButton closeButton = new JButton();
@@ -349,12 +402,6 @@ public class ContentBoxNode extends PNode implements ReportNode {
 	
 	private final LayoutPanel parentPanel;
 
-	private Runnable refreshRoutine = new Runnable() {
-		public void run() {
-			parentPanel.refreshDataAction.actionPerformed(null);
-		}
-	};
-
 	private final PLayer topLayer;
 	
     public ContentBoxNode(
@@ -463,14 +510,8 @@ public class ContentBoxNode extends PNode implements ReportNode {
             	parametersBoxGraphics.setColor(Color.BLACK);
             	parametersBoxGraphics.setFont(parametersBoxGraphics.getFont().deriveFont(8f));
             	
-            	Image image;
-				try {
-					image = ImageIO.read(this.getClass().getClassLoader().getResourceAsStream("icons/parameters-12.png"));
-				} catch (IOException e) {
-					throw new RuntimeException("Failed to load image file.");
-				}
             	parametersBoxGraphics.drawImage(
-            			image, 
+            			PARAMETERS_ICON, 
             			10, 
             			1, 
             			PARAMETER_BANNER_HEIGHT - 2, 
@@ -483,23 +524,9 @@ public class ContentBoxNode extends PNode implements ReportNode {
             	boxHeight -= PARAMETER_BANNER_HEIGHT;
             }
             
-            Graphics2D contentGraphics = (Graphics2D) g2.create(
-                    boxX, boxY,
-                    boxWidth, boxHeight);
+            paintContent(g2, contentRenderer, boxX, boxY, boxWidth, boxHeight, 
+            		camera.getViewScale());
             
-            contentGraphics.setFont(contentBox.getFont()); // XXX could use piccolo attribute to do this magically
-            contentRenderer.resetToFirstPage();
-            
-            contentRenderer.renderReportContent(
-            		contentGraphics,
-            		boxWidth, 
-            		boxHeight, 
-            		camera.getViewScale(), 
-            		0, 
-            		false, 
-            		this.helper);
-            
-            contentGraphics.dispose();
             if (showDropInfo) {
             	g2.setColor(borderColor);
                 g2.drawString(str, (int) x,(int) y);
@@ -521,6 +548,85 @@ public class ContentBoxNode extends PNode implements ReportNode {
 	        g2.draw(getBounds());
         }
     }
+    /**
+     * Paints the content of the content renderer in the given area. The content
+     * is drawn from the {@link #contentBuffer} if it is still valid for the
+     * given scale and rendered into a new buffer otherwise.
+     */
+    private void paintContent(Graphics2D g2, ReportContentRenderer contentRenderer,
+    		int boxX, int boxY, int boxWidth, int boxHeight, double viewScale) {
+    	if (boxWidth <= 0 || boxHeight <= 0) return;
+    	
+    	int bufferWidth = (int) Math.ceil(boxWidth * viewScale);
+    	int bufferHeight = (int) Math.ceil(boxHeight * viewScale);
+    	if (bufferWidth <= 0 || bufferHeight <= 0 
+    			|| (long) bufferWidth * bufferHeight > MAX_BUFFER_PIXELS) {
+    		contentBuffer = null;
+    		Graphics2D contentGraphics = (Graphics2D) g2.create(
+    				boxX, boxY,
+    				boxWidth, boxHeight);
+    		renderContent(contentGraphics, contentRenderer, boxWidth, boxHeight, viewScale);
+    		contentGraphics.dispose();
+    		return;
+    	}
+    	
+    	if (contentDirty || contentBuffer == null 
+    			|| viewScale > contentBufferScale 
+    			|| viewScale < contentBufferScale / 2) {
+    		logger.debug("Rendering content of " + contentBox + " into its buffer");
+    		BufferedImage buffer = new BufferedImage(bufferWidth, bufferHeight, BufferedImage.TYPE_INT_ARGB);
+    		Graphics2D bufferGraphics = buffer.createGraphics();
+    		bufferGraphics.setRenderingHints(g2.getRenderingHints());
+    		bufferGraphics.setColor(g2.getColor());
+    		bufferGraphics.scale(viewScale, viewScale);
+    		bufferGraphics.clipRect(0, 0, boxWidth, boxHeight);
+    		
+    		// The renderer may request a repaint while rendering, which must
+    		// make the new buffer dirty again.
+    		contentDirty = false;
+    		renderContent(bufferGraphics, contentRenderer, boxWidth, boxHeight, viewScale);
+    		bufferGraphics.dispose();
+    		contentBuffer = buffer;
+    		contentBufferScale = viewScale;
+    	}
+    	
+    	Graphics2D bufferTarget = (Graphics2D) g2.create();
+    	bufferTarget.setRenderingHint(RenderingHints.KEY_INTERPOLATION, 
+    			RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    	bufferTarget.drawImage(contentBuffer, boxX, boxY, boxWidth, boxHeight, null);
+    	bufferTarget.dispose();
+    }
+
+    /**
+     * Asks the content renderer to render its content on the given graphics.
+     */
+    private void renderContent(Graphics2D contentGraphics, ReportContentRenderer contentRenderer,
+    		int boxWidth, int boxHeight, double viewScale) {
+    	contentGraphics.setFont(contentBox.getFont()); // XXX could use piccolo attribute to do this magically
+    	contentRenderer.resetToFirstPage();
+    	
+    	contentRenderer.renderReportContent(
+    			contentGraphics,
+    			boxWidth, 
+    			boxHeight, 
+    			viewScale, 
+    			0, 
+    			false, 
+    			this.helper);
+    }
+
+    /**
+     * Marks the rendered content of this box as out of date and repaints the
+     * node. The content renderer will be asked to render the content again the
+     * next time this node is painted. This must be called any time something
+     * the content renderer depends on changes without the content box
+     * requesting a repaint, such as refreshing the renderer's data.
+     */
+    public void invalidateContent() {
+    	contentDirty = true;
+    	repaint();
+    }
+
     @Override
     public void offset(double dx, double dy) {
     	logger.debug("setting offset: x="+dx+" y="+dy);
@@ -549,6 +655,7 @@ public class ContentBoxNode extends PNode implements ReportNode {
     public void cleanup() {
         contentBox.removeSPListener(contentRendererListener);
         contentBox.removeRepaintListener(modelRepaintListener);
+        contentBuffer = null;
     }
 
     public ContentBox getModel() {
@@ -46,6 +46,7 @@ import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
@@ -364,22 +365,23 @@ public class LayoutPanel implements WabitPanel, MouseState {
 		
 	protected final Action refreshDataAction = new AbstractAction("", REFRESH_ICON) {
 		public void actionPerformed(ActionEvent e) {
+			List<ContentBox> contentBoxes = new ArrayList<ContentBox>();
 			for (WabitObject child: layout.getChildren()) {
 				if (child instanceof Page) {
-					Page page = (Page)child;
-					for (ContentBox content: page.getContentBoxes()){
-						ReportContentRenderer r = content.getContentRenderer();
-						if (r != null) {
-							r.refresh();
-							//TODO: Catch exceptions and call a new ReportContentRenderer 'renderError' method
-						}
-					}
+					contentBoxes.addAll(((Page) child).getContentBoxes());
 				}
 			}
-			canvas.repaint();
+			refreshContent(contentBoxes);
 		}
 	};
 
+    /**
+     * Refreshes the content of the selectors in this layout, combining
+     * changes that come in quick succession and only refreshing the content
+     * that depends on the selectors that changed.
+     */
+	private final LayoutRefreshScheduler refreshScheduler;
+
     private PScrollPane canvasScrollPane;
 
     /**
@@ -398,6 +400,7 @@ public class LayoutPanel implements WabitPanel, MouseState {
         this.session = session;
         parentFrame = ((WabitSwingSessionContext) session.getContext()).getFrame();
 		this.layout = layout;
+		refreshScheduler = new LayoutRefreshScheduler(this, layout);
 		canvas = new PCanvas();
         canvas.setAnimatingRenderQuality(PPaintContext.HIGH_QUALITY_RENDERING);
         canvas.setInteractingRenderQuality(PPaintContext.HIGH_QUALITY_RENDERING);
@@ -554,8 +557,40 @@ public class LayoutPanel implements WabitPanel, MouseState {
      * of this panel being removed from the GUI).
      */
     protected void cleanup() {
+        refreshScheduler.cleanup();
         recursiveCleanup(pageNode);
     }
+
+    /**
+     * Refreshes the renderers of the given content boxes and repaints them.
+     * Content boxes whose renderers are not refreshed keep their buffered
+     * content. This must be called on the event dispatch thread.
+     */
+    void refreshContent(Collection<ContentBox> contentBoxes) {
+        for (ContentBox content : contentBoxes) {
+            ReportContentRenderer r = content.getContentRenderer();
+            if (r != null) {
+                r.refresh();
+                //TODO: Catch exceptions and call a new ReportContentRenderer 'renderError' method
+            }
+        }
+        for (int i = 0; i < pageNode.getChildrenCount(); i++) {
+            PNode node = pageNode.getChild(i);
+            if (node instanceof ContentBoxNode 
+                    && contentBoxes.contains(((ContentBoxNode) node).getModel())) {
+                ((ContentBoxNode) node).invalidateContent();
+            }
+        }
+        canvas.repaint();
+    }
+
+    /**
+     * Returns the routine the selectors of this layout and its content use
+     * to refresh the content depending on them.
+     */
+    LayoutRefreshScheduler getRefreshScheduler() {
+        return refreshScheduler;
+    }
     
     /**
      * On every PNode in the tree rooted at node which implements ReportNode, calls cleanup().
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.swingui.report;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.swing.Timer;
+
+import net.jcip.annotations.GuardedBy;
+
+import org.apache.log4j.Logger;
+
+import ca.sqlpower.wabit.WabitObject;
+import ca.sqlpower.wabit.report.ContentBox;
+import ca.sqlpower.wabit.report.Layout;
+import ca.sqlpower.wabit.report.Page;
+import ca.sqlpower.wabit.report.selectors.Selector;
+import ca.sqlpower.wabit.report.selectors.SelectorDependencies;
+import ca.sqlpower.wabit.swingui.report.selectors.SelectorRefreshRoutine;
+
+/**
+ * Refreshes the content of a {@link LayoutPanel} when its selectors change.
+ * Changes that arrive in quick succession, such as a user changing several
+ * parameters one after another, are combined into one refresh that starts
+ * once no change has arrived for {@link #DEBOUNCE_DELAY} milliseconds. Only
+ * the content boxes that depend on the selectors that changed are refreshed;
+ * refreshing a renderer cancels the execution it started previously so
+ * superseded results are not waited on.
+ * <p>
+ * The methods of this class can be called from any thread, the refresh
+ * itself takes place on the event dispatch thread.
+ */
+public class LayoutRefreshScheduler implements SelectorRefreshRoutine {
+
+    private static final Logger logger = Logger.getLogger(LayoutRefreshScheduler.class);
+
+    /**
+     * The number of milliseconds to wait for further changes before
+     * refreshing.
+     */
+    static final int DEBOUNCE_DELAY = 300;
+
+    private final LayoutPanel panel;
+
+    private final Layout layout;
+
+    /**
+     * The selectors that changed since the last refresh.
+     */
+    @GuardedBy("this")
+    private final Set<Selector> changedSelectors = new LinkedHashSet<Selector>();
+
+    /**
+     * Set if everything needs to be refreshed on the next refresh, in which
+     * case {@link #changedSelectors} does not matter.
+     */
+    @GuardedBy("this")
+    private boolean refreshAll = false;
+
+    private final Timer timer = new Timer(DEBOUNCE_DELAY, new ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            refreshNow();
+        }
+    });
+
+    public LayoutRefreshScheduler(LayoutPanel panel, Layout layout) {
+        this.panel = panel;
+        this.layout = layout;
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Schedules a refresh of all of the content in the layout.
+     */
+    public void run() {
+        synchronized (this) {
+            refreshAll = true;
+            changedSelectors.clear();
+        }
+        timer.restart();
+    }
+
+    public void selectorChanged(Selector selector) {
+        synchronized (this) {
+            if (!refreshAll) {
+                changedSelectors.add(selector);
+            }
+        }
+        timer.restart();
+    }
+
+    /**
+     * Refreshes the content affected by the changes received since the last
+     * refresh. This must be called on the event dispatch thread.
+     */
+    void refreshNow() {
+        final boolean all;
+        final List<Selector> selectors;
+        synchronized (this) {
+            all = refreshAll;
+            selectors = new ArrayList<Selector>(changedSelectors);
+            refreshAll = false;
+            changedSelectors.clear();
+        }
+        
+        final Collection<ContentBox> affected;
+        if (all) {
+            affected = new ArrayList<ContentBox>();
+            for (WabitObject child : layout.getChildren()) {
+                if (child instanceof Page) {
+                    affected.addAll(((Page) child).getContentBoxes());
+                }
+            }
+        } else if (!selectors.isEmpty()) {
+            affected = new SelectorDependencies().findAffectedContent(layout, selectors);
+            logger.debug("Selectors " + selectors + " affect " + affected.size() + " content boxes");
+        } else {
+            return;
+        }
+        panel.refreshContent(affected);
+    }
+
+    /**
+     * Drops any pending refresh. The scheduler can still be used afterwards.
+     */
+    public void cleanup() {
+        timer.stop();
+        synchronized (this) {
+            refreshAll = false;
+            changedSelectors.clear();
+        }
+    }
+}
@@ -22,23 +22,31 @@ package ca.sqlpower.wabit.swingui.report;
 import java.awt.Component;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 
 import javax.annotation.Nullable;
 
+import org.apache.log4j.Logger;
+
 import ca.sqlpower.swingui.SPSUtils;
 import ca.sqlpower.swingui.SPSwingWorker;
 import ca.sqlpower.swingui.SwingWorkerRegistry;
 import ca.sqlpower.wabit.enterprise.client.Watermarker;
 import ca.sqlpower.wabit.report.Layout;
 import ca.sqlpower.wabit.report.LayoutToPDF;
+import ca.sqlpower.wabit.trace.PerformanceTracer;
+import ca.sqlpower.wabit.trace.TraceRecording;
 
 /**
  * This worker will write a layout as a PDF to a file.
  */
 public class LayoutToPDFWorker extends SPSwingWorker {
 	
+	private static final Logger logger = Logger.getLogger(LayoutToPDFWorker.class);
+	
 	private final LayoutToPDF pdfMaker;
 	private final Component dialogOwner;
+	private final File file;
 
 	/**
 	 * Creates a PDF worker which does not watermark its output.
@@ -79,6 +87,7 @@ public class LayoutToPDFWorker extends SPSwingWorker {
 			@Nullable Watermarker watermarker) {
 		super(registry);
 		this.dialogOwner = dialogOwner;
+		this.file = file;
 		try {
 			pdfMaker = new LayoutToPDF(file, layout, watermarker);
 		} catch (FileNotFoundException e) {
@@ -88,7 +97,18 @@ public class LayoutToPDFWorker extends SPSwingWorker {
 
 	@Override
 	public void doStuff() throws Exception {
-		pdfMaker.writePDF();
+		try {
+			pdfMaker.writePDF();
+		} finally {
+			if (PerformanceTracer.isWritingTimings() && pdfMaker.getTraceRecording() != null) {
+				File timingFile = TraceRecording.getTimingFile(file);
+				try {
+					pdfMaker.getTraceRecording().writeJSON(timingFile);
+				} catch (IOException e) {
+					logger.warn("Could not write the timing breakdown to " + timingFile, e);
+				}
+			}
+		}
 	}
 	
 	@Override
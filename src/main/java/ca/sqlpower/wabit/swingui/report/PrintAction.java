@@ -57,7 +57,6 @@ public class PrintAction extends AbstractAction {
 		public PrintWorker(SwingWorkerRegistry registry, PrinterJob job, Layout layout) {
 			super(registry);
 			printingLayout = layout;
-			setJobSize(layout.getNumberOfPages());
 			setMessage(null);
 			progress = 0;
 			this.job = job;
@@ -66,6 +65,7 @@ public class PrintAction extends AbstractAction {
 
 		@Override
 		public void doStuff() throws Exception {
+			setJobSize(printingLayout.getNumberOfPages());
             job.print();
 		}
 		
@@ -43,6 +43,7 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JToolBar;
+import javax.swing.SwingUtilities;
 import javax.swing.border.BevelBorder;
 
 import ca.sqlpower.wabit.report.Layout;
@@ -122,7 +123,26 @@ public class PrintPreviewAction extends AbstractAction {
 	
 	
 	public void actionPerformed(ActionEvent e) {
-		
+		Thread prefetchThread = new Thread(new Runnable() {
+			public void run() {
+				layout.prefetchResults();
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						showPreviewDialog();
+					}
+				});
+			}
+		}, "Print preview prefetch");
+		prefetchThread.setDaemon(true);
+		prefetchThread.start();
+	}
+
+	/**
+	 * Builds and shows the print preview dialog. This must be called on the
+	 * Swing event dispatch thread after the layout's results have been
+	 * prefetched.
+	 */
+	private void showPreviewDialog() {
 		printPreviewDialog = new JDialog(parentFrame);
 		
 		JPanel mainPanel = new JPanel(new BorderLayout());
@@ -42,19 +42,13 @@ public class ReportPanel extends LayoutPanel {
 	private final static Double DEFAULT_SEPARATOR_POSITION = 0.5d;
 	
 	
-	private final Runnable reportRefresher = new Runnable() {
-		public void run() {
-			refreshDataAction.actionPerformed(null);
-		}
-	};
-	
 	public ReportPanel(WabitSwingSession session, final Report report) {
 		
 		super(session, report);
 		this.report = report;
 		
 		// build the dashboard controls
-		this.dashboardPanel = new SelectorsPanel(report, reportRefresher);
+		this.dashboardPanel = new SelectorsPanel(report, getRefreshScheduler());
 		
 		// Fuse the dashboard panel with the source list.
 		this.splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
@@ -25,7 +25,6 @@ import java.util.Collection;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.JComboBox;
-import javax.swing.SwingUtilities;
 
 import org.apache.commons.lang.ObjectUtils;
 
@@ -39,7 +38,7 @@ public class FancyComboBoxSelector extends JComboBox implements
 		SelectorComponent {
 
 	private final ComboBoxSelector selector;
-	private final Runnable refreshRoutine;
+	private final SelectorRefreshRoutine refreshRoutine;
 	private AtomicBoolean ignoreEvents = new AtomicBoolean(false);
 
 	private SPListener selectorListener = new AbstractPoolingSPListener() {
@@ -59,11 +58,11 @@ public class FancyComboBoxSelector extends JComboBox implements
 				setSelectedItem(currentSelection);
 			}
 			
-			SwingUtilities.invokeLater(refreshRoutine);
+			refreshRoutine.selectorChanged(selector);
 		}
 	};
 	
-	public FancyComboBoxSelector(ComboBoxSelector selector, Runnable refreshRoutine) {
+	public FancyComboBoxSelector(ComboBoxSelector selector, SelectorRefreshRoutine refreshRoutine) {
 		
 		this.selector = selector;
 		this.refreshRoutine = refreshRoutine;
@@ -99,7 +98,7 @@ public class FancyComboBoxSelector extends JComboBox implements
 				setSelectedItem(selector.getCurrentValue());	
 			}
 			
-			SwingUtilities.invokeLater(refreshRoutine);
+			refreshRoutine.selectorChanged(selector);
 		} finally {
 			ignoreEvents.set(false);
 		}
@@ -25,7 +25,6 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.Date;
 
-import javax.swing.SwingUtilities;
 import javax.swing.event.PopupMenuEvent;
 import javax.swing.event.PopupMenuListener;
 
@@ -73,12 +72,12 @@ public class FancyDateSelectorField extends JXDatePicker implements SelectorComp
 			setForeground(Color.BLACK);
 			setFont(getFont().deriveFont(Font.PLAIN));
 		}
-		SwingUtilities.invokeLater(refreshRoutine);
+		refreshRoutine.selectorChanged(selector);
 	}
 
 	private final DateSelector selector;
 
-	private final Runnable refreshRoutine;
+	private final SelectorRefreshRoutine refreshRoutine;
 	
 	private SPListener spListener = new AbstractPoolingSPListener() {
 		protected void propertyChangeImpl(final java.beans.PropertyChangeEvent evt) {
@@ -96,13 +95,13 @@ public class FancyDateSelectorField extends JXDatePicker implements SelectorComp
 					setFont(getFont().deriveFont(Font.PLAIN));
 				}
 				
-				SwingUtilities.invokeLater(refreshRoutine);
+				refreshRoutine.selectorChanged(selector);
 			}
 		};
 	};
 	
 	
-	public FancyDateSelectorField(final DateSelector selector, Runnable refreshRoutine) {
+	public FancyDateSelectorField(final DateSelector selector, SelectorRefreshRoutine refreshRoutine) {
 		
 		this.selector = selector;
 		this.refreshRoutine = refreshRoutine;
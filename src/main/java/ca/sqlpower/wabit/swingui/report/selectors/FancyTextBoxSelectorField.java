@@ -27,7 +27,6 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
 import javax.swing.JTextField;
-import javax.swing.SwingUtilities;
 
 import org.apache.commons.lang.ObjectUtils;
 
@@ -55,7 +54,7 @@ public class FancyTextBoxSelectorField extends JTextField implements SelectorCom
 				setForeground(Color.BLACK);
 				setFont(getFont().deriveFont(Font.PLAIN));
 			}
-			SwingUtilities.invokeLater(refreshRoutine);
+			refreshRoutine.selectorChanged(selector);
 		}
 		
 		public void focusGained(FocusEvent e) {
@@ -70,7 +69,7 @@ public class FancyTextBoxSelectorField extends JTextField implements SelectorCom
 
 	private final TextBoxSelector selector;
 
-	private final Runnable refreshRoutine;
+	private final SelectorRefreshRoutine refreshRoutine;
 	
 	private SPListener spListener = new AbstractPoolingSPListener() {
 		protected void propertyChangeImpl(final java.beans.PropertyChangeEvent evt) {
@@ -83,7 +82,7 @@ public class FancyTextBoxSelectorField extends JTextField implements SelectorCom
 				setText(evt.getNewValue()==null?"":evt.getNewValue().toString());
 				setForeground(Color.GRAY);
 				setFont(getFont().deriveFont(Font.ITALIC));
-				SwingUtilities.invokeLater(refreshRoutine);
+				refreshRoutine.selectorChanged(selector);
 			
 			}
 			
@@ -106,7 +105,7 @@ public class FancyTextBoxSelectorField extends JTextField implements SelectorCom
 	};
 	
 	
-	public FancyTextBoxSelectorField(final TextBoxSelector selector, Runnable refreshRoutine) {
+	public FancyTextBoxSelectorField(final TextBoxSelector selector, SelectorRefreshRoutine refreshRoutine) {
 		
 		this.selector = selector;
 		this.refreshRoutine = refreshRoutine;
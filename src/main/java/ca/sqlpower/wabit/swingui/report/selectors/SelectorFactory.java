@@ -23,7 +23,6 @@ import java.util.HashSet;
 import java.util.Set;
 
 import javax.swing.JComponent;
-import javax.swing.SwingUtilities;
 
 import ca.sqlpower.wabit.WabitWorkspace;
 import ca.sqlpower.wabit.report.selectors.ComboBoxSelector;
@@ -35,7 +34,7 @@ public class SelectorFactory {
 	
 	private Set<SelectorComponent> components = new HashSet<SelectorComponent>();
 	
-	public JComponent makeSelector(Selector selector, Runnable refreshRoutine) {
+	public JComponent makeSelector(Selector selector, SelectorRefreshRoutine refreshRoutine) {
 		
 		final JComponent comp;
 		if (selector instanceof ComboBoxSelector) {
@@ -48,13 +47,13 @@ public class SelectorFactory {
 			throw new IllegalArgumentException("This factory does not know how to build a component of class " + selector.getClass().getCanonicalName());
 		}
 		
-		SwingUtilities.invokeLater(refreshRoutine);
+		refreshRoutine.selectorChanged(selector);
 		return comp;
 		
 	}
 
 	private JComponent makeDateSelector(DateSelector selector,
-			Runnable refreshRoutine) 
+			SelectorRefreshRoutine refreshRoutine) 
 	{
 		final FancyDateSelectorField date =
 				new FancyDateSelectorField(selector, refreshRoutine);
@@ -64,7 +63,7 @@ public class SelectorFactory {
 		return date;
 	}
 
-	public JComponent makeSelector(WabitWorkspace sourceWorkspace, String selectorUuid, Runnable refreshRoutine) {
+	public JComponent makeSelector(WabitWorkspace sourceWorkspace, String selectorUuid, SelectorRefreshRoutine refreshRoutine) {
 		
 		Selector selector = sourceWorkspace.findByUuid(selectorUuid, Selector.class);
 		
@@ -75,7 +74,7 @@ public class SelectorFactory {
 		return this.makeSelector(selector, refreshRoutine);
 	}
 	
-	private JComponent makeTextBoxSelector(final TextBoxSelector selector, final Runnable refreshRoutine) {
+	private JComponent makeTextBoxSelector(final TextBoxSelector selector, final SelectorRefreshRoutine refreshRoutine) {
 		
 		final FancyTextBoxSelectorField text = 
 				new FancyTextBoxSelectorField(
@@ -87,7 +86,7 @@ public class SelectorFactory {
 		return text;
 	}
 	
-	private JComponent makeComboBoxSelector(final ComboBoxSelector selector, final Runnable refreshRoutine) {
+	private JComponent makeComboBoxSelector(final ComboBoxSelector selector, final SelectorRefreshRoutine refreshRoutine) {
 		
 		final FancyComboBoxSelector cb = new FancyComboBoxSelector(selector, refreshRoutine);
 		
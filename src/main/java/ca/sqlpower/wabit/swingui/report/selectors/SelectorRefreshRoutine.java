@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.swingui.report.selectors;
+
+import ca.sqlpower.wabit.report.selectors.Selector;
+
+/**
+ * The routine the selector components use to refresh the content that
+ * displays the values of their selectors. Running this routine refreshes
+ * all of the content; {@link #selectorChanged(Selector)} lets the routine
+ * refresh only the content that depends on the selector that changed.
+ * Implementations are free to defer and combine refreshes.
+ */
+public interface SelectorRefreshRoutine extends Runnable {
+
+    /**
+     * Called when the value of the given selector, or the selector itself,
+     * has changed and the content depending on it needs to be refreshed.
+     */
+    void selectorChanged(Selector selector);
+}
@@ -58,7 +58,7 @@ public class SelectorsPanel extends JPanel {
 	private final WabitObject selectorsSource;
 	private SelectorFactory factory = new SelectorFactory();
 	private Map<Selector, Component> selectorComponents = new HashMap<Selector, Component>();
-	private final Runnable refreshRoutine;
+	private final SelectorRefreshRoutine refreshRoutine;
 	
 	private final SPListener reportListener = new AbstractPoolingSPListener() {
 		@Override
@@ -91,7 +91,7 @@ public class SelectorsPanel extends JPanel {
 
 	
 	
-	public SelectorsPanel(final WabitObject selectorsSource, Runnable refreshRoutine) 
+	public SelectorsPanel(final WabitObject selectorsSource, SelectorRefreshRoutine refreshRoutine) 
 	{
 		super(new MigLayout("hidemode 1", "[grow][]", "[shrink 99999][][grow 99999]"));
 		this.selectorsSource = selectorsSource;
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.trace;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Records how long each stage of producing a report takes. Code doing the
+ * work of a stage starts a {@link Span} and ends it when it is done:
+ * 
+ * <pre>
+ * Span span = PerformanceTracer.start(PerformanceTracer.QUERY_STAGE, queryName);
+ * try {
+ *     ...
+ * } finally {
+ *     span.end();
+ * }
+ * </pre>
+ * 
+ * The totals of each stage are kept in a {@link StageStatistics} registered
+ * as the MBean <code>ca.sqlpower.wabit:type=PerformanceTrace,stage=&lt;stage&gt;</code>.
+ * A {@link TraceRecording} collects the individual spans ended while it is
+ * recording so the time spent producing one report can be broken down.
+ */
+public class PerformanceTracer {
+
+    private static final Logger logger = Logger.getLogger(PerformanceTracer.class);
+
+    /**
+     * Executing a query and reading its results.
+     */
+    public static final String QUERY_STAGE = "query";
+
+    /**
+     * Laying out the rows of a result set on the pages of a report.
+     */
+    public static final String LAYOUT_STAGE = "layout";
+
+    /**
+     * Building a chart from the results of its query.
+     */
+    public static final String CHART_STAGE = "chart";
+
+    /**
+     * Drawing a page of a report to its output.
+     */
+    public static final String PAGE_OUTPUT_STAGE = "page-output";
+
+    /**
+     * If this system property is true, reports written to a file have a
+     * timing breakdown written next to them. See
+     * {@link TraceRecording#getTimingFile(java.io.File)}.
+     */
+    public static final String WRITE_TIMINGS_PROPERTY = "ca.sqlpower.wabit.trace.writeTimings";
+
+    private static final ConcurrentMap<String, StageStatistics> statistics = 
+        new ConcurrentHashMap<String, StageStatistics>();
+    
+    private static final List<TraceRecording> recordings = new CopyOnWriteArrayList<TraceRecording>();
+    
+    private PerformanceTracer() {
+        // all methods are static
+    }
+
+    /**
+     * Starts a span of the given stage. The span must be ended by calling
+     * {@link Span#end()}.
+     * 
+     * @param stage
+     *            The stage the span is part of, normally one of the stage
+     *            constants of this class.
+     * @param name
+     *            A name for the work being done in the span, like the name of
+     *            the query being executed. This may be null.
+     */
+    public static Span start(String stage, String name) {
+        return new Span(stage, name);
+    }
+
+    static void spanEnded(Span span) {
+        getStatistics(span.getStage()).add(span);
+        for (TraceRecording recording : recordings) {
+            recording.add(span);
+        }
+    }
+
+    /**
+     * Returns the totals of the spans of the given stage.
+     */
+    public static StageStatistics getStatistics(String stage) {
+        StageStatistics stageStatistics = statistics.get(stage);
+        if (stageStatistics == null) {
+            StageStatistics newStatistics = new StageStatistics(stage);
+            stageStatistics = statistics.putIfAbsent(stage, newStatistics);
+            if (stageStatistics == null) {
+                stageStatistics = newStatistics;
+                register(newStatistics);
+            }
+        }
+        return stageStatistics;
+    }
+
+    private static void register(StageStatistics stageStatistics) {
+        try {
+            ObjectName name = new ObjectName("ca.sqlpower.wabit:type=PerformanceTrace,stage=" + 
+                    ObjectName.quote(stageStatistics.getStage()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(stageStatistics, name);
+        } catch (Exception e) {
+            logger.debug("Could not register the statistics of " + stageStatistics.getStage(), e);
+        }
+    }
+
+    /**
+     * Starts recording the spans that end on any thread until
+     * {@link TraceRecording#stop()} is called. Spans of work done at the same
+     * time for something else are recorded as well; their thread names tell
+     * them apart.
+     */
+    public static TraceRecording startRecording(String name) {
+        TraceRecording recording = new TraceRecording(name);
+        recordings.add(recording);
+        return recording;
+    }
+
+    static void stopRecording(TraceRecording recording) {
+        recordings.remove(recording);
+    }
+
+    /**
+     * Returns true if reports written to a file should have a timing
+     * breakdown written next to them.
+     * 
+     * @see #WRITE_TIMINGS_PROPERTY
+     */
+    public static boolean isWritingTimings() {
+        return Boolean.getBoolean(WRITE_TIMINGS_PROPERTY);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.trace;
+
+/**
+ * The time spent in one stage of producing a report, such as executing a
+ * query or laying out a result set. Spans are started with
+ * {@link PerformanceTracer#start(String, String)} and must be ended with
+ * {@link #end()}, normally in a finally block.
+ */
+public class Span {
+
+    private final String stage;
+    
+    private final String name;
+    
+    private final String threadName;
+
+    /**
+     * The wall clock time the span started at, in milliseconds since the
+     * epoch.
+     */
+    private final long startTime;
+    
+    private final long startNanos;
+    
+    private volatile long endNanos = -1;
+    
+    private volatile long rowCount = -1;
+    
+    private volatile long byteCount = -1;
+    
+    private volatile boolean cancelled;
+    
+    Span(String stage, String name) {
+        this.stage = stage;
+        this.name = name;
+        this.threadName = Thread.currentThread().getName();
+        this.startTime = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Ends this span and adds it to the statistics of its stage. Ending a
+     * span more than once has no effect.
+     */
+    public void end() {
+        synchronized (this) {
+            if (endNanos != -1) return;
+            endNanos = System.nanoTime();
+        }
+        PerformanceTracer.spanEnded(this);
+    }
+
+    /**
+     * Sets the number of rows handled during this span, -1 if unknown.
+     */
+    public void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Sets the number of bytes handled during this span, -1 if unknown.
+     */
+    public void setByteCount(long byteCount) {
+        this.byteCount = byteCount;
+    }
+    
+    /**
+     * Marks the work of this span as cancelled before it finished. The time
+     * spent on cancelled work is totalled separately in the statistics of
+     * the stage.
+     */
+    public void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+    
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    public String getStage() {
+        return stage;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getThreadName() {
+        return threadName;
+    }
+    
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the time between the start and end of this span in
+     * nanoseconds, or -1 if it has not ended.
+     */
+    public long getDurationNanos() {
+        long end = endNanos;
+        return end == -1 ? -1 : end - startNanos;
+    }
+    
+    public long getRowCount() {
+        return rowCount;
+    }
+    
+    public long getByteCount() {
+        return byteCount;
+    }
+    
+    @Override
+    public String toString() {
+        return stage + " " + name + " on " + threadName + ": " + getDurationNanos() / 1000000 + "ms";
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.trace;
+
+import net.jcip.annotations.GuardedBy;
+
+/**
+ * Totals of the spans of one stage since the application started or the
+ * totals were last reset.
+ */
+public class StageStatistics implements StageStatisticsMBean {
+
+    private final String stage;
+    
+    @GuardedBy("this")
+    private long count;
+    
+    @GuardedBy("this")
+    private long totalNanos;
+    
+    @GuardedBy("this")
+    private long maxNanos;
+    
+    @GuardedBy("this")
+    private long rowCount;
+    
+    @GuardedBy("this")
+    private long byteCount;
+    
+    @GuardedBy("this")
+    private long cancelledCount;
+    
+    @GuardedBy("this")
+    private long cancelledNanos;
+    
+    StageStatistics(String stage) {
+        this.stage = stage;
+    }
+    
+    synchronized void add(Span span) {
+        long duration = span.getDurationNanos();
+        count++;
+        totalNanos += duration;
+        maxNanos = Math.max(maxNanos, duration);
+        if (span.getRowCount() > 0) {
+            rowCount += span.getRowCount();
+        }
+        if (span.getByteCount() > 0) {
+            byteCount += span.getByteCount();
+        }
+        if (span.isCancelled()) {
+            cancelledCount++;
+            cancelledNanos += duration;
+        }
+    }
+    
+    public String getStage() {
+        return stage;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getTotalMillis() {
+        return totalNanos / 1000000;
+    }
+
+    public synchronized long getMaxMillis() {
+        return maxNanos / 1000000;
+    }
+
+    public synchronized double getAverageMillis() {
+        if (count == 0) return 0;
+        return totalNanos / 1000000.0 / count;
+    }
+
+    public synchronized long getRowCount() {
+        return rowCount;
+    }
+
+    public synchronized long getByteCount() {
+        return byteCount;
+    }
+
+    public synchronized long getCancelledCount() {
+        return cancelledCount;
+    }
+
+    public synchronized long getCancelledMillis() {
+        return cancelledNanos / 1000000;
+    }
+
+    public synchronized void reset() {
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+        rowCount = 0;
+        byteCount = 0;
+        cancelledCount = 0;
+        cancelledNanos = 0;
+    }
+}
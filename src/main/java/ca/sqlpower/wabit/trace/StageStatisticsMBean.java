@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.trace;
+
+/**
+ * The management interface of {@link StageStatistics}, exposing the totals of
+ * the spans of one stage over JMX.
+ */
+public interface StageStatisticsMBean {
+
+    /**
+     * Returns the number of spans of this stage that have ended.
+     */
+    long getCount();
+    
+    long getTotalMillis();
+    
+    long getMaxMillis();
+    
+    double getAverageMillis();
+
+    /**
+     * Returns the total number of rows handled by the spans that reported a
+     * row count.
+     */
+    long getRowCount();
+
+    /**
+     * Returns the total number of bytes handled by the spans that reported a
+     * byte count.
+     */
+    long getByteCount();
+
+    /**
+     * Returns the number of spans of this stage whose work was cancelled
+     * before it finished. These are included in {@link #getCount()}.
+     */
+    long getCancelledCount();
+
+    /**
+     * Returns the time spent on work of this stage that was cancelled before
+     * it finished. This is included in {@link #getTotalMillis()}.
+     */
+    long getCancelledMillis();
+
+    /**
+     * Sets all of the totals back to zero.
+     */
+    void reset();
+}
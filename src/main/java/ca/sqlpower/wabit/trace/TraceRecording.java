@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.trace;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.jcip.annotations.GuardedBy;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The spans that ended while producing one report, along with the totals of
+ * each stage. Recordings are started with
+ * {@link PerformanceTracer#startRecording(String)}.
+ */
+public class TraceRecording {
+
+    private final String name;
+    
+    private final long startTime;
+    
+    private final long startNanos;
+    
+    private volatile long endNanos = -1;
+    
+    @GuardedBy("spans")
+    private final List<Span> spans = new ArrayList<Span>();
+    
+    TraceRecording(String name) {
+        this.name = name;
+        this.startTime = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+    
+    void add(Span span) {
+        synchronized (spans) {
+            spans.add(span);
+        }
+    }
+
+    /**
+     * Stops recording spans. Spans that end after this are not added.
+     */
+    public void stop() {
+        if (endNanos != -1) return;
+        endNanos = System.nanoTime();
+        PerformanceTracer.stopRecording(this);
+    }
+
+    /**
+     * Returns the spans recorded so far in the order they ended.
+     */
+    public List<Span> getSpans() {
+        synchronized (spans) {
+            return new ArrayList<Span>(spans);
+        }
+    }
+
+    /**
+     * Returns the time from the start of this recording to when it was
+     * stopped, or to now if it is still recording, in milliseconds.
+     */
+    public long getDurationMillis() {
+        long end = endNanos == -1 ? System.nanoTime() : endNanos;
+        return (end - startNanos) / 1000000;
+    }
+
+    /**
+     * Returns the recording as a JSON object with the total time, the totals
+     * of each stage and the individual spans. The start of each span is given
+     * in milliseconds from the start of the recording.
+     */
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("name", name);
+        json.put("startTime", startTime);
+        json.put("totalMillis", getDurationMillis());
+        
+        Map<String, long[]> stageTotals = new LinkedHashMap<String, long[]>();
+        JSONArray spanArray = new JSONArray();
+        for (Span span : getSpans()) {
+            long[] totals = stageTotals.get(span.getStage());
+            if (totals == null) {
+                totals = new long[5];
+                stageTotals.put(span.getStage(), totals);
+            }
+            totals[0]++;
+            totals[1] += span.getDurationNanos();
+            totals[2] += Math.max(0, span.getRowCount());
+            totals[3] += Math.max(0, span.getByteCount());
+            if (span.isCancelled()) {
+                totals[4]++;
+            }
+            
+            JSONObject spanJSON = new JSONObject();
+            spanJSON.put("stage", span.getStage());
+            spanJSON.put("name", span.getName() == null ? JSONObject.NULL : span.getName());
+            spanJSON.put("thread", span.getThreadName());
+            spanJSON.put("startMillis", span.getStartTime() - startTime);
+            spanJSON.put("durationMillis", span.getDurationNanos() / 1000000.0);
+            if (span.getRowCount() >= 0) {
+                spanJSON.put("rows", span.getRowCount());
+            }
+            if (span.getByteCount() >= 0) {
+                spanJSON.put("bytes", span.getByteCount());
+            }
+            if (span.isCancelled()) {
+                spanJSON.put("cancelled", true);
+            }
+            spanArray.put(spanJSON);
+        }
+        
+        JSONObject stages = new JSONObject();
+        for (Map.Entry<String, long[]> entry : stageTotals.entrySet()) {
+            long[] totals = entry.getValue();
+            JSONObject stage = new JSONObject();
+            stage.put("count", totals[0]);
+            stage.put("totalMillis", totals[1] / 1000000.0);
+            stage.put("rows", totals[2]);
+            stage.put("bytes", totals[3]);
+            stage.put("cancelled", totals[4]);
+            stages.put(entry.getKey(), stage);
+        }
+        json.put("stages", stages);
+        json.put("spans", spanArray);
+        return json;
+    }
+
+    /**
+     * Writes this recording as JSON to the given file.
+     */
+    public void writeJSON(File file) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write(toJSON().toString(2));
+        } catch (JSONException e) {
+            throw new IOException(e);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the file the timing breakdown of a report written to the given
+     * file is written to.
+     */
+    public static File getTimingFile(File output) {
+        return new File(output.getAbsoluteFile().getParentFile(), output.getName() + ".timing.json");
+    }
+}
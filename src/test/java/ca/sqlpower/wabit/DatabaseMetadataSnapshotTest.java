@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.sqlobject.SQLDatabase;
+import ca.sqlpower.sqlobject.SQLTable;
+
+public class DatabaseMetadataSnapshotTest extends TestCase {
+
+    private JDBCDataSource ds;
+    
+    private File file;
+    
+    @Override
+    protected void setUp() throws Exception {
+        PlDotIni plIni = new PlDotIni();
+        plIni.read(new File("src/test/resources/pl.regression.ini"));
+        ds = plIni.getDataSource("regression_test", JDBCDataSource.class);
+        file = File.createTempFile("snapshot", ".metadata");
+        file.delete();
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    /**
+     * Captures a snapshot of the regression database while it has a table
+     * named snapshot_test with the columns id and name.
+     */
+    private DatabaseMetadataSnapshot captureWithTestTable() throws Exception {
+        Connection con = ds.createConnection();
+        Statement stmt = con.createStatement();
+        try {
+            stmt.execute("create table snapshot_test (id integer not null, name varchar(50))");
+            return DatabaseMetadataSnapshot.capture(ds, con);
+        } finally {
+            stmt.execute("drop table snapshot_test");
+            stmt.close();
+            con.close();
+        }
+    }
+
+    /**
+     * Returns the table named snapshot_test in the given database.
+     */
+    private SQLTable findTestTable(SQLDatabase db) throws Exception {
+        for (SQLTable table : db.getTables()) {
+            if (table.getName().equalsIgnoreCase("snapshot_test")) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    public void testWriteAndRead() throws Exception {
+        DatabaseMetadataSnapshot snapshot = captureWithTestTable();
+        snapshot.write(file);
+        
+        DatabaseMetadataSnapshot read = DatabaseMetadataSnapshot.read(file, ds);
+        assertNotNull(read);
+        assertEquals(snapshot.getCaptureTime(), read.getCaptureTime());
+        assertEquals(snapshot.getTableCount(), read.getTableCount());
+        assertTrue(snapshot.hasSameContent(read));
+    }
+
+    public void testReadForOtherDataSource() throws Exception {
+        captureWithTestTable().write(file);
+        JDBCDataSource other = new JDBCDataSource(ds);
+        other.setUser("someone_else");
+        assertNull(DatabaseMetadataSnapshot.read(file, other));
+    }
+
+    public void testReadOtherFormatVersion() throws Exception {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        out.writeInt(DatabaseMetadataSnapshot.FORMAT_VERSION + 1);
+        out.close();
+        assertNull(DatabaseMetadataSnapshot.read(file, ds));
+    }
+
+    public void testReadMissingFile() throws Exception {
+        assertNull(DatabaseMetadataSnapshot.read(file, ds));
+    }
+
+    /**
+     * Strings longer than the 64K bytes {@link DataOutputStream#writeUTF(String)}
+     * can write, such as long remarks, must be written and read back intact.
+     */
+    public void testLongStrings() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 40000; i++) {
+            sb.append("r\u00e9");
+        }
+        String longString = sb.toString();
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        DatabaseMetadataSnapshot.writeString(out, longString);
+        DatabaseMetadataSnapshot.writeString(out, null);
+        DatabaseMetadataSnapshot.writeString(out, "");
+        out.close();
+        
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(longString, DatabaseMetadataSnapshot.readString(in));
+        assertNull(DatabaseMetadataSnapshot.readString(in));
+        assertEquals("", DatabaseMetadataSnapshot.readString(in));
+    }
+
+    /**
+     * Changes to the structure of the database must be noticed when the
+     * snapshot is revalidated.
+     */
+    public void testChangedContent() throws Exception {
+        DatabaseMetadataSnapshot withTable = captureWithTestTable();
+        Connection con = ds.createConnection();
+        DatabaseMetadataSnapshot withoutTable;
+        try {
+            withoutTable = DatabaseMetadataSnapshot.capture(ds, con);
+        } finally {
+            con.close();
+        }
+        assertFalse(withTable.hasSameContent(withoutTable));
+    }
+
+    /**
+     * The tables and columns of a snapshot must be available in a database
+     * after the snapshot is applied to it, even though the table no longer
+     * exists in the database itself.
+     */
+    public void testApply() throws Exception {
+        DatabaseMetadataSnapshot snapshot = captureWithTestTable();
+        SQLDatabase db = new SQLDatabase(new JDBCDataSource(ds));
+        snapshot.apply(db);
+        assertTrue(db.isPopulated());
+        
+        SQLTable table = findTestTable(db);
+        assertNotNull(table);
+        assertEquals(2, table.getColumns().size());
+        assertEquals("id", table.getColumn(0).getName().toLowerCase());
+        assertEquals("name", table.getColumn(1).getName().toLowerCase());
+        assertEquals(Arrays.asList(table.getColumn(0).getName(), table.getColumn(1).getName()),
+                snapshot.getColumnNames(table.getCatalogName(), table.getSchemaName(), table.getName()));
+    }
+
+
+    /**
+     * A database populated from a snapshot that no longer matches the
+     * database must be refreshed once the snapshot is revalidated, so the
+     * table dropped since the snapshot was saved disappears.
+     */
+    public void testContextRefreshesChangedDatabase() throws Exception {
+        File directory = file.getParentFile();
+        File snapshotFile = DatabaseMetadataSnapshot.getSnapshotFile(directory, ds);
+        captureWithTestTable().write(snapshotFile);
+        
+        PlDotIni plIni = new PlDotIni();
+        plIni.read(new File("src/test/resources/pl.regression.ini"));
+        WabitSessionContextImpl context = new WabitSessionContextImpl(false, false, plIni, null, false);
+        try {
+            context.setMetadataSnapshotDirectory(directory);
+            SQLDatabase db = context.getDatabase(ds);
+            assertNotNull(findTestTable(db));
+            
+            long deadline = System.currentTimeMillis() + 30000;
+            while (findTestTable(db) != null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertNull(findTestTable(db));
+        } finally {
+            context.close();
+            snapshotFile.delete();
+        }
+    }
+}
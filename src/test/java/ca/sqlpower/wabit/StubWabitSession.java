@@ -42,6 +42,7 @@ import ca.sqlpower.util.UserPrompter;
 import ca.sqlpower.util.UserPrompter.UserPromptOptions;
 import ca.sqlpower.util.UserPrompter.UserPromptResponse;
 import ca.sqlpower.util.UserPrompterFactory.UserPromptType;
+import ca.sqlpower.wabit.rs.ResultSetEventDispatcher;
 import ca.sqlpower.wabit.rs.olap.OlapConnectionPool;
 
 public class StubWabitSession implements WabitSession {
@@ -188,4 +189,8 @@ public class StubWabitSession implements WabitSession {
 	public SPFontLoader getFontLoader() {
 		return new LocalFontLoader();
 	}
+	
+	public ResultSetEventDispatcher getResultSetEventDispatcher() {
+		return ResultSetEventDispatcher.getDefault();
+	}
 }
@@ -46,6 +46,7 @@ import ca.sqlpower.util.UserPrompter;
 import ca.sqlpower.util.UserPrompter.UserPromptOptions;
 import ca.sqlpower.util.UserPrompter.UserPromptResponse;
 import ca.sqlpower.wabit.rs.olap.OlapConnectionPool;
+import ca.sqlpower.wabit.rs.olap.OlapMetadataCache;
 
 public class StubWabitSessionContext implements WabitSessionContext {
 	
@@ -57,6 +58,12 @@ public class StubWabitSessionContext implements WabitSessionContext {
     private final Map<Olap4jDataSource, OlapConnectionPool> olapConnectionPools = 
         new HashMap<Olap4jDataSource, OlapConnectionPool>();
 
+    /**
+     * The metadata caches of the data sources we have connected to.
+     */
+    private final Map<Olap4jDataSource, OlapMetadataCache> metadataCaches = 
+        new HashMap<Olap4jDataSource, OlapMetadataCache>();
+
 	public DataSourceCollection<SPDataSource> getDataSources() {
 		return null;
 	}
@@ -165,7 +172,11 @@ public class StubWabitSessionContext implements WabitSessionContext {
         return db;
     }
 
-    public OlapConnection createConnection(Olap4jDataSource dataSource) 
+    public void refreshDatabaseMetadata(JDBCDataSource dataSource) {
+        databases.remove(dataSource);
+    }
+
+    public synchronized OlapConnection createConnection(Olap4jDataSource dataSource) 
 		throws SQLException, ClassNotFoundException, NamingException 
 	{
 		if (dataSource == null) return null;
@@ -177,6 +188,15 @@ public class StubWabitSessionContext implements WabitSessionContext {
 		return olapConnectionPool.getConnection();
 	}
     
+    public synchronized OlapMetadataCache getMetadataCache(Olap4jDataSource dataSource) {
+        OlapMetadataCache cache = metadataCaches.get(dataSource);
+        if (cache == null) {
+            cache = new OlapMetadataCache();
+            metadataCaches.put(dataSource, cache);
+        }
+        return cache;
+    }
+    
     public PreparedOlapStatement createPreparedStatement(
     		Olap4jDataSource dataSource, String mdx, SPVariableHelper helper) 
     {
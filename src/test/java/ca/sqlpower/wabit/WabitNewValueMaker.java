@@ -65,7 +65,9 @@ import ca.sqlpower.wabit.report.Guide.Axis;
 import ca.sqlpower.wabit.report.Page.PageOrientation;
 import ca.sqlpower.wabit.report.ResultSetRenderer.BorderStyles;
 import ca.sqlpower.wabit.report.chart.Chart;
+import ca.sqlpower.wabit.report.chart.ChartAggregate;
 import ca.sqlpower.wabit.report.chart.ChartColumn;
+import ca.sqlpower.wabit.report.chart.ChartDownsampling;
 import ca.sqlpower.wabit.report.chart.ChartType;
 import ca.sqlpower.wabit.report.chart.ColumnRole;
 import ca.sqlpower.wabit.report.chart.LegendPosition;
@@ -366,6 +368,20 @@ public class WabitNewValueMaker extends GenericNewValueMaker {
             
             newValue = chartColumn;
             
+        } else if (valueType.equals(ChartAggregate.class)) {
+            if (oldVal != null && oldVal.equals(ChartAggregate.MAX)) {
+                newValue = ChartAggregate.MIN;
+            } else {
+                newValue = ChartAggregate.MAX;
+            }
+            
+        } else if (valueType.equals(ChartDownsampling.class)) {
+            if (oldVal != null && oldVal.equals(ChartDownsampling.MIN_MAX)) {
+                newValue = ChartDownsampling.NONE;
+            } else {
+                newValue = ChartDownsampling.MIN_MAX;
+            }
+            
         } else if (valueType.equals(LegendPosition.class)) {
             if (oldVal != null && oldVal.equals(LegendPosition.LEFT)) {
                 newValue = LegendPosition.RIGHT;
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * A single measurement in the benchmark suite. Each benchmark is set up once,
+ * run a number of times to warm up the JIT and then run a fixed number of
+ * times to measure. Only {@link #run()} is timed; work that has to be redone
+ * before every run but is not part of the measurement belongs in
+ * {@link #beforeRun()}.
+ * 
+ * @see BenchmarkSuite
+ */
+public abstract class Benchmark {
+
+    /**
+     * The timings of the measured runs of one benchmark.
+     */
+    public static class Result {
+        
+        private final String name;
+        
+        /**
+         * The time each measured run took in nanoseconds, sorted from
+         * fastest to slowest.
+         */
+        private final long[] times;
+        
+        Result(String name, long[] times) {
+            this.name = name;
+            this.times = times.clone();
+            Arrays.sort(this.times);
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public int getRunCount() {
+            return times.length;
+        }
+        
+        public long getBestTime() {
+            return times[0];
+        }
+        
+        public long getMedianTime() {
+            return times[times.length / 2];
+        }
+        
+        public long getWorstTime() {
+            return times[times.length - 1];
+        }
+        
+        @Override
+        public String toString() {
+            return name + ": best " + (getBestTime() / 1000) + "us, median " + 
+                (getMedianTime() / 1000) + "us, worst " + (getWorstTime() / 1000) + 
+                "us over " + getRunCount() + " runs";
+        }
+    }
+    
+    private final String name;
+
+    /**
+     * Combines the results of every run so the JIT cannot discard the work
+     * of a run whose result is otherwise unused.
+     */
+    private int sink;
+    
+    protected Benchmark(String name) {
+        this.name = name;
+    }
+    
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Prepares the state shared by all of the runs. This is not timed.
+     */
+    protected void setUp() throws Exception {
+        // no op by default
+    }
+
+    /**
+     * Prepares the state for the next run. This is not timed.
+     */
+    protected void beforeRun() throws Exception {
+        // no op by default
+    }
+
+    /**
+     * Does the work being measured once.
+     * 
+     * @return The product of the run, such as a row or byte count. This must
+     *         not be null.
+     */
+    protected abstract Object run() throws Exception;
+
+    /**
+     * Releases the state created in {@link #setUp()}. This is not timed.
+     */
+    protected void tearDown() throws Exception {
+        // no op by default
+    }
+    
+    public final Result measure(int warmupRuns, int measuredRuns) throws Exception {
+        if (measuredRuns < 1) throw new IllegalArgumentException("At least one measured run is required");
+        setUp();
+        try {
+            long[] times = new long[measuredRuns];
+            for (int run = 0; run < warmupRuns + measuredRuns; run++) {
+                beforeRun();
+                long start = System.nanoTime();
+                Object product = run();
+                long elapsed = System.nanoTime() - start;
+                if (product == null) {
+                    throw new IllegalStateException(name + " did not produce a result");
+                }
+                sink += System.identityHashCode(product);
+                if (run >= warmupRuns) {
+                    times[run - warmupRuns] = elapsed;
+                }
+            }
+            return new Result(name, times);
+        } finally {
+            tearDown();
+        }
+    }
+}
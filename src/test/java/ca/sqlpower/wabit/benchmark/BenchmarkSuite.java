@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.wabit.WabitSession;
+import ca.sqlpower.wabit.WabitSessionContextImpl;
+
+/**
+ * Runs the benchmarks of the query execution, report layout, chart dataset,
+ * workspace file and session persister code against a synthetic workspace in
+ * the in-memory regression test database. Run it from the project directory
+ * with the <code>benchmark</code> target of the build, or directly with
+ * arguments of the form <code>name=value</code> to change the size of the
+ * workspace and the number of runs:
+ * <ul>
+ * <li>queries, reports, charts, images: the number of each object in the
+ * workspace</li>
+ * <li>rows: the number of rows in the table the queries select from</li>
+ * <li>warmup, runs: the number of unmeasured and measured runs of each
+ * benchmark</li>
+ * <li>only: runs only the benchmarks whose name contains the given text</li>
+ * </ul>
+ * The {@link ca.sqlpower.wabit.rs.ResultSetCursorBenchmark} and
+ * {@link ca.sqlpower.wabit.dao.session.ItemConverterBenchmark} compare
+ * alternative implementations and are still run on their own.
+ */
+public class BenchmarkSuite {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> settings = new LinkedHashMap<String, String>();
+        settings.put("queries", "20");
+        settings.put("reports", "10");
+        settings.put("charts", "10");
+        settings.put("images", "5");
+        settings.put("rows", "10000");
+        settings.put("warmup", "5");
+        settings.put("runs", "10");
+        settings.put("only", "");
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split == -1 || !settings.containsKey(arg.substring(0, split))) {
+                throw new IllegalArgumentException("Unknown argument " + arg + 
+                        ", the arguments are " + settings.keySet());
+            }
+            settings.put(arg.substring(0, split), arg.substring(split + 1));
+        }
+        System.out.println("Benchmark settings: " + settings);
+        
+        PlDotIni plIni = new PlDotIni();
+        plIni.read(new File("src/test/resources/pl.regression.ini"));
+        JDBCDataSource ds = plIni.getDataSource("regression_test", JDBCDataSource.class);
+        SyntheticWorkspace.createTable(ds, Integer.parseInt(settings.get("rows")));
+        WabitSessionContextImpl context = new WabitSessionContextImpl(false, false, plIni, null, false);
+        context.setMetadataSnapshotDirectory(null);
+        try {
+            SyntheticWorkspace generator = new SyntheticWorkspace(
+                    Integer.parseInt(settings.get("queries")), 
+                    Integer.parseInt(settings.get("reports")), 
+                    Integer.parseInt(settings.get("charts")), 
+                    Integer.parseInt(settings.get("images")));
+            WabitSession session = generator.create(context, ds);
+            
+            List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+            benchmarks.add(new QueryExecutionBenchmark(session.getWorkspace()));
+            benchmarks.add(new ResultSetLayoutBenchmark(ds));
+            benchmarks.add(new ChartDatasetBenchmark(session.getWorkspace()));
+            benchmarks.add(new WorkspaceSaveBenchmark(context));
+            benchmarks.add(new WorkspaceLoadBenchmark(context));
+            benchmarks.add(new PersisterCommitBenchmark(session));
+            
+            int warmupRuns = Integer.parseInt(settings.get("warmup"));
+            int measuredRuns = Integer.parseInt(settings.get("runs"));
+            for (Benchmark benchmark : benchmarks) {
+                if (!benchmark.getName().contains(settings.get("only"))) continue;
+                System.out.println(benchmark.measure(warmupRuns, measuredRuns));
+            }
+        } finally {
+            context.close();
+            SyntheticWorkspace.dropTable(ds);
+        }
+    }
+}
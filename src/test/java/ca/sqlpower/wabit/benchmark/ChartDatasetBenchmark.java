@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.benchmark;
+
+import org.jfree.data.general.Dataset;
+
+import ca.sqlpower.wabit.WabitWorkspace;
+import ca.sqlpower.wabit.report.chart.Chart;
+
+/**
+ * Builds the dataset of every chart of a workspace from the cached result of
+ * its query. The queries are executed once before measuring so this only
+ * measures building the category and XY datasets.
+ */
+public class ChartDatasetBenchmark extends Benchmark {
+
+    private final WabitWorkspace workspace;
+    
+    public ChartDatasetBenchmark(WabitWorkspace workspace) {
+        super("DatasetUtil dataset building");
+        this.workspace = workspace;
+    }
+    
+    @Override
+    protected void setUp() throws Exception {
+        for (Chart chart : workspace.getCharts()) {
+            chart.refresh(false);
+        }
+    }
+    
+    @Override
+    protected Object run() throws Exception {
+        int datasetCount = 0;
+        for (Chart chart : workspace.getCharts()) {
+            Dataset dataset = chart.createDataset(false);
+            if (dataset == null) {
+                throw new IllegalStateException("No dataset was created for " + chart.getName());
+            }
+            datasetCount++;
+        }
+        return datasetCount;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.benchmark;
+
+import ca.sqlpower.object.SPObject;
+import ca.sqlpower.wabit.WabitSession;
+import ca.sqlpower.wabit.WabitWorkspace;
+import ca.sqlpower.wabit.dao.WabitSessionPersister;
+import ca.sqlpower.wabit.dao.session.WorkspacePersisterListener;
+
+/**
+ * Sends every object of a workspace through a {@link WabitSessionPersister}
+ * into an empty workspace, one transaction per top level object, the way a
+ * server session receives a workspace from a client. Each run persists into
+ * a new empty workspace.
+ */
+public class PersisterCommitBenchmark extends Benchmark {
+
+    private final WabitSession source;
+    
+    private WabitSession target;
+    
+    private WorkspacePersisterListener listener;
+    
+    public PersisterCommitBenchmark(WabitSession source) {
+        super("WabitSessionPersister commit");
+        this.source = source;
+    }
+    
+    @Override
+    protected void beforeRun() throws Exception {
+        target = source.getContext().createSession();
+        target.getWorkspace().setUUID(source.getWorkspace().getUUID());
+        WabitSessionPersister persister = new WabitSessionPersister("benchmark persister", target, true);
+        listener = new WorkspacePersisterListener(source, persister, true);
+    }
+    
+    @Override
+    protected Object run() throws Exception {
+        for (SPObject child : source.getWorkspace().getChildren()) {
+            listener.persistObject(child);
+        }
+        WabitWorkspace workspace = target.getWorkspace();
+        if (workspace.getChildren().size() != source.getWorkspace().getChildren().size()) {
+            throw new IllegalStateException("Persisted " + workspace.getChildren().size() + 
+                    " objects but the workspace has " + source.getWorkspace().getChildren().size());
+        }
+        return workspace.getChildren().size();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.benchmark;
+
+import ca.sqlpower.wabit.WabitWorkspace;
+import ca.sqlpower.wabit.rs.ResultSetHandle;
+import ca.sqlpower.wabit.rs.query.QueryCache;
+
+/**
+ * Executes every query of a workspace in turn and waits for its rows to be
+ * cached, which is what refreshing a workspace does.
+ */
+public class QueryExecutionBenchmark extends Benchmark {
+
+    private final WabitWorkspace workspace;
+    
+    public QueryExecutionBenchmark(WabitWorkspace workspace) {
+        super("QueryCache execution");
+        this.workspace = workspace;
+    }
+    
+    @Override
+    protected Object run() throws Exception {
+        int rowCount = 0;
+        for (QueryCache query : workspace.getQueries()) {
+            ResultSetHandle handle = query.execute(null, null, false);
+            if (handle.getException() != null) {
+                throw handle.getException();
+            }
+            rowCount += handle.getCursor().getRowCount();
+        }
+        return rowCount;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.benchmark;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.wabit.report.ColumnInfo;
+import ca.sqlpower.wabit.report.DataType;
+import ca.sqlpower.wabit.report.ColumnInfo.GroupAndBreak;
+import ca.sqlpower.wabit.report.ResultSetRenderer.BorderStyles;
+import ca.sqlpower.wabit.report.resultset.ReportPositionRenderer;
+import ca.sqlpower.wabit.report.resultset.ResultSetCell;
+import ca.sqlpower.wabit.rs.WabitCachedRowSet;
+
+/**
+ * Lays out all of the rows of the synthetic sales table into pages the way
+ * a result set renderer does, with a section for each region, a group for
+ * each product and subtotals of the quantity and amount.
+ */
+public class ResultSetLayoutBenchmark extends Benchmark {
+
+    private static final int PAGE_HEIGHT = 700;
+    
+    private static final int PAGE_WIDTH = 500;
+    
+    private final JDBCDataSource ds;
+    
+    private WabitCachedRowSet rs;
+    
+    private List<ColumnInfo> columnInfoList;
+    
+    private Graphics2D g;
+    
+    public ResultSetLayoutBenchmark(JDBCDataSource ds) {
+        super("ResultSetRenderer layout");
+        this.ds = ds;
+    }
+    
+    @Override
+    protected void setUp() throws Exception {
+        Connection con = ds.createConnection();
+        try {
+            Statement stmt = con.createStatement();
+            rs = new WabitCachedRowSet();
+            rs.populate(stmt.executeQuery(SyntheticWorkspace.createQueryText(0)));
+            stmt.close();
+        } finally {
+            con.close();
+        }
+        
+        columnInfoList = new ArrayList<ColumnInfo>();
+        columnInfoList.add(createColumnInfo("sale_id", DataType.NUMERIC, GroupAndBreak.NONE, false));
+        columnInfoList.add(createColumnInfo("region", DataType.TEXT, GroupAndBreak.BREAK, false));
+        columnInfoList.add(createColumnInfo("product", DataType.TEXT, GroupAndBreak.GROUP, false));
+        columnInfoList.add(createColumnInfo("sale_date", DataType.DATE, GroupAndBreak.NONE, false));
+        columnInfoList.add(createColumnInfo("quantity", DataType.NUMERIC, GroupAndBreak.NONE, true));
+        columnInfoList.add(createColumnInfo("amount", DataType.NUMERIC, GroupAndBreak.NONE, true));
+        
+        g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    }
+    
+    private static ColumnInfo createColumnInfo(String name, DataType type, 
+            GroupAndBreak groupAndBreak, boolean subtotal) {
+        ColumnInfo info = new ColumnInfo(name);
+        info.setDataType(type);
+        info.setWillGroupOrBreak(groupAndBreak);
+        info.setWillSubtotal(subtotal);
+        info.setWidth(PAGE_WIDTH / 6);
+        return info;
+    }
+    
+    @Override
+    protected Object run() throws Exception {
+        ReportPositionRenderer renderer = new ReportPositionRenderer(
+                new Font("Dialog", Font.BOLD, 10), new Font("Dialog", Font.PLAIN, 10), 
+                Color.BLACK, Color.BLACK, BorderStyles.FULL, PAGE_WIDTH, "");
+        List<List<ResultSetCell>> pages = 
+            renderer.createResultSetLayout(g, rs, columnInfoList, PAGE_HEIGHT, true);
+        return pages.size();
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        g.dispose();
+    }
+}
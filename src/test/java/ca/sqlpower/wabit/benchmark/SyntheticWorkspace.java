@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.benchmark;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.wabit.WabitSession;
+import ca.sqlpower.wabit.WabitSessionContext;
+import ca.sqlpower.wabit.WabitWorkspace;
+import ca.sqlpower.wabit.image.WabitImage;
+import ca.sqlpower.wabit.report.ChartRenderer;
+import ca.sqlpower.wabit.report.ContentBox;
+import ca.sqlpower.wabit.report.ImageRenderer;
+import ca.sqlpower.wabit.report.Report;
+import ca.sqlpower.wabit.report.ResultSetRenderer;
+import ca.sqlpower.wabit.report.chart.Chart;
+import ca.sqlpower.wabit.report.chart.ChartColumn;
+import ca.sqlpower.wabit.report.chart.ChartType;
+import ca.sqlpower.wabit.report.chart.ColumnRole;
+import ca.sqlpower.wabit.rs.query.QueryCache;
+
+/**
+ * Builds workspaces of a given size for the benchmarks. The queries of the
+ * workspace select from a sales table that {@link #createTable(JDBCDataSource, int)}
+ * fills with generated rows, so the workspace must be built against an
+ * embedded database such as the in-memory regression test database. The
+ * generated rows and objects only depend on the counts given, which keeps
+ * measurements on different machines comparable.
+ * <p>
+ * Every report has a result set of one of the queries, and, when there are
+ * any, one of the charts and one of the images. Even numbered charts are bar
+ * charts of the amounts by region and product, odd numbered charts are line
+ * charts of the amount of each sale.
+ */
+public class SyntheticWorkspace {
+
+    /**
+     * The table the queries of the synthetic workspaces select from.
+     */
+    public static final String TABLE_NAME = "benchmark_sales";
+    
+    private static final int REGION_COUNT = 10;
+    
+    private static final int PRODUCT_COUNT = 50;
+    
+    private final int queryCount;
+    
+    private final int reportCount;
+    
+    private final int chartCount;
+    
+    private final int imageCount;
+    
+    public SyntheticWorkspace(int queryCount, int reportCount, int chartCount, int imageCount) {
+        if (queryCount == 0 && (reportCount > 0 || chartCount > 0)) {
+            throw new IllegalArgumentException("Reports and charts need at least one query");
+        }
+        this.queryCount = queryCount;
+        this.reportCount = reportCount;
+        this.chartCount = chartCount;
+        this.imageCount = imageCount;
+    }
+
+    /**
+     * Creates the sales table in the given database with the given number of
+     * rows. The table must not exist yet.
+     */
+    public static void createTable(JDBCDataSource ds, int rowCount) throws SQLException {
+        Connection con = ds.createConnection();
+        try {
+            Statement stmt = con.createStatement();
+            stmt.execute("create table " + TABLE_NAME + " (sale_id integer, region varchar(20), " +
+                    "product varchar(20), sale_date date, quantity integer, amount double)");
+            stmt.close();
+            PreparedStatement insert = con.prepareStatement("insert into " + TABLE_NAME + 
+                    " (sale_id, region, product, sale_date, quantity, amount) values (?, ?, ?, ?, ?, ?)");
+            long firstDay = Date.valueOf("2010-01-01").getTime();
+            for (int i = 0; i < rowCount; i++) {
+                insert.setInt(1, i);
+                insert.setString(2, "region " + (i % REGION_COUNT));
+                insert.setString(3, "product " + ((i / REGION_COUNT) % PRODUCT_COUNT));
+                insert.setDate(4, new Date(firstDay + (i % 365) * 24L * 60 * 60 * 1000));
+                insert.setInt(5, i % 10);
+                insert.setDouble(6, (i % 1000) * 0.25);
+                insert.addBatch();
+                if (i % 1000 == 999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+            insert.close();
+        } finally {
+            con.close();
+        }
+    }
+    
+    public static void dropTable(JDBCDataSource ds) throws SQLException {
+        Connection con = ds.createConnection();
+        try {
+            Statement stmt = con.createStatement();
+            stmt.execute("drop table " + TABLE_NAME);
+            stmt.close();
+        } finally {
+            con.close();
+        }
+    }
+
+    /**
+     * Returns the SQL of the query with the given index. Each query selects a
+     * different share of the rows, sorted so the region and product can be
+     * used as breaks and groups in a report.
+     */
+    public static String createQueryText(int index) {
+        return "select sale_id, region, product, sale_date, quantity, amount from " + TABLE_NAME + 
+            " where quantity >= " + (index % 5) + " order by region, product, sale_id";
+    }
+
+    /**
+     * Creates a new session in the given context, registers it as the active
+     * session and fills its workspace. The queries of the charts are executed
+     * to define the roles of the chart columns.
+     * 
+     * @param ds
+     *            The data source the queries select from. The sales table
+     *            must have been created in it.
+     */
+    public WabitSession create(WabitSessionContext context, JDBCDataSource ds) throws Exception {
+        WabitSession session = context.createSession();
+        context.registerChildSession(session);
+        context.setActiveSession(session);
+        WabitWorkspace workspace = session.getWorkspace();
+        workspace.setName("Synthetic workspace");
+        workspace.addDataSource(ds);
+        
+        List<QueryCache> queries = new ArrayList<QueryCache>();
+        for (int i = 0; i < queryCount; i++) {
+            QueryCache query = new QueryCache(context);
+            query.setName("query " + i);
+            workspace.addQuery(query, session);
+            query.setDataSource(ds);
+            query.setUserModifiedQuery(createQueryText(i));
+            queries.add(query);
+        }
+        
+        List<WabitImage> images = new ArrayList<WabitImage>();
+        for (int i = 0; i < imageCount; i++) {
+            WabitImage image = new WabitImage();
+            image.setName("image " + i);
+            image.setImage(createImage(i));
+            workspace.addImage(image);
+            images.add(image);
+        }
+        
+        List<Chart> charts = new ArrayList<Chart>();
+        for (int i = 0; i < chartCount; i++) {
+            Chart chart = new Chart();
+            chart.setName("chart " + i);
+            workspace.addChart(chart);
+            chart.setQuery(queries.get(i % queries.size()));
+            chart.setType(i % 2 == 0 ? ChartType.BAR : ChartType.LINE);
+            chart.getUnfilteredResultSet(false);
+            chart.syncWithResultSet();
+            defineColumnRoles(chart);
+            charts.add(chart);
+        }
+        
+        for (int i = 0; i < reportCount; i++) {
+            Report report = new Report("report " + i);
+            workspace.addReport(report);
+            
+            ContentBox resultSetBox = createContentBox(0);
+            report.getPage().addContentBox(resultSetBox);
+            resultSetBox.setContentRenderer(new ResultSetRenderer(queries.get(i % queries.size())));
+            
+            if (!charts.isEmpty()) {
+                ContentBox chartBox = createContentBox(1);
+                report.getPage().addContentBox(chartBox);
+                chartBox.setContentRenderer(new ChartRenderer(charts.get(i % charts.size())));
+            }
+            
+            if (!images.isEmpty()) {
+                ContentBox imageBox = createContentBox(2);
+                report.getPage().addContentBox(imageBox);
+                ImageRenderer imageRenderer = new ImageRenderer();
+                imageBox.setContentRenderer(imageRenderer);
+                imageRenderer.setImage(images.get(i % images.size()));
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Bar charts show the amount of each region and product, line charts show
+     * the amount of each sale by its id.
+     */
+    private static void defineColumnRoles(Chart chart) {
+        ChartColumn saleId = null;
+        for (ChartColumn column : chart.getColumns()) {
+            if (column.getColumnName().equalsIgnoreCase("sale_id")) {
+                saleId = column;
+            }
+        }
+        for (ChartColumn column : chart.getColumns()) {
+            String name = column.getColumnName();
+            if (name.equalsIgnoreCase("amount")) {
+                column.setRoleInChart(ColumnRole.SERIES);
+                if (chart.getType() == ChartType.LINE) {
+                    column.setXAxisIdentifier(saleId);
+                }
+            } else if (chart.getType() == ChartType.BAR && 
+                    (name.equalsIgnoreCase("region") || name.equalsIgnoreCase("product"))) {
+                column.setRoleInChart(ColumnRole.CATEGORY);
+            } else {
+                column.setRoleInChart(ColumnRole.NONE);
+            }
+        }
+    }
+    
+    private static ContentBox createContentBox(int row) {
+        ContentBox box = new ContentBox();
+        box.setX(50);
+        box.setY(50 + row * 250);
+        box.setWidth(500);
+        box.setHeight(230);
+        return box;
+    }
+
+    /**
+     * Draws a gradient that is different for each index so every image of a
+     * workspace has its own content.
+     */
+    private static BufferedImage createImage(int index) {
+        BufferedImage image = new BufferedImage(200, 100, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(index * 37 % 256, 80, 160), 
+                200, 100, new Color(255, index * 53 % 256, 40)));
+        g.fillRect(0, 0, 200, 100);
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import ca.sqlpower.wabit.WabitSessionContext;
+import ca.sqlpower.wabit.dao.OpenWorkspaceXMLDAO;
+import ca.sqlpower.wabit.dao.WorkspaceXMLDAO;
+
+/**
+ * Reads the saved form of the active workspace of a context back into a new
+ * session with the {@link OpenWorkspaceXMLDAO}. The loaded sessions are not
+ * registered with the context so they do not accumulate over the runs.
+ */
+public class WorkspaceLoadBenchmark extends Benchmark {
+
+    private final WabitSessionContext context;
+    
+    private byte[] savedWorkspace;
+    
+    public WorkspaceLoadBenchmark(WabitSessionContext context) {
+        super("OpenWorkspaceXMLDAO load");
+        this.context = context;
+    }
+    
+    @Override
+    protected void setUp() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new WorkspaceXMLDAO(out, context).saveActiveWorkspace();
+        savedWorkspace = out.toByteArray();
+    }
+    
+    @Override
+    protected Object run() throws Exception {
+        OpenWorkspaceXMLDAO dao = new OpenWorkspaceXMLDAO(context, 
+                new ByteArrayInputStream(savedWorkspace), savedWorkspace.length);
+        dao.loadWorkspacesFromStream();
+        return dao.getProgress();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.benchmark;
+
+import java.io.ByteArrayOutputStream;
+
+import ca.sqlpower.wabit.WabitSessionContext;
+import ca.sqlpower.wabit.dao.WorkspaceXMLDAO;
+
+/**
+ * Saves the active workspace of a context to memory with the
+ * {@link WorkspaceXMLDAO}.
+ */
+public class WorkspaceSaveBenchmark extends Benchmark {
+
+    private final WabitSessionContext context;
+    
+    public WorkspaceSaveBenchmark(WabitSessionContext context) {
+        super("WorkspaceXMLDAO save");
+        this.context = context;
+    }
+    
+    @Override
+    protected Object run() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WorkspaceXMLDAO dao = new WorkspaceXMLDAO(out, context);
+        dao.saveActiveWorkspace();
+        return out.size();
+    }
+}
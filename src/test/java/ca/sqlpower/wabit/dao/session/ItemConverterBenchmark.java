@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.dao.session;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.sqlpower.query.Container;
+import ca.sqlpower.query.Item;
+import ca.sqlpower.query.ItemContainer;
+import ca.sqlpower.query.SQLObjectItem;
+import ca.sqlpower.sqlobject.StubSQLDatabaseMapping;
+import ca.sqlpower.wabit.StubWabitSession;
+import ca.sqlpower.wabit.StubWabitSessionContext;
+import ca.sqlpower.wabit.WabitWorkspace;
+import ca.sqlpower.wabit.benchmark.Benchmark;
+import ca.sqlpower.wabit.rs.query.QueryCache;
+
+/**
+ * Compares converting every item of a workspace of 500 queries with 50
+ * columns each by walking the workspace for each item to converting them
+ * with the {@link ItemConverter}'s index, as a persister commit does. Run
+ * the main method from the project directory; each measurement is made with
+ * {@link Benchmark#measure(int, int)}.
+ */
+public class ItemConverterBenchmark {
+
+    private static final int QUERY_COUNT = 500;
+    
+    private static final int COLUMN_COUNT = 50;
+    
+    private static final int WARMUP_RUNS = 3;
+    
+    private static final int MEASURED_RUNS = 5;
+    
+    public static void main(String[] args) throws Exception {
+        WabitWorkspace workspace = new StubWabitSession(new StubWabitSessionContext()).getWorkspace();
+        final List<String> convertedItems = new ArrayList<String>();
+        final ItemConverter converter = new ItemConverter(workspace);
+        for (int q = 0; q < QUERY_COUNT; q++) {
+            QueryCache cache = new QueryCache(new StubSQLDatabaseMapping());
+            cache.setName("query " + q);
+            Container container = new ItemContainer("table " + q);
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                Item item = new SQLObjectItem("column " + c, "item-" + q + "-" + c);
+                container.addItem(item);
+                convertedItems.add(converter.convertToSimpleType(item));
+            }
+            cache.addTable(container);
+            workspace.addChild(cache, workspace.getQueries().size());
+        }
+        
+        Benchmark scanned = new Benchmark(convertedItems.size() + " items, walking the workspace") {
+            @Override
+            protected Object run() throws Exception {
+                return convertAll(converter, convertedItems);
+            }
+        };
+        System.out.println(scanned.measure(WARMUP_RUNS, MEASURED_RUNS));
+        
+        Benchmark indexed = new Benchmark(convertedItems.size() + " items, indexed") {
+            @Override
+            protected void setUp() throws Exception {
+                converter.setIndexing(true);
+            }
+            
+            @Override
+            protected Object run() throws Exception {
+                return convertAll(converter, convertedItems);
+            }
+            
+            @Override
+            protected void tearDown() throws Exception {
+                converter.setIndexing(false);
+            }
+        };
+        System.out.println(indexed.measure(WARMUP_RUNS, MEASURED_RUNS));
+    }
+    
+    private static Integer convertAll(ItemConverter converter, List<String> items) {
+        int count = 0;
+        for (String item : items) {
+            if (converter.convertToComplexType(item) == null) {
+                throw new IllegalStateException("Could not convert " + item);
+            }
+            count++;
+        }
+        return count;
+    }
+}
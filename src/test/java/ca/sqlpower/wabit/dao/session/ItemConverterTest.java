@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.dao.session;
+
+import junit.framework.TestCase;
+import ca.sqlpower.query.Container;
+import ca.sqlpower.query.Item;
+import ca.sqlpower.query.ItemContainer;
+import ca.sqlpower.query.SQLObjectItem;
+import ca.sqlpower.sqlobject.StubSQLDatabaseMapping;
+import ca.sqlpower.wabit.StubWabitSession;
+import ca.sqlpower.wabit.StubWabitSessionContext;
+import ca.sqlpower.wabit.WabitWorkspace;
+import ca.sqlpower.wabit.rs.query.QueryCache;
+
+public class ItemConverterTest extends TestCase {
+
+    private WabitWorkspace workspace;
+    
+    private Item item;
+    
+    private ItemConverter converter;
+    
+    @Override
+    protected void setUp() throws Exception {
+        workspace = new StubWabitSession(new StubWabitSessionContext()).getWorkspace();
+        QueryCache cache = new QueryCache(new StubSQLDatabaseMapping());
+        cache.setName("query");
+        Container container = new ItemContainer("container");
+        item = new SQLObjectItem("item", "item-uuid");
+        container.addItem(item);
+        cache.addTable(container);
+        workspace.addChild(cache, 0);
+        
+        converter = new ItemConverter(workspace);
+    }
+    
+    public void testFindsExistingItem() throws Exception {
+        assertSame(item, converter.convertToComplexType(converter.convertToSimpleType(item)));
+        
+        converter.setIndexing(true);
+        assertSame(item, converter.convertToComplexType(converter.convertToSimpleType(item)));
+    }
+
+    /**
+     * While indexing, an item created for a UUID that is not in the workspace
+     * must be returned again for the same UUID, as it will be added to the
+     * workspace by the commit that is converting it.
+     */
+    public void testIndexingReusesCreatedItems() throws Exception {
+        String newItem = converter.convertToSimpleType(new SQLObjectItem("new", "new-uuid"));
+        assertNotSame(converter.convertToComplexType(newItem), converter.convertToComplexType(newItem));
+        
+        converter.setIndexing(true);
+        Item converted = converter.convertToComplexType(newItem);
+        assertEquals("new-uuid", converted.getUUID());
+        assertSame(converted, converter.convertToComplexType(newItem));
+        
+        converter.setIndexing(false);
+        assertNotSame(converted, converter.convertToComplexType(newItem));
+    }
+}
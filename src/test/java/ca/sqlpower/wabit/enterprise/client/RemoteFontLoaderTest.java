@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.enterprise.client;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import junit.framework.TestCase;
+import ca.sqlpower.enterprise.client.SPServerInfo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class RemoteFontLoaderTest extends TestCase {
+
+    /**
+     * A font server that answers every request with the status and body set
+     * by the test and remembers the last request it got.
+     */
+    private class FontServer implements HttpHandler {
+        
+        int status = 200;
+        
+        byte[] body = new byte[0];
+        
+        int requestCount = 0;
+        
+        String lastPath;
+        
+        String lastIfModifiedSince;
+
+        public void handle(HttpExchange exchange) throws IOException {
+            requestCount++;
+            lastPath = exchange.getRequestURI().getPath();
+            lastIfModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+            if (status == 304) {
+                exchange.sendResponseHeaders(status, -1);
+            } else {
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+            exchange.close();
+        }
+    }
+
+    private HttpServer server;
+    
+    private FontServer fontServer;
+    
+    private File cacheDirectory;
+    
+    private RemoteFontLoader loader;
+    
+    @Override
+    protected void setUp() throws Exception {
+        fontServer = new FontServer();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", fontServer);
+        server.start();
+        
+        cacheDirectory = File.createTempFile("fonts", "");
+        cacheDirectory.delete();
+        cacheDirectory.mkdir();
+        
+        SPServerInfo serverInfo = new SPServerInfo("test", "localhost", 
+                server.getAddress().getPort(), "/wabit-enterprise/", "user", "password");
+        loader = new RemoteFontLoader(serverInfo, cacheDirectory);
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        loader.close();
+        server.stop(0);
+        for (File f : cacheDirectory.listFiles()) {
+            f.delete();
+        }
+        cacheDirectory.delete();
+    }
+    
+    private void writeFile(File file, String contents) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+    
+    private String readFile(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += in.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            in.close();
+        }
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * A saved font the server reports as not modified must be kept, and the
+     * request must tell the server when the font was saved.
+     */
+    public void testRevalidateNotModified() throws Exception {
+        File cacheFile = loader.getCacheFile("TestFont");
+        writeFile(cacheFile, "saved font");
+        fontServer.status = 304;
+        
+        assertFalse(loader.revalidate("TestFont", cacheFile));
+        
+        assertEquals(1, fontServer.requestCount);
+        assertEquals("/wabit-enterprise/fonts/TestFont", fontServer.lastPath);
+        assertNotNull(fontServer.lastIfModifiedSince);
+        assertEquals("saved font", readFile(cacheFile));
+    }
+
+    /**
+     * A saved font must be replaced when the server returns a different
+     * version of it.
+     */
+    public void testRevalidateReplacesChangedFont() throws Exception {
+        File cacheFile = loader.getCacheFile("TestFont");
+        writeFile(cacheFile, "saved font");
+        fontServer.body = "newer font".getBytes("UTF-8");
+        
+        assertTrue(loader.revalidate("TestFont", cacheFile));
+        
+        assertEquals("newer font", readFile(cacheFile));
+    }
+
+    /**
+     * A server that ignores the conditional request and returns the same
+     * font again must not cause the saved font to be rewritten.
+     */
+    public void testRevalidateUnchangedFont() throws Exception {
+        File cacheFile = loader.getCacheFile("TestFont");
+        writeFile(cacheFile, "saved font");
+        fontServer.body = "saved font".getBytes("UTF-8");
+        
+        assertFalse(loader.revalidate("TestFont", cacheFile));
+    }
+
+    /**
+     * An error from the server must not replace the saved font with the
+     * error page.
+     */
+    public void testRevalidateServerError() throws Exception {
+        File cacheFile = loader.getCacheFile("TestFont");
+        writeFile(cacheFile, "saved font");
+        fontServer.status = 500;
+        fontServer.body = "error page".getBytes("UTF-8");
+        
+        try {
+            loader.revalidate("TestFont", cacheFile);
+            fail("The server error should have been reported");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals("saved font", readFile(cacheFile));
+    }
+
+    /**
+     * A closed loader must not contact the server any more.
+     */
+    public void testClose() throws Exception {
+        File cacheFile = loader.getCacheFile("TestFont");
+        writeFile(cacheFile, "saved font");
+        fontServer.status = 304;
+        loader.revalidate("TestFont", cacheFile);
+        
+        loader.close();
+        try {
+            loader.revalidate("TestFont", cacheFile);
+            fail("A closed loader should not connect to the server");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(1, fontServer.requestCount);
+        
+        // closing twice is allowed
+        loader.close();
+    }
+}
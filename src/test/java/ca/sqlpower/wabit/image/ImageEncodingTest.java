@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.image;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+public class ImageEncodingTest extends TestCase {
+
+    private BufferedImage createImage(Color color) {
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 10, 10);
+        g.dispose();
+        return image;
+    }
+
+    private byte[] toPNG(BufferedImage image) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * An image must only be encoded the first time its encoding is asked for.
+     */
+    public void testEncodingReused() throws Exception {
+        BufferedImage image = createImage(Color.RED);
+        ImageEncoding encoding = ImageEncoding.forImage(image);
+        assertSame(encoding, ImageEncoding.forImage(image));
+        assertSame(encoding.getPNGBytes(), ImageEncoding.forImage(image).getPNGBytes());
+    }
+
+    /**
+     * Decoding PNG bytes must keep the bytes as the image's encoding, and
+     * decoding the same bytes again must return the same image.
+     */
+    public void testDecodeKeepsBytes() throws Exception {
+        byte[] bytes = toPNG(createImage(Color.BLUE));
+        Image image = ImageEncoding.decode(bytes);
+        assertSame(bytes, ImageEncoding.forImage(image).getPNGBytes());
+        assertSame(image, ImageEncoding.decode(bytes.clone()));
+    }
+
+    public void testContentHash() throws Exception {
+        byte[] bytes = toPNG(createImage(Color.GREEN));
+        ImageEncoding green = ImageEncoding.forImage(ImageEncoding.decode(bytes));
+        ImageEncoding otherGreen = ImageEncoding.forImage(createImage(Color.GREEN));
+        ImageEncoding yellow = ImageEncoding.forImage(createImage(Color.YELLOW));
+        assertEquals(40, green.getContentHash().length());
+        assertFalse(green.getContentHash().equals(yellow.getContentHash()));
+        assertEquals(Arrays.equals(green.getPNGBytes(), otherGreen.getPNGBytes()), 
+                green.getContentHash().equals(otherGreen.getContentHash()));
+    }
+
+    public void testWabitImageEncoding() throws Exception {
+        WabitImage wabitImage = new WabitImage();
+        assertNull(wabitImage.getEncoding());
+        BufferedImage image = createImage(Color.BLACK);
+        wabitImage.setImage(image);
+        assertSame(ImageEncoding.forImage(image), wabitImage.getEncoding());
+    }
+}
@@ -19,6 +19,8 @@
 
 package ca.sqlpower.wabit.image;
 
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
 import java.util.Set;
 
 import ca.sqlpower.wabit.AbstractWabitObjectTest;
@@ -48,4 +50,33 @@ public class WabitImageTest extends AbstractWabitObjectTest {
         return wabitImage;
     }
 
+    /**
+     * Tests that asking for the same scaled size twice returns the cached
+     * image instead of scaling the image again.
+     */
+    public void testScaledImageIsCached() throws Exception {
+        wabitImage.setImage(new BufferedImage(200, 100, BufferedImage.TYPE_INT_ARGB));
+        BufferedImage scaled = wabitImage.getScaledImage(20, 10, null);
+        assertEquals(20, scaled.getWidth());
+        assertEquals(10, scaled.getHeight());
+        assertSame(scaled, wabitImage.getScaledImage(20, 10, null));
+        assertNotSame(scaled, wabitImage.getScaledImage(20, 10, 
+                RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR));
+        assertNotSame(scaled, wabitImage.getScaledImage(40, 20, null));
+    }
+
+    /**
+     * Tests that changing the image discards the scaled copies of the old
+     * image.
+     */
+    public void testScaledImageClearedOnImageChange() throws Exception {
+        wabitImage.setImage(new BufferedImage(200, 100, BufferedImage.TYPE_INT_ARGB));
+        BufferedImage scaled = wabitImage.getScaledImage(20, 10, null);
+        wabitImage.setImage(new BufferedImage(300, 100, BufferedImage.TYPE_INT_ARGB));
+        assertNotSame(scaled, wabitImage.getScaledImage(20, 10, null));
+        
+        wabitImage.setImage(null);
+        assertNull(wabitImage.getScaledImage(20, 10, null));
+    }
+
 }
@@ -20,7 +20,14 @@
 package ca.sqlpower.wabit.query;
 
 import java.beans.PropertyChangeEvent;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import ca.sqlpower.object.SPChildEvent;
 import ca.sqlpower.query.Container;
@@ -30,10 +37,15 @@ import ca.sqlpower.query.QueryChangeAdapter;
 import ca.sqlpower.query.SQLJoin;
 import ca.sqlpower.query.SQLObjectItem;
 import ca.sqlpower.query.StringItem;
+import ca.sqlpower.sql.JDBCDataSource;
 import ca.sqlpower.wabit.AbstractWabitObjectTest;
 import ca.sqlpower.wabit.CountingWabitListener;
 import ca.sqlpower.wabit.StubWabitSessionContext;
 import ca.sqlpower.wabit.WabitObject;
+import ca.sqlpower.wabit.rs.ResultSetEvent;
+import ca.sqlpower.wabit.rs.ResultSetHandle;
+import ca.sqlpower.wabit.rs.ResultSetHandle.ResultSetStatus;
+import ca.sqlpower.wabit.rs.ResultSetListener;
 import ca.sqlpower.wabit.rs.query.QueryCache;
 import ca.sqlpower.wabit.rs.query.WabitContainer;
 import ca.sqlpower.wabit.rs.query.WabitItem;
@@ -56,8 +68,46 @@ public class QueryCacheTest extends AbstractWabitObjectTest {
         }
 	}
 	
+	/**
+	 * Records the executions of a query cache's statement. The latches count
+	 * down once for each execution that starts and completes.
+	 */
+	private static class RecordingResultSetListener implements ResultSetListener {
+		
+		private final List<ResultSetHandle> startedHandles = 
+			Collections.synchronizedList(new ArrayList<ResultSetHandle>());
+		
+		private final CountDownLatch started;
+		
+		private final CountDownLatch completed;
+		
+		RecordingResultSetListener(int executions) {
+			started = new CountDownLatch(executions);
+			completed = new CountDownLatch(executions);
+		}
+		
+		public void executionStarted(ResultSetEvent evt) {
+			startedHandles.add(evt.getSourceHandle());
+			started.countDown();
+		}
+		
+		public void newData(ResultSetEvent evt) {
+			// only the start and end of the executions are checked
+		}
+		
+		public void executionComplete(ResultSetEvent evt) {
+			completed.countDown();
+		}
+	}
+	
 	private QueryCache queryCache;
 	
+	/**
+	 * True if a test created the preview_test table, which is dropped when
+	 * the test is done.
+	 */
+	private boolean previewTableCreated = false;
+	
 	@Override
 	public Set<String> getPropertiesToIgnoreForEvents() {
 		Set<String> ignorable = super.getPropertiesToIgnoreForEvents();
@@ -132,6 +182,52 @@ public class QueryCacheTest extends AbstractWabitObjectTest {
 		getWorkspace().addQuery(queryCache, getWorkspace().getSession());
 	}
 	
+	@Override
+	protected void tearDown() throws Exception {
+		if (previewTableCreated) {
+			Connection con = getRegressionDataSource().createConnection();
+			Statement stmt = con.createStatement();
+			try {
+				stmt.execute("drop table preview_test");
+			} finally {
+				stmt.close();
+				con.close();
+			}
+		}
+		super.tearDown();
+	}
+	
+	private JDBCDataSource getRegressionDataSource() {
+		return (JDBCDataSource) getSession().getDataSources().getDataSource("regression_test");
+	}
+
+	/**
+	 * Creates a table with the ids 1 to 100 and sets the query cache to
+	 * select them with the given limits.
+	 */
+	private void selectFromPreviewTable(int rowLimit, int previewRowLimit, 
+			boolean fullResultsAfterPreview) throws Exception {
+		JDBCDataSource ds = getRegressionDataSource();
+		Connection con = ds.createConnection();
+		Statement stmt = con.createStatement();
+		try {
+			stmt.execute("create table preview_test (id integer)");
+			previewTableCreated = true;
+			for (int id = 1; id <= 100; id++) {
+				stmt.execute("insert into preview_test (id) values (" + id + ")");
+			}
+		} finally {
+			stmt.close();
+			con.close();
+		}
+		
+		queryCache.setDataSource(ds);
+		queryCache.setUserModifiedQuery("select id from preview_test");
+		queryCache.setRowLimit(rowLimit);
+		queryCache.setPreviewRowLimit(previewRowLimit);
+		queryCache.setFullResultsAfterPreview(fullResultsAfterPreview);
+	}
+	
 	@Override
 	public WabitObject getObjectUnderTest() {
 	    return queryCache;
@@ -148,6 +244,108 @@ public class QueryCacheTest extends AbstractWabitObjectTest {
 		assertEquals(1, listener.getChangeCount());
 	}
 
+	/**
+	 * Tests the generated query is only regenerated after the query changes
+	 * and that each change increases the revision.
+	 */
+	public void testGeneratedQueryFollowsRevision() throws Exception {
+		Container container = new ItemContainer("container");
+		Item item = new StringItem("ItemName");
+		container.addItem(item);
+		queryCache.addTable(container);
+		queryCache.selectItem(item);
+		
+		long revision = queryCache.getRevision();
+		String sql = queryCache.generateQuery();
+		assertSame(sql, queryCache.generateQuery());
+		assertSame(sql, queryCache.getStatement());
+		assertEquals(revision, queryCache.getRevision());
+		
+		item.setAlias("Alias test");
+		assertTrue(queryCache.getRevision() > revision);
+		String aliasedSql = queryCache.generateQuery();
+		assertTrue(aliasedSql.contains("Alias test"));
+		assertSame(aliasedSql, queryCache.generateQuery());
+	}
+
+	/**
+	 * Tests a copy of a query cache is executed the same way as the original,
+	 * with the same partitioning and preview.
+	 */
+	public void testCopyKeepsExecutionSettings() throws Exception {
+		queryCache.setPartitionColumn("id");
+		queryCache.setPartitionCount(8);
+		queryCache.setPartitionOrdered(false);
+		queryCache.setPreviewRowLimit(50);
+		queryCache.setFullResultsAfterPreview(false);
+		
+		QueryCache copy = new QueryCache(queryCache);
+		assertEquals("id", copy.getPartitionColumn());
+		assertEquals(8, copy.getPartitionCount());
+		assertFalse(copy.isPartitionOrdered());
+		assertEquals(50, copy.getPreviewRowLimit());
+		assertFalse(copy.isFullResultsAfterPreview());
+		
+		// nothing has been executed yet so there is nothing to stop
+		copy.cancelStatement();
+		assertNull(copy.getInternalHandle());
+	}
+
+	/**
+	 * Tests the preview of a query without a row limit stops at the preview
+	 * row limit.
+	 */
+	public void testPreviewStopsAtPreviewRowLimit() throws Exception {
+		selectFromPreviewTable(0, 10, false);
+		
+		queryCache.executeStatement();
+		ResultSetHandle preview = queryCache.getInternalHandle();
+		assertEquals(ResultSetStatus.SUCCESS, preview.getStatus());
+		assertEquals(10, preview.getCursor().getRowCount());
+	}
+
+	/**
+	 * Tests the full results fetched after a preview replace the preview as
+	 * the internal handle once they have succeeded.
+	 */
+	public void testFullResultsReplacePreview() throws Exception {
+		selectFromPreviewTable(0, 10, true);
+		RecordingResultSetListener listener = new RecordingResultSetListener(2);
+		queryCache.setResultSetListener(listener);
+		
+		queryCache.executeStatement();
+		ResultSetHandle preview = queryCache.getInternalHandle();
+		assertEquals(10, preview.getCursor().getRowCount());
+		
+		assertTrue(listener.completed.await(30, TimeUnit.SECONDS));
+		ResultSetHandle fullResults = queryCache.getInternalHandle();
+		assertNotSame(preview, fullResults);
+		assertEquals(ResultSetStatus.SUCCESS, fullResults.getStatus());
+		assertEquals(100, fullResults.getCursor().getRowCount());
+	}
+
+	/**
+	 * Tests cancelling the statement cancels both the preview and the
+	 * execution of the full results that follows it.
+	 */
+	public void testCancelStatementCancelsPreviewAndFullResults() throws Exception {
+		selectFromPreviewTable(0, 10, true);
+		RecordingResultSetListener listener = new RecordingResultSetListener(2);
+		queryCache.setResultSetListener(listener);
+		
+		queryCache.executeStatement();
+		ResultSetHandle preview = queryCache.getInternalHandle();
+		assertTrue(listener.started.await(30, TimeUnit.SECONDS));
+		assertEquals(2, listener.startedHandles.size());
+		ResultSetHandle fullResults = listener.startedHandles.get(0) == preview ? 
+				listener.startedHandles.get(1) : listener.startedHandles.get(0);
+		assertNotSame(preview, fullResults);
+		
+		queryCache.cancelStatement();
+		assertTrue(preview.getCancellationToken().isCancelled());
+		assertTrue(fullResults.getCancellationToken().isCancelled());
+	}
+
 	/**
 	 * Tests adding a {@link Container} to a query cache adds a corresponding
 	 * {@link WabitContainer} and its contained {@link Item}s as
@@ -87,4 +87,47 @@ public class CellSetRendererTest extends AbstractWabitObjectTest {
         return renderer;
     }
 
+    /**
+     * Places a new renderer of the query in a content box of a report that
+     * is already in the workspace.
+     */
+    private CellSetRenderer addRendererToWorkspace() {
+        Report report = new Report("workspace report");
+        getWorkspace().addReport(report);
+        ContentBox contentBox = new ContentBox();
+        report.getPage().addContentBox(contentBox);
+        CellSetRenderer workspaceRenderer = new CellSetRenderer(query);
+        contentBox.setContentRenderer(workspaceRenderer);
+        return workspaceRenderer;
+    }
+
+    /**
+     * A renderer placed in a workspace must have the query it displays as
+     * its child so the query is persisted with it.
+     */
+    public void testSnapshotQueryAddedInWorkspace() throws Exception {
+        CellSetRenderer workspaceRenderer = addRendererToWorkspace();
+        
+        assertEquals(1, workspaceRenderer.getChildren().size());
+        OlapQuery child = (OlapQuery) workspaceRenderer.getChildren().get(0);
+        assertNotSame(query, child);
+        assertEquals(query.getName(), child.getName());
+        assertSame(child, workspaceRenderer.getModifiedOlapQuery());
+        assertSame(child, workspaceRenderer.getDisplayedOlapQuery());
+    }
+
+    /**
+     * Saving a renderer that is not in a workspace more than once must save
+     * the same query each time, without adding it as a child.
+     */
+    public void testDisplayedQueryKeepsUUID() throws Exception {
+        CellSetRenderer copy = new CellSetRenderer(addRendererToWorkspace());
+        
+        OlapQuery displayed = copy.getDisplayedOlapQuery();
+        assertNotNull(displayed);
+        assertEquals(displayed.getUUID(), copy.getDisplayedOlapQuery().getUUID());
+        assertTrue(copy.getChildren().isEmpty());
+        assertNull(copy.getModifiedOlapQuery());
+    }
+
 }
@@ -47,6 +47,7 @@ import ca.sqlpower.wabit.AbstractWabitObjectTest;
 import ca.sqlpower.wabit.OlapConnectionProvider;
 import ca.sqlpower.wabit.WabitObject;
 import ca.sqlpower.wabit.rs.olap.OlapConnectionPool;
+import ca.sqlpower.wabit.rs.olap.OlapMetadataCache;
 import ca.sqlpower.wabit.rs.olap.OlapQuery;
 import ca.sqlpower.wabit.rs.olap.WabitOlapAxis;
 import ca.sqlpower.wabit.rs.olap.WabitOlapDimension;
@@ -119,6 +120,10 @@ public class ResultSetRendererOlapTest extends AbstractWabitObjectTest {
     			OlapConnectionPool pool = new OlapConnectionPool(ds, dbMapping);
     			return pool.getConnection();
     		}
+    		public OlapMetadataCache getMetadataCache(Olap4jDataSource dataSource) {
+    		    return new OlapMetadataCache();
+    		}
+    		
     		public PreparedOlapStatement createPreparedStatement(
     	    		Olap4jDataSource dataSource, String mdx, SPVariableHelper helper) 
     	    {
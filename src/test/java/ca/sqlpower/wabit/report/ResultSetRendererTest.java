@@ -57,6 +57,7 @@ import ca.sqlpower.wabit.WabitObject;
 import ca.sqlpower.wabit.report.ColumnInfo.GroupAndBreak;
 import ca.sqlpower.wabit.report.resultset.ResultSetCell;
 import ca.sqlpower.wabit.rs.olap.OlapConnectionPool;
+import ca.sqlpower.wabit.rs.olap.OlapMetadataCache;
 import ca.sqlpower.wabit.rs.olap.OlapQuery;
 import ca.sqlpower.wabit.rs.olap.WabitOlapAxis;
 import ca.sqlpower.wabit.rs.olap.WabitOlapDimension;
@@ -146,6 +147,10 @@ public class ResultSetRendererTest extends AbstractWabitObjectTest {
     			OlapConnectionPool pool = new OlapConnectionPool(ds, dbMapping);
     			return pool.getConnection();
     		}
+    		public OlapMetadataCache getMetadataCache(Olap4jDataSource dataSource) {
+    		    return new OlapMetadataCache();
+    		}
+    		
     		public PreparedOlapStatement createPreparedStatement(
     	    		Olap4jDataSource dataSource, String mdx, SPVariableHelper helper) 
     	    {
@@ -482,6 +487,10 @@ public class ResultSetRendererTest extends AbstractWabitObjectTest {
     			return pool.getConnection();
     		}
     		
+    		public OlapMetadataCache getMetadataCache(Olap4jDataSource dataSource) {
+    		    return new OlapMetadataCache();
+    		}
+    		
     		public PreparedOlapStatement createPreparedStatement(
     	    		Olap4jDataSource dataSource, String mdx, SPVariableHelper helper) 
     	    {
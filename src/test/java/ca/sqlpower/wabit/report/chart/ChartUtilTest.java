@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.report.chart;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.wabit.report.chart.ChartColumn.DataType;
+
+public class ChartUtilTest extends TestCase {
+    
+    private List<ChartColumn> categoryColumns;
+    private List<ChartColumn> seriesColumns;
+    
+    @Override
+    protected void setUp() throws Exception {
+        categoryColumns = Collections.singletonList(new ChartColumn("category", DataType.TEXT));
+        seriesColumns = Collections.singletonList(new ChartColumn("series", DataType.NUMERIC));
+    }
+
+    /**
+     * Tests that the aggregating query groups the rows of the query it wraps
+     * in the database and returns them in the order of their categories.
+     */
+    public void testAggregateQueryGroupsRows() throws Exception {
+        PlDotIni plIni = new PlDotIni();
+        plIni.read(new File("src/test/resources/pl.regression.ini"));
+        JDBCDataSource ds = plIni.getDataSource("regression_test", JDBCDataSource.class);
+        Connection con = ds.createConnection();
+        Statement stmt = con.createStatement();
+        try {
+            stmt.execute("create table graph_test (category varchar(50), series integer)");
+            stmt.execute("insert into graph_test (category, series) values ('b', 5)");
+            stmt.execute("insert into graph_test (category, series) values ('a', 10)");
+            stmt.execute("insert into graph_test (category, series) values ('a', 30)");
+            
+            String sql = ChartUtil.createAggregateQuery(
+                    "select category, series from graph_test -- all rows;", 
+                    categoryColumns, seriesColumns, ChartAggregate.AVG);
+            assertNotNull(sql);
+            ResultSet rs = stmt.executeQuery(sql);
+            assertTrue(rs.next());
+            assertEquals("a", rs.getString("category"));
+            assertEquals(20, rs.getInt("series"));
+            assertTrue(rs.next());
+            assertEquals("b", rs.getString("category"));
+            assertEquals(5, rs.getInt("series"));
+            assertFalse(rs.next());
+            rs.close();
+        } finally {
+            stmt.execute("drop table graph_test");
+            stmt.close();
+            con.close();
+        }
+    }
+    
+    public void testAggregateQueryNeedsSingleSelect() throws Exception {
+        assertNull(ChartUtil.createAggregateQuery("delete from graph_test", 
+                categoryColumns, seriesColumns, ChartAggregate.SUM));
+        assertNull(ChartUtil.createAggregateQuery("select * from a; select * from b", 
+                categoryColumns, seriesColumns, ChartAggregate.SUM));
+        assertNull(ChartUtil.createAggregateQuery("selection", 
+                categoryColumns, seriesColumns, ChartAggregate.SUM));
+    }
+    
+    /**
+     * Queries with an order of their own are aggregated by the chart so the
+     * categories keep that order.
+     */
+    public void testAggregateQueryKeepsQueryOrder() throws Exception {
+        assertNull(ChartUtil.createAggregateQuery("select * from graph_test order by series desc", 
+                categoryColumns, seriesColumns, ChartAggregate.SUM));
+        assertNull(ChartUtil.createAggregateQuery("SELECT * FROM graph_test\nORDER\nBY category", 
+                categoryColumns, seriesColumns, ChartAggregate.SUM));
+        assertNotNull(ChartUtil.createAggregateQuery("select * from border_by_test", 
+                categoryColumns, seriesColumns, ChartAggregate.SUM));
+    }
+    
+    public void testAggregateQueryNeedsSimpleColumnNames() throws Exception {
+        List<ChartColumn> quotedColumns = 
+            Collections.singletonList(new ChartColumn("total sales", DataType.NUMERIC));
+        assertNull(ChartUtil.createAggregateQuery("select * from graph_test", 
+                categoryColumns, quotedColumns, ChartAggregate.SUM));
+    }
+    
+    public void testAggregateQueryNeedsCategoryAndSeries() throws Exception {
+        List<ChartColumn> noColumns = Collections.emptyList();
+        assertNull(ChartUtil.createAggregateQuery("select * from graph_test", 
+                noColumns, seriesColumns, ChartAggregate.SUM));
+        assertNull(ChartUtil.createAggregateQuery("select * from graph_test", 
+                categoryColumns, noColumns, ChartAggregate.SUM));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.report.chart;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.xy.XYDataset;
+
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.wabit.benchmark.Benchmark;
+import ca.sqlpower.wabit.report.chart.ChartColumn.DataType;
+import ca.sqlpower.wabit.rs.WabitCachedRowSet;
+
+/**
+ * Times building a category dataset and an XY dataset with
+ * {@link DatasetUtil} at 1k, 10k and 100k categories. Each category appears
+ * in two rows of the result set, and the x values of the rows are not in
+ * order. The rows are created in the regression test database. Run the main
+ * method from the project directory; each measurement is made with
+ * {@link Benchmark#measure(int, int)}.
+ */
+public class DatasetUtilBenchmark {
+
+    private static final int[] CATEGORY_COUNTS = new int[] { 1000, 10000, 100000 };
+
+    private static final int WARMUP_RUNS = 3;
+
+    private static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        PlDotIni plIni = new PlDotIni();
+        plIni.read(new File("src/test/resources/pl.regression.ini"));
+        JDBCDataSource ds = plIni.getDataSource("regression_test", JDBCDataSource.class);
+
+        final List<ChartColumn> columnNamesInOrder = new ArrayList<ChartColumn>();
+        ChartColumn category = new ChartColumn("category", DataType.TEXT);
+        ChartColumn x = new ChartColumn("x", DataType.NUMERIC);
+        ChartColumn amount = new ChartColumn("amount", DataType.NUMERIC);
+        ChartColumn quantity = new ChartColumn("quantity", DataType.NUMERIC);
+        columnNamesInOrder.add(category);
+        columnNamesInOrder.add(x);
+        columnNamesInOrder.add(amount);
+        columnNamesInOrder.add(quantity);
+        category.setRoleInChart(ColumnRole.CATEGORY);
+        x.setRoleInChart(ColumnRole.NONE);
+        amount.setRoleInChart(ColumnRole.SERIES);
+        amount.setXAxisIdentifier(x);
+        quantity.setRoleInChart(ColumnRole.SERIES);
+        quantity.setXAxisIdentifier(x);
+        final List<ChartColumn> categoryColumns = Collections.singletonList(category);
+
+        for (final int categoryCount : CATEGORY_COUNTS) {
+            final WabitCachedRowSet rs = createRowSet(ds, categoryCount);
+
+            Benchmark categoryBenchmark = new Benchmark(categoryCount + " categories, category dataset") {
+                @Override
+                protected Object run() throws Exception {
+                    CategoryDataset categoryDataset = 
+                        DatasetUtil.createCategoryDataset(columnNamesInOrder, rs, categoryColumns);
+                    if (categoryDataset.getColumnCount() != categoryCount) {
+                        throw new IllegalStateException("Expected " + categoryCount + 
+                                " categories but there were " + categoryDataset.getColumnCount());
+                    }
+                    return categoryDataset;
+                }
+            };
+            System.out.println(categoryBenchmark.measure(WARMUP_RUNS, MEASURED_RUNS));
+
+            Benchmark xyBenchmark = new Benchmark(categoryCount + " categories, XY dataset") {
+                @Override
+                protected Object run() throws Exception {
+                    XYDataset xyDataset = DatasetUtil.createSeriesCollection(columnNamesInOrder, rs);
+                    if (xyDataset.getItemCount(0) != categoryCount * 2) {
+                        throw new IllegalStateException("Expected " + (categoryCount * 2) + 
+                                " points but there were " + xyDataset.getItemCount(0));
+                    }
+                    return xyDataset;
+                }
+            };
+            System.out.println(xyBenchmark.measure(WARMUP_RUNS, MEASURED_RUNS));
+        }
+    }
+
+    private static WabitCachedRowSet createRowSet(JDBCDataSource ds, int categoryCount) throws SQLException {
+        Connection con = ds.createConnection();
+        Statement stmt = con.createStatement();
+        try {
+            stmt.execute("create table dataset_benchmark " +
+                    "(category varchar(20), x integer, amount double, quantity integer)");
+            PreparedStatement insert = con.prepareStatement(
+                    "insert into dataset_benchmark (category, x, amount, quantity) values (?, ?, ?, ?)");
+            int rowCount = categoryCount * 2;
+            for (int i = 0; i < rowCount; i++) {
+                insert.setString(1, "category " + (i % categoryCount));
+                insert.setInt(2, (int) ((i * 7919L) % rowCount));
+                insert.setDouble(3, i * 0.5);
+                insert.setInt(4, i % 7);
+                insert.addBatch();
+                if (i % 1000 == 999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+            insert.close();
+            WabitCachedRowSet rs = new WabitCachedRowSet();
+            rs.populate(stmt.executeQuery("select category, x, amount, quantity from dataset_benchmark"));
+            return rs;
+        } finally {
+            stmt.execute("drop table dataset_benchmark");
+            stmt.close();
+            con.close();
+        }
+    }
+}
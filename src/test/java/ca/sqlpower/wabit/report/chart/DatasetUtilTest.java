@@ -21,19 +21,23 @@ package ca.sqlpower.wabit.report.chart;
 
 import java.io.File;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import junit.framework.TestCase;
 
 import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.xy.XYDataset;
 
 import ca.sqlpower.sql.CachedRowSet;
 import ca.sqlpower.sql.JDBCDataSource;
 import ca.sqlpower.sql.PlDotIni;
 import ca.sqlpower.wabit.report.chart.ChartColumn.DataType;
+import ca.sqlpower.wabit.rs.CancellationToken;
 
 /**
  * Tests for the dataset utilities in DatasetUtil.
@@ -140,4 +144,122 @@ public class DatasetUtilTest extends TestCase {
         assertEquals(30, dataset.getValue("series", row3ColKey).intValue());
     }
     
+    /**
+     * Tests that categories repeated across many rows are summed correctly
+     * when there are more categories than the threshold where the indexed
+     * dataset is used.
+     */
+    public void testCreateCategoryDatasetWithManyCategories() throws Exception {
+        int categoryCount = DatasetUtil.INDEXED_DATASET_THRESHOLD * 2;
+        Connection con = ds.createConnection();
+        Statement stmt = con.createStatement();
+        stmt.execute("create table graph_test (category varchar(50), series integer)");
+        PreparedStatement insert = con.prepareStatement(
+                "insert into graph_test (category, series) values (?, ?)");
+        for (int i = 0; i < categoryCount * 2; i++) {
+            insert.setString(1, "c" + (i % categoryCount));
+            insert.setInt(2, i);
+            insert.executeUpdate();
+        }
+        insert.close();
+        CachedRowSet rs = new CachedRowSet();
+        rs.populate(stmt.executeQuery("select category, series from graph_test"));
+        stmt.execute("drop table graph_test");
+        stmt.close();
+        con.close();
+        
+        List<ChartColumn> columnNamesInOrder = new ArrayList<ChartColumn>(); 
+        final ChartColumn categoryIdentifier = new ChartColumn("category", DataType.TEXT);
+        final ChartColumn seriesIdentifier = new ChartColumn("series", DataType.NUMERIC);
+        columnNamesInOrder.add(categoryIdentifier);
+        columnNamesInOrder.add(seriesIdentifier);
+        categoryIdentifier.setRoleInChart(ColumnRole.CATEGORY);
+        seriesIdentifier.setRoleInChart(ColumnRole.SERIES);
+        CategoryDataset dataset = DatasetUtil.createCategoryDataset(
+                columnNamesInOrder, rs, Collections.singletonList(categoryIdentifier));
+        
+        assertEquals(categoryCount, dataset.getColumnCount());
+        assertEquals(1, dataset.getRowCount());
+        for (int i = 0; i < categoryCount; i++) {
+            assertEquals("c" + i, dataset.getColumnKey(dataset.getColumnIndex("c" + i)));
+            assertEquals(i + i + categoryCount, dataset.getValue("series", "c" + i).intValue());
+        }
+    }
+
+    /**
+     * Tests that an XY series is created in x order when the rows of the
+     * result set are not sorted.
+     */
+    public void testCreateSeriesCollectionSortsUnorderedRows() throws Exception {
+        Connection con = ds.createConnection();
+        Statement stmt = con.createStatement();
+        stmt.execute("create table graph_test (x integer, y integer)");
+        stmt.execute("insert into graph_test (x, y) values (3, 30)");
+        stmt.execute("insert into graph_test (x, y) values (1, 10)");
+        stmt.execute("insert into graph_test (x, y) values (2, 20)");
+        CachedRowSet rs = new CachedRowSet();
+        rs.populate(stmt.executeQuery("select x, y from graph_test"));
+        stmt.execute("drop table graph_test");
+        stmt.close();
+        con.close();
+        
+        List<ChartColumn> columnNamesInOrder = new ArrayList<ChartColumn>(); 
+        final ChartColumn xIdentifier = new ChartColumn("x", DataType.NUMERIC);
+        final ChartColumn yIdentifier = new ChartColumn("y", DataType.NUMERIC);
+        columnNamesInOrder.add(xIdentifier);
+        columnNamesInOrder.add(yIdentifier);
+        xIdentifier.setRoleInChart(ColumnRole.NONE);
+        yIdentifier.setRoleInChart(ColumnRole.SERIES);
+        yIdentifier.setXAxisIdentifier(xIdentifier);
+        XYDataset dataset = DatasetUtil.createSeriesCollection(columnNamesInOrder, rs);
+        
+        assertEquals(1, dataset.getSeriesCount());
+        assertEquals(3, dataset.getItemCount(0));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, dataset.getX(0, i).intValue());
+            assertEquals((i + 1) * 10, dataset.getY(0, i).intValue());
+        }
+    }
+
+    /**
+     * Tests that each aggregate combines the values of rows in the same
+     * category and ignores null values.
+     */
+    public void testCreateCategoryDatasetWithAggregates() throws Exception {
+        Connection con = ds.createConnection();
+        Statement stmt = con.createStatement();
+        stmt.execute("create table graph_test (category varchar(50), series integer)");
+        stmt.execute("insert into graph_test (category, series) values ('a', 10)");
+        stmt.execute("insert into graph_test (category, series) values ('a', 30)");
+        stmt.execute("insert into graph_test (category, series) values ('a', null)");
+        stmt.execute("insert into graph_test (category, series) values ('b', 5)");
+        CachedRowSet rs = new CachedRowSet();
+        rs.populate(stmt.executeQuery("select category, series from graph_test"));
+        stmt.execute("drop table graph_test");
+        stmt.close();
+        con.close();
+        
+        List<ChartColumn> columnNamesInOrder = new ArrayList<ChartColumn>(); 
+        final ChartColumn categoryIdentifier = new ChartColumn("category", DataType.TEXT);
+        final ChartColumn seriesIdentifier = new ChartColumn("series", DataType.NUMERIC);
+        columnNamesInOrder.add(categoryIdentifier);
+        columnNamesInOrder.add(seriesIdentifier);
+        categoryIdentifier.setRoleInChart(ColumnRole.CATEGORY);
+        seriesIdentifier.setRoleInChart(ColumnRole.SERIES);
+        List<ChartColumn> categoryColumns = Collections.singletonList(categoryIdentifier);
+        
+        double[][] expected = new double[][] {
+                { 40, 5 }, { 20, 5 }, { 10, 5 }, { 30, 5 }, { 2, 1 } };
+        ChartAggregate[] aggregates = new ChartAggregate[] { ChartAggregate.SUM, 
+                ChartAggregate.AVG, ChartAggregate.MIN, ChartAggregate.MAX, ChartAggregate.COUNT };
+        for (int i = 0; i < aggregates.length; i++) {
+            CategoryDataset dataset = DatasetUtil.createCategoryDataset(columnNamesInOrder, 
+                    rs, categoryColumns, aggregates[i], new CancellationToken());
+            assertEquals(aggregates[i].name(), expected[i][0], 
+                    dataset.getValue("series", "a").doubleValue());
+            assertEquals(aggregates[i].name(), expected[i][1], 
+                    dataset.getValue("series", "b").doubleValue());
+        }
+    }
+    
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.report.chart;
+
+import junit.framework.TestCase;
+
+import org.jfree.data.xy.XYDataset;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+
+public class DownsamplerTest extends TestCase {
+    
+    private double[] x;
+    private double[] y;
+    
+    @Override
+    protected void setUp() throws Exception {
+        x = new double[10000];
+        y = new double[10000];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = i;
+            y[i] = Math.sin(i / 100.0);
+        }
+        y[5003] = 50;
+        y[7001] = -50;
+    }
+    
+    public void testLargestTriangleKeepsEnds() throws Exception {
+        int[] selected = Downsampler.largestTriangleThreeBuckets(x, y, 100);
+        assertEquals(100, selected.length);
+        assertEquals(0, selected[0]);
+        assertEquals(x.length - 1, selected[selected.length - 1]);
+        for (int i = 1; i < selected.length; i++) {
+            assertTrue(selected[i - 1] < selected[i]);
+        }
+    }
+    
+    public void testLargestTriangleKeepsSpikes() throws Exception {
+        int[] selected = Downsampler.largestTriangleThreeBuckets(x, y, 100);
+        assertTrue(contains(selected, 5003));
+        assertTrue(contains(selected, 7001));
+    }
+    
+    public void testMinMaxKeepsExtremes() throws Exception {
+        int[] selected = Downsampler.minMax(y, 100);
+        assertTrue(selected.length <= 100);
+        assertEquals(0, selected[0]);
+        assertEquals(x.length - 1, selected[selected.length - 1]);
+        assertTrue(contains(selected, 5003));
+        assertTrue(contains(selected, 7001));
+        for (int i = 1; i < selected.length; i++) {
+            assertTrue(selected[i - 1] < selected[i]);
+        }
+    }
+    
+    public void testFewPointsAreKept() throws Exception {
+        assertNull(Downsampler.largestTriangleThreeBuckets(x, y, x.length));
+        assertNull(Downsampler.minMax(y, x.length));
+    }
+
+    /**
+     * Tests that downsampling an XY dataset keeps each series with no more
+     * than the maximum number of points and leaves small series alone.
+     */
+    public void testDownsampleDataset() throws Exception {
+        XYSeriesCollection dataset = new XYSeriesCollection();
+        XYSeries large = new XYSeries("large", false, true);
+        for (int i = 0; i < x.length; i++) {
+            large.add(x[i], y[i]);
+        }
+        dataset.addSeries(large);
+        XYSeries small = new XYSeries("small", false, true);
+        small.add(1, 2);
+        small.add(3, 4);
+        dataset.addSeries(small);
+        
+        XYDataset sampled = ChartUtil.downsample(dataset, ChartDownsampling.LARGEST_TRIANGLE, 200);
+        assertEquals(2, sampled.getSeriesCount());
+        assertEquals("large", sampled.getSeriesKey(0));
+        assertEquals(200, sampled.getItemCount(0));
+        assertEquals(2, sampled.getItemCount(1));
+        assertEquals(50.0, sampled.getYValue(0, indexOfX(sampled, 5003)));
+        
+        assertSame(dataset, ChartUtil.downsample(dataset, ChartDownsampling.NONE, 200));
+        assertSame(dataset, ChartUtil.downsample(dataset, ChartDownsampling.MIN_MAX, x.length));
+    }
+    
+    private static boolean contains(int[] selected, int index) {
+        for (int i : selected) {
+            if (i == index) return true;
+        }
+        return false;
+    }
+    
+    private static int indexOfX(XYDataset dataset, double xValue) {
+        for (int i = 0; i < dataset.getItemCount(0); i++) {
+            if (dataset.getXValue(0, i) == xValue) return i;
+        }
+        fail("No point at x = " + xValue);
+        return -1;
+    }
+}
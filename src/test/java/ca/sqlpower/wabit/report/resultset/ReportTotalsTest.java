@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.wabit.report.resultset;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.wabit.report.ColumnInfo;
+import ca.sqlpower.wabit.report.DataType;
+import ca.sqlpower.wabit.report.ColumnInfo.GroupAndBreak;
+import ca.sqlpower.wabit.rs.ResultSetCursor;
+import ca.sqlpower.wabit.rs.WabitCachedRowSet;
+
+public class ReportTotalsTest extends TestCase {
+
+    /**
+     * A row set that can hide its last rows to act like a streaming result
+     * set that has not received all of its rows yet.
+     */
+    private static class GrowingRowSet extends WabitCachedRowSet {
+
+        private List<Object[]> allRows;
+
+        void setVisibleRowCount(int count) {
+            if (allRows == null) {
+                allRows = data;
+            }
+            data = new ArrayList<Object[]>(allRows.subList(0, count));
+        }
+    }
+
+    /**
+     * Rows of a section, a group, an integer amount and a decimal price,
+     * sorted by section and group.
+     */
+    private GrowingRowSet rs;
+
+    private List<ColumnInfo> columnInfoList;
+
+    @Override
+    protected void setUp() throws Exception {
+        PlDotIni plIni = new PlDotIni();
+        plIni.read(new File("src/test/resources/pl.regression.ini"));
+        JDBCDataSource ds = plIni.getDataSource("regression_test", JDBCDataSource.class);
+        Connection con = ds.createConnection();
+        Statement stmt = con.createStatement();
+        try {
+            stmt.execute("create table totals_test (section varchar(10), grp varchar(10), " +
+                    "amount integer, price decimal(10, 2))");
+            stmt.execute("insert into totals_test values ('s1', 'a', 1, 1.50)");
+            stmt.execute("insert into totals_test values ('s1', 'a', 2, 2.25)");
+            stmt.execute("insert into totals_test values ('s1', 'b', 3, null)");
+            stmt.execute("insert into totals_test values ('s2', 'b', 4, 4.00)");
+            rs = new GrowingRowSet();
+            rs.populate(stmt.executeQuery("select section, grp, amount, price from totals_test " +
+                    "order by section, grp"));
+        } finally {
+            stmt.execute("drop table totals_test");
+            stmt.close();
+            con.close();
+        }
+
+        columnInfoList = new ArrayList<ColumnInfo>();
+        ColumnInfo section = new ColumnInfo("section");
+        section.setDataType(DataType.TEXT);
+        section.setWillGroupOrBreak(GroupAndBreak.BREAK);
+        columnInfoList.add(section);
+        ColumnInfo group = new ColumnInfo("grp");
+        group.setDataType(DataType.TEXT);
+        group.setWillGroupOrBreak(GroupAndBreak.GROUP);
+        columnInfoList.add(group);
+        ColumnInfo amount = new ColumnInfo("amount");
+        amount.setDataType(DataType.NUMERIC);
+        amount.setWillSubtotal(true);
+        columnInfoList.add(amount);
+        ColumnInfo price = new ColumnInfo("price");
+        price.setDataType(DataType.NUMERIC);
+        price.setWillSubtotal(true);
+        columnInfoList.add(price);
+    }
+
+    private ReportTotals createTotals() throws Exception {
+        ResultSetCursor cursor = ResultSetCursor.create(rs);
+        ReportTotals totals = new ReportTotals(columnInfoList, cursor);
+        totals.update(cursor);
+        return totals;
+    }
+
+    public void testGrandTotals() throws Exception {
+        List<BigDecimal> grandTotals = createTotals().getGrandTotals();
+        assertNull(grandTotals.get(0));
+        assertNull(grandTotals.get(1));
+        assertEquals(10, grandTotals.get(2).intValue());
+        assertEquals(0, new BigDecimal("7.75").compareTo(grandTotals.get(3)));
+    }
+
+    public void testSectionAndGroupTotals() throws Exception {
+        ReportTotals totals = createTotals();
+
+        assertNull(totals.getGroupTotals(0, 1));
+        assertNull(totals.getSectionTotals(0));
+        assertEquals(3, totals.getGroupTotals(1, 1).get(2).intValue());
+        assertNull(totals.getGroupTotals(1, 2));
+
+        assertEquals(3, totals.getGroupTotals(2, 1).get(2).intValue());
+        List<BigDecimal> firstSection = totals.getSectionTotals(2);
+        assertEquals(6, firstSection.get(2).intValue());
+        assertEquals(0, new BigDecimal("3.75").compareTo(firstSection.get(3)));
+
+        assertEquals(4, totals.getGroupTotals(3, 1).get(2).intValue());
+        assertEquals(4, totals.getSectionTotals(3).get(2).intValue());
+    }
+
+    /**
+     * Totals updated with rows that were appended must be the same as totals
+     * calculated over all of the rows at once.
+     */
+    public void testIncrementalUpdate() throws Exception {
+        ReportTotals expected = createTotals();
+
+        rs.setVisibleRowCount(2);
+        ResultSetCursor cursor = ResultSetCursor.create(rs);
+        ReportTotals totals = new ReportTotals(columnInfoList, cursor);
+        totals.update(cursor);
+        assertEquals(2, totals.getRowCount());
+        assertEquals(3, totals.getSectionTotals(1).get(2).intValue());
+
+        rs.setVisibleRowCount(4);
+        totals.update(ResultSetCursor.create(rs));
+        assertEquals(4, totals.getRowCount());
+        assertEquals(expected.getGrandTotals(), totals.getGrandTotals());
+        for (int row = 0; row < 4; row++) {
+            assertEquals(expected.getSectionTotals(row), totals.getSectionTotals(row));
+            assertEquals(expected.getGroupTotals(row, 1), totals.getGroupTotals(row, 1));
+        }
+    }
+
+    public void testMatches() throws Exception {
+        ReportTotals totals = createTotals();
+        assertTrue(totals.matches(columnInfoList));
+        columnInfoList.get(2).setWillSubtotal(false);
+        assertFalse(totals.matches(columnInfoList));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.report.selectors;
+
+import java.util.Collections;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import ca.sqlpower.object.SPVariableResolver;
+import ca.sqlpower.wabit.report.ContentBox;
+import ca.sqlpower.wabit.report.Report;
+import ca.sqlpower.wabit.report.WabitLabel;
+
+public class SelectorDependenciesTest extends TestCase {
+
+    private Report report;
+    
+    private TextBoxSelector regionSelector;
+    
+    private TextBoxSelector yearSelector;
+    
+    private ContentBox regionBox;
+    
+    private ContentBox yearBox;
+    
+    private ContentBox staticBox;
+    
+    @Override
+    protected void setUp() throws Exception {
+        report = new Report("report");
+        regionSelector = new TextBoxSelector();
+        regionSelector.setName("region");
+        report.addChild(regionSelector, report.getSelectors().size());
+        yearSelector = new TextBoxSelector();
+        yearSelector.setName("year");
+        report.addChild(yearSelector, report.getSelectors().size());
+        
+        regionBox = new ContentBox();
+        regionBox.setContentRenderer(new WabitLabel("Sales for ${region}"));
+        report.getPage().addContentBox(regionBox);
+        
+        yearBox = new ContentBox();
+        yearBox.setContentRenderer(new WabitLabel("Sales in ${" + report.getUUID() + 
+                SPVariableResolver.NAMESPACE_DELIMITER + "year}"));
+        report.getPage().addContentBox(yearBox);
+        
+        staticBox = new ContentBox();
+        staticBox.setContentRenderer(new WabitLabel("Page ${page_number}"));
+        report.getPage().addContentBox(staticBox);
+    }
+    
+    public void testFindVariableReferences() throws Exception {
+        Set<String> variables = SelectorDependencies.findVariableReferences(
+                "select * from t where a = ${first} and b = ${ ns::second }");
+        assertEquals(2, variables.size());
+        assertTrue(variables.contains("first"));
+        assertTrue(variables.contains("ns::second"));
+        assertTrue(SelectorDependencies.findVariableReferences(null).isEmpty());
+    }
+    
+    /**
+     * Only the content referencing the changed selector, by its name or by
+     * its fully qualified key, should be affected.
+     */
+    public void testFindAffectedContent() throws Exception {
+        SelectorDependencies dependencies = new SelectorDependencies();
+        Set<ContentBox> affected = dependencies.findAffectedContent(report, 
+                Collections.<Selector>singleton(regionSelector));
+        assertEquals(Collections.singleton(regionBox), affected);
+        
+        affected = new SelectorDependencies().findAffectedContent(report, 
+                Collections.<Selector>singleton(yearSelector));
+        assertEquals(Collections.singleton(yearBox), affected);
+    }
+    
+    /**
+     * A selector in a content box must not affect content in other boxes,
+     * even if the content references a variable with the same name.
+     */
+    public void testContentBoxSelector() throws Exception {
+        TextBoxSelector boxSelector = new TextBoxSelector();
+        boxSelector.setName("region");
+        staticBox.addChild(boxSelector, 0);
+        
+        Set<ContentBox> affected = new SelectorDependencies().findAffectedContent(report, 
+                Collections.<Selector>singleton(boxSelector));
+        assertTrue(affected.isEmpty());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.rs;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class CancellationTokenTest extends TestCase {
+    
+    private CancellationToken token;
+    
+    /**
+     * Counts the number of times it was run.
+     */
+    private static class CountingAction implements Runnable {
+        private final AtomicInteger count = new AtomicInteger();
+        public void run() {
+            count.incrementAndGet();
+        }
+        public int getCount() {
+            return count.get();
+        }
+    }
+    
+    @Override
+    protected void setUp() throws Exception {
+        token = new CancellationToken();
+    }
+    
+    public void testCancelRunsActionsOnce() throws Exception {
+        CountingAction action = new CountingAction();
+        token.onCancel(action);
+        assertEquals(0, action.getCount());
+        
+        token.cancel();
+        token.cancel();
+        
+        assertTrue(token.isCancelled());
+        assertEquals(1, action.getCount());
+    }
+    
+    public void testActionAddedAfterCancelRunsImmediately() throws Exception {
+        token.cancel();
+        CountingAction action = new CountingAction();
+        token.onCancel(action);
+        assertEquals(1, action.getCount());
+    }
+    
+    public void testRemovedActionDoesNotRun() throws Exception {
+        CountingAction action = new CountingAction();
+        token.onCancel(action);
+        token.removeOnCancel(action);
+        token.cancel();
+        assertEquals(0, action.getCount());
+    }
+
+    /**
+     * A failing action must not stop the remaining actions from running.
+     */
+    public void testFailingActionDoesNotStopOthers() throws Exception {
+        token.onCancel(new Runnable() {
+            public void run() {
+                throw new IllegalStateException("Expected failure");
+            }
+        });
+        CountingAction action = new CountingAction();
+        token.onCancel(action);
+        token.cancel();
+        assertEquals(1, action.getCount());
+    }
+    
+    public void testThrowIfCancelled() throws Exception {
+        token.throwIfCancelled();
+        token.cancel();
+        try {
+            token.throwIfCancelled();
+            fail("A cancelled token should throw a cancellation exception");
+        } catch (CancellationException e) {
+            // expected
+        }
+    }
+}
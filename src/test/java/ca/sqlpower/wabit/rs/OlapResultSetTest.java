@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.rs;
+
+import java.io.File;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.olap4j.Axis;
+import org.olap4j.CellSet;
+import org.olap4j.OlapConnection;
+import org.olap4j.Position;
+import org.olap4j.metadata.Member;
+
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sql.Olap4jDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.sqlobject.SQLDatabase;
+import ca.sqlpower.sqlobject.SQLDatabaseMapping;
+import ca.sqlpower.wabit.rs.olap.OlapConnectionPool;
+import ca.sqlpower.wabit.rs.olap.RepeatedMember;
+
+public class OlapResultSetTest extends TestCase {
+    
+    private OlapConnection connection;
+    
+    private CellSet cellSet;
+    
+    @Override
+    protected void setUp() throws Exception {
+        PlDotIni plIni = new PlDotIni();
+        plIni.read(new File("src/test/resources/pl.regression.ini"));
+        Olap4jDataSource ds = plIni.getDataSource("World Facts OLAP Connection", Olap4jDataSource.class);
+        final SQLDatabase db = new SQLDatabase(ds.getDataSource());
+        OlapConnectionPool pool = new OlapConnectionPool(ds, new SQLDatabaseMapping() {
+            public SQLDatabase getDatabase(JDBCDataSource ds) {
+                return db;
+            }
+        });
+        connection = pool.getConnection();
+        cellSet = connection.createStatement().executeOlapQuery(
+                "SELECT {[Measures].[Population], [Measures].[Surface Area]} ON COLUMNS, " +
+                "Hierarchize({[Geography].[Continent].Members, [Geography].[Region].Members}) ON ROWS " +
+                "FROM [World Countries]");
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        connection.close();
+    }
+
+    /**
+     * Tests that each row holds the members of its rows axis position and
+     * the values of its cells.
+     */
+    public void testRowsMatchCellSet() throws Exception {
+        OlapResultSet rs = new OlapResultSet();
+        rs.populate(cellSet);
+        assertEquals(4, rs.getMetaData().getColumnCount());
+        assertEquals("Geography Continent", rs.getMetaData().getColumnName(1));
+        assertEquals("Geography Region", rs.getMetaData().getColumnName(2));
+        assertEquals("Population", rs.getMetaData().getColumnName(3));
+        
+        List<Position> columns = cellSet.getAxes().get(Axis.COLUMNS.axisOrdinal()).getPositions();
+        for (Position row : cellSet.getAxes().get(Axis.ROWS.axisOrdinal()).getPositions()) {
+            assertTrue(rs.next());
+            Member member = row.getMembers().get(0);
+            int memberColumn = member.getLevel().getName().equals("Continent") ? 1 : 2;
+            assertEquals(member.getName(), rs.getString(memberColumn));
+            for (int i = 0; i < columns.size(); i++) {
+                Number value = (Number) cellSet.getCell(columns.get(i), row).getValue();
+                if (value == null) {
+                    assertNull(rs.getObject(i + 3));
+                } else {
+                    assertEquals(value.doubleValue(), rs.getDouble(i + 3));
+                }
+            }
+        }
+        assertFalse(rs.next());
+    }
+
+    /**
+     * Tests that the continent of each region is repeated in the continent
+     * column with one shared wrapper for all of the regions of a continent.
+     */
+    public void testAncestorsAreRepeated() throws Exception {
+        OlapResultSet rs = new OlapResultSet();
+        rs.populate(cellSet);
+        RepeatedMember previousContinent = null;
+        int sharedCount = 0;
+        for (Position row : cellSet.getAxes().get(Axis.ROWS.axisOrdinal()).getPositions()) {
+            assertTrue(rs.next());
+            Member member = row.getMembers().get(0);
+            if (member.getLevel().getName().equals("Region")) {
+                RepeatedMember continent = (RepeatedMember) rs.getObject(1);
+                assertEquals(member.getParentMember(), continent.getMember());
+                if (previousContinent != null && previousContinent.equals(continent)) {
+                    assertSame(previousContinent, continent);
+                    sharedCount++;
+                }
+                previousContinent = continent;
+            }
+        }
+        assertTrue(sharedCount > 0);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.rs;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class QueryPartitioningTest extends TestCase {
+    
+    private static final String SQL = "select id, amount from orders;";
+    
+    public void testBoundsQueryWrapsQuery() throws Exception {
+        QueryPartitioning partitioning = new QueryPartitioning("id", 4, true);
+        assertEquals("SELECT MIN(id), MAX(id) FROM (\nselect id, amount from orders\n) partitioned_rows", 
+                partitioning.createBoundsQuery(SQL));
+    }
+    
+    public void testQueriesThatCannotBePartitioned() throws Exception {
+        assertNull(new QueryPartitioning("id", 4, true).createBoundsQuery(
+                "update orders set amount = 0"));
+        assertNull(new QueryPartitioning("id", 4, true).createBoundsQuery(
+                "select 1; select 2"));
+        assertNull(new QueryPartitioning("order id", 4, true).createBoundsQuery(SQL));
+    }
+    
+    public void testIntegerRangeSplitEvenly() throws Exception {
+        QueryPartitioning partitioning = new QueryPartitioning("id", 4, true);
+        assertEquals(Arrays.asList("26", "51", "76"), 
+                partitioning.createCutPoints(Integer.valueOf(1), Long.valueOf(100)));
+    }
+    
+    public void testSmallIntegerRangeHasFewerPartitions() throws Exception {
+        QueryPartitioning partitioning = new QueryPartitioning("id", 8, true);
+        assertEquals(Arrays.asList("2", "3"), 
+                partitioning.createCutPoints(Integer.valueOf(1), Integer.valueOf(3)));
+        assertTrue(partitioning.createCutPoints(Integer.valueOf(5), Integer.valueOf(5)).isEmpty());
+    }
+    
+    public void testDecimalRangeSplit() throws Exception {
+        QueryPartitioning partitioning = new QueryPartitioning("amount", 2, true);
+        assertEquals(Arrays.asList("1.25"), 
+                partitioning.createCutPoints(new BigDecimal("0.50"), Double.valueOf(2.0)));
+    }
+    
+    public void testDateRangeUsesEscapeSyntax() throws Exception {
+        QueryPartitioning partitioning = new QueryPartitioning("created", 2, true);
+        Timestamp min = Timestamp.valueOf("2009-01-01 00:00:00");
+        Timestamp max = Timestamp.valueOf("2009-01-02 23:59:59.999");
+        List<String> cutPoints = partitioning.createCutPoints(min, max);
+        assertEquals(Arrays.asList("{ts '2009-01-02 00:00:00.0'}"), cutPoints);
+    }
+    
+    public void testPartitionQueriesCoverEveryRow() throws Exception {
+        QueryPartitioning partitioning = new QueryPartitioning("id", 3, true);
+        List<String> queries = partitioning.createPartitionQueries(SQL, 
+                Integer.valueOf(0), Integer.valueOf(8));
+        String prefix = "SELECT * FROM (\nselect id, amount from orders\n) partitioned_rows WHERE ";
+        assertEquals(Arrays.asList(
+                prefix + "id < 3 OR id IS NULL",
+                prefix + "id >= 3 AND id < 6",
+                prefix + "id >= 6"), queries);
+    }
+    
+    public void testUnsplittableValuesExecuteWholeQuery() throws Exception {
+        QueryPartitioning partitioning = new QueryPartitioning("id", 3, true);
+        assertEquals(Arrays.asList(SQL), partitioning.createPartitionQueries(SQL, null, null));
+        assertEquals(Arrays.asList(SQL), partitioning.createPartitionQueries(SQL, "a", "z"));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.wabit.rs;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.wabit.benchmark.Benchmark;
+import ca.sqlpower.wabit.rs.ResultSetCursor.Column;
+
+/**
+ * Compares summing a column of a result set with the by-name
+ * {@link java.sql.ResultSet} getters to summing it with a
+ * {@link ResultSetCursor}, at 10k, 100k and 1M rows. The rows are created in
+ * the regression test database. Run the main method from the project
+ * directory; each measurement is made with {@link Benchmark#measure(int, int)}.
+ */
+public class ResultSetCursorBenchmark {
+
+    private static final int[] ROW_COUNTS = new int[] { 10000, 100000, 1000000 };
+
+    private static final int WARMUP_RUNS = 5;
+
+    private static final int MEASURED_RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        PlDotIni plIni = new PlDotIni();
+        plIni.read(new File("src/test/resources/pl.regression.ini"));
+        JDBCDataSource ds = plIni.getDataSource("regression_test", JDBCDataSource.class);
+
+        for (int rowCount : ROW_COUNTS) {
+            final WabitCachedRowSet rs = createRowSet(ds, rowCount);
+            final double expected = sumByName(rs);
+
+            Benchmark byName = new Benchmark(rowCount + " rows, by name") {
+                @Override
+                protected Object run() throws Exception {
+                    return check(expected, sumByName(rs));
+                }
+            };
+            Benchmark byCursor = new Benchmark(rowCount + " rows, cursor") {
+                @Override
+                protected Object run() throws Exception {
+                    return check(expected, sumByCursor(rs));
+                }
+            };
+            Benchmark byBlock = new Benchmark(rowCount + " rows, row blocks") {
+                @Override
+                protected Object run() throws Exception {
+                    return check(expected, sumByBlock(rs));
+                }
+            };
+            for (Benchmark benchmark : new Benchmark[] { byName, byCursor, byBlock }) {
+                System.out.println(benchmark.measure(WARMUP_RUNS, MEASURED_RUNS));
+            }
+        }
+    }
+
+    private static WabitCachedRowSet createRowSet(JDBCDataSource ds, int rowCount) throws SQLException {
+        Connection con = ds.createConnection();
+        Statement stmt = con.createStatement();
+        try {
+            stmt.execute("create table cursor_benchmark (category varchar(20), amount double, quantity integer)");
+            PreparedStatement insert = con.prepareStatement(
+                    "insert into cursor_benchmark (category, amount, quantity) values (?, ?, ?)");
+            for (int i = 0; i < rowCount; i++) {
+                insert.setString(1, "category " + (i % 100));
+                insert.setDouble(2, i * 0.5);
+                insert.setInt(3, i % 7);
+                insert.addBatch();
+                if (i % 1000 == 999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+            insert.close();
+            WabitCachedRowSet rs = new WabitCachedRowSet();
+            rs.populate(stmt.executeQuery("select category, amount, quantity from cursor_benchmark"));
+            return rs;
+        } finally {
+            stmt.execute("drop table cursor_benchmark");
+            stmt.close();
+            con.close();
+        }
+    }
+
+    private static double sumByName(WabitCachedRowSet rs) throws SQLException {
+        double sum = 0;
+        rs.beforeFirst();
+        while (rs.next()) {
+            sum += rs.getDouble("amount") * rs.getDouble("quantity");
+        }
+        return sum;
+    }
+
+    private static double sumByCursor(WabitCachedRowSet rs) throws SQLException {
+        ResultSetCursor cursor = ResultSetCursor.create(rs);
+        Column amount = cursor.getColumn("amount");
+        Column quantity = cursor.getColumn("quantity");
+        double sum = 0;
+        while (cursor.next()) {
+            sum += amount.getDouble() * quantity.getLong();
+        }
+        return sum;
+    }
+
+    private static double sumByBlock(WabitCachedRowSet rs) throws SQLException {
+        ResultSetCursor cursor = ResultSetCursor.create(rs);
+        Column amount = cursor.getColumn("amount");
+        Column quantity = cursor.getColumn("quantity");
+        Object[][] block = new Object[ResultSetCursor.DEFAULT_BLOCK_SIZE][];
+        double sum = 0;
+        int blockSize;
+        while ((blockSize = cursor.nextBlock(block)) > 0) {
+            for (int i = 0; i < blockSize; i++) {
+                sum += amount.getDouble(block[i]) * quantity.getLong(block[i]);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the given sum if it is the expected one.
+     */
+    private static Double check(double expected, double actual) {
+        if (expected != actual) {
+            throw new IllegalStateException("Expected a sum of " + expected + " but was " + actual);
+        }
+        return actual;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.wabit.rs;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+import ca.sqlpower.sql.CachedRowSet;
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.wabit.rs.ResultSetCursor.Column;
+
+public class ResultSetCursorTest extends TestCase {
+
+    private JDBCDataSource ds;
+
+    @Override
+    protected void setUp() throws Exception {
+        PlDotIni plIni = new PlDotIni();
+        plIni.read(new File("src/test/resources/pl.regression.ini"));
+        ds = plIni.getDataSource("regression_test", JDBCDataSource.class);
+    }
+
+    /**
+     * Fills the given row set with three rows of a name and a number, the
+     * second row having a null number.
+     */
+    private void populate(CachedRowSet rs) throws SQLException {
+        Connection con = ds.createConnection();
+        Statement stmt = con.createStatement();
+        try {
+            stmt.execute("create table cursor_test (name varchar(50), amount integer)");
+            stmt.execute("insert into cursor_test (name, amount) values ('a', 10)");
+            stmt.execute("insert into cursor_test (name, amount) values ('b', null)");
+            stmt.execute("insert into cursor_test (name, amount) values ('c', 30)");
+            rs.populate(stmt.executeQuery("select name, amount from cursor_test"));
+        } finally {
+            stmt.execute("drop table cursor_test");
+            stmt.close();
+            con.close();
+        }
+    }
+
+    /**
+     * Tests a cursor over a {@link WabitCachedRowSet} reads the values of the
+     * row set without moving the row set's own cursor.
+     */
+    public void testCursorOnWabitRowSet() throws Exception {
+        WabitCachedRowSet rs = new WabitCachedRowSet();
+        populate(rs);
+        rs.beforeFirst();
+        rs.next();
+
+        ResultSetCursor cursor = ResultSetCursor.create(rs);
+        assertEquals(3, cursor.getRowCount());
+        assertEquals(2, cursor.getColumnCount());
+        Column name = cursor.getColumn("NAME");
+        Column amount = cursor.getColumn("amount");
+        assertEquals(2, amount.getColumnIndex());
+
+        assertTrue(cursor.next());
+        assertTrue(cursor.isFirst());
+        assertEquals("a", name.getString());
+        assertEquals(10.0, amount.getDouble());
+        assertEquals(10L, amount.getLong());
+        assertTrue(cursor.next());
+        assertTrue(amount.isNull());
+        assertEquals(0.0, amount.getDouble());
+        assertNull(amount.getBigDecimal());
+        assertTrue(cursor.next());
+        assertTrue(cursor.isLast());
+        assertEquals("c", name.getString());
+        assertFalse(cursor.next());
+
+        assertTrue(rs.isFirst());
+        assertEquals("a", rs.getString(1));
+    }
+
+    /**
+     * Tests a cursor can be created on a result set that is not a
+     * {@link WabitCachedRowSet}.
+     */
+    public void testCursorOnOtherResultSet() throws Exception {
+        CachedRowSet rs = new CachedRowSet();
+        populate(rs);
+
+        ResultSetCursor cursor = ResultSetCursor.create(rs);
+        assertEquals(3, cursor.getRowCount());
+        Column amount = cursor.getColumn("amount");
+        cursor.setPosition(2);
+        assertEquals(30L, amount.getLong());
+        assertTrue(cursor.previous());
+        assertTrue(amount.isNull());
+    }
+
+    /**
+     * Tests reading rows in blocks returns every row once.
+     */
+    public void testNextBlock() throws Exception {
+        WabitCachedRowSet rs = new WabitCachedRowSet();
+        populate(rs);
+
+        ResultSetCursor cursor = ResultSetCursor.create(rs);
+        Column amount = cursor.getColumn("amount");
+        Object[][] block = new Object[2][];
+        assertEquals(2, cursor.nextBlock(block));
+        assertEquals(10.0, amount.getDouble(block[0]));
+        assertTrue(amount.isNull(block[1]));
+        assertEquals(1, cursor.getPosition());
+        assertEquals(1, cursor.nextBlock(block));
+        assertEquals(30.0, amount.getDouble(block[0]));
+        assertEquals(0, cursor.nextBlock(block));
+        assertFalse(cursor.next());
+    }
+
+    public void testUnknownColumn() throws Exception {
+        WabitCachedRowSet rs = new WabitCachedRowSet();
+        populate(rs);
+        ResultSetCursor cursor = ResultSetCursor.create(rs);
+        try {
+            cursor.getColumn("no_such_column");
+            fail("Looking up a column that does not exist should fail");
+        } catch (SQLException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.rs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import ca.sqlpower.wabit.StubWabitSession;
+import ca.sqlpower.wabit.StubWabitSessionContext;
+
+public class ResultSetEventDispatcherTest extends TestCase {
+    
+    private ResultSetEventDispatcher dispatcher;
+    
+    @Override
+    protected void setUp() throws Exception {
+        dispatcher = ResultSetEventDispatcher.createSerialDispatcher("Test result set events");
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        dispatcher.shutdown();
+    }
+
+    /**
+     * Blocks until the events already queued on the dispatcher have been
+     * delivered.
+     */
+    private void waitForQueuedEvents() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        dispatcher.dispatchLater(new Runnable() {
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+    
+    public void testEventsDeliveredInOrderOnDispatcherThread() throws Exception {
+        final List<Integer> delivered = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        for (int i = 0; i < 20; i++) {
+            final int eventNumber = i;
+            dispatcher.dispatch(new Runnable() {
+                public void run() {
+                    delivered.add(eventNumber);
+                    threads.add(Thread.currentThread());
+                }
+            });
+        }
+        waitForQueuedEvents();
+        
+        assertEquals(20, delivered.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, delivered.get(i).intValue());
+            assertNotSame(Thread.currentThread(), threads.get(i));
+            assertSame(threads.get(0), threads.get(i));
+        }
+    }
+
+    /**
+     * Events dispatched from the foreground thread are delivered right away
+     * so a listener that starts another execution sees its events in order.
+     */
+    public void testDispatchOnForegroundThreadRunsImmediately() throws Exception {
+        final List<String> delivered = Collections.synchronizedList(new ArrayList<String>());
+        dispatcher.dispatch(new Runnable() {
+            public void run() {
+                assertTrue(dispatcher.isForegroundThread());
+                dispatcher.dispatch(new Runnable() {
+                    public void run() {
+                        delivered.add("inner");
+                    }
+                });
+                delivered.add("outer");
+            }
+        });
+        waitForQueuedEvents();
+        
+        assertFalse(dispatcher.isForegroundThread());
+        assertEquals(2, delivered.size());
+        assertEquals("inner", delivered.get(0));
+        assertEquals("outer", delivered.get(1));
+    }
+    
+    /**
+     * A session dispatcher hands its events to the session's foreground
+     * runner instead of starting a thread of its own.
+     */
+    public void testSessionDispatcherRunsInForeground() throws Exception {
+        final List<Runnable> foregroundQueue = new ArrayList<Runnable>();
+        StubWabitSession session = new StubWabitSession(new StubWabitSessionContext()) {
+            @Override
+            public void runInForeground(Runnable runner) {
+                foregroundQueue.add(runner);
+            }
+            @Override
+            public boolean isForegroundThread() {
+                return false;
+            }
+        };
+        ResultSetEventDispatcher sessionDispatcher = 
+            ResultSetEventDispatcher.createSessionDispatcher(session);
+        final List<String> delivered = new ArrayList<String>();
+        sessionDispatcher.dispatch(new Runnable() {
+            public void run() {
+                delivered.add("event");
+            }
+        });
+        
+        assertTrue(delivered.isEmpty());
+        assertEquals(1, foregroundQueue.size());
+        foregroundQueue.get(0).run();
+        assertEquals(Collections.singletonList("event"), delivered);
+    }
+    
+    public void testUpdatesCoalesced() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch firstDelivery = new CountDownLatch(1);
+        ResultSetEventDispatcher.UpdateCoalescer coalescer = 
+            dispatcher.createUpdateCoalescer(new Runnable() {
+                public void run() {
+                    count.incrementAndGet();
+                    firstDelivery.countDown();
+                }
+            });
+        
+        for (int i = 0; i < 1000; i++) {
+            coalescer.updateAvailable();
+        }
+        assertTrue(firstDelivery.await(5, TimeUnit.SECONDS));
+        waitForQueuedEvents();
+        
+        assertEquals(1, count.get());
+    }
+    
+    public void testNoUpdatesAfterStop() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch firstDelivery = new CountDownLatch(1);
+        ResultSetEventDispatcher.UpdateCoalescer coalescer = 
+            dispatcher.createUpdateCoalescer(new Runnable() {
+                public void run() {
+                    count.incrementAndGet();
+                    firstDelivery.countDown();
+                }
+            });
+        coalescer.updateAvailable();
+        assertTrue(firstDelivery.await(5, TimeUnit.SECONDS));
+        
+        // this update is scheduled for the end of the interval
+        coalescer.updateAvailable();
+        coalescer.stop();
+        coalescer.updateAvailable();
+        Thread.sleep(ResultSetEventDispatcher.UPDATE_INTERVAL * 2);
+        waitForQueuedEvents();
+        
+        assertEquals(1, count.get());
+    }
+}
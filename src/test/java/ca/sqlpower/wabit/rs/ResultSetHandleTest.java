@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.rs;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import ca.sqlpower.object.SPVariableHelper;
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.wabit.StubWabitSession;
+import ca.sqlpower.wabit.StubWabitSessionContext;
+import ca.sqlpower.wabit.rs.ResultSetHandle.ResultSetStatus;
+import ca.sqlpower.wabit.rs.ResultSetHandle.ResultSetType;
+
+/**
+ * Tests the partitioned execution of a relational query. The rows have the
+ * ids 1 to 100, which four partitions split at 26, 51 and 76.
+ */
+public class ResultSetHandleTest extends TestCase {
+    
+    private static final String SQL = "select id, amount from partition_test";
+    
+    private StubWabitSessionContext context;
+    
+    private JDBCDataSource ds;
+    
+    private SPVariableHelper variables;
+    
+    @Override
+    protected void setUp() throws Exception {
+        PlDotIni plIni = new PlDotIni();
+        plIni.read(new File("src/test/resources/pl.regression.ini"));
+        ds = plIni.getDataSource("regression_test", JDBCDataSource.class);
+        context = new StubWabitSessionContext();
+        variables = new SPVariableHelper(new StubWabitSession(context).getWorkspace());
+        
+        Connection con = ds.createConnection();
+        Statement stmt = con.createStatement();
+        try {
+            stmt.execute("create table partition_test (id integer, amount integer)");
+            for (int id = 1; id <= 100; id++) {
+                stmt.execute("insert into partition_test (id, amount) values (" + id + ", " + 
+                        (id * 10) + ")");
+            }
+        } finally {
+            stmt.close();
+            con.close();
+        }
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        Connection con = ds.createConnection();
+        Statement stmt = con.createStatement();
+        try {
+            stmt.execute("drop table partition_test");
+        } finally {
+            stmt.close();
+            con.close();
+        }
+    }
+    
+    private ResultSetHandle execute(int rowLimit, boolean ordered) {
+        ResultSetHandle rsh = new ResultSetHandle(context, ds, SQL, variables, 
+                ResultSetType.RELATIONAL, rowLimit, new QueryPartitioning("id", 4, ordered), 
+                null, null);
+        rsh.populate(false);
+        return rsh;
+    }
+
+    /**
+     * Returns the index of the partition the row with the given id is in.
+     */
+    private static int partitionOf(int id) {
+        if (id < 26) return 0;
+        if (id < 51) return 1;
+        if (id < 76) return 2;
+        return 3;
+    }
+    
+    public void testPartitionRowsMerged() throws Exception {
+        ResultSetHandle rsh = execute(0, false);
+        assertEquals(ResultSetStatus.SUCCESS, rsh.getStatus());
+        assertEquals(4, rsh.getPartitionProgress().size());
+        
+        ResultSetCursor cursor = rsh.getCursor();
+        ResultSetCursor.Column id = cursor.getColumn("id");
+        ResultSetCursor.Column amount = cursor.getColumn("amount");
+        Set<Long> ids = new HashSet<Long>();
+        while (cursor.next()) {
+            assertEquals(id.getLong() * 10, amount.getLong());
+            ids.add(id.getLong());
+        }
+        assertEquals(100, ids.size());
+        for (long i = 1; i <= 100; i++) {
+            assertTrue(ids.contains(i));
+        }
+    }
+    
+    public void testOrderedPartitionsMergedInRangeOrder() throws Exception {
+        ResultSetHandle rsh = execute(0, true);
+        assertEquals(ResultSetStatus.SUCCESS, rsh.getStatus());
+        
+        ResultSetCursor cursor = rsh.getCursor();
+        ResultSetCursor.Column id = cursor.getColumn("id");
+        assertEquals(100, cursor.getRowCount());
+        int lastPartition = 0;
+        while (cursor.next()) {
+            int partition = partitionOf((int) id.getLong());
+            assertTrue("Row " + id.getLong() + " was merged after a later partition", 
+                    partition >= lastPartition);
+            lastPartition = partition;
+        }
+        for (PartitionProgress progress : rsh.getPartitionProgress()) {
+            assertEquals(ResultSetStatus.SUCCESS, progress.getStatus());
+        }
+    }
+
+    /**
+     * The row limit applies to the merged rows, not to each partition, and
+     * the partitions that are stopped once it is reached are not a failure.
+     */
+    public void testRowLimitAppliesToMergedRows() throws Exception {
+        ResultSetHandle rsh = execute(30, true);
+        assertEquals(ResultSetStatus.SUCCESS, rsh.getStatus());
+        
+        ResultSetCursor cursor = rsh.getCursor();
+        ResultSetCursor.Column id = cursor.getColumn("id");
+        assertEquals(30, cursor.getRowCount());
+        for (int row = 0; row < 25; row++) {
+            assertTrue(cursor.next());
+            assertEquals(0, partitionOf((int) id.getLong()));
+        }
+        while (cursor.next()) {
+            assertEquals(1, partitionOf((int) id.getLong()));
+        }
+    }
+    
+    public void testRowLimitUnordered() throws Exception {
+        ResultSetHandle rsh = execute(30, false);
+        assertEquals(ResultSetStatus.SUCCESS, rsh.getStatus());
+        assertEquals(30, rsh.getCursor().getRowCount());
+    }
+}
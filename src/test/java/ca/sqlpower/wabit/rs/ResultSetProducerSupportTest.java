@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.rs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import ca.sqlpower.object.SPVariableHelper;
+
+public class ResultSetProducerSupportTest extends TestCase {
+
+    /**
+     * A producer that only exists to be the source of the support's events.
+     * Its events are delivered by the default dispatcher.
+     */
+    private static class StubProducer implements ResultSetProducer {
+        public ResultSetHandle execute(SPVariableHelper variablesContext,
+                ResultSetListener listener) {
+            throw new UnsupportedOperationException();
+        }
+        public ResultSetHandle execute(SPVariableHelper variablesContext,
+                ResultSetListener listener, boolean async) {
+            throw new UnsupportedOperationException();
+        }
+        public ResultSetHandle execute(SPVariableHelper variablesContext,
+                ResultSetListener listener, boolean async, CancellationToken token) {
+            throw new UnsupportedOperationException();
+        }
+        public void addResultSetProducerListener(ResultSetProducerListener listener) {
+            // not needed
+        }
+        public void removeResultSetProducerListener(ResultSetProducerListener listener) {
+            // not needed
+        }
+        public boolean isRunning() {
+            return false;
+        }
+        public boolean isStreaming() {
+            return false;
+        }
+        public void cancel() {
+            // not needed
+        }
+    }
+    
+    private ResultSetProducerSupport support;
+    
+    private volatile boolean running;
+    
+    private final List<String> delivered = Collections.synchronizedList(new ArrayList<String>());
+    
+    @Override
+    protected void setUp() throws Exception {
+        support = new ResultSetProducerSupport(new StubProducer(), 
+                new ResultSetProducerStatusInformant() {
+                    public boolean isRunning() {
+                        return running;
+                    }
+                });
+        support.addResultSetProducerListener(new ResultSetProducerListener() {
+            public void executionStarted(ResultSetProducerEvent evt) {
+                delivered.add("started");
+            }
+            public void executionStopped(ResultSetProducerEvent evt) {
+                delivered.add("stopped");
+            }
+            public void structureChanged(ResultSetProducerEvent evt) {
+                delivered.add("structure");
+            }
+        });
+    }
+
+    /**
+     * Blocks until the events already queued on the default dispatcher have
+     * been delivered.
+     */
+    private void waitForQueuedEvents() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        ResultSetEventDispatcher.getDefault().dispatchLater(new Runnable() {
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Events fired while the delivery is queued are delivered with it instead
+     * of growing the queue. The support's lock keeps the delivery from
+     * running until all of the events are fired.
+     */
+    public void testStructureChangesCoalesced() throws Exception {
+        synchronized (support) {
+            for (int i = 0; i < 100; i++) {
+                support.fireStructureChanged();
+            }
+        }
+        waitForQueuedEvents();
+        
+        assertEquals(Collections.singletonList("structure"), delivered);
+    }
+
+    /**
+     * When a start and a stop are both pending the one fired last is
+     * delivered last so the listeners see the current state.
+     */
+    public void testLastExecutionEventDeliveredLast() throws Exception {
+        synchronized (support) {
+            running = true;
+            support.fireExecutionStarted();
+            running = false;
+            support.fireExecutionComplete();
+            running = true;
+            support.fireExecutionStarted();
+        }
+        waitForQueuedEvents();
+        
+        assertEquals(2, delivered.size());
+        assertEquals("stopped", delivered.get(0));
+        assertEquals("started", delivered.get(1));
+    }
+    
+    public void testStartThenStopDeliveredInOrder() throws Exception {
+        synchronized (support) {
+            running = true;
+            support.fireExecutionStarted();
+            running = false;
+            support.fireExecutionComplete();
+        }
+        waitForQueuedEvents();
+        
+        assertEquals(2, delivered.size());
+        assertEquals("started", delivered.get(0));
+        assertEquals("stopped", delivered.get(1));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.rs;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class StreamingRowBufferTest extends TestCase {
+    
+    private StreamingRowBuffer buffer;
+    
+    @Override
+    protected void setUp() throws Exception {
+        buffer = new StreamingRowBuffer(3);
+    }
+    
+    private static Object[] row(int value) {
+        return new Object[] { Integer.valueOf(value) };
+    }
+    
+    private static void assertRows(List<Object[]> rows, int ... values) {
+        assertEquals(values.length, rows.size());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(Integer.valueOf(values[i]), rows.get(i)[0]);
+        }
+    }
+    
+    public void testRowsBeforeCapacityRetained() throws Exception {
+        assertEquals(0, buffer.append(row(10)));
+        assertEquals(1, buffer.append(row(11)));
+        assertEquals(2, buffer.size());
+        assertRows(buffer.getRows(), 10, 11);
+    }
+    
+    public void testOldestRowsEvicted() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            buffer.append(row(i));
+        }
+        assertEquals(3, buffer.size());
+        assertEquals(5, buffer.getNextSequence());
+        assertRows(buffer.getRows(), 2, 3, 4);
+    }
+    
+    /**
+     * The buffer grows as rows arrive, so a large capacity does not take
+     * memory up front, and keeps the rows in order once it wraps around.
+     */
+    public void testBufferGrowsToCapacity() throws Exception {
+        StreamingRowBuffer largeBuffer = new StreamingRowBuffer(Integer.MAX_VALUE);
+        for (int i = 0; i < 1000; i++) {
+            largeBuffer.append(row(i));
+        }
+        assertEquals(1000, largeBuffer.size());
+        assertEquals(Integer.valueOf(999), largeBuffer.getRows().get(999)[0]);
+        
+        StreamingRowBuffer wrappingBuffer = new StreamingRowBuffer(100);
+        for (int i = 0; i < 250; i++) {
+            wrappingBuffer.append(row(i));
+        }
+        List<Object[]> rows = wrappingBuffer.getRows();
+        assertEquals(100, rows.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(150 + i), rows.get(i)[0]);
+        }
+    }
+    
+    public void testDeltaOnlyHasNewRows() throws Exception {
+        buffer.append(row(0));
+        buffer.append(row(1));
+        StreamingRowBuffer.Delta delta = buffer.getRowsSince(0);
+        assertRows(delta.getRows(), 0, 1);
+        assertEquals(2, delta.getNextSequence());
+        
+        buffer.append(row(2));
+        delta = buffer.getRowsSince(delta.getNextSequence());
+        assertRows(delta.getRows(), 2);
+        assertEquals(2, delta.getFirstSequence());
+        assertEquals(0, delta.getMissedRowCount());
+        
+        delta = buffer.getRowsSince(delta.getNextSequence());
+        assertTrue(delta.getRows().isEmpty());
+        assertEquals(3, delta.getNextSequence());
+    }
+
+    /**
+     * A consumer that falls more than the capacity behind gets the retained
+     * rows and is told how many it missed.
+     */
+    public void testDeltaReportsEvictedRows() throws Exception {
+        for (int i = 0; i < 7; i++) {
+            buffer.append(row(i));
+        }
+        StreamingRowBuffer.Delta delta = buffer.getRowsSince(1);
+        assertRows(delta.getRows(), 4, 5, 6);
+        assertEquals(4, delta.getFirstSequence());
+        assertEquals(3, delta.getMissedRowCount());
+        assertEquals(7, delta.getNextSequence());
+    }
+    
+    public void testStatistics() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            buffer.append(row(i));
+        }
+        buffer.rowsDelivered();
+        StreamingRowBuffer.Statistics stats = buffer.getStatistics();
+        assertEquals(3, stats.getCapacity());
+        assertEquals(3, stats.getRetainedRowCount());
+        assertEquals(5, stats.getReceivedRowCount());
+        assertEquals(2, stats.getEvictedRowCount());
+        assertTrue(stats.getRowsPerSecond() > 0);
+        assertTrue(stats.getLastDeliveryLag() >= 0);
+        assertTrue(stats.getMaxDeliveryLag() >= stats.getLastDeliveryLag());
+    }
+    
+    public void testCapacityMustBePositive() throws Exception {
+        try {
+            new StreamingRowBuffer(0);
+            fail("A buffer cannot hold 0 rows");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
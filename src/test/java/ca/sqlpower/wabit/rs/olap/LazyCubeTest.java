@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.rs.olap;
+
+import java.io.File;
+import java.sql.SQLException;
+
+import javax.naming.NamingException;
+
+import junit.framework.TestCase;
+
+import org.olap4j.OlapConnection;
+import org.olap4j.OlapException;
+import org.olap4j.metadata.Cube;
+
+import ca.sqlpower.sql.Olap4jDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.wabit.StubWabitSessionContext;
+import ca.sqlpower.wabit.util.StubOlapConnectionMapping;
+
+public class LazyCubeTest extends TestCase {
+
+    private Olap4jDataSource source;
+    
+    /**
+     * The one cube in the regression database.
+     */
+    private Cube cube;
+    
+    /**
+     * Counts the connections the cube under test asked for.
+     */
+    private int connectionCount;
+    
+    private StubOlapConnectionMapping connectionProvider;
+    
+    @Override
+    protected void setUp() throws Exception {
+        PlDotIni ini = new PlDotIni();
+        ini.read(new File("src/test/resources/pl.regression.ini"));
+        source = ini.getDataSource("World Facts OLAP Connection", Olap4jDataSource.class);
+        final OlapConnection con = new OlapConnectionPool(source, new StubWabitSessionContext()).getConnection();
+        cube = con.getCatalogs().get(0).getSchemas().get(0).getCubes().get(0);
+        connectionProvider = new StubOlapConnectionMapping() {
+            @Override
+            public OlapConnection createConnection(Olap4jDataSource dataSource)
+                    throws SQLException, ClassNotFoundException, NamingException {
+                connectionCount++;
+                return con;
+            }
+        };
+    }
+    
+    public void testResolvesOnFirstUse() throws Exception {
+        Cube lazyCube = LazyCube.create(connectionProvider, source, 
+                cube.getSchema().getCatalog().getName(), cube.getSchema().getName(), cube.getName());
+        LazyCube handle = LazyCube.getHandle(lazyCube);
+        assertNotNull(handle);
+        assertNull(LazyCube.getHandle(cube));
+        
+        assertEquals(cube.getName(), lazyCube.getName());
+        assertFalse(handle.isResolved());
+        assertEquals(0, connectionCount);
+        
+        assertEquals(cube.getSchema().getName(), lazyCube.getSchema().getName());
+        assertTrue(handle.isResolved());
+        assertEquals(cube.getDimensions().size(), lazyCube.getDimensions().size());
+        assertEquals(1, connectionCount);
+    }
+    
+    /**
+     * Two lazy cubes for the same cube should share the cube looked up in
+     * the metadata cache.
+     */
+    public void testSharesCachedCube() throws Exception {
+        String catalogName = cube.getSchema().getCatalog().getName();
+        String schemaName = cube.getSchema().getName();
+        Cube first = LazyCube.create(connectionProvider, source, catalogName, schemaName, cube.getName());
+        Cube second = LazyCube.create(connectionProvider, source, catalogName, schemaName, cube.getName());
+        assertSame(LazyCube.getHandle(first).resolve(), LazyCube.getHandle(second).resolve());
+    }
+    
+    public void testMissingCube() throws Exception {
+        Cube lazyCube = LazyCube.create(connectionProvider, source, 
+                cube.getSchema().getCatalog().getName(), cube.getSchema().getName(), "no such cube");
+        try {
+            LazyCube.getHandle(lazyCube).resolve();
+            fail("Resolving a cube that does not exist should fail");
+        } catch (OlapException e) {
+            // expected
+        }
+        assertFalse(LazyCube.getHandle(lazyCube).isResolved());
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.rs.olap;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.olap4j.OlapConnection;
+import org.olap4j.OlapException;
+import org.olap4j.metadata.Cube;
+
+import ca.sqlpower.sql.Olap4jDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.wabit.StubWabitSessionContext;
+
+public class OlapMetadataCacheTest extends TestCase {
+
+    /**
+     * Wraps a connection and counts the times its metadata was walked, which
+     * always starts with getting the catalogs. The walk can be held up until
+     * {@link #release} is counted down.
+     */
+    private static class CountingConnectionHandler implements InvocationHandler {
+
+        private final OlapConnection delegate;
+
+        private final AtomicInteger walkCount = new AtomicInteger();
+
+        private final CountDownLatch walkStarted = new CountDownLatch(1);
+
+        private final CountDownLatch release;
+
+        CountingConnectionHandler(OlapConnection delegate, CountDownLatch release) {
+            this.delegate = delegate;
+            this.release = release;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("getCatalogs")) {
+                walkCount.incrementAndGet();
+                walkStarted.countDown();
+                release.await();
+            }
+            try {
+                return method.invoke(delegate, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private OlapConnection realConnection;
+
+    private String catalogName;
+
+    private String schemaName;
+
+    private String cubeName;
+
+    private OlapMetadataCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        PlDotIni ini = new PlDotIni();
+        ini.read(new File("src/test/resources/pl.regression.ini"));
+        Olap4jDataSource source = ini.getDataSource("World Facts OLAP Connection", Olap4jDataSource.class);
+        realConnection = new OlapConnectionPool(source, new StubWabitSessionContext()).getConnection();
+        Cube cube = realConnection.getCatalogs().get(0).getSchemas().get(0).getCubes().get(0);
+        catalogName = cube.getSchema().getCatalog().getName();
+        schemaName = cube.getSchema().getName();
+        cubeName = cube.getName();
+        cache = new OlapMetadataCache();
+    }
+
+    private CountingConnectionHandler createHandler(CountDownLatch release) {
+        return new CountingConnectionHandler(realConnection, release);
+    }
+
+    private OlapConnection createConnection(CountingConnectionHandler handler) {
+        return (OlapConnection) Proxy.newProxyInstance(OlapConnection.class.getClassLoader(),
+                new Class<?>[] { OlapConnection.class }, handler);
+    }
+
+    public void testLookupsAreCached() throws Exception {
+        CountingConnectionHandler handler = createHandler(new CountDownLatch(0));
+        OlapConnection con = createConnection(handler);
+
+        Cube first = cache.findCube(con, catalogName, schemaName, cubeName);
+        Cube second = cache.findCube(con, catalogName, schemaName, cubeName);
+        assertEquals(cubeName, first.getName());
+        assertSame(first, second);
+        assertEquals(1, handler.walkCount.get());
+    }
+
+    /**
+     * A thread looking up a cube that another thread is already looking up
+     * should wait for the other thread's lookup instead of walking the
+     * metadata again.
+     */
+    public void testConcurrentLookupsWalkOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountingConnectionHandler handler = createHandler(release);
+        final OlapConnection con = createConnection(handler);
+
+        final Cube[] cubes = new Cube[2];
+        final Exception[] errors = new Exception[2];
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        cubes[index] = cache.findCube(con, catalogName, schemaName, cubeName);
+                    } catch (Exception e) {
+                        errors[index] = e;
+                    }
+                }
+            });
+        }
+
+        threads[0].start();
+        handler.walkStarted.await();
+        threads[1].start();
+        while (threads[1].getState() != Thread.State.WAITING) {
+            assertTrue(threads[1].isAlive());
+            Thread.sleep(10);
+        }
+        release.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertNull(errors[0]);
+        assertNull(errors[1]);
+        assertNotNull(cubes[0]);
+        assertSame(cubes[0], cubes[1]);
+        assertEquals(1, handler.walkCount.get());
+    }
+
+    public void testFailedLookupsAreNotCached() throws Exception {
+        CountingConnectionHandler handler = createHandler(new CountDownLatch(0));
+        OlapConnection con = createConnection(handler);
+
+        for (int i = 1; i <= 2; i++) {
+            try {
+                cache.findCube(con, catalogName, schemaName, "no such cube");
+                fail("Finding a cube that does not exist should fail");
+            } catch (OlapException e) {
+                // expected
+            }
+            assertEquals(i, handler.walkCount.get());
+        }
+    }
+
+    public void testClearedOnConnectionChange() throws Exception {
+        CountingConnectionHandler firstHandler = createHandler(new CountDownLatch(0));
+        OlapConnection firstCon = createConnection(firstHandler);
+        CountingConnectionHandler secondHandler = createHandler(new CountDownLatch(0));
+        OlapConnection secondCon = createConnection(secondHandler);
+
+        cache.findCube(firstCon, catalogName, schemaName, cubeName);
+        cache.findCube(secondCon, catalogName, schemaName, cubeName);
+        assertEquals(1, secondHandler.walkCount.get());
+
+        cache.findCube(firstCon, catalogName, schemaName, cubeName);
+        assertEquals(2, firstHandler.walkCount.get());
+    }
+
+    public void testClear() throws Exception {
+        CountingConnectionHandler handler = createHandler(new CountDownLatch(0));
+        OlapConnection con = createConnection(handler);
+
+        cache.findCube(con, catalogName, schemaName, cubeName);
+        cache.clear();
+        cache.findCube(con, catalogName, schemaName, cubeName);
+        assertEquals(2, handler.walkCount.get());
+    }
+}
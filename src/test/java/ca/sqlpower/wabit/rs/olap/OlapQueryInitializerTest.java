@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.rs.olap;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.olap4j.Axis;
+
+import ca.sqlpower.sql.Olap4jDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.wabit.StubWabitSession;
+import ca.sqlpower.wabit.StubWabitSessionContext;
+import ca.sqlpower.wabit.WabitWorkspace;
+
+public class OlapQueryInitializerTest extends TestCase {
+
+    /**
+     * The longest time to wait for the queries to be initialized.
+     */
+    private static final long TIMEOUT = 30000;
+
+    private Olap4jDataSource source;
+
+    private StubWabitSessionContext context;
+
+    private WabitWorkspace workspace;
+
+    @Override
+    protected void setUp() throws Exception {
+        PlDotIni ini = new PlDotIni();
+        ini.read(new File("src/test/resources/pl.regression.ini"));
+        source = ini.getDataSource("World Facts OLAP Connection", Olap4jDataSource.class);
+        context = new StubWabitSessionContext();
+        workspace = new StubWabitSession(context).getWorkspace();
+    }
+
+    /**
+     * Creates a query on the given cube that needs to be initialized, the
+     * way it would be after being loaded, and adds it to the workspace.
+     */
+    private OlapQuery addLoadedQuery(String name, String cubeName) {
+        OlapQuery query = new OlapQuery(null, context, name, "GUI Query",
+                "LOCALDB", "World", cubeName, null, false, source);
+        query.addAxis(new WabitOlapAxis(Axis.ROWS));
+        workspace.addOlapQuery(query);
+        assertFalse(query.isInitDone());
+        return query;
+    }
+
+    private void waitForInit(OlapQuery query) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!query.isInitDone()) {
+            assertTrue("Timed out waiting for " + query.getName() + " to be initialized",
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    public void testInitializesQueries() throws Exception {
+        OlapQuery first = addLoadedQuery("First", "World Countries");
+        OlapQuery second = addLoadedQuery("Second", "World Countries");
+
+        OlapQueryInitializer.initInBackground(workspace);
+        waitForInit(first);
+        waitForInit(second);
+
+        assertEquals("World Countries", first.getCurrentCube().getName());
+        assertSame(first.getCurrentCube(), second.getCurrentCube());
+    }
+
+    /**
+     * A query that cannot be initialized should be left as it was so the
+     * failure is reported when the query is used.
+     */
+    public void testFailedQueryIsLeftUninitialized() throws Exception {
+        OlapQuery good = addLoadedQuery("Good", "World Countries");
+        OlapQuery bad = addLoadedQuery("Bad", "no such cube");
+
+        OlapQueryInitializer.initInBackground(workspace);
+        waitForInit(good);
+
+        assertFalse(bad.isInitDone());
+        try {
+            bad.init();
+            fail("Initializing a query on a missing cube should fail");
+        } catch (QueryInitializationException e) {
+            // expected
+        }
+        assertFalse(bad.isInitDone());
+    }
+}
@@ -78,6 +78,10 @@ public class OlapQueryTest extends AbstractWabitObjectTest {
 			return pool.getConnection();
 		}
 		
+		public OlapMetadataCache getMetadataCache(Olap4jDataSource dataSource) {
+		    return new OlapMetadataCache();
+		}
+		
 		public PreparedOlapStatement createPreparedStatement(
 	    		Olap4jDataSource dataSource, String mdx, SPVariableHelper helper) 
 	    {
@@ -220,6 +224,41 @@ public class OlapQueryTest extends AbstractWabitObjectTest {
     	assertNotNull(colInclusion.getSelection());
 	}
 
+    /**
+     * Tests that a snapshot keeps the MDX of the query it was taken of after
+     * the query changes, and that a query created from it produces the same
+     * MDX.
+     */
+    public void testSnapshotCreatesSameQuery() throws Exception {
+    	WabitOlapAxis rowsAxis = new WabitOlapAxis(Axis.ROWS);
+    	WabitOlapDimension rowsDimension = new WabitOlapDimension("Geography");
+    	rowsAxis.addDimension(rowsDimension);
+    	rowsDimension.addInclusion(new WabitOlapInclusion(Operator.MEMBER, "[Geography].[World]"));
+    	rowsDimension.addExclusion(new WabitOlapExclusion(Operator.MEMBER, "[Geography].[World].[Africa]"));
+    	
+    	WabitOlapAxis columnsAxis = new WabitOlapAxis(Axis.COLUMNS);
+    	WabitOlapDimension columnsDimension = new WabitOlapDimension("Measures");
+    	columnsAxis.addDimension(columnsDimension);
+    	columnsDimension.addInclusion(new WabitOlapInclusion(Operator.MEMBER, "[Measures].[Life Expectancy]"));
+    	
+    	query.addAxis(columnsAxis);
+    	query.addAxis(rowsAxis);
+    	
+    	String mdx = query.getMdxText();
+    	OlapQuerySnapshot snapshot = query.createSnapshot();
+    	assertEquals(mdx, snapshot.getMdxText());
+    	assertEquals(query.getName(), snapshot.getName());
+    	
+    	query.setNonEmpty(!query.isNonEmpty());
+    	assertFalse(mdx.equals(query.getMdxText()));
+    	assertEquals(mdx, snapshot.getMdxText());
+    	
+    	OlapQuery copy = snapshot.createQuery();
+    	getWorkspace().addOlapQuery(copy);
+    	assertFalse(copy.isInitDone());
+    	assertEquals(mdx, copy.getMdxText());
+    }
+
 	/**
 	 * Tests the initialization of a query as though it was loaded from a file
 	 * and then tries to expand a member.
@@ -42,6 +42,7 @@ import ca.sqlpower.util.UserPrompterFactory.UserPromptType;
 import ca.sqlpower.wabit.StubWabitSession;
 import ca.sqlpower.wabit.WabitSession;
 import ca.sqlpower.wabit.WabitWorkspace;
+import ca.sqlpower.wabit.rs.ResultSetEventDispatcher;
 import ca.sqlpower.wabit.swingui.tree.WorkspaceTreeModel;
 
 /**
@@ -191,4 +192,8 @@ public class StubWabitSwingSession implements WabitSwingSession {
 	public SPFontLoader getFontLoader() {
 		return delegateSession.getFontLoader();
 	}
+	
+	public ResultSetEventDispatcher getResultSetEventDispatcher() {
+		return ResultSetEventDispatcher.getSwingDispatcher();
+	}
 }
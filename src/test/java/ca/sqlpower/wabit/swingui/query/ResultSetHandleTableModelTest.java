@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+package ca.sqlpower.wabit.swingui.query;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.swing.SortOrder;
+import javax.swing.RowSorter.SortKey;
+
+import junit.framework.TestCase;
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.wabit.rs.ResultSetCursor;
+import ca.sqlpower.wabit.rs.WabitCachedRowSet;
+
+public class ResultSetHandleTableModelTest extends TestCase {
+
+    /**
+     * Runs tasks on the calling thread.
+     */
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * Holds tasks until the test runs them.
+     */
+    private static class QueuedExecutor implements Executor {
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            for (Runnable task : new ArrayList<Runnable>(tasks)) {
+                task.run();
+            }
+            tasks.clear();
+        }
+    }
+
+    private ResultSetCursor cursor;
+
+    @Override
+    protected void setUp() throws Exception {
+        PlDotIni plIni = new PlDotIni();
+        plIni.read(new File("src/test/resources/pl.regression.ini"));
+        JDBCDataSource ds = plIni.getDataSource("regression_test", JDBCDataSource.class);
+        WabitCachedRowSet rs = new WabitCachedRowSet();
+        Connection con = ds.createConnection();
+        Statement stmt = con.createStatement();
+        try {
+            stmt.execute("create table table_model_test (name varchar(50), amount integer)");
+            stmt.execute("insert into table_model_test (name, amount) values ('Beta', 20)");
+            stmt.execute("insert into table_model_test (name, amount) values ('alpha', null)");
+            stmt.execute("insert into table_model_test (name, amount) values ('Gamma', 10)");
+            stmt.execute("insert into table_model_test (name, amount) values ('alphabet', 20)");
+            rs.populate(stmt.executeQuery("select name, amount from table_model_test"));
+        } finally {
+            stmt.execute("drop table table_model_test");
+            stmt.close();
+            con.close();
+        }
+        cursor = ResultSetCursor.create(rs);
+    }
+
+    private List<Object> namesShown(ResultSetHandleTableModel model) {
+        List<Object> names = new ArrayList<Object>();
+        for (int i = 0; i < model.getRowCount(); i++) {
+            names.add(model.getValueAt(i, 0));
+        }
+        return names;
+    }
+
+    public void testRowsInResultSetOrder() throws Exception {
+        ResultSetHandleTableModel model = new ResultSetHandleTableModel(cursor, DIRECT_EXECUTOR, DIRECT_EXECUTOR);
+        assertEquals(4, model.getRowCount());
+        assertEquals(2, model.getColumnCount());
+        assertEquals("amount", model.getColumnName(1).toLowerCase());
+        assertEquals(3, model.convertRowIndexToModel(3));
+        assertEquals("Gamma", model.getValueAt(2, 0));
+    }
+
+    /**
+     * Tests rows are sorted by each key in turn with nulls first, and that
+     * rows with equal keys keep their order.
+     */
+    public void testSort() throws Exception {
+        ResultSetHandleTableModel model = new ResultSetHandleTableModel(cursor, DIRECT_EXECUTOR, DIRECT_EXECUTOR);
+        model.setSortKeys(Collections.singletonList(new SortKey(1, SortOrder.ASCENDING)));
+        assertEquals(4, model.getRowCount());
+        assertEquals("alpha", model.getValueAt(0, 0));
+        assertEquals("Gamma", model.getValueAt(1, 0));
+        assertEquals("Beta", model.getValueAt(2, 0));
+        assertEquals("alphabet", model.getValueAt(3, 0));
+        assertEquals(1, model.convertRowIndexToModel(0));
+
+        List<SortKey> keys = new ArrayList<SortKey>();
+        keys.add(new SortKey(1, SortOrder.DESCENDING));
+        keys.add(new SortKey(0, SortOrder.ASCENDING));
+        model.setSortKeys(keys);
+        assertEquals("Beta", model.getValueAt(0, 0));
+        assertEquals("alphabet", model.getValueAt(1, 0));
+        assertEquals("Gamma", model.getValueAt(2, 0));
+        assertEquals("alpha", model.getValueAt(3, 0));
+
+        model.setSortKeys(Collections.singletonList(new SortKey(1, SortOrder.UNSORTED)));
+        assertTrue(model.getSortKeys().isEmpty());
+        assertEquals("Beta", model.getValueAt(0, 0));
+    }
+
+    public void testFilterIgnoresCase() throws Exception {
+        ResultSetHandleTableModel model = new ResultSetHandleTableModel(cursor, DIRECT_EXECUTOR, DIRECT_EXECUTOR);
+        model.setFilter("ALPHA");
+        assertEquals(2, model.getRowCount());
+        assertEquals("alpha", model.getValueAt(0, 0));
+        assertEquals("alphabet", model.getValueAt(1, 0));
+
+        model.setFilter("20");
+        assertEquals(2, model.getRowCount());
+        assertEquals("Beta", model.getValueAt(0, 0));
+
+        model.setFilter(null);
+        assertEquals(4, model.getRowCount());
+    }
+
+    /**
+     * Tests the table keeps showing the previous order until the background
+     * sort is done, and that a sort made obsolete by a newer one is dropped.
+     */
+    public void testSortRunsInBackground() throws Exception {
+        QueuedExecutor background = new QueuedExecutor();
+        ResultSetHandleTableModel model = new ResultSetHandleTableModel(cursor, background, DIRECT_EXECUTOR);
+        model.setSortKeys(Collections.singletonList(new SortKey(0, SortOrder.DESCENDING)));
+        assertEquals("Beta", model.getValueAt(0, 0));
+
+        model.setFilter("a");
+        background.runAll();
+        assertEquals(4, model.getRowCount());
+        assertEquals("alphabet", model.getValueAt(0, 0));
+        assertEquals("Beta", model.getValueAt(3, 0));
+    }
+
+    public void testCompareValues() throws Exception {
+        assertTrue(ResultSetHandleTableModel.compareValues(null, 1) < 0);
+        assertTrue(ResultSetHandleTableModel.compareValues(2, null) > 0);
+        assertTrue(ResultSetHandleTableModel.compareValues(2, 10) < 0);
+        assertTrue(ResultSetHandleTableModel.compareValues(2.5, 2L) > 0);
+        assertEquals(0, ResultSetHandleTableModel.compareValues("a", "a"));
+    }
+}
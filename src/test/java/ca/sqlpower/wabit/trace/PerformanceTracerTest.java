@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Wabit.
+ *
+ * Wabit is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wabit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>. 
+ */
+
+package ca.sqlpower.wabit.trace;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.json.JSONObject;
+
+import junit.framework.TestCase;
+
+public class PerformanceTracerTest extends TestCase {
+
+    private static final String STAGE = "test-stage";
+    
+    @Override
+    protected void setUp() throws Exception {
+        PerformanceTracer.getStatistics(STAGE).reset();
+    }
+    
+    public void testSpanAddsToStatistics() throws Exception {
+        Span span = PerformanceTracer.start(STAGE, "first");
+        span.setRowCount(10);
+        span.setByteCount(100);
+        span.end();
+        span.end();
+        
+        StageStatistics statistics = PerformanceTracer.getStatistics(STAGE);
+        assertEquals(1, statistics.getCount());
+        assertEquals(10, statistics.getRowCount());
+        assertEquals(100, statistics.getByteCount());
+        assertTrue(span.getDurationNanos() >= 0);
+        assertEquals(Thread.currentThread().getName(), span.getThreadName());
+    }
+    
+    public void testStatisticsRegisteredAsMBean() throws Exception {
+        PerformanceTracer.start(STAGE, null).end();
+        ObjectName name = new ObjectName("ca.sqlpower.wabit:type=PerformanceTrace,stage=" + 
+                ObjectName.quote(STAGE));
+        assertEquals(Long.valueOf(1), 
+                ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Count"));
+    }
+
+    /**
+     * A recording must contain the spans that ended while it was recording,
+     * including spans on other threads, and none that ended after it stopped.
+     */
+    public void testRecording() throws Exception {
+        PerformanceTracer.start(STAGE, "before").end();
+        TraceRecording recording = PerformanceTracer.startRecording("test");
+        PerformanceTracer.start(STAGE, "during").end();
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                PerformanceTracer.start(STAGE, "other thread").end();
+            }
+        });
+        thread.start();
+        thread.join();
+        recording.stop();
+        PerformanceTracer.start(STAGE, "after").end();
+        
+        assertEquals(2, recording.getSpans().size());
+        assertEquals("during", recording.getSpans().get(0).getName());
+        assertEquals("other thread", recording.getSpans().get(1).getName());
+        
+        JSONObject json = recording.toJSON();
+        assertEquals("test", json.getString("name"));
+        assertEquals(2, json.getJSONArray("spans").length());
+        assertEquals(2, json.getJSONObject("stages").getJSONObject(STAGE).getInt("count"));
+    }
+}
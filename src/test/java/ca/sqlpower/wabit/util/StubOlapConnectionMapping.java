@@ -29,14 +29,21 @@ import org.olap4j.PreparedOlapStatement;
 import ca.sqlpower.object.SPVariableHelper;
 import ca.sqlpower.sql.Olap4jDataSource;
 import ca.sqlpower.wabit.OlapConnectionProvider;
+import ca.sqlpower.wabit.rs.olap.OlapMetadataCache;
 
 public class StubOlapConnectionMapping implements OlapConnectionProvider {
 
+    private final OlapMetadataCache metadataCache = new OlapMetadataCache();
+
     public OlapConnection createConnection(Olap4jDataSource dataSource)
             throws SQLException, ClassNotFoundException, NamingException {
         return null;
     }
 
+    public OlapMetadataCache getMetadataCache(Olap4jDataSource dataSource) {
+        return metadataCache;
+    }
+    
     public PreparedOlapStatement createPreparedStatement(
     		Olap4jDataSource dataSource, String mdx, SPVariableHelper helper) 
     {